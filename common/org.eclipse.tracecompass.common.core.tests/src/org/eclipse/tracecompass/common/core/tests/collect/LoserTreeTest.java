@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.common.core.tests.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.tracecompass.common.core.collect.LoserTree;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link LoserTree}
+ */
+public class LoserTreeTest {
+
+    /**
+     * Test an empty tree, and a tree without any leaf
+     */
+    @Test
+    public void testEmpty() {
+        LoserTree tree = new LoserTree(0);
+        assertTrue(tree.isEmpty());
+        assertEquals(LoserTree.NO_WINNER, tree.getWinner());
+
+        tree = new LoserTree(5);
+        assertTrue(tree.isEmpty());
+        assertEquals(LoserTree.NO_WINNER, tree.getWinner());
+    }
+
+    /**
+     * Test that ties are won by the leaf with the lowest index
+     */
+    @Test
+    public void testTies() {
+        LoserTree tree = new LoserTree(3);
+        tree.setKey(2, 10);
+        tree.setKey(1, 10);
+        tree.setKey(0, 20);
+        tree.rebuild();
+        assertEquals(1, tree.getWinner());
+        tree.replaceWinner(20);
+        assertEquals(2, tree.getWinner());
+        tree.replaceWinner(20);
+        assertEquals(0, tree.getWinner());
+        tree.removeWinner();
+        assertEquals(1, tree.getWinner());
+        tree.removeWinner();
+        assertEquals(2, tree.getWinner());
+        tree.removeWinner();
+        assertTrue(tree.isEmpty());
+    }
+
+    /**
+     * Test merging sorted sources of various sizes, including negative keys,
+     * against sorting all the keys
+     */
+    @Test
+    public void testMerge() {
+        Random random = new Random(42);
+        for (int nbLeaves = 1; nbLeaves <= 33; nbLeaves++) {
+            long[][] sources = new long[nbLeaves][];
+            List<Long> expected = new ArrayList<>();
+            for (int i = 0; i < nbLeaves; i++) {
+                sources[i] = new long[random.nextInt(20)];
+                for (int j = 0; j < sources[i].length; j++) {
+                    sources[i][j] = random.nextInt(100) - 50;
+                    expected.add(sources[i][j]);
+                }
+                Arrays.sort(sources[i]);
+            }
+            Collections.sort(expected);
+
+            LoserTree tree = new LoserTree(nbLeaves);
+            int[] positions = new int[nbLeaves];
+            for (int i = 0; i < nbLeaves; i++) {
+                if (sources[i].length > 0) {
+                    tree.setKey(i, sources[i][0]);
+                }
+            }
+            tree.rebuild();
+
+            List<Long> merged = new ArrayList<>();
+            while (!tree.isEmpty()) {
+                int winner = tree.getWinner();
+                merged.add(tree.getKey(winner));
+                positions[winner]++;
+                if (positions[winner] < sources[winner].length) {
+                    tree.replaceWinner(sources[winner][positions[winner]]);
+                } else {
+                    tree.removeWinner();
+                }
+            }
+            assertEquals(expected, merged);
+        }
+    }
+
+    /**
+     * Test changing the key of a leaf which is not the winner
+     */
+    @Test
+    public void testSetKey() {
+        LoserTree tree = new LoserTree(4);
+        for (int i = 0; i < 4; i++) {
+            tree.setKey(i, 10 * i);
+        }
+        tree.rebuild();
+        assertEquals(0, tree.getWinner());
+        tree.setKey(3, -1);
+        tree.remove(0);
+        tree.rebuild();
+        assertEquals(3, tree.size());
+        assertEquals(3, tree.getWinner());
+        assertFalse(tree.isActive(0));
+
+        tree.clear();
+        assertTrue(tree.isEmpty());
+    }
+}
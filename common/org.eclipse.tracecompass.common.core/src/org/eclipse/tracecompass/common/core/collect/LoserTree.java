@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.common.core.collect;
+
+import java.util.Arrays;
+
+/**
+ * A loser tree (or tournament tree), to merge a fixed number of sorted
+ * sources by a primitive <code>long</code> key.
+ *
+ * Each source is a leaf of the tree, identified by its index. A leaf is either
+ * active, with the key of the next element of its source, or inactive, when
+ * its source has no more elements. The tree gives the active leaf with the
+ * smallest key, the "winner". Ties are won by the leaf with the lowest index,
+ * so the merge is stable.
+ *
+ * Each internal node keeps the loser of the match played there, so when the
+ * key of the winner changes, only the matches on its path to the root are
+ * played again: there are log2(k) comparisons of two <code>long</code> per
+ * element, for k leaves. The keys of other leaves can also be changed, but
+ * then the tree has to be rebuilt with {@link #rebuild()}, in O(k).
+ *
+ * The keys are compared as signed values. Unsigned keys can be merged by
+ * flipping their sign bit, with <code>key ^ Long.MIN_VALUE</code>.
+ *
+ * This class is not thread-safe.
+ *
+ * @since 1.0
+ */
+public class LoserTree {
+
+    /** Index returned by {@link #getWinner()} when all leaves are inactive */
+    public static final int NO_WINNER = -1;
+
+    private final int fNbLeaves;
+    private final long[] fKeys;
+    private final boolean[] fActive;
+
+    /**
+     * fTree[0] is the winner, fTree[1..k-1] are the losers of each internal
+     * node. The parent of leaf i is (i + k) / 2, the parent of node n is n / 2.
+     */
+    private final int[] fTree;
+
+    /** Winners of the subtrees, only used when rebuilding */
+    private final int[] fWinners;
+
+    private int fNbActive = 0;
+
+    /**
+     * Constructor. All the leaves are initially inactive.
+     *
+     * @param nbLeaves
+     *            The number of leaves, or sources to merge
+     */
+    public LoserTree(int nbLeaves) {
+        if (nbLeaves < 0) {
+            throw new IllegalArgumentException("Negative number of leaves: " + nbLeaves); //$NON-NLS-1$
+        }
+        fNbLeaves = nbLeaves;
+        fKeys = new long[nbLeaves];
+        fActive = new boolean[nbLeaves];
+        fTree = new int[Math.max(nbLeaves, 1)];
+        fWinners = new int[Math.max(nbLeaves, 1)];
+        rebuild();
+    }
+
+    // ------------------------------------------------------------------------
+    // Accessors
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the number of leaves of the tree
+     *
+     * @return The number of leaves
+     */
+    public int getNbLeaves() {
+        return fNbLeaves;
+    }
+
+    /**
+     * Get the number of active leaves
+     *
+     * @return The number of leaves with a key
+     */
+    public int size() {
+        return fNbActive;
+    }
+
+    /**
+     * Check if all the leaves are inactive
+     *
+     * @return true if there is no winner
+     */
+    public boolean isEmpty() {
+        return fNbActive == 0;
+    }
+
+    /**
+     * Get the active leaf with the smallest key
+     *
+     * @return The index of the winning leaf, or {@link #NO_WINNER} if all the
+     *         leaves are inactive
+     */
+    public int getWinner() {
+        return (fNbActive == 0) ? NO_WINNER : fTree[0];
+    }
+
+    /**
+     * Get the key of a leaf
+     *
+     * @param leaf
+     *            The index of the leaf
+     * @return The key of the leaf, meaningless if it is inactive
+     */
+    public long getKey(int leaf) {
+        return fKeys[leaf];
+    }
+
+    /**
+     * Check if a leaf is active
+     *
+     * @param leaf
+     *            The index of the leaf
+     * @return true if the leaf has a key
+     */
+    public boolean isActive(int leaf) {
+        return fActive[leaf];
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Change the key of the winning leaf, and find the new winner.
+     *
+     * @param key
+     *            The new key of the winner
+     * @throws IllegalStateException
+     *             If all the leaves are inactive
+     */
+    public void replaceWinner(long key) {
+        int winner = getWinner();
+        if (winner == NO_WINNER) {
+            throw new IllegalStateException("No winner"); //$NON-NLS-1$
+        }
+        fKeys[winner] = key;
+        replay(winner);
+    }
+
+    /**
+     * Make the winning leaf inactive, and find the new winner.
+     *
+     * @throws IllegalStateException
+     *             If all the leaves are inactive
+     */
+    public void removeWinner() {
+        int winner = getWinner();
+        if (winner == NO_WINNER) {
+            throw new IllegalStateException("No winner"); //$NON-NLS-1$
+        }
+        fActive[winner] = false;
+        fNbActive--;
+        replay(winner);
+    }
+
+    /**
+     * Set the key of any leaf, and make it active. The tree must be rebuilt
+     * with {@link #rebuild()} before the next winner is requested.
+     *
+     * @param leaf
+     *            The index of the leaf
+     * @param key
+     *            The new key of the leaf
+     */
+    public void setKey(int leaf, long key) {
+        fKeys[leaf] = key;
+        if (!fActive[leaf]) {
+            fActive[leaf] = true;
+            fNbActive++;
+        }
+    }
+
+    /**
+     * Make any leaf inactive. The tree must be rebuilt with {@link #rebuild()}
+     * before the next winner is requested.
+     *
+     * @param leaf
+     *            The index of the leaf
+     */
+    public void remove(int leaf) {
+        if (fActive[leaf]) {
+            fActive[leaf] = false;
+            fNbActive--;
+        }
+    }
+
+    /**
+     * Make all the leaves inactive.
+     */
+    public void clear() {
+        Arrays.fill(fActive, false);
+        fNbActive = 0;
+        rebuild();
+    }
+
+    /**
+     * Play all the matches again, after keys were changed with
+     * {@link #setKey(int, long)} or {@link #remove(int)}.
+     */
+    public void rebuild() {
+        final int k = fNbLeaves;
+        if (k == 0) {
+            fTree[0] = NO_WINNER;
+            return;
+        }
+        for (int node = k - 1; node > 0; node--) {
+            int left = winnerOf(2 * node);
+            int right = winnerOf(2 * node + 1);
+            if (beats(left, right)) {
+                fWinners[node] = left;
+                fTree[node] = right;
+            } else {
+                fWinners[node] = right;
+                fTree[node] = left;
+            }
+        }
+        fTree[0] = winnerOf(1);
+    }
+
+    private int winnerOf(int node) {
+        return (node >= fNbLeaves) ? node - fNbLeaves : fWinners[node];
+    }
+
+    /**
+     * Play the matches on the path from a leaf to the root again
+     */
+    private void replay(int leaf) {
+        int winner = leaf;
+        for (int node = (leaf + fNbLeaves) >>> 1; node > 0; node >>>= 1) {
+            int loser = fTree[node];
+            if (beats(loser, winner)) {
+                fTree[node] = winner;
+                winner = loser;
+            }
+        }
+        fTree[0] = winner;
+    }
+
+    /**
+     * Check if leaf a comes before leaf b
+     */
+    private boolean beats(int a, int b) {
+        if (fActive[a] != fActive[b]) {
+            return fActive[a];
+        }
+        if (fActive[a]) {
+            long keyA = fKeys[a];
+            long keyB = fKeys[b];
+            if (keyA != keyB) {
+                return keyA < keyB;
+            }
+        }
+        return a < b;
+    }
+}
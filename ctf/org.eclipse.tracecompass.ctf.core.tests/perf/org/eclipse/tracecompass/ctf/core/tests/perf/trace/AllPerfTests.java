@@ -21,6 +21,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
         CTFTraceCallsitePerformanceTest.class,
+        TraceOpenBenchmark.class,
         TraceReadBenchmark.class,
         TraceSeekBenchmark.class
 })
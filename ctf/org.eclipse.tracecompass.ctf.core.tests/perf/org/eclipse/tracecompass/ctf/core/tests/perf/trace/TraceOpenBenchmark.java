@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.junit.Test;
+
+/**
+ * Benchmark of the CTF parser for opening a trace, which parses the metadata
+ * and indexes the packets of every trace file. The files are indexed in
+ * parallel, so the results depend on the number of processors of the machine.
+ */
+public class TraceOpenBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Open Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 100;
+
+    /**
+     * Benchmark opening the trace "kernel"
+     */
+    @Test
+    public void testKernelTrace() {
+        openTrace(CtfTestTrace.KERNEL, "trace-kernel", true);
+    }
+
+    /**
+     * Benchmark opening the bigger trace "kernel_vm"
+     */
+    @Test
+    public void testKernelVmTrace() {
+        openTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm", false);
+    }
+
+    private static void openTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary) {
+        assumeTrue(testTrace.exists());
+
+        int nbProcessors = Runtime.getRuntime().availableProcessors();
+        String meterName = testName + '-' + nbProcessors + "-cpus";
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + meterName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + meterName, Dimension.ELAPSED_PROCESS);
+
+        if (inGlobalSummary) {
+            perf.tagAsGlobalSummary(pm, TEST_SUITE_NAME + ':' + meterName, Dimension.ELAPSED_PROCESS);
+        }
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            pm.start();
+            try {
+                /* Don't use the cached trace, it is already indexed */
+                CTFTrace trace = new CTFTrace(testTrace.getPath());
+                trace.getCurrentStartTime();
+            } catch (CTFException e) {
+                /* Should not happen if assumeTrue() passed above */
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+}
@@ -569,4 +569,50 @@ public class BitBufferIntTest {
         /* This will try writing past the buffer's end */
         fixture2.putInt(32, 1);
     }
+
+    /**
+     * Test the bulk {@link BitBuffer#get(long[], int, boolean)} against single
+     * reads, aligned or not, in both byte orders.
+     *
+     * @throws CTFException
+     *             Not expected
+     */
+    @Test
+    public void testGetBulk() throws CTFException {
+        BitBuffer buffer = createBuffer(64);
+        int[] lengths = { 5, 8, 16, 27, 32, 40, 64 };
+        int[] positions = { 0, 3, 8 };
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            buffer.setByteOrder(order);
+            for (int length : lengths) {
+                for (int position : positions) {
+                    for (boolean signed : new boolean[] { true, false }) {
+                        long[] values = new long[(64 * 8 - position) / length];
+                        buffer.position(position);
+                        buffer.get(values, length, signed);
+                        assertEquals(position + values.length * length, buffer.position());
+
+                        buffer.position(position);
+                        for (int i = 0; i < values.length; i++) {
+                            assertEquals(buffer.get(length, signed), values[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test the bulk {@link BitBuffer#get(long[], int, boolean)} past the end
+     * of the buffer. An exception should be thrown, without reading anything.
+     *
+     * @throws CTFException
+     *             Expected
+     */
+    @Test(expected = CTFException.class)
+    public void testGetBulk_invalid() throws CTFException {
+        BitBuffer buffer = createBuffer(16);
+        buffer.position(8);
+        buffer.get(new long[2], 64, false);
+    }
 }
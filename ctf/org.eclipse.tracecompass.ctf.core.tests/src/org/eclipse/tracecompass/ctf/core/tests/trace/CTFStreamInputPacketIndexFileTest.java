@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketCheckpoints;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the saving and loading of the packet index of a trace file
+ */
+public class CTFStreamInputPacketIndexFileTest {
+
+    private static final int NB_PACKETS = 10;
+    private static final int PACKET_SIZE = 4096;
+    private static final long CHECKSUM = 0x1234;
+
+    private File fDirectory;
+    private File fStreamFile;
+    private StreamInputPacketIndex fIndex;
+
+    /**
+     * Create a fake trace file and its index
+     *
+     * @throws IOException
+     *             If the trace file could not be created
+     * @throws CTFException
+     *             If the index could not be built
+     */
+    @Before
+    public void setUp() throws IOException, CTFException {
+        fDirectory = Files.createTempDirectory("ctf-index").toFile();
+        fStreamFile = new File(fDirectory, "channel0_0");
+        try (RandomAccessFile raf = new RandomAccessFile(fStreamFile, "rw")) {
+            raf.setLength(NB_PACKETS * PACKET_SIZE);
+        }
+
+        fIndex = new StreamInputPacketIndex();
+        for (int i = 0; i < NB_PACKETS; i++) {
+            StreamInputPacketIndexEntry entry = new StreamInputPacketIndexEntry((long) i * PACKET_SIZE * Byte.SIZE,
+                    PACKET_SIZE * Byte.SIZE, PACKET_SIZE * Byte.SIZE - 8, i * 100, i * 100 + 99, i % 2, "CPU0", 0);
+            entry.addAttribute("cpu_id", 0L);
+            entry.addAttribute("name", "packet" + i);
+            entry.addAttribute("ratio", i / 2.0);
+            for (int j = 0; j < i; j++) {
+                entry.getCheckpoints().add(j * StreamInputPacketCheckpoints.INTERVAL, i * 100 + j, 64 + j * 32, i * 100 + j - 1);
+            }
+            fIndex.append(entry);
+        }
+    }
+
+    /**
+     * Delete the files
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(fDirectory);
+    }
+
+    private static void deleteDirectory(File directory) {
+        for (File file : directory.listFiles()) {
+            if (file.isDirectory()) {
+                deleteDirectory(file);
+            } else {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test reading back a saved index
+     */
+    @Test
+    public void testReadWrite() {
+        assertNull(StreamInputPacketIndexFile.read(fStreamFile, CHECKSUM));
+        StreamInputPacketIndexFile.write(fStreamFile, CHECKSUM, fIndex);
+
+        List<ICTFPacketDescriptor> entries = StreamInputPacketIndexFile.read(fStreamFile, CHECKSUM);
+        assertNotNull(entries);
+        assertEquals(NB_PACKETS, entries.size());
+        for (int i = 0; i < NB_PACKETS; i++) {
+            ICTFPacketDescriptor expected = fIndex.getElement(i);
+            ICTFPacketDescriptor entry = entries.get(i);
+            assertEquals(expected.getOffsetBits(), entry.getOffsetBits());
+            assertEquals(expected.getOffsetBytes(), entry.getOffsetBytes());
+            assertEquals(expected.getPacketSizeBits(), entry.getPacketSizeBits());
+            assertEquals(expected.getContentSizeBits(), entry.getContentSizeBits());
+            assertEquals(expected.getTimestampBegin(), entry.getTimestampBegin());
+            assertEquals(expected.getTimestampEnd(), entry.getTimestampEnd());
+            assertEquals(expected.getLostEvents(), entry.getLostEvents());
+            assertEquals(expected.getTarget(), entry.getTarget());
+            assertEquals(expected.getTargetId(), entry.getTargetId());
+            assertEquals(0L, entry.lookupAttribute("cpu_id"));
+            assertEquals("packet" + i, entry.lookupAttribute("name"));
+            assertEquals(i / 2.0, entry.lookupAttribute("ratio"));
+            long[] checkpoints = ((StreamInputPacketIndexEntry) entry).getCheckpoints().toArray();
+            assertArrayEquals(((StreamInputPacketIndexEntry) expected).getCheckpoints().toArray(), checkpoints);
+            assertEquals(i * 3, checkpoints.length);
+        }
+    }
+
+    /**
+     * Test that the saved index is ignored when the metadata or the trace file
+     * changed
+     *
+     * @throws IOException
+     *             If the trace file could not be modified
+     */
+    @Test
+    public void testInvalidation() throws IOException {
+        StreamInputPacketIndexFile.write(fStreamFile, CHECKSUM, fIndex);
+        assertNull(StreamInputPacketIndexFile.read(fStreamFile, CHECKSUM + 1));
+
+        try (RandomAccessFile raf = new RandomAccessFile(fStreamFile, "rw")) {
+            raf.setLength((NB_PACKETS + 1) * PACKET_SIZE);
+        }
+        assertNull(StreamInputPacketIndexFile.read(fStreamFile, CHECKSUM));
+    }
+
+    /**
+     * Test that the saved index cannot be mistaken for a trace file
+     */
+    @Test
+    public void testIndexLocation() {
+        StreamInputPacketIndexFile.write(fStreamFile, CHECKSUM, fIndex);
+        File[] files = fDirectory.listFiles();
+        assertEquals(2, files.length);
+        for (File file : files) {
+            assertTrue(file.equals(fStreamFile) || (file.isDirectory() && file.getName().startsWith(".")));
+        }
+    }
+}
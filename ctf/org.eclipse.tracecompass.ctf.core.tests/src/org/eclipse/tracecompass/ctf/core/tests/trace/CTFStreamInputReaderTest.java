@@ -185,6 +185,25 @@ public class CTFStreamInputReaderTest {
         return fixture.getCurrentEvent().getTimestamp();
     }
 
+    /**
+     * Test that a new reader starts at the first event of its file, which is
+     * the first event found when seeking to the start of the file.
+     *
+     * @throws CTFException
+     *             error
+     * @throws IOException
+     *             error
+     */
+    @Test
+    public void testReadFirstEvent() throws CTFException, IOException {
+        try (CTFStreamInputReader reader = getStreamInputReader()) {
+            assertEquals(CTFResponse.OK, reader.readNextEvent());
+            long first = reader.getCurrentEvent().getTimestamp();
+            reader.seek(0);
+            assertEquals(first, reader.getCurrentEvent().getTimestamp());
+        }
+    }
+
     /**
      * Run the boolean readNextEvent() method test.
      *
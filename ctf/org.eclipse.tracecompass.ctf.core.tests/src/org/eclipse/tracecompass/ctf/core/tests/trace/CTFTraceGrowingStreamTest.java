@@ -28,6 +28,7 @@ import java.util.UUID;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceTailer;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -155,4 +156,42 @@ public class CTFTraceGrowingStreamTest {
             assertNull(reader.getCurrentEventDef());
         }
     }
+
+    /**
+     * Test following a growing stream with a tailer. A packet is only read
+     * once it is completely written, and new stream files are opened.
+     *
+     * @throws CTFException won't happen
+     * @throws IOException won't happen
+     * @throws FileNotFoundException won't happen
+     */
+    @Test
+    public void testTailer() throws CTFException, FileNotFoundException, IOException {
+        CTFTraceTailer tailer = new CTFTraceTailer(fFixture);
+        try (CTFTraceReader reader = new CTFTraceReader(fFixture);) {
+            reader.setLive(true);
+            assertEquals("0x29", reader.getCurrentEventDef().getFields().getDefinition("f").toString());
+            try (FileOutputStream fos = new FileOutputStream(fGrowingStream, true)) {
+                fos.write(fPackets[1], 0, 16);
+            }
+            assertEquals(0, tailer.poll());
+            assertEquals(2 * CTFTraceTailer.MIN_POLL_DELAY, tailer.getPollDelay());
+            try (FileOutputStream fos = new FileOutputStream(fGrowingStream, true)) {
+                fos.write(fPackets[1], 16, 16);
+            }
+            assertEquals(1, tailer.poll());
+            assertEquals(CTFTraceTailer.MIN_POLL_DELAY, tailer.getPollDelay());
+            assertEquals(1, tailer.getNbPackets());
+            reader.advance();
+            assertNotNull(reader.getCurrentEventDef());
+            assertEquals("0xbab4face", reader.getCurrentEventDef().getFields().getDefinition("f").toString());
+
+            try (FileOutputStream fos = new FileOutputStream(new File(fCtfDirectory.toString() + "/" + "stream2"))) {
+                fos.write(fPackets[0]);
+            }
+            tailer.poll();
+            assertEquals(1, tailer.getNbFiles());
+            assertEquals(3, tailer.getNbPolls());
+        }
+    }
 }
@@ -19,7 +19,11 @@ import static org.junit.Assume.assumeTrue;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFEventCursor;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.junit.Before;
@@ -324,6 +328,76 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Test that reading the trace in flyweight mode gives the same events,
+     * with the same integer fields, as decoding all the events.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testFlyweight() throws CTFException {
+        try (CTFTraceReader flyweight = new CTFTraceReader(testTrace.getTrace());) {
+            flyweight.setFlyweight(true);
+            assertTrue(flyweight.isFlyweight());
+            for (int i = 0; i < 10000 && fixture.hasMoreEvents(); i++) {
+                EventDefinition expected = fixture.getCurrentEventDef();
+                CTFEventCursor cursor = flyweight.getCurrentEventCursor();
+                assertNotNull(cursor);
+                assertEquals(expected.getDeclaration(), cursor.getDeclaration());
+                assertEquals(expected.getTimestamp(), cursor.getTimestamp());
+                assertEquals(expected.getCPU(), cursor.getCPU());
+
+                ICompositeDefinition fields = expected.getFields();
+                if (fields != null) {
+                    for (String fieldName : fields.getFieldNames()) {
+                        IDefinition field = fields.getDefinition(fieldName);
+                        if (field instanceof IntegerDefinition) {
+                            int index = cursor.getFieldIndex(fieldName);
+                            assertEquals(((IntegerDefinition) field).getValue(), cursor.getLong(index));
+                        }
+                    }
+                }
+                if (i % 100 == 0) {
+                    assertEquals(expected.toString(), flyweight.getCurrentEventDef().toString());
+                }
+                fixture.advance();
+                flyweight.advance();
+            }
+            assertEquals(fixture.hasMoreEvents(), flyweight.hasMoreEvents());
+        }
+    }
+
+    /**
+     * Test that decoding the trace files ahead gives the same events, in the
+     * same order, as reading them directly, including after a seek.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testPipelined() throws CTFException {
+        try (CTFTraceReader pipelined = new CTFTraceReader(testTrace.getTrace());) {
+            pipelined.setPipelined(true);
+            assertTrue(pipelined.isPipelined());
+            for (int i = 0; i < 10000 && fixture.hasMoreEvents(); i++) {
+                if (i == 5000) {
+                    long timestamp = fixture.getCurrentEventDef().getTimestamp();
+                    fixture.seek(timestamp);
+                    pipelined.seek(timestamp);
+                }
+                EventDefinition expected = fixture.getCurrentEventDef();
+                EventDefinition event = pipelined.getCurrentEventDef();
+                assertEquals(expected.getTimestamp(), event.getTimestamp());
+                assertEquals(expected.getCPU(), event.getCPU());
+                assertEquals(expected.toString(), event.toString());
+                fixture.advance();
+                pipelined.advance();
+            }
+            assertEquals(fixture.hasMoreEvents(), pipelined.hasMoreEvents());
+        }
+    }
+
     /**
      * @return
      */
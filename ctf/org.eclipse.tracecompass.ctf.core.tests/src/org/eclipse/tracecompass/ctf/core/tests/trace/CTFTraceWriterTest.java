@@ -21,13 +21,18 @@ import static org.junit.Assume.assumeTrue;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.URIUtil;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStream;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceWriter;
@@ -222,6 +227,33 @@ public class CTFTraceWriterTest {
             }
     }
 
+    /**
+     * Test that excluding all the event types of the trace leaves no packet
+     */
+    @Test
+    public void testKernelTraceExcludingAllEvents() {
+        assumeTrue(CtfTestTrace.KERNEL.exists());
+        try {
+            CTFTrace trace = CtfTestTrace.KERNEL.getTrace();
+            Set<String> excluded = new HashSet<>();
+            excluded.add(CTFStrings.LOST_EVENT_NAME);
+            for (CTFStream stream : trace.getStreams()) {
+                for (IEventDeclaration declaration : stream.getEventDeclarations()) {
+                    excluded.add(declaration.getName());
+                }
+            }
+            CTFTraceWriter ctfWriter = new CTFTraceWriter(checkNotNull(trace));
+            String traceName = createTraceName(fName + "_EXCLUDING_ALL");
+            ctfWriter.copyPackets(fStartTime, fEndTime, traceName, excluded);
+
+            assertTrue("metadata", new File(traceName + Utils.SEPARATOR + "metadata").exists());
+            assertFalse("channel0", getChannelFile(traceName, 0).exists());
+            assertFalse("channel1", getChannelFile(traceName, 1).exists());
+        } catch (CTFException e) {
+            fail();
+        }
+    }
+
     private static File getChannelFile(String path, int id) {
         File channel = new File(path + Utils.SEPARATOR + "channel_" + String.valueOf(id));
         return channel;
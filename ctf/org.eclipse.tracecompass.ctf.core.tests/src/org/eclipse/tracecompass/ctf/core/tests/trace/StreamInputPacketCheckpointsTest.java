@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketCheckpoints;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketCheckpoints.Checkpoint;
+import org.junit.Test;
+
+/**
+ * Test the checkpoints of the events inside a packet
+ */
+public class StreamInputPacketCheckpointsTest {
+
+    private static final int INTERVAL = StreamInputPacketCheckpoints.INTERVAL;
+
+    /**
+     * Test that the checkpoints are only added in order
+     */
+    @Test
+    public void testAdd() {
+        StreamInputPacketCheckpoints checkpoints = new StreamInputPacketCheckpoints();
+        assertFalse(checkpoints.add(INTERVAL, 10, 100, 9));
+        assertTrue(checkpoints.add(0, 0, 64, 0));
+        assertFalse(checkpoints.add(0, 0, 64, 0));
+        for (int i = 1; i < 10; i++) {
+            assertTrue(checkpoints.add(i * INTERVAL, i * 10, i * 100, i * 10 - 1));
+        }
+        assertEquals(10, checkpoints.size());
+        assertEquals(30, checkpoints.toArray().length);
+    }
+
+    /**
+     * Test that a seek starts at the last checkpoint strictly before the
+     * requested time, since the events before an event with the same
+     * timestamp could have this timestamp too
+     */
+    @Test
+    public void testSearch() {
+        StreamInputPacketCheckpoints checkpoints = new StreamInputPacketCheckpoints();
+        assertNull(checkpoints.search(100));
+        long[] timestamps = { 0, 10, 20, 20, 30 };
+        for (int i = 0; i < timestamps.length; i++) {
+            checkpoints.add(i * INTERVAL, timestamps[i], i * 100, timestamps[i] - 1);
+        }
+        assertNull(checkpoints.search(0));
+        assertNull(checkpoints.search(10));
+
+        Checkpoint checkpoint = checkpoints.search(11);
+        assertNotNull(checkpoint);
+        assertEquals(INTERVAL, checkpoint.getEventIndex());
+        assertEquals(100, checkpoint.getPosition());
+        assertEquals(9, checkpoint.getLastTimestamp());
+
+        checkpoint = checkpoints.search(20);
+        assertNotNull(checkpoint);
+        assertEquals(INTERVAL, checkpoint.getEventIndex());
+
+        checkpoint = checkpoints.search(25);
+        assertNotNull(checkpoint);
+        assertEquals(3 * INTERVAL, checkpoint.getEventIndex());
+
+        checkpoint = checkpoints.search(Long.MAX_VALUE);
+        assertNotNull(checkpoint);
+        assertEquals(4 * INTERVAL, checkpoint.getEventIndex());
+    }
+}
@@ -31,12 +31,14 @@ import org.junit.runners.Suite;
     MetadataTest.class,
     MetadataPrevalidationTests.class,
     CTFStreamInputPacketIndexEntryTest.class,
+    CTFStreamInputPacketIndexFileTest.class,
     CTFStreamInputPacketIndexTest.class,
     CTFStreamInputReaderTest.class,
     CTFStreamInputReaderTimestampComparatorTest.class,
     CTFStreamInputTest.class,
     CTFStreamTest.class,
     CTFTraceWriterTest.class,
+    StreamInputPacketCheckpointsTest.class,
     TraceReadAllTracesTest.class,
     UtilsTest.class
 })
@@ -88,6 +88,28 @@ public class ArrayDeclaration2Test {
         assertNotNull(result);
     }
 
+    /**
+     * Test reading an array of packed integers, in a byte order different from
+     * the buffer's
+     *
+     * @throws CTFException
+     *             error in the bitbuffer
+     */
+    @Test
+    public void testCreateDefinitionPackedIntegers() throws CTFException {
+        ArrayDeclaration decl = new ArrayDeclaration(3, IntegerDeclaration.INT_32L_DECL);
+        assertTrue(decl.isPackedIntegers());
+        byte[] array = { 1, 0, 0, 0, 2, 0, 0, 0, -1, -1, -1, -1, 5 };
+        BitBuffer bb = new BitBuffer(Util.testMemory(ByteBuffer.wrap(array)), ByteOrder.BIG_ENDIAN);
+        AbstractArrayDefinition result = decl.createDefinition(null, "ints", bb);
+
+        assertEquals(3, result.getLength());
+        assertEquals("[1, 2, -1]", result.toString());
+        assertEquals("-1", result.getDefinitions().get(2).toString());
+        assertEquals(96, bb.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, bb.getByteOrder());
+    }
+
     /**
      * Run the Declaration getElementType() method test.
      */
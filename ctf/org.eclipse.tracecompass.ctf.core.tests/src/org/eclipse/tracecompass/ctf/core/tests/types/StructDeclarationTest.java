@@ -18,12 +18,15 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
@@ -90,6 +93,79 @@ public class StructDeclarationTest {
         assertNotNull(result);
     }
 
+    /**
+     * Test reading a struct made only of integers, with different sizes,
+     * alignments and byte orders, and adding a field after it was read.
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testCreateDefinitionIntegers() throws CTFException {
+        fixture.addField("a", IntegerDeclaration.createDeclaration(5, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 1));
+        fixture.addField("b", IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8));
+        fixture.addField("c", IntegerDeclaration.createDeclaration(32, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 32));
+        byte[] data = { (byte) 0xF8, 0x34, 0x12, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE, 0x2A };
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer == null) {
+            throw new IllegalStateException("Failed to allocate memory");
+        }
+        BitBuffer bb = new BitBuffer(buffer);
+        bb.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+
+        StructDefinition result = fixture.createDefinition(null, ILexicalScope.FIELDS, bb);
+        assertEquals(0x1F, ((IntegerDefinition) result.getDefinition("a")).getValue());
+        assertEquals(0x1234, ((IntegerDefinition) result.getDefinition("b")).getValue());
+        assertEquals(-2, ((IntegerDefinition) result.getDefinition("c")).getValue());
+        assertEquals(64, bb.position());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, bb.getByteOrder());
+
+        fixture.addField("d", IntegerDeclaration.UINT_8_DECL);
+        bb.position(0);
+        result = fixture.createDefinition(null, ILexicalScope.FIELDS, bb);
+        assertEquals(42, ((IntegerDefinition) result.getDefinition("d")).getValue());
+        assertEquals(72, bb.position());
+    }
+
+    /**
+     * Test skipping a struct of fixed size and reading its fields afterwards,
+     * without creating its definition.
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testSkipFixedSize() throws CTFException {
+        fixture.addField("a", IntegerDeclaration.createDeclaration(5, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 1));
+        fixture.addField("b", IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8));
+        fixture.addField("c", IntegerDeclaration.createDeclaration(32, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 32));
+        byte[] data = { 0x00, 0x00, 0x00, 0x00, (byte) 0xF8, 0x34, 0x12, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE };
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer == null) {
+            throw new IllegalStateException("Failed to allocate memory");
+        }
+        BitBuffer bb = new BitBuffer(buffer);
+        bb.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        bb.position(3);
+
+        assertEquals(1, fixture.getFieldIndex("b"));
+        assertEquals(-1, fixture.getFieldIndex("d"));
+        assertEquals(64, fixture.getFixedSize());
+
+        /* The struct is 32-bit aligned */
+        long start = fixture.skipFixedSize(bb);
+        assertEquals(32, start);
+        assertEquals(96, bb.position());
+        assertEquals(-2, fixture.readIntegerField(bb, start, fixture.getFieldIndex("c")));
+        assertEquals(0x1234, fixture.readIntegerField(bb, start, fixture.getFieldIndex("b")));
+        assertEquals(0x1F, fixture.readIntegerField(bb, start, fixture.getFieldIndex("a")));
+        assertEquals(96, bb.position());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, bb.getByteOrder());
+
+        fixture.addField("s", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        assertEquals(-1, fixture.getFixedSize());
+    }
+
     /**
      * Run the Declaration getField(String) method test.
      */
@@ -151,6 +151,20 @@ public final class BitBuffer {
         if (length > BIT_LONG) {
             throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
+        /*
+         * Fast path for byte-aligned 8, 16, 32 and 64-bit reads, straight from
+         * the byte buffer
+         */
+        if ((fPosition & (BIT_CHAR - 1)) == 0 && (length & (BIT_CHAR - 1)) == 0 && Integer.bitCount(length) == 1) {
+            if (!canRead(length)) {
+                throw new CTFException("Cannot read the integer, " + //$NON-NLS-1$
+                        "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                        "Requested:" + length); //$NON-NLS-1$
+            }
+            long retVal = getAligned((int) (fPosition / BIT_CHAR), length, signed);
+            fPosition += length;
+            return retVal;
+        }
         if (length > BIT_INT) {
             final int highShift = length - BIT_INT;
             long a = getInt();
@@ -172,6 +186,77 @@ public final class BitBuffer {
         return (signed ? retVal : (retVal & INT_MASK));
     }
 
+    /**
+     * Relative bulk <i>get</i> method for reading consecutive integers of
+     * <i>length</i> bits.
+     *
+     * Reads <i>dst.length</i> integers, without any padding between them,
+     * starting at the current position. The results are signed extended if
+     * <i>signed</i> is true. The current position is increased of
+     * <i>dst.length * length</i> bits. When the position is byte-aligned and
+     * the integers are 8, 16, 32 or 64 bits long, they are read straight from
+     * the underlying byte buffer.
+     *
+     * @param dst
+     *            the array to fill
+     * @param length
+     *            The length in bits of each integer
+     * @param signed
+     *            The sign extended flag
+     * @throws CTFException
+     *             An error occurred reading the data. If more than 64 bits at a
+     *             time are read, or the buffer is read beyond its end, this
+     *             exception will be raised.
+     * @since 1.1
+     */
+    public void get(@NonNull long[] dst, int length, boolean signed) throws CTFException {
+        if (length > BIT_LONG || length < 0) {
+            throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
+        }
+        long total = (long) dst.length * length;
+        if (fPosition + total > fBitCapacity) {
+            throw new CTFException("Cannot read the integers, " + //$NON-NLS-1$
+                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                    "Requested:" + total); //$NON-NLS-1$
+        }
+        if ((fPosition & (BIT_CHAR - 1)) == 0 && (length & (BIT_CHAR - 1)) == 0 && Integer.bitCount(length) == 1) {
+            final int step = length / BIT_CHAR;
+            int index = (int) (fPosition / BIT_CHAR);
+            for (int i = 0; i < dst.length; i++) {
+                dst[i] = getAligned(index, length, signed);
+                index += step;
+            }
+            fPosition += total;
+            return;
+        }
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = get(length, signed);
+        }
+    }
+
+    /**
+     * Absolute read of a byte-aligned 8, 16, 32 or 64-bit integer, in the
+     * current byte order. The bounds must already be checked.
+     */
+    private long getAligned(int index, int length, boolean signed) {
+        switch (length) {
+        case BIT_CHAR:
+            byte b = fBuffer.get(index);
+            return signed ? b : (b & BYTE_MASK);
+        case BIT_SHORT:
+            short s = fBuffer.getShort(index);
+            return signed ? s : (s & SHORT_MASK);
+        case BIT_INT:
+            int i = fBuffer.getInt(index);
+            return signed ? i : (i & INT_MASK);
+        case BIT_LONG:
+            /* Unsigned 64-bit values are kept as is, like the slow path */
+            return fBuffer.getLong(index);
+        default:
+            throw new IllegalArgumentException("Length must be 8, 16, 32 or 64 bits"); //$NON-NLS-1$
+        }
+    }
+
     /**
      * Relative bulk <i>get</i> method.
      *
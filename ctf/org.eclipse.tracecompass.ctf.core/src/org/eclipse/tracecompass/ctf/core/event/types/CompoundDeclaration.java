@@ -66,4 +66,21 @@ public abstract class CompoundDeclaration extends Declaration {
         return false;
     }
 
+    /**
+     * If an array contains integers without any padding between them, they
+     * can be read in bulk into a primitive array.
+     *
+     * @return true if the elements are integers whose length is a multiple of
+     *         their alignment
+     * @since 1.1
+     */
+    public boolean isPackedIntegers() {
+        IDeclaration elementType = getElementType();
+        if (elementType instanceof IntegerDeclaration) {
+            IntegerDeclaration elemInt = (IntegerDeclaration) elementType;
+            return (elemInt.getLength() % elemInt.getAlignment()) == 0;
+        }
+        return false;
+    }
+
 }
@@ -14,8 +14,8 @@ package org.eclipse.tracecompass.ctf.core.event.types;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +29,8 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * A CTF structure declaration.
  *
@@ -52,6 +54,12 @@ public class StructDeclaration extends Declaration {
     /** maximum bit alignment */
     private long fMaxAlign;
 
+    /**
+     * Compiled form of the fields, used to read the struct. It is built on
+     * the first read, and reset when a field is added.
+     */
+    private volatile @Nullable Layout fLayout = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -120,7 +128,39 @@ public class StructDeclaration extends Declaration {
      * @return the field list.
      */
     public Iterable<String> getFieldsList() {
-        return fFieldMap.keySet();
+        return getLayout().fNameList;
+    }
+
+    /**
+     * Get the index of a field in the field list. The index can be looked up
+     * once and then used to read the field of every instance of the struct.
+     *
+     * @param fieldName
+     *            The field name
+     * @return The index of the field, or -1 if there is no such field
+     * @since 1.1
+     */
+    public int getFieldIndex(String fieldName) {
+        final String[] names = getLayout().fNames;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the size of the struct, if it does not depend on its content. This
+     * is the case for the structs made only of integers.
+     *
+     * @return The size of the struct in bits, or -1 if it has to be read to
+     *         know its size
+     * @since 1.1
+     */
+    public long getFixedSize() {
+        Layout layout = getLayout();
+        return (layout.fIntegers != null) ? layout.fSize : -1;
     }
 
     @Override
@@ -145,7 +185,7 @@ public class StructDeclaration extends Declaration {
     public StructDefinition createDefinition(IDefinitionScope definitionScope,
             String fieldName, BitBuffer input) throws CTFException {
         alignRead(input);
-        final Definition[] myFields = new Definition[fFieldMap.size()];
+        final Definition[] myFields = new Definition[getLayout().fNames.length];
         StructDefinition structDefinition = null;
         if (definitionScope == null) {
             InternalDef localDefinitionScope = new InternalDef(null, null);
@@ -177,10 +217,11 @@ public class StructDeclaration extends Declaration {
     public StructDefinition createDefinition(IDefinitionScope definitionScope,
             ILexicalScope fieldScope, @NonNull BitBuffer input) throws CTFException {
         alignRead(input);
-        final Definition[] myFields = new Definition[fFieldMap.size()];
+        Layout layout = getLayout();
+        final Definition[] myFields = new Definition[layout.fNames.length];
 
         StructDefinition structDefinition = new StructDefinition(this, definitionScope,
-                fieldScope, fieldScope.getName(), checkNotNull(fFieldMap.keySet()), myFields);
+                fieldScope, fieldScope.getName(), layout.fNameList, myFields);
         fillStruct(input, myFields, structDefinition);
         return structDefinition;
     }
@@ -196,15 +237,112 @@ public class StructDeclaration extends Declaration {
     public void addField(String name, IDeclaration declaration) {
         fFieldMap.put(name, declaration);
         fMaxAlign = Math.max(fMaxAlign, declaration.getAlignment());
+        fLayout = null;
+    }
+
+    private Layout getLayout() {
+        Layout layout = fLayout;
+        if (layout == null) {
+            layout = new Layout(fFieldMap, fMaxAlign);
+            fLayout = layout;
+        }
+        return layout;
     }
 
     private void fillStruct(@NonNull BitBuffer input, final Definition[] myFields, StructDefinition structDefinition) throws CTFException {
-        Iterator<Map.Entry<String, IDeclaration>> iter = fFieldMap.entrySet().iterator();
-        for (int i = 0; i < fFieldMap.size(); i++) {
-            Map.Entry<String, IDeclaration> entry = iter.next();
-            /* We should not have inserted null keys... */
-            String key = checkNotNull(entry.getKey());
-            myFields[i] = entry.getValue().createDefinition(structDefinition, key, input);
+        Layout layout = getLayout();
+        final String[] names = layout.fNames;
+        final IntegerDeclaration[] integers = layout.fIntegers;
+        if (integers == null) {
+            final IDeclaration[] declarations = layout.fDeclarations;
+            for (int i = 0; i < names.length; i++) {
+                myFields[i] = declarations[i].createDefinition(structDefinition, names[i], input);
+            }
+            return;
+        }
+
+        /*
+         * Fast path for the structs made only of integers: the struct is
+         * aligned, so the position of each field is already known.
+         */
+        final long[] offsets = layout.fOffsets;
+        final long start = input.position();
+        final ByteOrder byteOrder = input.getByteOrder();
+        try {
+            for (int i = 0; i < names.length; i++) {
+                IntegerDeclaration integer = integers[i];
+                input.position(start + offsets[i]);
+                input.setByteOrder(integer.getByteOrder());
+                long value = input.get(integer.getLength(), integer.isSigned());
+                myFields[i] = new IntegerDefinition(integer, structDefinition, names[i], value);
+            }
+        } finally {
+            input.setByteOrder(byteOrder);
+        }
+        input.position(start + layout.fSize);
+    }
+
+    /**
+     * Skip a struct of fixed size in a buffer, without creating its
+     * definition. Its fields can then be read with
+     * {@link #readIntegerField(BitBuffer, long, int)}.
+     *
+     * @param input
+     *            the input {@link BitBuffer}, positioned at the struct
+     * @return the position of the start of the (aligned) struct
+     * @throws CTFException
+     *             if the struct goes past the end of the buffer
+     * @throws IllegalStateException
+     *             if the struct does not have a fixed size
+     * @see #getFixedSize()
+     * @since 1.1
+     */
+    public long skipFixedSize(@NonNull BitBuffer input) throws CTFException {
+        Layout layout = getLayout();
+        if (layout.fIntegers == null) {
+            throw new IllegalStateException("Struct does not have a fixed size"); //$NON-NLS-1$
+        }
+        alignRead(input);
+        final long start = input.position();
+        input.position(start + layout.fSize);
+        return start;
+    }
+
+    /**
+     * Read the value of an integer field of a struct of fixed size, without
+     * creating any definition. The position of the buffer is left unchanged.
+     *
+     * @param input
+     *            the input {@link BitBuffer}
+     * @param structPosition
+     *            the position of the start of the struct, as returned by
+     *            {@link #skipFixedSize(BitBuffer)}
+     * @param index
+     *            the index of the field
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field could not be read
+     * @throws IllegalStateException
+     *             if the struct does not have a fixed size
+     * @see #getFieldIndex(String)
+     * @since 1.1
+     */
+    public long readIntegerField(@NonNull BitBuffer input, long structPosition, int index) throws CTFException {
+        Layout layout = getLayout();
+        final IntegerDeclaration[] integers = layout.fIntegers;
+        if (integers == null) {
+            throw new IllegalStateException("Struct does not have a fixed size"); //$NON-NLS-1$
+        }
+        IntegerDeclaration integer = integers[index];
+        final long position = input.position();
+        final ByteOrder byteOrder = input.getByteOrder();
+        try {
+            input.position(structPosition + layout.fOffsets[index]);
+            input.setByteOrder(integer.getByteOrder());
+            return input.get(integer.getLength(), integer.isSigned());
+        } finally {
+            input.setByteOrder(byteOrder);
+            input.position(position);
         }
     }
 
@@ -226,13 +364,14 @@ public class StructDeclaration extends Declaration {
      */
     public StructDefinition createFieldDefinition(ICompositeDefinition eventHeaderDef, IDefinitionScope definitionScope, ILexicalScope fields, @NonNull BitBuffer input) throws CTFException {
         alignRead(input);
-        final Definition[] myFields = new Definition[fFieldMap.size()];
+        Layout layout = getLayout();
+        final Definition[] myFields = new Definition[layout.fNames.length];
         IDefinitionScope merged = definitionScope;
         if (eventHeaderDef != null) {
             merged = new InternalDef(definitionScope, eventHeaderDef);
         }
         StructDefinition structDefinition = new StructDefinition(this, merged,
-                fields, fields.getName(), checkNotNull(fFieldMap.keySet()), myFields);
+                fields, fields.getName(), layout.fNameList, myFields);
         if (merged instanceof InternalDef) {
             InternalDef internalDef = (InternalDef) merged;
             internalDef.setDefinition(structDefinition);
@@ -297,6 +436,62 @@ public class StructDeclaration extends Declaration {
 
     }
 
+    /**
+     * The fields of a struct, flattened in arrays so that reading a struct does
+     * not have to go through the map of fields. If the struct is made only of
+     * integers, their offsets from the start of the (aligned) struct are
+     * computed in advance.
+     */
+    private static final class Layout {
+
+        private static final int MAX_INTEGER_LENGTH = 64;
+
+        private final String[] fNames;
+        private final ImmutableList<String> fNameList;
+        private final IDeclaration[] fDeclarations;
+
+        /* Only set if all the fields are integers */
+        private final IntegerDeclaration[] fIntegers;
+        private final long[] fOffsets;
+        private final long fSize;
+
+        public Layout(Map<String, IDeclaration> fields, long alignment) {
+            int nbFields = fields.size();
+            fNames = new String[nbFields];
+            fDeclarations = new IDeclaration[nbFields];
+            int i = 0;
+            for (Entry<String, IDeclaration> field : fields.entrySet()) {
+                fNames[i] = field.getKey();
+                fDeclarations[i] = field.getValue();
+                i++;
+            }
+            fNameList = checkNotNull(ImmutableList.copyOf(fNames));
+
+            IntegerDeclaration[] integers = new IntegerDeclaration[nbFields];
+            long[] offsets = new long[nbFields];
+            long offset = 0;
+            for (i = 0; i < nbFields; i++) {
+                if (!(fDeclarations[i] instanceof IntegerDeclaration)) {
+                    break;
+                }
+                IntegerDeclaration integer = (IntegerDeclaration) fDeclarations[i];
+                long fieldAlign = integer.getAlignment();
+                int length = integer.getLength();
+                if (alignment % fieldAlign != 0 || length <= 0 || length > MAX_INTEGER_LENGTH) {
+                    break;
+                }
+                offset = (offset + fieldAlign - 1) & ~(fieldAlign - 1);
+                integers[i] = integer;
+                offsets[i] = offset;
+                offset += length;
+            }
+            boolean fixed = (i == nbFields);
+            fIntegers = fixed ? integers : null;
+            fOffsets = offsets;
+            fSize = offset;
+        }
+    }
+
     @Override
     public String toString() {
         /* Only used for debugging */
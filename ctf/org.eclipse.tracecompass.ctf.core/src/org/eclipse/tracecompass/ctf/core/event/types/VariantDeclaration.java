@@ -44,7 +44,6 @@ public class VariantDeclaration extends Declaration {
     private String fTag = null;
     private static final long ALIGNMENT = 1;
     private final Map<String, IDeclaration> fFields = Collections.synchronizedMap(new HashMap<String, IDeclaration>());
-    private IDeclaration fDeclarationToPopulate;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -125,12 +124,12 @@ public class VariantDeclaration extends Declaration {
             throw new CTFException("Tag is not defined " + fTag); //$NON-NLS-1$
         }
         String varFieldName = tagDef.getStringValue();
-        fDeclarationToPopulate = fFields.get(varFieldName);
-        if (fDeclarationToPopulate == null) {
+        IDeclaration declarationToPopulate = fFields.get(varFieldName);
+        if (declarationToPopulate == null) {
             throw new CTFException("Unknown enum selector for variant " + //$NON-NLS-1$
                     definitionScope.getScopePath().getPath());
         }
-        Definition fieldValue = fDeclarationToPopulate.createDefinition(definitionScope, fieldName, input);
+        Definition fieldValue = declarationToPopulate.createDefinition(definitionScope, fieldName, input);
         return new VariantDefinition(this, definitionScope, varFieldName, fieldName, fieldValue);
     }
 
@@ -172,7 +171,6 @@ public class VariantDeclaration extends Declaration {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((fDeclarationToPopulate == null) ? 0 : fDeclarationToPopulate.hashCode());
         if (fFields == null) {
             result = prime * result;
         } else {
@@ -197,9 +195,6 @@ public class VariantDeclaration extends Declaration {
         }
         VariantDeclaration other = (VariantDeclaration) obj;
 
-        if (!equalsNullable(fDeclarationToPopulate, other.fDeclarationToPopulate)) {
-            return false;
-        }
         // do not check the order of the fields
         if (!equalsNullable(fFields, other.fFields)) {
             return false;
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.SimpleDatatypeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+
+/**
+ * Current event of a trace file reader, reused from one event to the next.
+ * <p>
+ * In flyweight mode (see {@link CTFStreamInputReader#setFlyweight(boolean)}),
+ * the events whose contexts and payload are made only of integers are not
+ * decoded: the cursor only remembers where their fields are in the packet,
+ * and reads them from the packet buffer when they are requested. No
+ * definition is created for these events, unless
+ * {@link #getEventDefinition()} is called. The other events are decoded as
+ * usual, and the cursor reads their fields from their definition.
+ * <p>
+ * The cursor is only valid until the trace file reader reads its next event.
+ * The field indexes should be looked up once per event declaration with
+ * {@link #getFieldIndex(String)}.
+ *
+ * @since 1.1
+ */
+public final class CTFEventCursor {
+
+    private final CTFStreamInputReader fStreamInputReader;
+
+    private @Nullable IEventDeclaration fDeclaration;
+    private long fTimestamp;
+
+    /** The decoded event, if any */
+    private @Nullable EventDefinition fDefinition;
+
+    /* Position of the event in the packet, when it was not decoded */
+    private @Nullable BitBuffer fBuffer;
+    private @Nullable ICompositeDefinition fEventHeader;
+    private long fContextPosition;
+    private long fFieldsPosition;
+
+    CTFEventCursor(CTFStreamInputReader streamInputReader) {
+        fStreamInputReader = streamInputReader;
+    }
+
+    // ------------------------------------------------------------------------
+    // Setters, used by the readers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Point the cursor to a decoded event
+     *
+     * @param event
+     *            the event, or null if there is no current event
+     */
+    void setEvent(@Nullable EventDefinition event) {
+        fDefinition = event;
+        fDeclaration = (event != null) ? event.getDeclaration() : null;
+        fTimestamp = (event != null) ? event.getTimestamp() : 0;
+        fBuffer = null;
+        fEventHeader = null;
+    }
+
+    /**
+     * Point the cursor to an event which was skipped in the packet
+     *
+     * @param declaration
+     *            the declaration of the event
+     * @param timestamp
+     *            the timestamp of the event
+     * @param eventHeader
+     *            the header of the event, already decoded
+     * @param buffer
+     *            the buffer of the packet
+     * @param contextPosition
+     *            the position of the contexts of the event, right after its
+     *            header
+     * @param fieldsPosition
+     *            the position of the payload of the event
+     */
+    void setEvent(EventDeclaration declaration, long timestamp, @Nullable ICompositeDefinition eventHeader,
+            BitBuffer buffer, long contextPosition, long fieldsPosition) {
+        fDefinition = null;
+        fDeclaration = declaration;
+        fTimestamp = timestamp;
+        fBuffer = buffer;
+        fEventHeader = eventHeader;
+        fContextPosition = contextPosition;
+        fFieldsPosition = fieldsPosition;
+    }
+
+    /**
+     * Is the cursor pointing to an event?
+     *
+     * @return true if there is no current event
+     */
+    boolean isEmpty() {
+        return fDeclaration == null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Getters
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the trace file reader of the event
+     *
+     * @return the trace file reader
+     */
+    public CTFStreamInputReader getStreamInputReader() {
+        return fStreamInputReader;
+    }
+
+    /**
+     * Get the declaration of the event
+     *
+     * @return the event declaration, or null if there is no current event
+     */
+    public @Nullable IEventDeclaration getDeclaration() {
+        return fDeclaration;
+    }
+
+    /**
+     * Get the timestamp of the event, in cycles
+     *
+     * @return the timestamp
+     */
+    public long getTimestamp() {
+        return fTimestamp;
+    }
+
+    /**
+     * Get the CPU of the event
+     *
+     * @return the CPU of the trace file
+     */
+    public int getCPU() {
+        return fStreamInputReader.getCPU();
+    }
+
+    /**
+     * Get the index of a field of the payload of the current event. The index
+     * is the same for all the events of the same declaration.
+     *
+     * @param fieldName
+     *            the name of the field
+     * @return the index of the field, or -1 if the event has no such field
+     */
+    public int getFieldIndex(String fieldName) {
+        IEventDeclaration declaration = fDeclaration;
+        if (declaration == null) {
+            return -1;
+        }
+        StructDeclaration fields = declaration.getFields();
+        return (fields != null) ? fields.getFieldIndex(fieldName) : -1;
+    }
+
+    /**
+     * Read an integer (or enum) field of the payload of the current event
+     *
+     * @param index
+     *            the index of the field, see {@link #getFieldIndex(String)}
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field could not be read
+     * @throws IllegalArgumentException
+     *             if the field is not an integer
+     */
+    public long getLong(int index) throws CTFException {
+        BitBuffer buffer = fBuffer;
+        IEventDeclaration declaration = fDeclaration;
+        if (buffer != null && declaration != null) {
+            StructDeclaration fields = declaration.getFields();
+            if (fields == null) {
+                throw new IllegalArgumentException("No payload"); //$NON-NLS-1$
+            }
+            return fields.readIntegerField(buffer, fFieldsPosition, index);
+        }
+        IDefinition field = getField(index);
+        Long value = (field instanceof SimpleDatatypeDefinition) ? ((SimpleDatatypeDefinition) field).getIntegerValue() : null;
+        if (value == null) {
+            throw new IllegalArgumentException("Field " + index + " is not an integer"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return value;
+    }
+
+    /**
+     * Read a string field of the payload of the current event
+     *
+     * @param index
+     *            the index of the field, see {@link #getFieldIndex(String)}
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field could not be read
+     * @throws IllegalArgumentException
+     *             if the field is not a string
+     */
+    public String getString(int index) throws CTFException {
+        /* The events with a string field are never skipped */
+        IDefinition field = getField(index);
+        if (!(field instanceof StringDefinition)) {
+            throw new IllegalArgumentException("Field " + index + " is not a string"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return ((StringDefinition) field).getValue();
+    }
+
+    private IDefinition getField(int index) throws CTFException {
+        EventDefinition event = getEventDefinition();
+        ICompositeDefinition fields = (event != null) ? event.getFields() : null;
+        if (fields == null) {
+            throw new IllegalArgumentException("No payload"); //$NON-NLS-1$
+        }
+        return fields.getDefinition(fields.getFieldNames().get(index));
+    }
+
+    /**
+     * Get the current event as a complete event definition. If the event was
+     * not decoded, it is decoded now.
+     *
+     * @return the event definition, or null if there is no current event
+     * @throws CTFException
+     *             if the event could not be decoded
+     */
+    public @Nullable EventDefinition getEventDefinition() throws CTFException {
+        EventDefinition event = fDefinition;
+        BitBuffer buffer = fBuffer;
+        if (event != null || buffer == null) {
+            return event;
+        }
+        EventDeclaration declaration = (EventDeclaration) fDeclaration;
+        if (declaration == null) {
+            return null;
+        }
+        final long position = buffer.position();
+        try {
+            buffer.position(fContextPosition);
+            event = declaration.createDefinition(fStreamInputReader, fEventHeader, buffer, fTimestamp);
+        } finally {
+            buffer.position(position);
+        }
+        fDefinition = event;
+        return event;
+    }
+}
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -66,10 +67,16 @@ public class CTFStream {
     private boolean fStreamIdSet = false;
 
     /**
-     * The inputs associated to this stream
+     * The inputs associated to this stream, guarded by this
      */
     private final Set<CTFStreamInput> fInputs = new HashSet<>();
 
+    /**
+     * Copy of the inputs, replaced when one is added, so that they can be
+     * iterated while the files of a trace being written are added
+     */
+    private volatile Set<CTFStreamInput> fInputsSnapshot = Collections.emptySet();
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -210,7 +217,7 @@ public class CTFStream {
      * @return the set of all stream inputs for this stream
      */
     public Set<CTFStreamInput> getStreamInputs() {
-        return fInputs;
+        return fInputsSnapshot;
     }
 
     /**
@@ -345,8 +352,11 @@ public class CTFStream {
      * @param input
      *            The StreamInput to add.
      */
-    public void addInput(CTFStreamInput input) {
-        fInputs.add(input);
+    public synchronized void addInput(CTFStreamInput input) {
+        if (fInputs.add(input)) {
+            /* Keep the iteration order of the set */
+            fInputsSnapshot = Collections.unmodifiableSet(new LinkedHashSet<>(fInputs));
+        }
     }
 
     @Override
@@ -12,12 +12,15 @@
 
 package org.eclipse.tracecompass.ctf.core.trace;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.UUID;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -35,6 +38,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
 /**
@@ -66,7 +70,8 @@ public class CTFStreamInput implements IDefinitionScope {
      */
     private final StreamInputPacketIndex fIndex;
 
-    private long fTimestampEnd;
+    /* Written under the lock of the index updates, read without it */
+    private volatile long fTimestampEnd;
 
     /**
      * Definition of trace packet header
@@ -83,6 +88,11 @@ public class CTFStreamInput implements IDefinitionScope {
      */
     private long fLostSoFar = 0;
 
+    /**
+     * Checkpoints were added to the packets since the index was saved
+     */
+    private volatile boolean fCheckpointsChanged = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -191,16 +201,135 @@ public class CTFStreamInput implements IDefinitionScope {
     }
 
     /**
-     * Create the index for this trace file.
+     * Create the index for this trace file, by reading the headers of all its
+     * packets. The file is opened only once, and the headers are read in the
+     * same buffer one after the other.
+     *
+     * If a packet header cannot be read, the indexing stops there. The rest of
+     * the file will then be indexed on demand by
+     * {@link #addPacketHeaderIndex()}, which will report the error.
+     *
+     * If the trace has a metadata file, the complete index is also saved in
+     * the trace directory, and it is loaded from there the next time instead
+     * of reading the packet headers again.
+     *
+     * This method does not touch any other stream input, so the different
+     * files of a trace can be indexed in parallel.
      */
     public void setupIndex() {
+        Long metadataChecksum = getStream().getTrace().getMetadataChecksum();
+        if (metadataChecksum != null && fIndex.isEmpty() && loadIndex(metadataChecksum)) {
+            return;
+        }
+        if (indexPackets() && metadataChecksum != null) {
+            StreamInputPacketIndexFile.write(fFile, metadataChecksum, fIndex);
+        }
+    }
 
-        /*
-         * The BitBuffer to extract data from the StreamInput
-         */
-        BitBuffer bitBuffer = new BitBuffer();
-        bitBuffer.setByteOrder(getStream().getTrace().getByteOrder());
+    /**
+     * Notify that a checkpoint was added to a packet of the index, so that the
+     * index is saved again.
+     */
+    void checkpointAdded() {
+        fCheckpointsChanged = true;
+    }
+
+    /**
+     * Save the index again if checkpoints were added to its packets since it
+     * was saved. It is only saved if it covers the whole file.
+     */
+    synchronized void saveCheckpoints() {
+        Long metadataChecksum = getStream().getTrace().getMetadataChecksum();
+        if (!fCheckpointsChanged || metadataChecksum == null ||
+                getNextPacketOffsetBits() != getStreamSizeBits()) {
+            return;
+        }
+        fCheckpointsChanged = false;
+        StreamInputPacketIndexFile.write(fFile, metadataChecksum, fIndex);
+    }
 
+    /**
+     * Index the packets which were completely written to the file since the
+     * last update, to read a trace while it is being written. A packet which
+     * is not completely written yet is left for the next update, so unlike
+     * {@link #addPacketHeaderIndex()}, this does not report an error for it.
+     *
+     * @return The number of packets added to the index
+     * @since 1.1
+     */
+    public synchronized int updateIndex() {
+        int before = fIndex.size();
+        indexPackets();
+        return fIndex.size() - before;
+    }
+
+    private boolean loadIndex(long metadataChecksum) {
+        List<ICTFPacketDescriptor> entries = StreamInputPacketIndexFile.read(fFile, metadataChecksum);
+        if (entries == null) {
+            return false;
+        }
+        try {
+            fIndex.appendAll(entries);
+        } catch (CTFException e) {
+            /* Should not happen, the entries were validated when read */
+            throw new IllegalStateException(e);
+        }
+        for (ICTFPacketDescriptor entry : entries) {
+            fLostSoFar += entry.getLostEvents();
+            setTimestampEnd(entry.getTimestampEnd());
+        }
+        return true;
+    }
+
+    /**
+     * Read the headers of the packets that are not indexed yet.
+     *
+     * @return True if the whole file is indexed
+     */
+    private synchronized boolean indexPackets() {
+        try (FileChannel fc = FileChannel.open(fFile.toPath(), StandardOpenOption.READ)) {
+            if (fc == null) {
+                return false;
+            }
+            long fileSize = fc.size();
+            int maximumSize = fStreamPacketContextDecl.getMaximumSize() + fTracePacketHeaderDecl.getMaximumSize();
+            byte[] header = new byte[(int) Math.min(MAP_SIZE, Math.max(0, maximumSize))];
+            long currentPosBits = getNextPacketOffsetBits();
+            while (currentPosBits < fileSize * Byte.SIZE) {
+                long position = currentPosBits / Byte.SIZE;
+                int length = (int) Math.min(fileSize - position, header.length);
+                ByteBuffer buffer = ByteBuffer.wrap(header, 0, length);
+                while (buffer.hasRemaining()) {
+                    if (fc.read(buffer, position + buffer.position()) < 0) {
+                        return false;
+                    }
+                }
+                /* The bit buffer must only see the bytes of this packet */
+                buffer.flip();
+                BitBuffer bitBuffer = new BitBuffer(checkNotNull(buffer.slice()));
+                bitBuffer.setByteOrder(getStream().getTrace().getByteOrder());
+                long lostSoFar = fLostSoFar;
+                long timestampEnd = fTimestampEnd;
+                ICTFPacketDescriptor packet;
+                try {
+                    packet = createPacketIndexEntry(currentPosBits, fileSize, bitBuffer);
+                    if (packet.getPacketSizeBits() <= 0) {
+                        throw new CTFException("Invalid packet size"); //$NON-NLS-1$
+                    }
+                    fIndex.append(packet);
+                } catch (CTFException e) {
+                    /* Leave this packet to the lazy indexing */
+                    fLostSoFar = lostSoFar;
+                    fTimestampEnd = timestampEnd;
+                    return false;
+                }
+                currentPosBits = packet.getOffsetBits() + packet.getPacketSizeBits();
+            }
+            return true;
+        } catch (IOException e) {
+            /* The remaining packets will be indexed lazily */
+            return false;
+        }
     }
 
     /**
@@ -213,15 +342,8 @@ public class CTFStreamInput implements IDefinitionScope {
      * @throws CTFException
      *             If there was a problem reading the packed header
      */
-    public boolean addPacketHeaderIndex() throws CTFException {
-        long currentPosBits = 0L;
-        if (!fIndex.isEmpty()) {
-            ICTFPacketDescriptor pos = fIndex.lastElement();
-            if (pos == null) {
-                throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
-            }
-            currentPosBits = pos.getOffsetBits() + pos.getPacketSizeBits();
-        }
+    public synchronized boolean addPacketHeaderIndex() throws CTFException {
+        long currentPosBits = getNextPacketOffsetBits();
         if (currentPosBits < getStreamSizeBits()) {
             fIndex.append(createPacketIndexEntry(currentPosBits));
             return true;
@@ -229,6 +351,17 @@ public class CTFStreamInput implements IDefinitionScope {
         return false;
     }
 
+    private long getNextPacketOffsetBits() {
+        if (fIndex.isEmpty()) {
+            return 0L;
+        }
+        ICTFPacketDescriptor pos = fIndex.lastElement();
+        if (pos == null) {
+            throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
+        }
+        return pos.getOffsetBits() + pos.getPacketSizeBits();
+    }
+
     private long getStreamSizeBits() {
         return fFile.length() * Byte.SIZE;
     }
@@ -241,31 +374,35 @@ public class CTFStreamInput implements IDefinitionScope {
                 throw new IOException("Failed to create FileChannel"); //$NON-NLS-1$
             }
             BitBuffer bitBuffer = createBitBufferForPacketHeader(fc, dataOffsetbits);
-            /*
-             * Read the trace packet header if it exists.
-             */
-            parseTracePacketHeader(bitBuffer);
-
-            /*
-             * Read the stream packet context if it exists.
-             */
-            long size = fc.size();
-            ICTFPacketDescriptor packetIndex = parsePacketContext(dataOffsetbits, size, bitBuffer);
-
-            /* Basic validation */
-            if (packetIndex.getContentSizeBits() > packetIndex.getPacketSizeBits()) {
-                throw new CTFException("Content size > packet size"); //$NON-NLS-1$
-            }
-
-            if (packetIndex.getPacketSizeBits() > ((size * Byte.SIZE - packetIndex.getOffsetBits()))) {
-                throw new CTFException("Not enough data remaining in the file for the size of this packet"); //$NON-NLS-1$
-            }
-            return packetIndex;
+            return createPacketIndexEntry(dataOffsetbits, fc.size(), bitBuffer);
         } catch (IOException e) {
             throw new CTFException("Failed to create packet index entry", e); //$NON-NLS-1$
         }
     }
 
+    private ICTFPacketDescriptor createPacketIndexEntry(long dataOffsetbits, long size,
+            BitBuffer bitBuffer) throws CTFException {
+        /*
+         * Read the trace packet header if it exists.
+         */
+        parseTracePacketHeader(bitBuffer);
+
+        /*
+         * Read the stream packet context if it exists.
+         */
+        ICTFPacketDescriptor packetIndex = parsePacketContext(dataOffsetbits, size, bitBuffer);
+
+        /* Basic validation */
+        if (packetIndex.getContentSizeBits() > packetIndex.getPacketSizeBits()) {
+            throw new CTFException("Content size > packet size"); //$NON-NLS-1$
+        }
+
+        if (packetIndex.getPacketSizeBits() > ((size * Byte.SIZE - packetIndex.getOffsetBits()))) {
+            throw new CTFException("Not enough data remaining in the file for the size of this packet"); //$NON-NLS-1$
+        }
+        return packetIndex;
+    }
+
     private BitBuffer createBitBufferForPacketHeader(FileChannel fc, long dataOffsetbits) throws CTFException, IOException {
         /*
          * create a packet bit buffer to read the packet header
@@ -42,6 +42,9 @@ import org.eclipse.tracecompass.ctf.core.event.types.VariantDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketCheckpoints;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketCheckpoints.Checkpoint;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 
 /**
  * CTF trace packet reader. Reads the events of a packet of a trace file.
@@ -110,6 +113,12 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
 
     private boolean fHasLost = false;
 
+    /** Checkpoints of the current packet, if it has any */
+    private @Nullable StreamInputPacketCheckpoints fCheckpoints = null;
+
+    /** Index of the next event in the current packet */
+    private int fEventIndex = 0;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -235,6 +244,9 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
      */
     public void setCurrentPacket(ICTFPacketDescriptor currentPacket) throws CTFException {
         fCurrentPacket = currentPacket;
+        fEventIndex = 0;
+        fCheckpoints = (currentPacket instanceof StreamInputPacketIndexEntry) ?
+                ((StreamInputPacketIndexEntry) currentPacket).getCheckpoints() : null;
 
         if (fCurrentPacket != null) {
             /*
@@ -285,6 +297,28 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
         }
     }
 
+    /**
+     * Skip the events of the current packet up to the last known checkpoint
+     * before the given timestamp. This must be done right after the packet is
+     * set, before reading its first event.
+     *
+     * @param timestamp
+     *            The timestamp to seek to
+     */
+    void goToCheckpoint(long timestamp) {
+        StreamInputPacketCheckpoints checkpoints = fCheckpoints;
+        BitBuffer bitBuffer = fBitBuffer;
+        if (checkpoints == null || bitBuffer == null || fEventIndex != 0) {
+            return;
+        }
+        Checkpoint checkpoint = checkpoints.search(timestamp);
+        if (checkpoint != null) {
+            bitBuffer.position(checkpoint.getPosition());
+            fLastTimestamp = checkpoint.getLastTimestamp();
+            fEventIndex = checkpoint.getEventIndex();
+        }
+    }
+
     /**
      * Returns whether it is possible to read any more events from this packet.
      *
@@ -308,6 +342,39 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
      *             If there was a problem reading the trace
      */
     public EventDefinition readNextEvent() throws CTFException {
+        return readEvent(null);
+    }
+
+    /**
+     * Reads the next event of the packet into a cursor. If possible, the event
+     * is not decoded, see {@link CTFEventCursor}.
+     *
+     * @param cursor
+     *            The cursor to point to the event
+     * @throws CTFException
+     *             If there was a problem reading the trace
+     */
+    void readNextEvent(CTFEventCursor cursor) throws CTFException {
+        EventDefinition eventDef = readEvent(cursor);
+        if (eventDef != null) {
+            cursor.setEvent(eventDef);
+        }
+    }
+
+    /**
+     * Reads the next event of the packet. If a cursor is given and the event
+     * has no field of variable size, the event is skipped and the cursor is
+     * pointed to it.
+     *
+     * @param cursor
+     *            The cursor to use for the events that can be skipped, or null
+     *            to decode all the events
+     * @return The event definition, or null if the event was only read into
+     *         the cursor
+     * @throws CTFException
+     *             If there was a problem reading the trace
+     */
+    private EventDefinition readEvent(@Nullable CTFEventCursor cursor) throws CTFException {
         /* Default values for those fields */
         // compromise since we cannot have 64 bit addressing of arrays yet.
         int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
@@ -315,6 +382,9 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
         final BitBuffer currentBitBuffer = fBitBuffer;
         final ICTFPacketDescriptor currentPacket = fCurrentPacket;
         if (currentBitBuffer == null || currentPacket == null) {
+            if (cursor != null) {
+                cursor.setEvent(null);
+            }
             return null;
         }
         final long posStart = currentBitBuffer.position();
@@ -355,6 +425,8 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
 
         }
 
+        final long lastTimestamp = fLastTimestamp;
+
         /* Read the stream event header. */
         if (fStreamEventHeaderDecl != null) {
             if (fStreamEventHeaderDecl instanceof IEventHeaderDeclaration) {
@@ -411,11 +483,28 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
                 } // else timestamp remains 0
             }
         }
+        if ((fEventIndex & (StreamInputPacketCheckpoints.INTERVAL - 1)) == 0) {
+            addCheckpoint(timestamp, posStart, lastTimestamp);
+        }
+        fEventIndex++;
+
         /* Get the right event definition using the event id. */
         EventDeclaration eventDeclaration = (EventDeclaration) fStreamInputReader.getStreamInput().getStream().getEventDeclaration(eventID);
         if (eventDeclaration == null) {
             throw new CTFIOException("Incorrect event id : " + eventID); //$NON-NLS-1$
         }
+        if (cursor != null && hasFixedSize(fStreamEventContextDecl) &&
+                hasFixedSize(eventDeclaration.getContext()) && hasFixedSize(eventDeclaration.getFields())) {
+            final long contextPosition = currentBitBuffer.position();
+            skipFixedSize(fStreamEventContextDecl, currentBitBuffer);
+            skipFixedSize(eventDeclaration.getContext(), currentBitBuffer);
+            long fieldsPosition = skipFixedSize(eventDeclaration.getFields(), currentBitBuffer);
+            if (posStart == currentBitBuffer.position()) {
+                throw new CTFIOException("Empty event not allowed, event: " + eventDeclaration.getName()); //$NON-NLS-1$
+            }
+            cursor.setEvent(eventDeclaration, timestamp, fCurrentStreamEventHeaderDef, currentBitBuffer, contextPosition, fieldsPosition);
+            return null;
+        }
         EventDefinition eventDef = eventDeclaration.createDefinition(fStreamInputReader, fCurrentStreamEventHeaderDef, currentBitBuffer, timestamp);
 
         /*
@@ -430,6 +519,21 @@ public class CTFStreamInputPacketReader implements IDefinitionScope, AutoCloseab
         return eventDef;
     }
 
+    private void addCheckpoint(long timestamp, long position, long lastTimestamp) {
+        StreamInputPacketCheckpoints checkpoints = fCheckpoints;
+        if (checkpoints != null && checkpoints.add(fEventIndex, timestamp, position, lastTimestamp)) {
+            fStreamInputReader.getStreamInput().checkpointAdded();
+        }
+    }
+
+    private static boolean hasFixedSize(@Nullable StructDeclaration declaration) {
+        return declaration == null || declaration.getFixedSize() >= 0;
+    }
+
+    private static long skipFixedSize(@Nullable StructDeclaration declaration, @NonNull BitBuffer input) throws CTFException {
+        return (declaration != null) ? declaration.skipFixedSize(input) : input.position();
+    }
+
     /**
      * Calculates the timestamp value of the event, possibly using the timestamp
      * from the last event.
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
+
+/**
+ * Decodes the events of a trace file ahead of its reader, on a worker thread.
+ * <p>
+ * The events are decoded in batches, which are queued until the reader
+ * consumes them. A batch never spans two packets, so the CPU of its events is
+ * known. The decoding task does not wait when the queue is full: it stops, and
+ * is submitted again when the reader takes a batch. This way, the worker
+ * threads can be shared by all the trace files without any of them blocking
+ * the others.
+ * <p>
+ * A new prefetcher is created after every seek. Its first batch is small, and
+ * the next ones grow up to {@link #MAX_BATCH_SIZE}, so that a seek followed by
+ * a few reads does not decode much more than needed. The queue is kept short
+ * for the same reason, and because many idle readers can be kept open.
+ */
+final class CTFStreamInputPrefetcher implements Runnable {
+
+    private static final int MIN_BATCH_SIZE = 16;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final int MAX_QUEUED_BATCHES = 2;
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    /** Worker threads, shared by all the trace file readers */
+    private static final Executor EXECUTOR;
+
+    static {
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@Nullable Runnable r) {
+                        Thread thread = new Thread(r, "CTF Event Decoder"); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    /**
+     * Decoded events of a packet
+     */
+    private static final class Batch {
+        private final EventDefinition[] fEvents;
+        private int fSize = 0;
+        private int fCpu;
+        /* No more events after this batch */
+        private boolean fLast = false;
+        /* Error to report after the events of this batch */
+        private @Nullable CTFException fError = null;
+
+        public Batch(int capacity) {
+            fEvents = new EventDefinition[capacity];
+        }
+    }
+
+    private final CTFStreamInputReader fReader;
+
+    /* Guarded by this */
+    private final Deque<Batch> fBatches = new ArrayDeque<>();
+    private boolean fScheduled = false;
+    private boolean fStopped = true;
+    private boolean fFinished = false;
+    private int fBatchSize = MIN_BATCH_SIZE;
+
+    /* Only accessed by the reader's thread */
+    private @Nullable Batch fCurrent = null;
+    private int fPosition = 0;
+    private int fCpu;
+
+    /**
+     * Constructor. The prefetcher is stopped until {@link #start()} is called.
+     *
+     * @param reader
+     *            The trace file reader to decode ahead of
+     * @param cpu
+     *            The CPU of the current event of the reader
+     */
+    public CTFStreamInputPrefetcher(CTFStreamInputReader reader, int cpu) {
+        fReader = reader;
+        fCpu = cpu;
+    }
+
+    /**
+     * Start decoding ahead, from the current position of the trace file
+     * reader. The events are added after the ones which are already decoded,
+     * if any.
+     */
+    public synchronized void start() {
+        fStopped = false;
+        schedule();
+    }
+
+    /**
+     * Stop decoding ahead. When this returns, the worker does not use the
+     * trace file reader anymore. The events which were already decoded can
+     * still be read with {@link #next()}, the trace file reader is positioned
+     * right after them.
+     */
+    public synchronized void stop() {
+        fStopped = true;
+        boolean interrupted = false;
+        while (fScheduled) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the next decoded event, waiting for it if needed.
+     *
+     * @return The next event, or null if there are no more events, or if the
+     *         prefetcher is stopped and all the decoded events were read (see
+     *         {@link #isAtEnd()})
+     * @throws CTFException
+     *             If the worker failed to read the next event
+     */
+    public @Nullable EventDefinition next() throws CTFException {
+        Batch current = fCurrent;
+        while (current == null || fPosition >= current.fSize) {
+            if (current != null) {
+                CTFException error = current.fError;
+                if (error != null) {
+                    current.fError = null;
+                    throw error;
+                }
+                if (current.fLast) {
+                    return null;
+                }
+            }
+            current = take();
+            if (current == null) {
+                return null;
+            }
+            fCurrent = current;
+            fPosition = 0;
+            fCpu = current.fCpu;
+        }
+        EventDefinition event = current.fEvents[fPosition];
+        /* Let the event be garbage collected once it was read */
+        current.fEvents[fPosition] = null;
+        fPosition++;
+        return event;
+    }
+
+    /**
+     * Check if the end of the trace file was reached, to know why
+     * {@link #next()} returned null.
+     *
+     * @return true if the last event of the trace file was read
+     */
+    public boolean isAtEnd() {
+        Batch current = fCurrent;
+        return current != null && current.fLast && fPosition >= current.fSize;
+    }
+
+    /**
+     * Get the CPU of the last event returned by {@link #next()}
+     *
+     * @return The CPU
+     */
+    public int getCPU() {
+        return fCpu;
+    }
+
+    private synchronized @Nullable Batch take() throws CTFException {
+        while (fBatches.isEmpty()) {
+            if (!fScheduled) {
+                /* Stopped, and all the decoded events were read */
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CTFException(e);
+            }
+        }
+        Batch batch = fBatches.poll();
+        schedule();
+        return batch;
+    }
+
+    private void schedule() {
+        if (!fScheduled && !fStopped && !fFinished && fBatches.size() < MAX_QUEUED_BATCHES) {
+            fScheduled = true;
+            EXECUTOR.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        int batchSize;
+        synchronized (this) {
+            batchSize = fBatchSize;
+            fBatchSize = Math.min(fBatchSize * 2, MAX_BATCH_SIZE);
+        }
+        Batch batch = new Batch(batchSize);
+        CTFStreamInputPacketReader packetReader = fReader.getPacketReader();
+        try {
+            while (batch.fSize < batchSize) {
+                if (batch.fSize > 0 && !packetReader.hasMoreEvents()) {
+                    /* Start a new batch for the next packet */
+                    break;
+                }
+                if (!fReader.prepareNextEvent()) {
+                    batch.fLast = true;
+                    break;
+                }
+                batch.fEvents[batch.fSize] = packetReader.readNextEvent();
+                batch.fSize++;
+            }
+        } catch (CTFException e) {
+            batch.fError = e;
+            batch.fLast = true;
+        } catch (RuntimeException e) {
+            /* Do not leave the reader waiting for this batch */
+            batch.fError = new CTFException(e);
+            batch.fLast = true;
+        }
+        batch.fCpu = packetReader.getCPU();
+
+        synchronized (this) {
+            fScheduled = false;
+            /* Keep the batch even if stopped, the reader is already past it */
+            fBatches.add(batch);
+            fFinished = batch.fLast;
+            schedule();
+            notifyAll();
+        }
+    }
+}
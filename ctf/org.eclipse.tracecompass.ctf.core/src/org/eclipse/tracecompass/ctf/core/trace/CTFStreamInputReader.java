@@ -19,6 +19,7 @@ import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -59,10 +60,27 @@ public class CTFStreamInputReader implements AutoCloseable {
     private int fPacketIndex;
 
     /**
-     * Reference to the current event of this trace file (iow, the last on that
+     * Cursor on the current event of this trace file (iow, the last on that
      * was read, the next one to be returned)
      */
-    private EventDefinition fCurrentEvent = null;
+    private final CTFEventCursor fCurrentEvent = new CTFEventCursor(this);
+
+    /**
+     * Flyweight reading mode, where the events are not decoded if possible
+     */
+    private boolean fFlyweight = false;
+
+    /**
+     * Pipelined reading mode, where the events are decoded ahead on worker
+     * threads
+     */
+    private boolean fPipelined = false;
+
+    /**
+     * Events decoded ahead, to read before the ones at the position of the
+     * packet reader
+     */
+    private @Nullable CTFStreamInputPrefetcher fPrefetcher = null;
 
     private int fId;
 
@@ -100,7 +118,7 @@ public class CTFStreamInputReader implements AutoCloseable {
             /*
              * Get the iterator on the packet index.
              */
-            fPacketIndex = 0;
+            fPacketIndex = -1;
             /*
              * Make first packet the current one.
              */
@@ -124,6 +142,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
+        suspendPrefetching();
         if (fFileChannel != null) {
             fFileChannel.close();
         }
@@ -143,7 +162,25 @@ public class CTFStreamInputReader implements AutoCloseable {
      *         finished/empty/malformed
      */
     public EventDefinition getCurrentEvent() {
-        return fCurrentEvent;
+        try {
+            return fCurrentEvent.getEventDefinition();
+        } catch (CTFException e) {
+            /* The event was already read once, this should not happen */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the cursor on the current event in this stream. The cursor is
+     * reused for the next events, so it is only valid until the next event is
+     * read.
+     *
+     * @return the cursor on the current event in the stream, null if the
+     *         stream is finished/empty/malformed
+     * @since 1.1
+     */
+    public @Nullable CTFEventCursor getCurrentEventCursor() {
+        return fCurrentEvent.isEmpty() ? null : fCurrentEvent;
     }
 
     /**
@@ -181,7 +218,8 @@ public class CTFStreamInputReader implements AutoCloseable {
      * @return The CPU id (a number)
      */
     public int getCPU() {
-        return fPacketReader.getCPU();
+        CTFStreamInputPrefetcher prefetcher = fPrefetcher;
+        return (prefetcher != null) ? prefetcher.getCPU() : fPacketReader.getCPU();
     }
 
     /**
@@ -217,6 +255,11 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     public void setLive(boolean live) {
         fLive = live;
+        CTFStreamInputPrefetcher prefetcher = fPrefetcher;
+        if (live && prefetcher != null) {
+            /* The events decoded so far are read first */
+            prefetcher.stop();
+        }
     }
 
     /**
@@ -228,6 +271,66 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fLive;
     }
 
+    /**
+     * Set the flyweight reading mode. In this mode, the events which have no
+     * field of variable size are not decoded when they are read, so they
+     * should be accessed with {@link #getCurrentEventCursor()} instead of
+     * {@link #getCurrentEvent()}.
+     *
+     * @param flyweight
+     *            whether the events should be decoded only when needed
+     * @since 1.1
+     */
+    public void setFlyweight(boolean flyweight) {
+        fFlyweight = flyweight;
+    }
+
+    /**
+     * Get if the events are read in flyweight mode
+     *
+     * @return whether the events are decoded only when needed
+     * @since 1.1
+     */
+    public boolean isFlyweight() {
+        return fFlyweight;
+    }
+
+    /**
+     * Set the pipelined reading mode. In this mode, the events are decoded
+     * ahead on worker threads, and the reader only has to take them. The
+     * events are always completely decoded, even in flyweight mode. This mode
+     * is not used for live traces.
+     *
+     * @param pipelined
+     *            whether the events should be decoded ahead
+     * @since 1.1
+     */
+    public void setPipelined(boolean pipelined) {
+        if (pipelined == fPipelined) {
+            return;
+        }
+        fPipelined = pipelined;
+        CTFStreamInputPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher == null) {
+            resumePrefetching();
+        } else if (pipelined && !fLive) {
+            prefetcher.start();
+        } else {
+            /* The events decoded so far are read first */
+            prefetcher.stop();
+        }
+    }
+
+    /**
+     * Get if the events are decoded ahead
+     *
+     * @return whether the events are decoded ahead
+     * @since 1.1
+     */
+    public boolean isPipelined() {
+        return fPipelined;
+    }
+
     /**
      * Get the event context of the stream
      *
@@ -248,28 +351,76 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFResponse readNextEvent() throws CTFException {
+        CTFStreamInputPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            EventDefinition event = prefetcher.next();
+            if (event != null || prefetcher.isAtEnd()) {
+                setCurrentEvent(event);
+                return (event != null) ? CTFResponse.OK : CTFResponse.FINISH;
+            }
+            /* Stopped, and all the decoded events were read */
+            fPrefetcher = null;
+        }
 
         /*
-         * Change packet if needed
+         * If an event is available, read it.
          */
+        if (prepareNextEvent()) {
+            if (fFlyweight) {
+                fPacketReader.readNextEvent(fCurrentEvent);
+            } else {
+                setCurrentEvent(fPacketReader.readNextEvent());
+            }
+            return CTFResponse.OK;
+        }
+        this.setCurrentEvent(null);
+        return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+    }
+
+    /**
+     * Change packet if the current one has no more events.
+     *
+     * @return true if there is an event to read in the current packet
+     * @throws CTFException
+     *             if an error occurs
+     */
+    boolean prepareNextEvent() throws CTFException {
         if (!fPacketReader.hasMoreEvents()) {
             final ICTFPacketDescriptor prevPacket = fPacketReader
                     .getCurrentPacket();
             if (prevPacket != null || fLive) {
                 goToNextPacket();
             }
+        }
+        return fPacketReader.hasMoreEvents();
+    }
 
+    /**
+     * Stop decoding ahead, and discard the events decoded so far. This must be
+     * done before moving the packet reader.
+     */
+    private void suspendPrefetching() {
+        CTFStreamInputPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.stop();
+            fPrefetcher = null;
         }
+    }
 
-        /*
-         * If an event is available, read it.
-         */
-        if (fPacketReader.hasMoreEvents()) {
-            setCurrentEvent(fPacketReader.readNextEvent());
-            return CTFResponse.OK;
+    /**
+     * Start decoding ahead from the current position, if in pipelined mode.
+     */
+    private void resumePrefetching() {
+        if (fPipelined && !fLive) {
+            /*
+             * Decode the current event now if it was skipped, the packet
+             * buffer will be used by the worker
+             */
+            getCurrentEvent();
+            CTFStreamInputPrefetcher prefetcher = new CTFStreamInputPrefetcher(this, fPacketReader.getCPU());
+            fPrefetcher = prefetcher;
+            prefetcher.start();
         }
-        this.setCurrentEvent(null);
-        return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
     }
 
     /**
@@ -283,10 +434,24 @@ public class CTFStreamInputReader implements AutoCloseable {
         // did we already index the packet?
         if (getPacketSize() >= (fPacketIndex + 1)) {
             fPacketReader.setCurrentPacket(getPacket());
+        } else if (fLive) {
+            /*
+             * Index the packets written since, if any. The file is being
+             * written, so the last packet may not be complete yet.
+             */
+            fStreamInput.updateIndex();
+            if (getPacketSize() >= (fPacketIndex + 1)) {
+                fPacketReader.setCurrentPacket(getPacket());
+            } else {
+                /* Try this packet again when more data is written */
+                fPacketIndex--;
+                fPacketReader.setCurrentPacket(null);
+            }
         } else {
             // go to the next packet if there is one, index it at the same time
             if (fStreamInput.addPacketHeaderIndex()) {
-                fPacketIndex = getPacketSize() - 1;
+                /* Other packets may have been indexed at the same time */
+                fPacketIndex = Math.min(fPacketIndex, getPacketSize() - 1);
                 fPacketReader.setCurrentPacket(getPacket());
             } else {
                 // out of packets
@@ -313,6 +478,15 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public long seek(long timestamp) throws CTFException {
+        suspendPrefetching();
+        try {
+            return seekInternal(timestamp);
+        } finally {
+            resumePrefetching();
+        }
+    }
+
+    private long seekInternal(long timestamp) throws CTFException {
         long offset = 0;
 
         gotoPacket(timestamp);
@@ -334,6 +508,12 @@ public class CTFStreamInputReader implements AutoCloseable {
             gotoPacket(timestamp);
         }
 
+        /*
+         * Skip the events of the packet which are known to be before the
+         * given timestamp.
+         */
+        fPacketReader.goToCheckpoint(timestamp);
+
         /*
          * Advance until either of these conditions are met:
          *
@@ -344,10 +524,10 @@ public class CTFStreamInputReader implements AutoCloseable {
          * timestamp.
          */
         readNextEvent();
-        boolean done = (this.getCurrentEvent() == null);
-        while (!done && (this.getCurrentEvent().getTimestamp() < timestamp)) {
+        boolean done = fCurrentEvent.isEmpty();
+        while (!done && (fCurrentEvent.getTimestamp() < timestamp)) {
             readNextEvent();
-            done = (this.getCurrentEvent() == null);
+            done = fCurrentEvent.isEmpty();
             offset++;
         }
         return offset;
@@ -375,11 +555,20 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public void goToLastEvent() throws CTFException {
+        suspendPrefetching();
+        try {
+            goToLastEventInternal();
+        } finally {
+            resumePrefetching();
+        }
+    }
+
+    private void goToLastEventInternal() throws CTFException {
 
         /*
          * Go to the beginning of the trace
          */
-        seek(0);
+        seekInternal(0);
 
         /*
          * Check that there is at least one event
@@ -421,8 +610,8 @@ public class CTFStreamInputReader implements AutoCloseable {
          * Go until the end of that packet
          */
         EventDefinition prevEvent = null;
-        while (fCurrentEvent != null) {
-            prevEvent = fCurrentEvent;
+        while (!fCurrentEvent.isEmpty()) {
+            prevEvent = getCurrentEvent();
             this.readNextEvent();
         }
         /*
@@ -453,7 +642,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      *            the event to set
      */
     public void setCurrentEvent(EventDefinition currentEvent) {
-        fCurrentEvent = currentEvent;
+        fCurrentEvent.setEvent(currentEvent);
     }
 
     /**
@@ -514,7 +703,7 @@ public class CTFStreamInputReader implements AutoCloseable {
     @Override
     public String toString() {
         // this helps debugging
-        return fId + ' ' + fCurrentEvent.toString();
+        return fId + ' ' + getCurrentEvent().toString();
     }
 
 }
@@ -16,18 +16,21 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 
 /**
@@ -48,8 +51,6 @@ public class CTFStreamOutputWriter {
     @Nullable
     private final CTFStreamInput fStreamInput;
     @NonNull
-    private final CTFStreamPacketOutputWriter fStreamPacketOutputWriter;
-    @NonNull
     private final File fOutFile;
 
     // ------------------------------------------------------------------------
@@ -76,8 +77,6 @@ public class CTFStreamOutputWriter {
         } catch (IOException e) {
             throw new CTFIOException("Output file can't be created: " + outFilePath, e); //$NON-NLS-1$
         }
-
-        fStreamPacketOutputWriter = new CTFStreamPacketOutputWriter();
     }
 
     /**
@@ -96,26 +95,68 @@ public class CTFStreamOutputWriter {
      * @since 1.0
      */
     public void copyPackets(long startTime, long endTime) throws CTFException {
+        copyPackets(startTime, endTime, Collections.<String> emptySet());
+    }
+
+    /**
+     * Copies packets from the relevant input this input stream to a
+     * corresponding output stream based on a given time range, leaving out the
+     * packets which only contain excluded events. The packets are copied
+     * whole, so the packets which are written can still contain excluded
+     * events.
+     *
+     * @param startTime
+     *            the start time for packets to be written
+     * @param endTime
+     *            the end time for packets to be written
+     * @param excludedEvents
+     *            the names of the events to exclude
+     * @throws CTFException
+     *             if a reading or writing error occurs
+     * @since 1.1
+     */
+    public void copyPackets(long startTime, long endTime, Set<String> excludedEvents) throws CTFException {
         CTFStreamInput streamInput = fStreamInput;
         if (streamInput == null) {
             throw new CTFIOException("StreamInput is null. Can't copy packets"); //$NON-NLS-1$
         }
 
+        /* The packets are sorted, so the ones to copy are contiguous */
+        StreamInputPacketIndex index = streamInput.getIndex();
+        List<ICTFPacketDescriptor> packets = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            ICTFPacketDescriptor entry = index.getElement(i);
+            if (entry.getTimestampBegin() > endTime) {
+                break;
+            }
+            if (entry.getTimestampBegin() >= startTime) {
+                packets.add(entry);
+            }
+        }
+        if (!excludedEvents.isEmpty()) {
+            packets = filterPackets(streamInput, packets, excludedEvents);
+        }
+
         try (FileChannel fc = checkNotNull(FileChannel.open(fOutFile.toPath(), StandardOpenOption.WRITE))) {
-            StreamInputPacketIndex index = streamInput.getIndex();
-            int count = 0;
             try (FileChannel source = FileChannel.open(streamInput.getFile().toPath(), StandardOpenOption.READ)) {
-                for (int i = 0; i < index.size(); i++) {
-                    ICTFPacketDescriptor entry = index.getElement(i);
-                    if ((entry.getTimestampBegin() >= startTime) && (entry.getTimestampBegin() <= endTime)) {
-                        ByteBuffer buffer = SafeMappedByteBuffer.map(source, MapMode.READ_ONLY, entry.getOffsetBytes(), entry.getPacketSizeBits() / Byte.SIZE);
-                        fStreamPacketOutputWriter.writePacket(buffer, fc);
-                        count++;
+                /*
+                 * Consecutive packets are adjacent in the file, they are
+                 * transferred at once without going through user space.
+                 */
+                long runStart = 0;
+                long runEnd = 0;
+                for (ICTFPacketDescriptor entry : packets) {
+                    long offset = entry.getOffsetBytes();
+                    if (offset != runEnd) {
+                        transfer(source, runStart, runEnd - runStart, fc);
+                        runStart = offset;
                     }
+                    runEnd = offset + entry.getPacketSizeBits() / Byte.SIZE;
                 }
+                transfer(source, runStart, runEnd - runStart, fc);
             }
 
-            if (count == 0 && fOutFile.exists()) {
+            if (packets.isEmpty() && fOutFile.exists()) {
                 boolean deleteResult = fOutFile.delete();
                 if (!deleteResult) {
                     throw new CTFIOException("Could not delete " + fOutFile.getAbsolutePath()); //$NON-NLS-1$
@@ -126,6 +167,66 @@ public class CTFStreamOutputWriter {
         }
     }
 
+    private static void transfer(FileChannel source, long position, long size, FileChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < size) {
+            long count = source.transferTo(position + transferred, size - transferred, target);
+            if (count <= 0) {
+                throw new IOException("Packet beyond the end of the file at offset " + (position + transferred)); //$NON-NLS-1$
+            }
+            transferred += count;
+        }
+    }
+
+    /**
+     * Keep the packets which contain at least one event which is not
+     * excluded. The events are read in flyweight mode, so only their
+     * headers are decoded.
+     */
+    private static List<ICTFPacketDescriptor> filterPackets(CTFStreamInput streamInput,
+            List<ICTFPacketDescriptor> packets, Set<String> excludedEvents) throws CTFException {
+        if (packets.isEmpty()) {
+            return packets;
+        }
+        long[] offsets = new long[packets.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = packets.get(i).getOffsetBytes();
+        }
+        boolean[] keep = new boolean[offsets.length];
+        long lastOffset = offsets[offsets.length - 1];
+
+        try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+            reader.setFlyweight(true);
+            reader.seek(packets.get(0).getTimestampBegin());
+            CTFEventCursor cursor = reader.getCurrentEventCursor();
+            while (cursor != null) {
+                ICTFPacketDescriptor packet = reader.getPacketReader().getCurrentPacket();
+                if (packet.getOffsetBytes() > lastOffset) {
+                    break;
+                }
+                IEventDeclaration declaration = cursor.getDeclaration();
+                if (declaration == null || !excludedEvents.contains(declaration.getName())) {
+                    int i = Arrays.binarySearch(offsets, packet.getOffsetBytes());
+                    if (i >= 0) {
+                        keep[i] = true;
+                    }
+                }
+                reader.readNextEvent();
+                cursor = reader.getCurrentEventCursor();
+            }
+        } catch (IOException e) {
+            throw new CTFIOException("Error closing the trace file: " + e.toString(), e); //$NON-NLS-1$
+        }
+
+        List<ICTFPacketDescriptor> kept = new ArrayList<>();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                kept.add(packets.get(i));
+            }
+        }
+        return kept;
+    }
+
     /**
      * Get the stream file to write.
      *
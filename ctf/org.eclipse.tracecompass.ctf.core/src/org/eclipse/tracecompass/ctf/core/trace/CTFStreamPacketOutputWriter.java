@@ -20,7 +20,10 @@ import java.nio.channels.FileChannel;
  *
  * @author Bernd Hufmann
  * @since 1.0
+ * @deprecated The packets are not written one at a time anymore, see
+ *             {@link CTFStreamOutputWriter#copyPackets(long, long)}.
  */
+@Deprecated
 public class CTFStreamPacketOutputWriter {
 
     /**
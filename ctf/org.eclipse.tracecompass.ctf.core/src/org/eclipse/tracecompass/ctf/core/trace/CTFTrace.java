@@ -23,15 +23,23 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
@@ -52,6 +60,7 @@ import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.event.CTFCallsiteComparator;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataStrings;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.exceptions.ParseException;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
 /**
@@ -119,6 +128,12 @@ public class CTFTrace implements IDefinitionScope {
      */
     private StructDefinition fPacketHeaderDef;
 
+    /**
+     * Checksum of the metadata file, used to validate the saved packet
+     * indexes. Null if the trace has no metadata file.
+     */
+    private Long fMetadataChecksum = null;
+
     /**
      * Collection of streams contained in the trace.
      */
@@ -212,12 +227,53 @@ public class CTFTrace implements IDefinitionScope {
         }
 
         /* Create their index */
+        fMetadataChecksum = StreamInputPacketIndexFile.getChecksum(new File(path, "metadata")); //$NON-NLS-1$
+        List<CTFStreamInput> inputs = new ArrayList<>();
         for (CTFStream stream : getStreams()) {
-            Set<CTFStreamInput> inputs = stream.getStreamInputs();
-            for (CTFStreamInput s : inputs) {
+            for (CTFStreamInput s : stream.getStreamInputs()) {
                 addStream(s);
+                inputs.add(s);
             }
         }
+        setupIndexes(inputs);
+    }
+
+    /**
+     * Index the packets of the trace files. Each file is independent, so they
+     * are indexed in parallel, with at most one thread per processor.
+     */
+    private static void setupIndexes(List<CTFStreamInput> inputs) throws CTFException {
+        int nbThreads = Math.min(inputs.size(), Runtime.getRuntime().availableProcessors());
+        if (nbThreads <= 1) {
+            for (CTFStreamInput s : inputs) {
+                s.setupIndex();
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(inputs.size());
+        for (final CTFStreamInput s : inputs) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    s.setupIndex();
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFException("Interrupted while indexing the trace", e); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            throw new CTFException("Failed to index the trace", e.getCause()); //$NON-NLS-1$
+        } finally {
+            executor.shutdown();
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -407,6 +463,32 @@ public class CTFTrace implements IDefinitionScope {
         return fPath;
     }
 
+    /**
+     * Get the checksum of the metadata file, to validate the saved packet
+     * indexes of the trace files.
+     *
+     * @return The checksum, or null if the packet indexes should not be saved
+     */
+    Long getMetadataChecksum() {
+        return fMetadataChecksum;
+    }
+
+    /**
+     * Save the packet indexes of the trace files again, with the positions of
+     * the events found in the packets since they were saved, so that the next
+     * seeks are faster when the trace is opened again. Only the indexes which
+     * changed are saved.
+     *
+     * @since 1.1
+     */
+    public void saveIndexes() {
+        for (CTFStream stream : getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                streamInput.saveCheckpoints();
+            }
+        }
+    }
+
     /**
      * Get all the streams as an iterable.
      *
@@ -433,15 +515,10 @@ public class CTFTrace implements IDefinitionScope {
     private void addStream(CTFStreamInput s) {
 
         /*
-         * add the stream
+         * add the stream, it is indexed afterwards
          */
         CTFStream stream = s.getStream();
         fStreams.put(stream.getId(), stream);
-
-        /*
-         * index the trace
-         */
-        s.setupIndex();
     }
 
     /**
@@ -584,6 +661,50 @@ public class CTFTrace implements IDefinitionScope {
         openStreamInput(streamFile);
     }
 
+    /**
+     * Open the stream files which were created in the trace directory since
+     * the trace was opened, to read a trace while it is being written. A file
+     * whose first packet header is not written yet is left for the next call.
+     *
+     * @return The stream inputs of the new files, their packets are not
+     *         indexed yet
+     * @since 1.1
+     */
+    public synchronized List<CTFStreamInput> openNewStreamFiles() {
+        File path = fPath;
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        File[] files = path.listFiles(METADATA_FILE_FILTER);
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Set<File> knownFiles = new HashSet<>();
+        for (CTFStream stream : getStreams()) {
+            for (CTFStreamInput input : stream.getStreamInputs()) {
+                knownFiles.add(input.getFile());
+            }
+        }
+        Arrays.sort(files, METADATA_COMPARATOR);
+        List<CTFStreamInput> newInputs = new ArrayList<>();
+        for (File streamFile : files) {
+            if (knownFiles.contains(streamFile) || streamFile.length() == 0) {
+                continue;
+            }
+            try {
+                CTFStream stream = openStreamInput(streamFile);
+                for (CTFStreamInput input : stream.getStreamInputs()) {
+                    if (input.getFile().equals(streamFile)) {
+                        newInputs.add(input);
+                    }
+                }
+            } catch (CTFException e) {
+                /* The packet header is not completely written yet */
+            }
+        }
+        return newInputs;
+    }
+
     /**
      * Registers a new stream to the trace.
      *
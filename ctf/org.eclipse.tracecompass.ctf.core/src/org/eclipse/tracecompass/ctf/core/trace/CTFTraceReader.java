@@ -15,12 +15,15 @@ package org.eclipse.tracecompass.ctf.core.trace;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.collect.LoserTree;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -43,6 +46,9 @@ public class CTFTraceReader implements AutoCloseable {
 
     private static final int MIN_PRIO_SIZE = 16;
 
+    /** Key of the trace file readers waiting for events, in live mode */
+    private static final long WAITING_KEY = Long.MAX_VALUE;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -59,9 +65,15 @@ public class CTFTraceReader implements AutoCloseable {
             Collections.synchronizedList(new ArrayList<CTFStreamInputReader>());
 
     /**
-     * Priority queue to order the trace file readers by timestamp.
+     * Loser tree to order the trace file readers by timestamp. Each leaf is
+     * the trace file reader at the same index in fMergedReaders.
+     */
+    private LoserTree fMerge;
+
+    /**
+     * The trace file readers in the loser tree, by leaf index.
      */
-    private PriorityQueue<CTFStreamInputReader> fPrio;
+    private CTFStreamInputReader[] fMergedReaders;
 
     /**
      * Array to count the number of event per trace file.
@@ -78,6 +90,22 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private long fEndTime;
 
+    /**
+     * Flyweight reading mode of the trace file readers
+     */
+    private boolean fFlyweight = false;
+
+    /**
+     * Pipelined reading mode of the trace file readers
+     */
+    private boolean fPipelined = false;
+
+    /**
+     * Live reading mode, for the trace file readers added by
+     * {@link #update()}
+     */
+    private boolean fLive = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -110,7 +138,7 @@ public class CTFTraceReader implements AutoCloseable {
          */
         fStartTime = 0;
         if (hasMoreEvents()) {
-            fStartTime = getTopStream().getCurrentEvent().getTimestamp();
+            fStartTime = getTopStream().getCurrentEventCursor().getTimestamp();
             setEndTime(fStartTime);
         }
     }
@@ -128,6 +156,8 @@ public class CTFTraceReader implements AutoCloseable {
         newReader = new CTFTraceReader(fTrace);
         newReader.fStartTime = fStartTime;
         newReader.setEndTime(fEndTime);
+        newReader.setFlyweight(fFlyweight);
+        newReader.setPipelined(fPipelined);
         return newReader;
     }
 
@@ -176,10 +206,23 @@ public class CTFTraceReader implements AutoCloseable {
     /**
      * Get the priority queue of this trace reader.
      *
-     * @return The priority queue of input readers
+     * @return A new priority queue of the input readers which have a current
+     *         event
+     * @deprecated The trace file readers are not ordered with a priority queue
+     *             anymore, use {@link #getTopStream()} to get the reader of
+     *             the current event.
      */
+    @Deprecated
     protected PriorityQueue<CTFStreamInputReader> getPrio() {
-        return fPrio;
+        PriorityQueue<CTFStreamInputReader> prio = new PriorityQueue<>(
+                Math.max(fMerge.size(), MIN_PRIO_SIZE),
+                new StreamInputReaderTimestampComparator());
+        for (int i = 0; i < fMergedReaders.length; i++) {
+            if (fMerge.isActive(i)) {
+                prio.add(fMergedReaders[i]);
+            }
+        }
+        return prio;
     }
 
     // ------------------------------------------------------------------------
@@ -224,34 +267,63 @@ public class CTFTraceReader implements AutoCloseable {
      *             An error occured
      */
     public void update() throws CTFException {
-        Set<CTFStreamInputReader> readers = new HashSet<>();
+        Set<CTFStreamInput> readInputs = new HashSet<>();
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                readInputs.add(reader.getStreamInput());
+            }
+        }
+        List<CTFStreamInputReader> readers = new ArrayList<>();
         for (CTFStream stream : fTrace.getStreams()) {
             Set<CTFStreamInput> streamInputs = stream.getStreamInputs();
             for (CTFStreamInput streamInput : streamInputs) {
                 /*
-                 * Create a reader.
+                 * Only create a reader for the new trace files, a reader opens
+                 * its file.
                  */
+                if (readInputs.contains(streamInput)) {
+                    continue;
+                }
                 CTFStreamInputReader streamInputReader = new CTFStreamInputReader(
                         streamInput);
 
                 /*
                  * Add it to the group.
                  */
-                if (!fStreamInputReaders.contains(streamInputReader)) {
-                    streamInputReader.readNextEvent();
-                    fStreamInputReaders.add(streamInputReader);
-                    readers.add(streamInputReader);
-                }
+                streamInputReader.setParent(this);
+                streamInputReader.setFlyweight(fFlyweight);
+                streamInputReader.setLive(fLive);
+                streamInputReader.readNextEvent();
+                streamInputReader.setPipelined(fPipelined);
+                fStreamInputReaders.add(streamInputReader);
+                readers.add(streamInputReader);
             }
         }
-        long[] temp = fEventCountPerTraceFile;
-        fEventCountPerTraceFile = new long[readers.size() + temp.length];
-        for (CTFStreamInputReader reader : readers) {
-            fPrio.add(reader);
+        if (readers.isEmpty()) {
+            return;
+        }
+
+        /*
+         * Make a bigger tree, with the new readers after the current ones.
+         */
+        LoserTree oldMerge = fMerge;
+        int nbReaders = oldMerge.getNbLeaves() + readers.size();
+        fMerge = new LoserTree(nbReaders);
+        for (int i = 0; i < oldMerge.getNbLeaves(); i++) {
+            if (oldMerge.isActive(i)) {
+                fMerge.setKey(i, oldMerge.getKey(i));
+            }
         }
-        for (int i = 0; i < temp.length; i++) {
-            fEventCountPerTraceFile[i] = temp[i];
+        fMergedReaders = Arrays.copyOf(fMergedReaders, nbReaders);
+        int pos = oldMerge.getNbLeaves();
+        for (CTFStreamInputReader reader : readers) {
+            reader.setName(pos);
+            fMergedReaders[pos] = reader;
+            fMerge.setKey(pos, getKey(reader));
+            pos++;
         }
+        fMerge.rebuild();
+        fEventCountPerTraceFile = Arrays.copyOf(fEventCountPerTraceFile, nbReaders);
     }
 
     /**
@@ -275,38 +347,32 @@ public class CTFTraceReader implements AutoCloseable {
      *             if an error occurs
      */
     private void populateStreamInputReaderHeap() throws CTFException {
-        if (fStreamInputReaders.isEmpty()) {
-            fPrio = new PriorityQueue<>(MIN_PRIO_SIZE,
-                    new StreamInputReaderTimestampComparator());
-            return;
-        }
-
-        /*
-         * Create the priority queue with a size twice as bigger as the number
-         * of reader in order to avoid constant resizing.
-         */
-        fPrio = new PriorityQueue<>(
-                Math.max(fStreamInputReaders.size() * 2, MIN_PRIO_SIZE),
-                new StreamInputReaderTimestampComparator());
+        fMergedReaders = fStreamInputReaders.toArray(new CTFStreamInputReader[fStreamInputReaders.size()]);
+        fMerge = new LoserTree(fMergedReaders.length);
 
-        int pos = 0;
-
-        for (CTFStreamInputReader reader : fStreamInputReaders) {
+        for (int pos = 0; pos < fMergedReaders.length; pos++) {
             /*
-             * Add each trace file reader in the priority queue, if we are able
-             * to read an event from it.
+             * Add each trace file reader in the tree, if we are able to read
+             * an event from it.
              */
+            CTFStreamInputReader reader = fMergedReaders[pos];
             reader.setParent(this);
+            reader.setName(pos);
             CTFResponse readNextEvent = reader.readNextEvent();
             if (readNextEvent == CTFResponse.OK || readNextEvent == CTFResponse.WAIT) {
-                fPrio.add(reader);
-
-                fEventCountPerTraceFile[pos] = 0;
-                reader.setName(pos);
-
-                pos++;
+                fMerge.setKey(pos, getKey(reader));
             }
         }
+        fMerge.rebuild();
+    }
+
+    /**
+     * Get the key of a trace file reader in the loser tree. The timestamps are
+     * unsigned, so their sign bit is flipped to compare them as signed values.
+     */
+    private static long getKey(CTFStreamInputReader reader) {
+        CTFEventCursor cursor = reader.getCurrentEventCursor();
+        return (cursor != null) ? cursor.getTimestamp() ^ Long.MIN_VALUE : WAITING_KEY;
     }
 
     /**
@@ -321,6 +387,20 @@ public class CTFTraceReader implements AutoCloseable {
         return (top != null) ? top.getCurrentEvent() : null;
     }
 
+    /**
+     * Get a cursor on the current event, which is the current event of the
+     * trace file reader with the lowest timestamp. The cursor is only valid
+     * until the next call to {@link #advance()} or {@link #seek(long)}.
+     *
+     * @return A cursor on the current event, or null if the trace reader
+     *         reached the end of the trace.
+     * @since 1.1
+     */
+    public @Nullable CTFEventCursor getCurrentEventCursor() {
+        CTFStreamInputReader top = getTopStream();
+        return (top != null) ? top.getCurrentEventCursor() : null;
+    }
+
     /**
      * Go to the next event.
      *
@@ -330,44 +410,45 @@ public class CTFTraceReader implements AutoCloseable {
      */
     public boolean advance() throws CTFException {
         /*
-         * Remove the reader from the top of the priority queue.
+         * Get the reader at the top of the tree.
          */
-        CTFStreamInputReader top = fPrio.poll();
+        final int leaf = fMerge.getWinner();
 
         /*
-         * If the queue was empty.
+         * If the tree was empty.
          */
-        if (top == null) {
+        if (leaf == LoserTree.NO_WINNER) {
             return false;
         }
+        CTFStreamInputReader top = fMergedReaders[leaf];
         /*
          * Read the next event of this reader.
          */
         switch (top.readNextEvent()) {
         case OK: {
             /*
-             * Add it back in the queue.
+             * Find the new top of the tree.
              */
-            fPrio.add(top);
-            final long topEnd = fTrace.timestampCyclesToNanos(top.getCurrentEvent().getTimestamp());
+            final long topTimestamp = top.getCurrentEventCursor().getTimestamp();
+            fMerge.replaceWinner(topTimestamp ^ Long.MIN_VALUE);
+            final long topEnd = fTrace.timestampCyclesToNanos(topTimestamp);
             setEndTime(Math.max(topEnd, getEndTime()));
             fEventCountPerTraceFile[top.getName()]++;
 
-            if (top.getCurrentEvent() != null) {
-                fEndTime = Math.max(top.getCurrentEvent().getTimestamp(),
-                        fEndTime);
-            }
+            fEndTime = Math.max(topTimestamp, fEndTime);
             break;
         }
         case WAIT: {
-            fPrio.add(top);
+            fMerge.replaceWinner(WAITING_KEY);
             break;
         }
         case FINISH:
+            fMerge.removeWinner();
             break;
         case ERROR:
         default:
             // something bad happend
+            fMerge.removeWinner();
         }
         /*
          * If there is no reader in the queue, it means the trace reader reached
@@ -384,7 +465,7 @@ public class CTFTraceReader implements AutoCloseable {
      */
     public void goToLastEvent() throws CTFException {
         seek(getEndTime());
-        while (fPrio.size() > 1) {
+        while (fMerge.size() > 1) {
             advance();
         }
     }
@@ -404,23 +485,24 @@ public class CTFTraceReader implements AutoCloseable {
      *             if an error occurs
      */
     public boolean seek(long timestamp) throws CTFException {
-        /*
-         * Remove all the trace readers from the priority queue
-         */
-        fPrio.clear();
-        for (CTFStreamInputReader streamInputReader : fStreamInputReaders) {
+        for (int pos = 0; pos < fMergedReaders.length; pos++) {
             /*
              * Seek the trace reader.
              */
+            CTFStreamInputReader streamInputReader = fMergedReaders[pos];
             streamInputReader.seek(timestamp);
 
             /*
-             * Add it to the priority queue if there is a current event.
+             * Keep it in the tree if there is a current event.
              */
-            if (streamInputReader.getCurrentEvent() != null) {
-                fPrio.add(streamInputReader);
+            CTFEventCursor cursor = streamInputReader.getCurrentEventCursor();
+            if (cursor != null) {
+                fMerge.setKey(pos, cursor.getTimestamp() ^ Long.MIN_VALUE);
+            } else {
+                fMerge.remove(pos);
             }
         }
+        fMerge.rebuild();
         return hasMoreEvents();
     }
 
@@ -430,7 +512,8 @@ public class CTFTraceReader implements AutoCloseable {
      * @return the stream with the oldest event
      */
     public CTFStreamInputReader getTopStream() {
-        return fPrio.peek();
+        final int leaf = fMerge.getWinner();
+        return (leaf == LoserTree.NO_WINNER) ? null : fMergedReaders[leaf];
     }
 
     /**
@@ -439,7 +522,7 @@ public class CTFTraceReader implements AutoCloseable {
      * @return true if yes.
      */
     public final boolean hasMoreEvents() {
-        return fPrio.size() > 0;
+        return !fMerge.isEmpty();
     }
 
     /**
@@ -504,18 +587,80 @@ public class CTFTraceReader implements AutoCloseable {
      *            whether the trace is live
      */
     public void setLive(boolean live) {
-        for (CTFStreamInputReader s : fPrio) {
-            s.setLive(live);
+        fLive = live;
+        for (int i = 0; i < fMergedReaders.length; i++) {
+            if (fMerge.isActive(i)) {
+                fMergedReaders[i].setLive(live);
+            }
+        }
+    }
+
+    /**
+     * Sets the events to be read in flyweight mode or not. In this mode, the
+     * events which have no field of variable size are not decoded when they
+     * are read, so they should be accessed with
+     * {@link #getCurrentEventCursor()} instead of
+     * {@link #getCurrentEventDef()}.
+     *
+     * @param flyweight
+     *            whether the events should be decoded only when needed
+     * @since 1.1
+     */
+    public void setFlyweight(boolean flyweight) {
+        fFlyweight = flyweight;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setFlyweight(flyweight);
+            }
         }
     }
 
+    /**
+     * Get if the events are read in flyweight mode
+     *
+     * @return whether the events are decoded only when needed
+     * @since 1.1
+     */
+    public boolean isFlyweight() {
+        return fFlyweight;
+    }
+
+    /**
+     * Sets the events to be decoded ahead or not. In this mode, each trace
+     * file is decoded on a worker thread, ahead of this reader, and the events
+     * are still merged here in the same order. The events are always
+     * completely decoded in this mode, even in flyweight mode.
+     *
+     * @param pipelined
+     *            whether the events should be decoded ahead
+     * @since 1.1
+     */
+    public void setPipelined(boolean pipelined) {
+        fPipelined = pipelined;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setPipelined(pipelined);
+            }
+        }
+    }
+
+    /**
+     * Get if the events are decoded ahead
+     *
+     * @return whether the events are decoded ahead
+     * @since 1.1
+     */
+    public boolean isPipelined() {
+        return fPipelined;
+    }
+
     /**
      * Get if the trace is to read live or not
      *
      * @return whether the trace is live or not
      */
     public boolean isLive() {
-        return getTopStream().isLive();
+        return fLive;
     }
 
     @Override
@@ -579,8 +724,10 @@ public class CTFTraceReader implements AutoCloseable {
      * @since 1.0
      */
     public void populateIndex() throws CTFException {
-        for (CTFStreamInputReader sir : fPrio) {
-            sir.goToLastEvent();
+        for (int i = 0; i < fMergedReaders.length; i++) {
+            if (fMerge.isActive(i)) {
+                fMergedReaders[i].goToLastEvent();
+            }
         }
         seek(0);
 
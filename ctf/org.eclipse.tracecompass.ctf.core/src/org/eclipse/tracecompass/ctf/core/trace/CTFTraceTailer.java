@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import java.util.List;
+
+/**
+ * Follows the files of a trace while they are being written, for example by
+ * a LTTng session daemon or relay daemon, so that the trace does not have to
+ * be opened again to read the new events.
+ * <p>
+ * Each {@link #poll()} opens the new stream files and appends the packets
+ * which were completely written since the last poll to the index of their
+ * file. The readers in live mode (see {@link CTFTraceReader#setLive(boolean)})
+ * then see them, and {@link CTFTrace#getCurrentEndTime()} moves forward.
+ * <p>
+ * The caller polls again after {@link #getPollDelay()}. The delay is short
+ * while data is written, and doubles while the trace is idle, up to a maximum.
+ * The time between a packet being written and it being indexed is thus
+ * bounded by the maximum delay plus the duration of a poll. The actual bound
+ * of each poll which found new data is measured, see {@link #getMaxLatency()}.
+ *
+ * @since 1.1
+ */
+public class CTFTraceTailer {
+
+    /** Delay between two polls while data is written, in milliseconds */
+    public static final long MIN_POLL_DELAY = 10;
+
+    /** Default maximum delay between two polls, in milliseconds */
+    public static final long DEFAULT_MAX_POLL_DELAY = 1000;
+
+    private final CTFTrace fTrace;
+    private final long fMaxPollDelay;
+
+    /* Guarded by this */
+    private long fPollDelay = MIN_POLL_DELAY;
+    private long fLastPollStart;
+    private long fNbPolls = 0;
+    private long fNbPackets = 0;
+    private long fNbFiles = 0;
+    private long fLastLatency = 0;
+    private long fMaxLatency = 0;
+
+    /**
+     * Constructor, with the default maximum delay between two polls
+     *
+     * @param trace
+     *            The trace to follow, already opened
+     */
+    public CTFTraceTailer(CTFTrace trace) {
+        this(trace, DEFAULT_MAX_POLL_DELAY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace to follow, already opened
+     * @param maxPollDelay
+     *            The maximum delay between two polls, in milliseconds
+     */
+    public CTFTraceTailer(CTFTrace trace, long maxPollDelay) {
+        fTrace = trace;
+        fMaxPollDelay = Math.max(maxPollDelay, MIN_POLL_DELAY);
+        /* The trace was indexed when it was opened */
+        fLastPollStart = System.nanoTime();
+    }
+
+    /**
+     * Get the trace being followed
+     *
+     * @return The trace
+     */
+    public CTFTrace getTrace() {
+        return fTrace;
+    }
+
+    /**
+     * Open the new stream files and index the new packets of all the files.
+     *
+     * @return The number of packets added to the indexes
+     */
+    public synchronized int poll() {
+        long start = System.nanoTime();
+        List<CTFStreamInput> newInputs = fTrace.openNewStreamFiles();
+        int nbPackets = 0;
+        for (CTFStream stream : fTrace.getStreams()) {
+            for (CTFStreamInput input : stream.getStreamInputs()) {
+                nbPackets += input.updateIndex();
+            }
+        }
+        long end = System.nanoTime();
+
+        fNbPolls++;
+        if (nbPackets > 0 || !newInputs.isEmpty()) {
+            /*
+             * The new data was not there when the previous poll started, so
+             * it was written at most this long ago.
+             */
+            fLastLatency = end - fLastPollStart;
+            fMaxLatency = Math.max(fMaxLatency, fLastLatency);
+            fNbPackets += nbPackets;
+            fNbFiles += newInputs.size();
+            fPollDelay = MIN_POLL_DELAY;
+        } else {
+            fPollDelay = Math.min(fPollDelay * 2, fMaxPollDelay);
+        }
+        fLastPollStart = start;
+        return nbPackets;
+    }
+
+    /**
+     * Get the time up to which all the stream files are indexed. The packets
+     * of a file are written in order, so no event at or before this time can
+     * be added to the trace anymore, while events after it can still be added
+     * to the files which are behind. The tracers flush empty packets for the
+     * streams which are idle, so this time keeps moving forward.
+     *
+     * @return The time, in nanoseconds, or {@link Long#MIN_VALUE} if it is
+     *         not known, for example if a file has no packet yet
+     */
+    public long getSafeEndTime() {
+        long safeEnd = Long.MAX_VALUE;
+        for (CTFStream stream : fTrace.getStreams()) {
+            for (CTFStreamInput input : stream.getStreamInputs()) {
+                if (input.getIndex().isEmpty()) {
+                    return Long.MIN_VALUE;
+                }
+                safeEnd = Math.min(safeEnd, input.getTimestampEnd());
+            }
+        }
+        if (safeEnd == Long.MAX_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return fTrace.timestampCyclesToNanos(safeEnd);
+    }
+
+    /**
+     * Get the delay to wait before the next poll
+     *
+     * @return The delay, in milliseconds
+     */
+    public synchronized long getPollDelay() {
+        return fPollDelay;
+    }
+
+    /**
+     * Get the number of polls so far
+     *
+     * @return The number of polls
+     */
+    public synchronized long getNbPolls() {
+        return fNbPolls;
+    }
+
+    /**
+     * Get the number of packets indexed by the polls so far
+     *
+     * @return The number of packets
+     */
+    public synchronized long getNbPackets() {
+        return fNbPackets;
+    }
+
+    /**
+     * Get the number of stream files opened by the polls so far
+     *
+     * @return The number of files
+     */
+    public synchronized long getNbFiles() {
+        return fNbFiles;
+    }
+
+    /**
+     * Get the latency of the last poll which found new data, that is the
+     * longest time that data could have been written before it was indexed.
+     *
+     * @return The latency, in nanoseconds
+     */
+    public synchronized long getLastLatency() {
+        return fLastLatency;
+    }
+
+    /**
+     * Get the highest latency of the polls which found new data, see
+     * {@link #getLastLatency()}
+     *
+     * @return The latency, in nanoseconds
+     */
+    public synchronized long getMaxLatency() {
+        return fMaxLatency;
+    }
+}
@@ -16,7 +16,15 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -75,6 +83,29 @@ public class CTFTraceWriter {
      *            If a reading or writing error occurs
      */
     public void copyPackets(long startTime, long endTime, String newTracePath) throws CTFException {
+        copyPackets(startTime, endTime, newTracePath, Collections.<String> emptySet());
+    }
+
+    /**
+     * Copies packets from the relevant input to the output trace based on a
+     * given time range, leaving out the packets which only contain excluded
+     * events. The packets are copied whole, see
+     * {@link CTFStreamOutputWriter#copyPackets(long, long, Set)}. The trace
+     * files are copied in parallel, with at most one thread per processor.
+     *
+     * @param startTime
+     *            start time of packets to be included in output trace
+     * @param endTime
+     *            end time of packets to be included in the output trace
+     * @param newTracePath
+     *            the path of the new trace to be written
+     * @param excludedEvents
+     *            the names of the events to exclude
+     * @throws CTFException
+     *            If a reading or writing error occurs
+     * @since 1.1
+     */
+    public void copyPackets(long startTime, long endTime, String newTracePath, final Set<String> excludedEvents) throws CTFException {
         CTFTrace trace = fInTrace;
         if (trace != null) {
             long adjustedStart = startTime - trace.getClock().getClockOffset();
@@ -99,13 +130,57 @@ public class CTFTraceWriter {
             }
 
             // Copy packets
+            List<CTFStreamOutputWriter> writers = new ArrayList<>();
             for (CTFStream stream : trace.getStreams()) {
                 Set<CTFStreamInput> inputs = stream.getStreamInputs();
                 for (CTFStreamInput s : inputs) {
-                    CTFStreamOutputWriter streamOutputwriter = new CTFStreamOutputWriter(checkNotNull(s), out);
-                    streamOutputwriter.copyPackets(adjustedStart, adjustedEnd);
+                    writers.add(new CTFStreamOutputWriter(checkNotNull(s), out));
                 }
             }
+            copyPackets(writers, adjustedStart, adjustedEnd, excludedEvents);
+        }
+    }
+
+    /**
+     * Each trace file is copied independently, so the files are copied in
+     * parallel and the copy is bound by the disks rather than by one thread.
+     */
+    private static void copyPackets(List<CTFStreamOutputWriter> writers,
+            final long startTime, final long endTime, final Set<String> excludedEvents) throws CTFException {
+        int nbThreads = Math.min(writers.size(), Runtime.getRuntime().availableProcessors());
+        if (nbThreads <= 1) {
+            for (CTFStreamOutputWriter writer : writers) {
+                writer.copyPackets(startTime, endTime, excludedEvents);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(writers.size());
+        for (final CTFStreamOutputWriter writer : writers) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws CTFException {
+                    writer.copyPackets(startTime, endTime, excludedEvents);
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFException("Interrupted while copying packets", e); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CTFException) {
+                throw (CTFException) cause;
+            }
+            throw new CTFException("Error copying packets", cause); //$NON-NLS-1$
+        } finally {
+            executor.shutdown();
         }
     }
 }
@@ -15,6 +15,8 @@ package org.eclipse.tracecompass.internal.ctf.core.event.types;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -25,8 +27,8 @@ import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 
@@ -59,7 +61,7 @@ public final class ArrayDeclaration extends CompoundDeclaration {
      *
      * TODO: investigate performance
      */
-    private final transient ArrayListMultimap<String, String> fChildrenNames = ArrayListMultimap.create();
+    private final transient Map<String, List<String>> fChildrenNames = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -113,6 +115,10 @@ public final class ArrayDeclaration extends CompoundDeclaration {
 
             return new ByteArrayDefinition(this, definitionScope, fieldName, data);
         }
+        if (isPackedIntegers()) {
+            long[] values = IntegerArrayDefinition.read(input, (IntegerDeclaration) fElemType, fLength);
+            return new IntegerArrayDefinition(this, definitionScope, fieldName, values);
+        }
         @NonNull List<Definition> definitions = read(input, definitionScope, fieldName);
         return new ArrayDefinition(this, definitionScope, fieldName, definitions);
     }
@@ -125,12 +131,16 @@ public final class ArrayDeclaration extends CompoundDeclaration {
 
     private @NonNull List<Definition> read(@NonNull BitBuffer input, @Nullable IDefinitionScope definitionScope, String fieldName) throws CTFException {
         Builder<Definition> definitions = new ImmutableList.Builder<>();
-        if (!fChildrenNames.containsKey(fieldName)) {
+        List<String> elemNames = fChildrenNames.get(fieldName);
+        if (elemNames == null) {
+            /* Events can be read concurrently, only publish complete lists */
+            Builder<String> names = new ImmutableList.Builder<>();
             for (int i = 0; i < fLength; i++) {
-                fChildrenNames.put(fieldName, fieldName + '[' + i + ']');
+                names.add(fieldName + '[' + i + ']');
             }
+            elemNames = names.build();
+            fChildrenNames.put(fieldName, elemNames);
         }
-        List<String> elemNames = fChildrenNames.get(fieldName);
         for (int i = 0; i < fLength; i++) {
             String name = elemNames.get(i);
             if (name == null) {
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
+import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An array or sequence of integers, read in bulk. The values are kept in a
+ * primitive array, the integer definitions of the elements are only created
+ * when they are requested.
+ */
+@NonNullByDefault
+public final class IntegerArrayDefinition extends AbstractArrayDefinition {
+
+    private final long[] fValues;
+    private transient @Nullable List<Definition> fDefs;
+
+    /**
+     * Constructor
+     *
+     * @param declaration
+     *            the array or sequence declaration, with integer elements
+     * @param definitionScope
+     *            the definition scope
+     * @param fieldName
+     *            the field name
+     * @param values
+     *            the values of the elements
+     */
+    public IntegerArrayDefinition(CompoundDeclaration declaration,
+            @Nullable IDefinitionScope definitionScope,
+            String fieldName,
+            long[] values) {
+        super(declaration, definitionScope, fieldName);
+        fValues = values;
+    }
+
+    /**
+     * Read the values of packed integers, see
+     * {@link CompoundDeclaration#isPackedIntegers()}. The input must already
+     * be aligned.
+     *
+     * @param input
+     *            the buffer to read from
+     * @param elemDecl
+     *            the declaration of the elements
+     * @param length
+     *            the number of elements
+     * @return the values of the elements
+     * @throws CTFException
+     *             if the buffer is read beyond its end
+     */
+    static long[] read(BitBuffer input, IntegerDeclaration elemDecl, int length) throws CTFException {
+        long[] values = new long[length];
+        ByteOrder previousByteOrder = input.getByteOrder();
+        if (elemDecl.getByteOrder() != previousByteOrder) {
+            input.setByteOrder(elemDecl.getByteOrder());
+        }
+        try {
+            input.get(values, elemDecl.getLength(), elemDecl.isSigned());
+        } finally {
+            if (previousByteOrder != input.getByteOrder()) {
+                input.setByteOrder(previousByteOrder);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public int getLength() {
+        return fValues.length;
+    }
+
+    /**
+     * Get the value of an element, without creating its definition
+     *
+     * @param index
+     *            the index of the element
+     * @return the value of the element
+     */
+    public long getValue(int index) {
+        return fValues[index];
+    }
+
+    @Override
+    public synchronized List<Definition> getDefinitions() {
+        List<Definition> defs = fDefs;
+        if (defs == null) {
+            IntegerDeclaration elemDecl = (IntegerDeclaration) ((CompoundDeclaration) getDeclaration()).getElementType();
+            ImmutableList.Builder<Definition> builder = new ImmutableList.Builder<>();
+            for (int i = 0; i < fValues.length; i++) {
+                String fieldName = getFieldName() + '[' + i + ']';
+                builder.add(new IntegerDefinition(elemDecl, getDefinitionScope(), fieldName, fValues[i]));
+            }
+            defs = checkNotNull(builder.build());
+            fDefs = defs;
+        }
+        return defs;
+    }
+
+    @Override
+    public String toString() {
+        IntegerDeclaration elemDecl = (IntegerDeclaration) ((CompoundDeclaration) getDeclaration()).getElementType();
+        StringBuilder b = new StringBuilder();
+        b.append('[');
+        for (int i = 0; i < fValues.length; i++) {
+            if (i > 0) {
+                b.append(", "); //$NON-NLS-1$
+            }
+            if (elemDecl.isCharacter()) {
+                b.append((char) fValues[i]);
+            } else {
+                b.append(IntegerDefinition.formatNumber(fValues[i], elemDecl.getBase(), elemDecl.isSigned()));
+            }
+        }
+        b.append(']');
+        return checkNotNull(b.toString());
+    }
+}
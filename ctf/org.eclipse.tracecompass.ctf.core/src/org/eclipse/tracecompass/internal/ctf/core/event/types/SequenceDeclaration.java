@@ -13,8 +13,9 @@ package org.eclipse.tracecompass.internal.ctf.core.event.types;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -25,12 +26,11 @@ import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.Multimap;
 
 /**
  * A CTF sequence declaration.
@@ -48,7 +48,7 @@ public class SequenceDeclaration extends CompoundDeclaration {
 
     private final IDeclaration fElemType;
     private final String fLengthName;
-    private final transient Multimap<String, String> fPaths = ArrayListMultimap.create();
+    private final transient Map<String, List<String>> fPaths = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -123,11 +123,22 @@ public class SequenceDeclaration extends CompoundDeclaration {
             input.get(data);
             return new ByteArrayDefinition(this, definitionScope, fieldName, data);
         }
-        Collection<String> collection = fPaths.get(fieldName);
-        while (collection.size() < length) {
-            fPaths.put(fieldName, fieldName + '[' + collection.size() + ']');
+        if (isPackedIntegers() && length > 0) {
+            /* The elements are aligned like the first one */
+            alignRead(input);
+            long[] values = IntegerArrayDefinition.read(input, (IntegerDeclaration) fElemType, (int) length);
+            return new IntegerArrayDefinition(this, definitionScope, fieldName, values);
+        }
+        List<String> paths = fPaths.get(fieldName);
+        if (paths == null || paths.size() < length) {
+            /* Events can be read concurrently, only publish complete lists */
+            Builder<String> names = new ImmutableList.Builder<>();
+            for (int i = 0; i < length; i++) {
+                names.add(fieldName + '[' + i + ']');
+            }
+            paths = names.build();
+            fPaths.put(fieldName, paths);
         }
-        List<String> paths = (List<String>) fPaths.get(fieldName);
         Builder<Definition> definitions = new ImmutableList.Builder<>();
         for (int i = 0; i < length; i++) {
             /* We should not have inserted any null values */
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <b><u>StreamInputPacketCheckpoints</u></b>
+ * <p>
+ * Positions of some events inside a packet, so that a seek does not have to
+ * read all the events of the packet before the requested time.
+ * <p>
+ * There is a checkpoint every {@link #INTERVAL} events, starting with the
+ * first event of the packet. Each checkpoint has the timestamp of its event,
+ * the position of the event in the packet, and the last timestamp before the
+ * event, which is needed to rebuild the timestamps of compact event headers.
+ * <p>
+ * The checkpoints are added while the events are read, in order, so a packet
+ * may only have its first checkpoints. They are shared by all the readers of
+ * the trace file.
+ */
+public final class StreamInputPacketCheckpoints {
+
+    /** Number of events between two checkpoints, must be a power of 2 */
+    public static final int INTERVAL = 256;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final long[] EMPTY = new long[0];
+
+    /* Guarded by this */
+    private long[] fTimestamps = EMPTY;
+    private long[] fPositions = EMPTY;
+    private long[] fLastTimestamps = EMPTY;
+
+    /* Only written under the lock, read without it as a hint */
+    private volatile int fSize = 0;
+
+    /**
+     * Get the number of checkpoints
+     *
+     * @return The number of checkpoints
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Add the checkpoint of an event, if it is the next one missing.
+     *
+     * @param eventIndex
+     *            The index of the event in the packet, a multiple of
+     *            {@link #INTERVAL}
+     * @param timestamp
+     *            The timestamp of the event
+     * @param position
+     *            The position of the event in the packet, in bits
+     * @param lastTimestamp
+     *            The last timestamp read before the event
+     * @return true if the checkpoint was added, false if it was already known
+     *         or if the previous ones are missing
+     */
+    public boolean add(int eventIndex, long timestamp, long position, long lastTimestamp) {
+        int index = eventIndex / INTERVAL;
+        if (index != fSize) {
+            return false;
+        }
+        synchronized (this) {
+            if (index != fSize) {
+                return false;
+            }
+            if (index == fTimestamps.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, index * 2);
+                fTimestamps = Arrays.copyOf(fTimestamps, capacity);
+                fPositions = Arrays.copyOf(fPositions, capacity);
+                fLastTimestamps = Arrays.copyOf(fLastTimestamps, capacity);
+            }
+            fTimestamps[index] = timestamp;
+            fPositions[index] = position;
+            fLastTimestamps[index] = lastTimestamp;
+            fSize = index + 1;
+            return true;
+        }
+    }
+
+    /**
+     * Find the last checkpoint from which a seek can start. All the events
+     * before it are before the requested timestamp.
+     *
+     * @param timestamp
+     *            The timestamp to seek to
+     * @return The checkpoint, or null if the seek has to start at the
+     *         beginning of the packet
+     */
+    public synchronized @Nullable Checkpoint search(long timestamp) {
+        /* The last checkpoint with a timestamp lower than the requested one */
+        int low = 1;
+        int high = fSize - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fTimestamps[mid] < timestamp) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found == 0) {
+            return null;
+        }
+        return new Checkpoint(found * INTERVAL, fPositions[found], fLastTimestamps[found]);
+    }
+
+    /**
+     * Get a copy of all the checkpoints, to save them
+     *
+     * @return The checkpoints, in order, as (timestamp, position, last
+     *         timestamp) triplets
+     */
+    public synchronized long[] toArray() {
+        long[] array = new long[fSize * 3];
+        for (int i = 0; i < fSize; i++) {
+            array[i * 3] = fTimestamps[i];
+            array[i * 3 + 1] = fPositions[i];
+            array[i * 3 + 2] = fLastTimestamps[i];
+        }
+        return array;
+    }
+
+    /**
+     * Position of an event in a packet, to start reading from
+     */
+    public static final class Checkpoint {
+
+        private final int fEventIndex;
+        private final long fPosition;
+        private final long fLastTimestamp;
+
+        private Checkpoint(int eventIndex, long position, long lastTimestamp) {
+            fEventIndex = eventIndex;
+            fPosition = position;
+            fLastTimestamp = lastTimestamp;
+        }
+
+        /**
+         * @return The index of the event in the packet
+         */
+        public int getEventIndex() {
+            return fEventIndex;
+        }
+
+        /**
+         * @return The position of the event in the packet, in bits
+         */
+        public long getPosition() {
+            return fPosition;
+        }
+
+        /**
+         * @return The last timestamp read before the event
+         */
+        public long getLastTimestamp() {
+            return fLastTimestamp;
+        }
+    }
+}
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.trace;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -88,6 +89,11 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
      */
     private final Map<String, Object> fAttributes = new HashMap<>();
 
+    /**
+     * Positions of some events of the packet, for seeking
+     */
+    private final StreamInputPacketCheckpoints fCheckpoints = new StreamInputPacketCheckpoints();
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -198,6 +204,40 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
         fOffsetBytes = dataOffsetBits / Byte.SIZE;
     }
 
+    /**
+     * Constructor for an entry that was already parsed, for example read from
+     * a saved index. The attributes have to be added separately.
+     *
+     * @param dataOffsetBits
+     *            offset in the file for the start of data in bits
+     * @param packetSizeBits
+     *            packet size, in bits
+     * @param contentSizeBits
+     *            content size, in bits
+     * @param timestampBegin
+     *            begin timestamp
+     * @param timestampEnd
+     *            end timestamp
+     * @param lostEvents
+     *            number of events lost in this packet
+     * @param target
+     *            the target being traced, can be null
+     * @param targetId
+     *            the number of the target being traced
+     */
+    public StreamInputPacketIndexEntry(long dataOffsetBits, long packetSizeBits, long contentSizeBits,
+            long timestampBegin, long timestampEnd, long lostEvents, String target, long targetId) {
+        fOffsetBits = dataOffsetBits;
+        fOffsetBytes = dataOffsetBits / Byte.SIZE;
+        fPacketSizeBits = packetSizeBits;
+        fContentSizeBits = contentSizeBits;
+        fTimestampBegin = timestampBegin;
+        fTimestampEnd = timestampEnd;
+        fLostEvents = lostEvents;
+        fTarget = target;
+        fTargetID = targetId;
+    }
+
     private static class Target {
         public String string;
         public long number;
@@ -299,6 +339,24 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
         return fAttributes.get(field);
     }
 
+    /**
+     * Get all the attributes of this index entry
+     *
+     * @return An unmodifiable view of the attributes, by name
+     */
+    public Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(fAttributes);
+    }
+
+    /**
+     * Get the checkpoints of the events of this packet
+     *
+     * @return The checkpoints, filled as the events are read
+     */
+    public StreamInputPacketCheckpoints getCheckpoints() {
+        return fCheckpoints;
+    }
+
     @Override
     public String getTarget() {
         return fTarget;
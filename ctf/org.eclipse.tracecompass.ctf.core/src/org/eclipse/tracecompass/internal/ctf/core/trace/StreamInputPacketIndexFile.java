@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+
+/**
+ * <b><u>StreamInputPacketIndexFile</u></b>
+ * <p>
+ * Persistent copy of the packet index of a trace file, so that the headers of
+ * all the packets do not have to be read again every time the trace is opened.
+ * <p>
+ * The index is saved in a hidden directory of the trace directory, which is
+ * skipped when looking for the trace files. It is only valid if the trace file
+ * still has the same size and modification time, and if the metadata of the
+ * trace has the same checksum as when the index was saved. Otherwise, it is
+ * ignored and will be overwritten by the next indexing.
+ * <p>
+ * The checkpoints found in the packets so far (see
+ * {@link StreamInputPacketCheckpoints}) are saved with their packet.
+ */
+public final class StreamInputPacketIndexFile {
+
+    private static final String DIRECTORY = ".index"; //$NON-NLS-1$
+    private static final String SUFFIX = ".idx"; //$NON-NLS-1$
+    private static final String TMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0x43544649; /* "CTFI" */
+    private static final int VERSION = 2;
+
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_DOUBLE = 1;
+    private static final byte TYPE_STRING = 2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private StreamInputPacketIndexFile() {
+    }
+
+    /**
+     * Compute the checksum of a metadata file, used to invalidate the index
+     * files when the metadata changes.
+     *
+     * @param metadataFile
+     *            The metadata file of the trace
+     * @return The checksum, or null if the file could not be read
+     */
+    public static @Nullable Long getChecksum(File metadataFile) {
+        if (!metadataFile.isFile()) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(metadataFile)) {
+            int read = in.read(buffer);
+            while (read >= 0) {
+                crc.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Read the saved packet index of a trace file.
+     *
+     * @param streamFile
+     *            The trace file
+     * @param metadataChecksum
+     *            The checksum of the current metadata of the trace
+     * @return The entries of the index, sorted and covering the whole trace
+     *         file, or null if there is no valid saved index
+     */
+    public static @Nullable List<ICTFPacketDescriptor> read(File streamFile, long metadataChecksum) {
+        File indexFile = getIndexFile(streamFile);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        long fileSize = streamFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+                    in.readLong() != fileSize ||
+                    in.readLong() != streamFile.lastModified() ||
+                    in.readLong() != metadataChecksum) {
+                return null;
+            }
+            int nbEntries = in.readInt();
+            if (nbEntries < 0) {
+                return null;
+            }
+            List<ICTFPacketDescriptor> entries = new ArrayList<>(nbEntries);
+            long nextOffsetBits = 0;
+            long lastBegin = Long.MIN_VALUE;
+            for (int i = 0; i < nbEntries; i++) {
+                StreamInputPacketIndexEntry entry = readEntry(in);
+                /* The packets must follow each other, in timestamp order */
+                if (entry.getOffsetBits() != nextOffsetBits ||
+                        entry.getPacketSizeBits() <= 0 ||
+                        entry.getTimestampBegin() > entry.getTimestampEnd() ||
+                        entry.getTimestampBegin() < lastBegin) {
+                    return null;
+                }
+                nextOffsetBits += entry.getPacketSizeBits();
+                lastBegin = entry.getTimestampBegin();
+                entries.add(entry);
+            }
+            if (nextOffsetBits != fileSize * Byte.SIZE) {
+                return null;
+            }
+            return entries;
+        } catch (IOException e) {
+            /* Corrupted or truncated file, the index will be rebuilt */
+            return null;
+        }
+    }
+
+    /**
+     * Save the packet index of a trace file. The index must cover the whole
+     * file. If the index file cannot be written, for example if the trace
+     * directory is read-only, nothing is saved.
+     *
+     * @param streamFile
+     *            The trace file
+     * @param metadataChecksum
+     *            The checksum of the current metadata of the trace
+     * @param index
+     *            The complete index of the trace file
+     */
+    public static void write(File streamFile, long metadataChecksum, StreamInputPacketIndex index) {
+        File indexFile = getIndexFile(streamFile);
+        File directory = indexFile.getParentFile();
+        /* Another trace file may be creating the directory at the same time */
+        if (!(directory.mkdir() || directory.isDirectory())) {
+            return;
+        }
+        File tmpFile = new File(directory, indexFile.getName() + TMP_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(streamFile.length());
+                out.writeLong(streamFile.lastModified());
+                out.writeLong(metadataChecksum);
+                out.writeInt(index.size());
+                for (int i = 0; i < index.size(); i++) {
+                    writeEntry(out, index.getElement(i));
+                }
+            }
+            /* Replace the previous index only once the new one is complete */
+            if (!tmpFile.renameTo(indexFile)) {
+                indexFile.delete();
+                if (!tmpFile.renameTo(indexFile)) {
+                    tmpFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+        }
+    }
+
+    private static File getIndexFile(File streamFile) {
+        return new File(new File(streamFile.getAbsoluteFile().getParentFile(), DIRECTORY), streamFile.getName() + SUFFIX);
+    }
+
+    private static StreamInputPacketIndexEntry readEntry(DataInputStream in) throws IOException {
+        StreamInputPacketIndexEntry entry = readDescriptor(in);
+        StreamInputPacketCheckpoints checkpoints = entry.getCheckpoints();
+        int nbCheckpoints = in.readInt();
+        for (int i = 0; i < nbCheckpoints; i++) {
+            long timestamp = in.readLong();
+            long position = in.readLong();
+            long lastTimestamp = in.readLong();
+            if (position < 0 || position > entry.getContentSizeBits()) {
+                throw new IOException("Invalid checkpoint position " + position); //$NON-NLS-1$
+            }
+            checkpoints.add(i * StreamInputPacketCheckpoints.INTERVAL, timestamp, position, lastTimestamp);
+        }
+        return entry;
+    }
+
+    private static StreamInputPacketIndexEntry readDescriptor(DataInputStream in) throws IOException {
+        long offsetBits = in.readLong();
+        long packetSizeBits = in.readLong();
+        long contentSizeBits = in.readLong();
+        long timestampBegin = in.readLong();
+        long timestampEnd = in.readLong();
+        long lostEvents = in.readLong();
+        String target = in.readBoolean() ? in.readUTF() : null;
+        long targetId = in.readLong();
+        StreamInputPacketIndexEntry entry = new StreamInputPacketIndexEntry(offsetBits, packetSizeBits,
+                contentSizeBits, timestampBegin, timestampEnd, lostEvents, target, targetId);
+
+        int nbAttributes = in.readInt();
+        for (int i = 0; i < nbAttributes; i++) {
+            String field = in.readUTF();
+            byte type = in.readByte();
+            switch (type) {
+            case TYPE_LONG:
+                entry.addAttribute(field, in.readLong());
+                break;
+            case TYPE_DOUBLE:
+                entry.addAttribute(field, in.readDouble());
+                break;
+            case TYPE_STRING:
+                entry.addAttribute(field, in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown attribute type " + type); //$NON-NLS-1$
+            }
+        }
+        return entry;
+    }
+
+    private static void writeEntry(DataOutputStream out, ICTFPacketDescriptor entry) throws IOException {
+        if (!(entry instanceof StreamInputPacketIndexEntry)) {
+            throw new IOException("Unsupported packet descriptor"); //$NON-NLS-1$
+        }
+        writeDescriptor(out, (StreamInputPacketIndexEntry) entry);
+        long[] checkpoints = ((StreamInputPacketIndexEntry) entry).getCheckpoints().toArray();
+        out.writeInt(checkpoints.length / 3);
+        for (long value : checkpoints) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeDescriptor(DataOutputStream out, StreamInputPacketIndexEntry entry) throws IOException {
+        out.writeLong(entry.getOffsetBits());
+        out.writeLong(entry.getPacketSizeBits());
+        out.writeLong(entry.getContentSizeBits());
+        out.writeLong(entry.getTimestampBegin());
+        out.writeLong(entry.getTimestampEnd());
+        out.writeLong(entry.getLostEvents());
+        String target = entry.getTarget();
+        out.writeBoolean(target != null);
+        if (target != null) {
+            out.writeUTF(target);
+        }
+        out.writeLong(entry.getTargetId());
+
+        Map<String, Object> attributes = entry.getAttributes();
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            out.writeUTF(attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF((String) value);
+            } else {
+                throw new IOException("Unsupported attribute value " + value); //$NON-NLS-1$
+            }
+        }
+    }
+}
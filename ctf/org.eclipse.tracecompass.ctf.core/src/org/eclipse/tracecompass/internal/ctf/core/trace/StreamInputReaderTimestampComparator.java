@@ -15,7 +15,7 @@ package org.eclipse.tracecompass.internal.ctf.core.trace;
 import java.io.Serializable;
 import java.util.Comparator;
 
-import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFEventCursor;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 
 /**
@@ -43,8 +43,8 @@ public class StreamInputReaderTimestampComparator implements
      */
     @Override
     public int compare(CTFStreamInputReader a, CTFStreamInputReader b) {
-        EventDefinition event_a = a.getCurrentEvent();
-        EventDefinition event_b = b.getCurrentEvent();
+        CTFEventCursor event_a = a.getCurrentEventCursor();
+        CTFEventCursor event_b = b.getCurrentEventCursor();
 
         long ta = event_a.getTimestamp();
         long tb = event_b.getTimestamp();
@@ -13,9 +13,11 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.tests.temp.headless;
 
+import java.util.List;
 import java.util.Vector;
 
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventBatchRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
@@ -24,9 +26,10 @@ import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
 
 /**
- * Benchmark the event request subsystem of TMF.
+ * Benchmark the event request subsystem of TMF. The events are delivered to
+ * the request in chunks.
  */
-public class RequestBenchmark extends TmfEventRequest {
+public class RequestBenchmark extends TmfEventRequest implements ITmfEventBatchRequest {
 
     private RequestBenchmark(final Class<? extends ITmfEvent> dataType,
             final TmfTimeRange range, final int nbRequested) {
@@ -90,6 +93,14 @@ public class RequestBenchmark extends TmfEventRequest {
 
     }
 
+    @Override
+    public void handleData(final List<ITmfEvent> events) {
+        for (ITmfEvent event : events) {
+            super.handleData(event);
+        }
+        nbEvent += events.size();
+    }
+
     static long prev;
     static long done = 0;
     @Override
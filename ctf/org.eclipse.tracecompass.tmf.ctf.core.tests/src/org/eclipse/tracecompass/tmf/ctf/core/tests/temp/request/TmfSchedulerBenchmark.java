@@ -28,6 +28,10 @@ import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
  * creation of the request and the beginning of its execution). The second one
  * is the average waiting time for a request. The last one is the total
  * completion time.
+ *
+ * The requests run in time slots by default. Run with
+ * -Dorg.eclipse.tracecompass.tmf.core.request.concurrent=true to measure the
+ * concurrent scheduler instead.
  */
 public class TmfSchedulerBenchmark {
 
@@ -38,6 +42,7 @@ public class TmfSchedulerBenchmark {
     private static final int NUM_LOOPS = 10;
     private static final int NANOSECONDS_IN_MILLISECONDS = 1000000;
     private static final int NANOSECONDS_IN_SECONDS = 1000000000;
+    private static final String CONCURRENT_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.concurrent";
 
     // ------------------------------------------------------------------------
     // Attributes
@@ -58,6 +63,7 @@ public class TmfSchedulerBenchmark {
     public static void main(final String[] args) {
         trace.indexTrace(true);
         pw.println("---------- Benchmark started ----------");
+        pw.println(Boolean.getBoolean(CONCURRENT_PROPERTY) ? "Concurrent scheduler" : "Time slot scheduler");
         latencyBenchmark();
         averageWaitingTime();
         completedTime();
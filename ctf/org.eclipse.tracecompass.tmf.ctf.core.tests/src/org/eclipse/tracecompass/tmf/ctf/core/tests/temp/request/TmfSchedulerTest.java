@@ -22,11 +22,15 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSelectionRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -74,6 +78,10 @@ public class TmfSchedulerTest {
     private int fForegroundId = 0;
     private int fBackgroundId = 0;
 
+    /* More requests than threads, so that the requests are preempted */
+    private final int fNbConcurrentRequests = Runtime.getRuntime().availableProcessors() + 1;
+    private final AtomicInteger fNbCompleted = new AtomicInteger();
+
     /**
      * Perform pre-test initialization.
      *
@@ -390,10 +398,172 @@ public class TmfSchedulerTest {
         assertEquals(expectedOrder, fOrderList.subList(0, expectedOrder.size()));
     }
 
+    // ------------------------------------------------------------------------
+    // Concurrent mode
+    // ------------------------------------------------------------------------
+
+    /**
+     * More requests than threads in concurrent mode. The requests are
+     * preempted, so they all start before any of them completes, and each
+     * one still gets the same events, in order, as a request which is not
+     * preempted.
+     */
+    @Test
+    public void concurrentPreemptedRequests() {
+        CheckedRequest reference = new CheckedRequest(ExecutionType.FOREGROUND);
+        fixture.sendRequest(reference);
+        try {
+            reference.waitForCompletion();
+        } catch (InterruptedException e) {
+            fail();
+        }
+        assertEquals(NB_EVENTS_TRACE, reference.getNbEvents());
+        fNbCompleted.set(0);
+
+        TmfRequestExecutor executor = new TmfRequestExecutor(true);
+        List<CheckedRequest> requests = new ArrayList<>();
+        for (int i = 0; i < fNbConcurrentRequests; i++) {
+            CheckedRequest request = new CheckedRequest(ExecutionType.FOREGROUND);
+            requests.add(request);
+            executor.execute(new TmfEventThread(fixture, request));
+        }
+        try {
+            for (CheckedRequest request : requests) {
+                request.waitForCompletion();
+            }
+        } catch (InterruptedException e) {
+            fail();
+        } finally {
+            executor.stop();
+        }
+        for (CheckedRequest request : requests) {
+            assertTrue(request.isStartedBeforeCompletions());
+            assertTrue(request.isInOrder());
+            assertEquals(reference.getNbEvents(), request.getNbEvents());
+            assertEquals(reference.getChecksum(), request.getChecksum());
+        }
+    }
+
+    /**
+     * A short foreground request sent while all the threads are busy with
+     * background requests in concurrent mode should finish first
+     */
+    @Test
+    public void concurrentForegroundPreferred() {
+        TmfRequestExecutor executor = new TmfRequestExecutor(true);
+        List<CheckedRequest> backgrounds = new ArrayList<>();
+        try {
+            for (int i = 0; i < fNbConcurrentRequests; i++) {
+                CheckedRequest background = new CheckedRequest(ExecutionType.BACKGROUND);
+                backgrounds.add(background);
+                executor.execute(new TmfEventThread(fixture, background));
+            }
+            ForegroundRequest foreground = new ForegroundRequest(fForegroundTimeRange);
+            executor.execute(new TmfEventThread(fixture, foreground));
+            foreground.waitForCompletion();
+            assertEquals(NB_EVENTS_TIME_RANGE, foreground.getNbEvents());
+            for (CheckedRequest background : backgrounds) {
+                assertFalse(background.isCompleted());
+            }
+        } catch (InterruptedException e) {
+            fail();
+        } finally {
+            executor.stop();
+        }
+    }
+
+    /**
+     * Stopping the executor in concurrent mode cancels the running requests
+     * and the preempted ones
+     */
+    @Test
+    public void concurrentStop() {
+        TmfRequestExecutor executor = new TmfRequestExecutor(true);
+        List<CheckedRequest> requests = new ArrayList<>();
+        for (int i = 0; i < fNbConcurrentRequests; i++) {
+            CheckedRequest request = new CheckedRequest(ExecutionType.FOREGROUND);
+            requests.add(request);
+            executor.execute(new TmfEventThread(fixture, request));
+        }
+        try {
+            /* Once they all started, at least one of them is preempted */
+            for (CheckedRequest request : requests) {
+                request.waitForStart();
+            }
+            executor.stop();
+            for (CheckedRequest request : requests) {
+                request.waitForCompletion();
+            }
+        } catch (InterruptedException e) {
+            fail();
+        }
+        for (CheckedRequest request : requests) {
+            assertTrue(request.isCancelled());
+            assertTrue(request.getNbEvents() < NB_EVENTS_TRACE);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Helper methods
     // ------------------------------------------------------------------------
 
+    /**
+     * Request for the entire trace, which checks that it gets the events in
+     * order, and computes a checksum of their timestamps
+     */
+    private class CheckedRequest extends TmfEventRequest {
+        private int nbEvents = 0;
+        private long checksum = 0;
+        private long lastTime = Long.MIN_VALUE;
+        private boolean inOrder = true;
+        private boolean startedBeforeCompletions = false;
+
+        CheckedRequest(ExecutionType execType) {
+            super(fixture.getEventType(),
+                    TmfTimeRange.ETERNITY,
+                    0,
+                    ITmfEventRequest.ALL_DATA,
+                    execType);
+        }
+
+        @Override
+        public void handleData(final ITmfEvent event) {
+            super.handleData(event);
+            if (nbEvents == 0) {
+                startedBeforeCompletions = (fNbCompleted.get() == 0);
+            }
+            long time = event.getTimestamp().getValue();
+            if (time < lastTime) {
+                inOrder = false;
+            }
+            lastTime = time;
+            checksum = checksum * 31 + time;
+            ++nbEvents;
+        }
+
+        @Override
+        public void handleCompleted() {
+            fNbCompleted.incrementAndGet();
+            super.handleCompleted();
+        }
+
+        public int getNbEvents() {
+            return nbEvents;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+
+        public boolean isInOrder() {
+            return inOrder;
+        }
+
+        public boolean isStartedBeforeCompletions() {
+            return startedBeforeCompletions;
+        }
+    }
+
     private class BackgroundRequest extends TmfEventRequest {
         private int nbEvents = 0;
         private String backgroundName;
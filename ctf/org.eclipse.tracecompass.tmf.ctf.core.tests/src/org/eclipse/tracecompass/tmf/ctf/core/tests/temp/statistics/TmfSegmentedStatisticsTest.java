@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.temp.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsEventTypesModule;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsTotalsModule;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compare the statistics built in parallel segments with the ones built
+ * sequentially.
+ */
+public class TmfSegmentedStatisticsTest {
+
+    /* The property of the minimum number of events in a segment */
+    private static final String MIN_EVENTS_PER_SEGMENT_PROPERTY = "org.eclipse.tracecompass.tmf.core.statesystem.minEventsPerSegment";
+
+    private static final String SEGMENTED = "segmented-";
+    private static final String SEQUENTIAL = "sequential-";
+
+    private static final CtfTmfTestTrace testTrace = CtfTmfTestTrace.KERNEL_VM;
+
+    private ITmfTrace fTrace;
+    private final List<TmfStateSystemAnalysisModule> fModules = new ArrayList<>();
+
+    /**
+     * Class setup
+     */
+    @BeforeClass
+    public static void setUpClass() {
+        assumeTrue(testTrace.exists());
+        /* The histories are built in two segments */
+        assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+    }
+
+    /**
+     * Test setup
+     */
+    @Before
+    public void setUp() {
+        fTrace = testTrace.getTrace();
+        fTrace.indexTrace(true);
+        deleteHistories();
+    }
+
+    /**
+     * Test cleanup
+     */
+    @After
+    public void tearDown() {
+        System.clearProperty(MIN_EVENTS_PER_SEGMENT_PROPERTY);
+        for (TmfStateSystemAnalysisModule module : fModules) {
+            module.dispose();
+        }
+        deleteHistories();
+        testTrace.dispose();
+    }
+
+    private void deleteHistories() {
+        File[] files = new File(TmfTraceManager.getSupplementaryFileDir(fTrace)).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(SEGMENTED) || file.getName().startsWith(SEQUENTIAL)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Test the totals state system
+     *
+     * @throws Exception
+     *             If a query fails
+     */
+    @Test
+    public void testTotals() throws Exception {
+        ITmfStateSystem sequential = build(new TotalsModule(SEQUENTIAL), Long.MAX_VALUE);
+        ITmfStateSystem segmented = build(new TotalsModule(SEGMENTED), fTrace.getNbEvents() / 2);
+        assertSameHistory(sequential, segmented);
+    }
+
+    /**
+     * Test the event types state system, and an event type which is not
+     * counted at the boundary between the two segments
+     *
+     * @throws Exception
+     *             If a query fails
+     */
+    @Test
+    public void testEventTypes() throws Exception {
+        ITmfStateSystem sequential = build(new EventTypesModule(SEQUENTIAL), Long.MAX_VALUE);
+        ITmfStateSystem segmented = build(new EventTypesModule(SEGMENTED), fTrace.getNbEvents() / 2);
+        assertSameHistory(sequential, segmented);
+
+        /* The second segment starts at the event in the middle of the trace */
+        ITmfContext context = fTrace.seekEvent(fTrace.getNbEvents() / 2);
+        ITmfEvent event = fTrace.getNext(context);
+        context.dispose();
+        assertNotNull(event);
+        long boundary = TmfEvent.getTimestampNanos(event);
+
+        boolean found = false;
+        for (ITmfStateInterval interval : sequential.queryFullState(boundary)) {
+            if (!interval.getStateValue().isNull() && interval.getStartTime() < boundary) {
+                String[] path = sequential.getFullAttributePathArray(interval.getAttribute());
+                ITmfStateInterval merged = segmented.querySingleState(boundary, segmented.getQuarkAbsolute(path));
+                assertEquals(interval.getStartTime(), merged.getStartTime());
+                assertEquals(interval.getEndTime(), merged.getEndTime());
+                assertEquals(interval.getStateValue(), merged.getStateValue());
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    private ITmfStateSystem build(TmfStateSystemAnalysisModule module, long minEventsPerSegment) {
+        System.setProperty(MIN_EVENTS_PER_SEGMENT_PROPERTY, Long.toString(minEventsPerSegment));
+        try {
+            module.setTrace(fTrace);
+        } catch (TmfAnalysisException e) {
+            fail();
+        }
+        fModules.add(module);
+        module.schedule();
+        assertTrue(module.waitForCompletion());
+        ITmfStateSystem ss = module.getStateSystem();
+        assertNotNull(ss);
+        return ss;
+    }
+
+    private static void assertSameHistory(ITmfStateSystem expected, ITmfStateSystem actual)
+            throws AttributeNotFoundException, StateSystemDisposedException {
+        assertEquals(expected.getNbAttributes(), actual.getNbAttributes());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getCurrentEndTime(), actual.getCurrentEndTime());
+
+        for (int quark = 0; quark < expected.getNbAttributes(); quark++) {
+            String path = expected.getFullAttributePath(quark);
+            int actualQuark = actual.getQuarkAbsolute(expected.getFullAttributePathArray(quark));
+            List<ITmfStateInterval> expectedIntervals = StateSystemUtils.queryHistoryRange(expected, quark,
+                    expected.getStartTime(), expected.getCurrentEndTime());
+            List<ITmfStateInterval> actualIntervals = StateSystemUtils.queryHistoryRange(actual, actualQuark,
+                    actual.getStartTime(), actual.getCurrentEndTime());
+
+            assertEquals(path, expectedIntervals.size(), actualIntervals.size());
+            for (int i = 0; i < expectedIntervals.size(); i++) {
+                ITmfStateInterval expectedInterval = expectedIntervals.get(i);
+                ITmfStateInterval actualInterval = actualIntervals.get(i);
+                assertEquals(path, expectedInterval.getStartTime(), actualInterval.getStartTime());
+                assertEquals(path, expectedInterval.getEndTime(), actualInterval.getEndTime());
+                assertEquals(path, expectedInterval.getStateValue(), actualInterval.getStateValue());
+            }
+        }
+    }
+
+    private static class TotalsModule extends TmfStatisticsTotalsModule {
+        private final String fPrefix;
+
+        public TotalsModule(String prefix) {
+            fPrefix = prefix;
+        }
+
+        @Override
+        protected String getSsFileName() {
+            return fPrefix + super.getSsFileName();
+        }
+    }
+
+    private static class EventTypesModule extends TmfStatisticsEventTypesModule {
+        private final String fPrefix;
+
+        public EventTypesModule(String prefix) {
+            fPrefix = prefix;
+        }
+
+        @Override
+        protected String getSsFileName() {
+            return fPrefix + super.getSsFileName();
+        }
+    }
+}
@@ -16,6 +16,7 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.equalsNullable;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFEventCursor;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
@@ -70,8 +71,10 @@ public class CtfIterator extends CTFTraceReader
      */
     public CtfIterator(CTFTrace ctfTrace, CtfTmfTrace ctfTmfTrace) throws CTFException {
         super(ctfTrace);
+        setPipelined(true);
+        setLive(ctfTmfTrace.isFollowing());
         fTrace = ctfTmfTrace;
-        if (hasMoreEvents()) {
+        if (hasCurrentEvent()) {
             fCurLocation = new CtfLocation(ctfTmfTrace.getStartTime());
             fCurRank = 0;
         } else {
@@ -99,9 +102,11 @@ public class CtfIterator extends CTFTraceReader
     public CtfIterator(CTFTrace ctfTrace, CtfTmfTrace ctfTmfTrace, CtfLocationInfo ctfLocationData, long rank)
             throws CTFException {
         super(ctfTrace);
+        setPipelined(true);
+        setLive(ctfTmfTrace.isFollowing());
 
         this.fTrace = ctfTmfTrace;
-        if (this.hasMoreEvents()) {
+        if (hasCurrentEvent()) {
             this.fCurLocation = new CtfLocation(ctfLocationData);
             if (this.getCurrentEvent().getTimestamp().getValue() != ctfLocationData.getTimestamp()) {
                 this.seek(ctfLocationData);
@@ -122,6 +127,15 @@ public class CtfIterator extends CTFTraceReader
         fCurRank = UNKNOWN_RANK;
     }
 
+    /*
+     * When the trace is followed, the readers are in live mode and the top
+     * one can be waiting for a packet which is not completely written yet.
+     */
+    private boolean hasCurrentEvent() {
+        final CTFStreamInputReader top = super.getTopStream();
+        return (top != null) && (top.getCurrentEventCursor() != null);
+    }
+
     // ------------------------------------------------------------------------
     // Accessors
     // ------------------------------------------------------------------------
@@ -141,8 +155,8 @@ public class CtfIterator extends CTFTraceReader
      * @return CtfTmfEvent The current event
      */
     public synchronized CtfTmfEvent getCurrentEvent() {
-        final CTFStreamInputReader top = super.getPrio().peek();
-        if (top != null) {
+        final CTFStreamInputReader top = super.getTopStream();
+        if (top != null && top.getCurrentEventCursor() != null) {
             if (!fCurLocation.equals(fPreviousLocation)) {
                 fPreviousLocation = fCurLocation;
                 fPreviousEvent = CtfTmfEventFactory.createEvent(top.getCurrentEvent(),
@@ -160,9 +174,10 @@ public class CtfIterator extends CTFTraceReader
      * @return long The current timestamp location
      */
     public synchronized long getCurrentTimestamp() {
-        final CTFStreamInputReader top = super.getPrio().peek();
-        if (top != null) {
-            long ts = top.getCurrentEvent().getTimestamp();
+        final CTFStreamInputReader top = super.getTopStream();
+        final CTFEventCursor cursor = (top != null) ? top.getCurrentEventCursor() : null;
+        if (cursor != null) {
+            long ts = cursor.getTimestamp();
             return fTrace.timestampCyclesToNanos(ts);
         }
         return 0;
@@ -181,7 +196,15 @@ public class CtfIterator extends CTFTraceReader
 
         /* Avoid the cost of seeking at the current location. */
         if (fCurLocation.getLocationInfo().equals(ctfLocationData)) {
-            return super.hasMoreEvents();
+            return hasCurrentEvent();
+        }
+        if (isLive()) {
+            /* Read the stream files created since the last seek */
+            try {
+                update();
+            } catch (CTFException e) {
+                Activator.getDefault().logError(e.getMessage(), e);
+            }
         }
         /* Update location to make sure the current event is updated */
         fCurLocation = new CtfLocation(ctfLocationData);
@@ -247,7 +270,7 @@ public class CtfIterator extends CTFTraceReader
             Activator.getDefault().logError(e.getMessage(), e);
         }
 
-        if (ret) {
+        if (ret && hasCurrentEvent()) {
             long timestamp = fCurLocation.getLocationInfo().getTimestamp();
             final long timestampValue = getCurrentTimestamp();
             if (timestamp == timestampValue) {
@@ -258,6 +281,7 @@ public class CtfIterator extends CTFTraceReader
             }
         } else {
             fCurLocation = NULL_LOCATION;
+            ret = false;
         }
         return ret;
     }
@@ -63,6 +63,7 @@ public class CtfTmfEvent extends TmfEvent
     private final IEventDeclaration fEventDeclaration;
     private final @NonNull EventDefinition fEvent;
     private final String fReference;
+    private final long fTimestampNanos;
 
     /** Lazy-loaded field containing the event's payload */
     private ITmfEventField fContent;
@@ -98,6 +99,7 @@ public class CtfTmfEvent extends TmfEvent
         fEventName = declaration.getName();
         fEvent = eventDefinition;
         fReference = fileName;
+        fTimestampNanos = timestamp.getValue();
     }
 
     /**
@@ -123,6 +125,7 @@ public class CtfTmfEvent extends TmfEvent
         fEventDeclaration = null;
         fEvent = EventDefinition.NULL_EVENT;
         fReference = null;
+        fTimestampNanos = -1;
     }
 
     /**
@@ -177,6 +180,14 @@ public class CtfTmfEvent extends TmfEvent
         return (CtfTmfTrace) super.getTrace();
     }
 
+    /**
+     * @since 1.1
+     */
+    @Override
+    public long getTimestampNanos() {
+        return fTimestampNanos;
+    }
+
     @Override
     public ITmfEventType getType() {
         if (fCtfTmfEventType == null) {
@@ -37,6 +37,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.VariantDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.IntegerArrayDefinition;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.ctf.core.CtfEnumPair;
@@ -144,14 +145,22 @@ public abstract class CtfTmfEventField extends TmfEventField {
                     field = new CTFStringField(fieldName, arrayDef.toString());
                 } else {
                     /* it's a CTFIntegerArrayField */
-                    int size = arrayDef.getDefinitions().size();
+                    int size = arrayDef.getLength();
                     long[] values = new long[size];
-                    for (int i = 0; i < size; i++) {
-                        IDefinition elem = arrayDef.getDefinitions().get(i);
-                        if (elem == null) {
-                            break;
+                    if (arrayDef instanceof IntegerArrayDefinition) {
+                        /* Do not create the definitions of the elements */
+                        IntegerArrayDefinition intArrayDef = (IntegerArrayDefinition) arrayDef;
+                        for (int i = 0; i < size; i++) {
+                            values[i] = intArrayDef.getValue(i);
+                        }
+                    } else {
+                        for (int i = 0; i < size; i++) {
+                            IDefinition elem = arrayDef.getDefinitions().get(i);
+                            if (elem == null) {
+                                break;
+                            }
+                            values[i] = ((IntegerDefinition) elem).getValue();
                         }
-                        values[i] = ((IntegerDefinition) elem).getValue();
                     }
                     field = new CTFIntegerArrayField(fieldName, values,
                             elemIntType.getBase(),
@@ -29,8 +29,10 @@ import java.util.Set;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -39,6 +41,7 @@ import org.eclipse.tracecompass.ctf.core.event.CTFClock;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceTailer;
 import org.eclipse.tracecompass.ctf.core.trace.Metadata;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
@@ -48,8 +51,10 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceProperties;
@@ -127,6 +132,9 @@ public class CtfTmfTrace extends TmfTrace
     /* Reference to the CTF Trace */
     private CTFTrace fTrace;
 
+    /* The job following the trace files, null if they are not followed */
+    private volatile @Nullable Job fFollowJob = null;
+
     // -------------------------------------------
     // TmfTrace Overrides
     // -------------------------------------------
@@ -208,8 +216,11 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     public synchronized void dispose() {
+        stopFollowing();
         fIteratorManager.dispose();
         if (fTrace != null) {
+            /* Keep the positions of the events found while reading */
+            fTrace.saveIndexes();
             fTrace = null;
         }
         super.dispose();
@@ -346,13 +357,17 @@ public class CtfTmfTrace extends TmfTrace
     /**
      * Method readNextEvent.
      *
+     * The events are read through the iterator of the context, so this does
+     * not lock the trace, and different contexts can be read in parallel.
+     * Only the update of the trace attributes is synchronized.
+     *
      * @param context
      *            ITmfContext
      * @return CtfTmfEvent
      * @see org.eclipse.tracecompass.tmf.core.trace.ITmfTrace#getNext(ITmfContext)
      */
     @Override
-    public synchronized CtfTmfEvent getNext(final ITmfContext context) {
+    public CtfTmfEvent getNext(final ITmfContext context) {
         if (fTrace == null) {
             return null;
         }
@@ -374,6 +389,24 @@ public class CtfTmfTrace extends TmfTrace
         return event;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unlike other traces, this does not lock the trace, see
+     * {@link #getNext(ITmfContext)}.
+     */
+    @Override
+    public int getNext(ITmfContext context, ITmfEvent[] events, int count) {
+        for (int i = 0; i < count; i++) {
+            ITmfEvent event = getNext(context);
+            if (event == null) {
+                return i;
+            }
+            events[i] = event;
+        }
+        return count;
+    }
+
     /**
      * Ctf traces have a clock with a unique uuid that will be used to identify
      * the host. Traces with the same clock uuid will be known to have been made
@@ -629,6 +662,102 @@ public class CtfTmfTrace extends TmfTrace
         return new CtfLocation(bufferIn);
     }
 
+    // ------------------------------------------------------------------------
+    // Live reading
+    // ------------------------------------------------------------------------
+
+    /**
+     * Follow the trace files while they are being written, for example by a
+     * LTTng relay daemon. The packets are read as soon as they are completely
+     * written, and the time range of the trace is extended with a
+     * {@link TmfTraceRangeUpdatedSignal} up to the time where all the stream
+     * files are indexed, see {@link CTFTraceTailer#getSafeEndTime()}.
+     *
+     * @since 1.1
+     */
+    public synchronized void startFollowing() {
+        final CTFTrace trace = fTrace;
+        if (fFollowJob != null || trace == null) {
+            return;
+        }
+        final CTFTraceTailer tailer = new CTFTraceTailer(trace);
+        Job job = new Job("CTF trace follower") { //$NON-NLS-1$
+            private long fSafeEndTime = Long.MIN_VALUE;
+
+            /*
+             * Set when the job is canceled, so that it does not schedule
+             * itself again if it is canceled while it is running
+             */
+            private volatile boolean fStopped = false;
+
+            @Override
+            protected void canceling() {
+                fStopped = true;
+            }
+
+            @Override
+            public boolean shouldSchedule() {
+                return !fStopped;
+            }
+
+            @Override
+            public boolean shouldRun() {
+                return !fStopped;
+            }
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                tailer.poll();
+                long safeEndTime = tailer.getSafeEndTime();
+                if (safeEndTime > fSafeEndTime) {
+                    fSafeEndTime = safeEndTime;
+                    TmfTimeRange range = new TmfTimeRange(getStartTime(), new TmfNanoTimestamp(safeEndTime));
+                    broadcastAsync(new TmfTraceRangeUpdatedSignal(CtfTmfTrace.this, CtfTmfTrace.this, range));
+                }
+                if (fStopped || monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                schedule(tailer.getPollDelay());
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        fFollowJob = job;
+        /* The cached iterators were not created in live mode */
+        fIteratorManager.dispose();
+        job.schedule();
+    }
+
+    /**
+     * Stop following the trace files, see {@link #startFollowing()}
+     *
+     * @since 1.1
+     */
+    public synchronized void stopFollowing() {
+        Job job = fFollowJob;
+        if (job == null) {
+            return;
+        }
+        fFollowJob = null;
+        job.cancel();
+        try {
+            job.join();
+        } catch (InterruptedException e) {
+            Activator.getDefault().logError(e.getMessage(), e);
+        }
+        fIteratorManager.dispose();
+    }
+
+    /**
+     * Get if the trace files are being followed, see {@link #startFollowing()}
+     *
+     * @return true if the trace files are followed
+     * @since 1.1
+     */
+    public boolean isFollowing() {
+        return fFollowJob != null;
+    }
+
     @Override
     public boolean isComplete() {
         if (getResource() == null) {
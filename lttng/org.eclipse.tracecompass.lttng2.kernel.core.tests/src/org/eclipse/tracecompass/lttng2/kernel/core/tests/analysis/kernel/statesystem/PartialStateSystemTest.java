@@ -101,7 +101,8 @@ public class PartialStateSystemTest extends StateSystemTest {
     }
 
     // ------------------------------------------------------------------------
-    // Skip tests using single-queries (unsupported in partial history)
+    // Skip tests using single-queries (unsupported in partial history).
+    // Range queries without a resolution go through query2D, which works.
     // ------------------------------------------------------------------------
 
     @Override
@@ -110,18 +111,6 @@ public class PartialStateSystemTest extends StateSystemTest {
         super.testSingleQuery1();
     }
 
-    @Override
-    @Test(expected = UnsupportedOperationException.class)
-    public void testRangeQuery1() {
-        super.testRangeQuery1();
-    }
-
-    @Override
-    @Test(expected = UnsupportedOperationException.class)
-    public void testRangeQuery2() {
-        super.testRangeQuery2();
-    }
-
     @Override
     @Test(expected = UnsupportedOperationException.class)
     public void testRangeQuery3() {
@@ -140,18 +129,6 @@ public class PartialStateSystemTest extends StateSystemTest {
         super.testSingleQueryInvalidTime2();
     }
 
-    @Override
-    @Test(expected = UnsupportedOperationException.class)
-    public void testRangeQueryInvalidTime1() throws TimeRangeException {
-        super.testRangeQueryInvalidTime1();
-    }
-
-    @Override
-    @Test(expected = UnsupportedOperationException.class)
-    public void testRangeQueryInvalidTime2() throws TimeRangeException {
-        super.testRangeQueryInvalidTime2();
-    }
-
     @NonNullByDefault
     private static class TestLttngKernelAnalysisModule extends KernelAnalysisModule {
 
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+
+/**
+ * The state history backends that can be benchmarked. They are all created
+ * through the {@link StateHistoryBackendFactory}, like the analyses do.
+ */
+public enum BenchmarkBackend {
+
+    /** In-memory backend */
+    IN_MEMORY,
+
+    /** History tree backend, the intervals are inserted by the caller */
+    HISTORY_TREE,
+
+    /** History tree backend with the insertions done in a separate thread */
+    THREADED_HISTORY_TREE;
+
+    private static final int PROVIDER_VERSION = 1;
+    private static final int QUEUE_SIZE = 10000;
+
+    /**
+     * Create a new, empty backend of this type.
+     *
+     * @param ssid
+     *            The ID of the state system
+     * @param stateFile
+     *            The history file, if the backend needs one. It will be
+     *            overwritten.
+     * @param startTime
+     *            The start time of the history
+     * @return The new backend
+     * @throws IOException
+     *             If the history file could not be created
+     */
+    public IStateHistoryBackend create(String ssid, File stateFile, long startTime) throws IOException {
+        switch (this) {
+        case IN_MEMORY:
+            return StateHistoryBackendFactory.createInMemoryBackend(ssid, startTime);
+        case HISTORY_TREE:
+            return StateHistoryBackendFactory.createHistoryTreeBackendNewFile(ssid, stateFile, PROVIDER_VERSION, startTime, 0);
+        case THREADED_HISTORY_TREE:
+            return StateHistoryBackendFactory.createHistoryTreeBackendNewFile(ssid, stateFile, PROVIDER_VERSION, startTime, QUEUE_SIZE);
+        default:
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the construction of a state system, from the first state
+ * change until the history is closed.
+ *
+ * The parameters can be changed from the command line, for example:
+ *
+ * <pre>
+ * java -jar benchmarks.jar StateSystemBuildBenchmark -p nbAttributes=30000 -p backend=THREADED_HISTORY_TREE
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StateSystemBuildBenchmark {
+
+    /** The backend to use */
+    @Param({ "IN_MEMORY", "HISTORY_TREE", "THREADED_HISTORY_TREE" })
+    public BenchmarkBackend backend;
+
+    /** Number of attributes changing state */
+    @Param({ "300", "3000", "30000" })
+    public int nbAttributes;
+
+    /** Number of state changes */
+    @Param({ "1000000" })
+    public int nbChanges;
+
+    private SyntheticWorkload fWorkload;
+    private File fStateFile;
+    private ITmfStateSystemBuilder fStateSystem;
+
+    /**
+     * Prepare the workload
+     *
+     * @throws IOException
+     *             If the history file could not be created
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        fWorkload = new SyntheticWorkload(nbAttributes, nbChanges);
+        fStateFile = File.createTempFile("ss-build-benchmark", ".ht"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Build the whole state system
+     *
+     * @return The state system, so it is not optimized away
+     * @throws IOException
+     *             If the history file could not be written
+     */
+    @Benchmark
+    public ITmfStateSystemBuilder build() throws IOException {
+        fStateSystem = fWorkload.build(backend, fStateFile);
+        return fStateSystem;
+    }
+
+    /**
+     * Dispose of the state system built by the last iteration
+     */
+    @TearDown(Level.Iteration)
+    public void disposeStateSystem() {
+        if (fStateSystem != null) {
+            fStateSystem.dispose();
+            fStateSystem = null;
+        }
+    }
+
+    /**
+     * Delete the history file
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fStateFile.delete();
+    }
+}
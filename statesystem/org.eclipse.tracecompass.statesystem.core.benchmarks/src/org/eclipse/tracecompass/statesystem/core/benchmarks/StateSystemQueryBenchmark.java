@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Benchmark of the queries on a state system that was built beforehand.
+ *
+ * The state system is shared by all the benchmark threads, so the number of
+ * concurrent queries is controlled with JMH's thread count, for example:
+ *
+ * <pre>
+ * java -jar benchmarks.jar StateSystemQueryBenchmark -t 8 -p backend=HISTORY_TREE
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StateSystemQueryBenchmark {
+
+    /* Length of the ranges read by the history range queries */
+    private static final long RANGE_LENGTH = 100000L;
+
+    /** The backend to use */
+    @Param({ "IN_MEMORY", "HISTORY_TREE", "THREADED_HISTORY_TREE" })
+    public BenchmarkBackend backend;
+
+    /** Number of attributes changing state */
+    @Param({ "300", "3000", "30000" })
+    public int nbAttributes;
+
+    /** Number of state changes */
+    @Param({ "1000000" })
+    public int nbChanges;
+
+    private File fStateFile;
+    private ITmfStateSystemBuilder fStateSystem;
+    private int[] fQuarks;
+    private long fStartTime;
+    private long fEndTime;
+
+    /**
+     * Random query parameters, different for each benchmark thread. They are
+     * drawn before each iteration and cycled through by the benchmarks, so
+     * drawing them is not measured with the queries. They are drawn from a
+     * fixed seed, so that all runs do the same queries.
+     */
+    @State(Scope.Thread)
+    public static class QueryParameters {
+
+        /* Number of queries drawn, a power of 2 */
+        private static final int NB_QUERIES = 1 << 14;
+
+        private final long[] fTimes = new long[NB_QUERIES];
+        private final int[] fQuarks = new int[NB_QUERIES];
+        private int fIndex = 0;
+
+        /**
+         * Draw the parameters of the queries of an iteration
+         *
+         * @param benchmark
+         *            The benchmark state, for the time range and the quarks
+         * @param threadParams
+         *            The parameters of the benchmark thread
+         */
+        @Setup(Level.Iteration)
+        public void setup(StateSystemQueryBenchmark benchmark, ThreadParams threadParams) {
+            Random random = new Random(SyntheticWorkload.SEED + threadParams.getThreadIndex());
+            long range = benchmark.fEndTime - benchmark.fStartTime;
+            for (int i = 0; i < NB_QUERIES; i++) {
+                fTimes[i] = benchmark.fStartTime + (long) (random.nextDouble() * range);
+                fQuarks[i] = benchmark.fQuarks[random.nextInt(benchmark.fQuarks.length)];
+            }
+        }
+
+        /**
+         * Move to the parameters of the next query
+         */
+        public void next() {
+            fIndex = (fIndex + 1) & (NB_QUERIES - 1);
+        }
+
+        /**
+         * @return The timestamp of the current query
+         */
+        public long getTime() {
+            return fTimes[fIndex];
+        }
+
+        /**
+         * @return The quark of the current query
+         */
+        public int getQuark() {
+            return fQuarks[fIndex];
+        }
+    }
+
+    /**
+     * Build the state system to query
+     *
+     * @throws IOException
+     *             If the history file could not be written
+     * @throws AttributeNotFoundException
+     *             If the attribute tree is inconsistent
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, AttributeNotFoundException {
+        fStateFile = File.createTempFile("ss-query-benchmark", ".ht"); //$NON-NLS-1$ //$NON-NLS-2$
+        fStateSystem = new SyntheticWorkload(nbAttributes, nbChanges).build(backend, fStateFile);
+        fStateSystem.waitUntilBuilt();
+        fStartTime = fStateSystem.getStartTime();
+        fEndTime = fStateSystem.getCurrentEndTime();
+
+        /* Only query the attributes that have a state */
+        int nbQuarks = fStateSystem.getNbAttributes();
+        int[] quarks = new int[nbQuarks];
+        int count = 0;
+        for (int quark = 0; quark < nbQuarks; quark++) {
+            if (fStateSystem.getSubAttributes(quark, false).isEmpty()) {
+                quarks[count++] = quark;
+            }
+        }
+        fQuarks = new int[count];
+        System.arraycopy(quarks, 0, fQuarks, 0, count);
+    }
+
+    /**
+     * Dispose of the state system and delete its file
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fStateSystem.dispose();
+        fStateFile.delete();
+    }
+
+    /**
+     * Query the state of one attribute at a random time
+     *
+     * @param params
+     *            The query parameters
+     * @return The interval, so the query is not optimized away
+     * @throws Exception
+     *             If the query fails
+     */
+    @Benchmark
+    public ITmfStateInterval querySingleState(QueryParameters params) throws Exception {
+        params.next();
+        return fStateSystem.querySingleState(params.getTime(), params.getQuark());
+    }
+
+    /**
+     * Query the state of all the attributes at a random time
+     *
+     * @param params
+     *            The query parameters
+     * @return The intervals, so the query is not optimized away
+     * @throws Exception
+     *             If the query fails
+     */
+    @Benchmark
+    public List<ITmfStateInterval> queryFullState(QueryParameters params) throws Exception {
+        params.next();
+        return fStateSystem.queryFullState(params.getTime());
+    }
+
+    /**
+     * Query all the states of one attribute over a time range starting at a
+     * random time
+     *
+     * @param params
+     *            The query parameters
+     * @return The intervals, so the query is not optimized away
+     * @throws AttributeNotFoundException
+     *             If the query fails
+     * @throws StateSystemDisposedException
+     *             If the query fails
+     */
+    @Benchmark
+    public List<ITmfStateInterval> queryHistoryRange(QueryParameters params)
+            throws AttributeNotFoundException, StateSystemDisposedException {
+        params.next();
+        long start = params.getTime();
+        long end = Math.min(start + RANGE_LENGTH, fEndTime);
+        return StateSystemUtils.queryHistoryRange(fStateSystem, params.getQuark(), start, end);
+    }
+}
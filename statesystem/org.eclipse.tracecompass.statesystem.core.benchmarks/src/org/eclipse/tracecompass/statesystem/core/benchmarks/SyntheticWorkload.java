@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * Generator of synthetic state changes, used to build state systems without
+ * needing any trace.
+ *
+ * The attributes are laid out like in a kernel analysis, with a few values
+ * per "thread" entry. The state changes are drawn from a seeded random
+ * generator, so that the same parameters always give the same history.
+ */
+public final class SyntheticWorkload {
+
+    /** ID of the generated state systems */
+    public static final String SSID = "benchmark-ss"; //$NON-NLS-1$
+
+    /** Start time of the generated histories */
+    public static final long START_TIME = 1000L;
+
+    /* Maximum time between two state changes */
+    private static final int MAX_STEP = 20;
+
+    /* Number of different values the string attributes can have */
+    private static final int NB_STRINGS = 64;
+
+    /* Seed of the random generators, so that every run is the same */
+    static final long SEED = 0x5EED;
+
+    private static final String THREADS = "Threads"; //$NON-NLS-1$
+    private static final String STATUS = "Status"; //$NON-NLS-1$
+    private static final String SYSCALL = "System_call"; //$NON-NLS-1$
+    private static final String PRIO = "Prio"; //$NON-NLS-1$
+    private static final String[] CHILDREN = { STATUS, SYSCALL, PRIO };
+
+    private final int fNbAttributes;
+    private final int fNbChanges;
+
+    /**
+     * Constructor
+     *
+     * @param nbAttributes
+     *            The number of leaf attributes which will change state
+     * @param nbChanges
+     *            The number of state changes to generate
+     */
+    public SyntheticWorkload(int nbAttributes, int nbChanges) {
+        fNbAttributes = nbAttributes;
+        fNbChanges = nbChanges;
+    }
+
+    /**
+     * Build a new state system with this workload. The state system is
+     * complete (its history is closed) when this returns.
+     *
+     * @param backendType
+     *            The type of backend to use
+     * @param stateFile
+     *            The history file, for the backends which need one
+     * @return The state system
+     * @throws IOException
+     *             If the history file could not be created
+     */
+    public ITmfStateSystemBuilder build(BenchmarkBackend backendType, File stateFile) throws IOException {
+        IStateHistoryBackend backend = backendType.create(SSID, stateFile, START_TIME);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+
+        int[] quarks = new int[fNbAttributes];
+        for (int i = 0; i < fNbAttributes; i++) {
+            String thread = Integer.toString(i / CHILDREN.length);
+            quarks[i] = ss.getQuarkAbsoluteAndAdd(THREADS, thread, CHILDREN[i % CHILDREN.length]);
+        }
+
+        Random random = new Random(SEED);
+        long t = START_TIME;
+        try {
+            for (int i = 0; i < fNbChanges; i++) {
+                t += 1 + random.nextInt(MAX_STEP);
+                int index = random.nextInt(fNbAttributes);
+                ss.modifyAttribute(t, nextValue(random, index), quarks[index]);
+            }
+        } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+            /* The workload only makes valid changes */
+            throw new IllegalStateException(e);
+        }
+        ss.closeHistory(t + MAX_STEP);
+        return ss;
+    }
+
+    /*
+     * Each attribute always uses the same type of value, as the state system
+     * requires. A fraction of the changes go back to the null value.
+     */
+    private static ITmfStateValue nextValue(Random random, int index) {
+        int draw = random.nextInt(100);
+        if (draw < 10) {
+            return TmfStateValue.nullValue();
+        }
+        switch (CHILDREN[index % CHILDREN.length]) {
+        case STATUS:
+            return TmfStateValue.newValueInt(draw % 5);
+        case SYSCALL:
+            return TmfStateValue.newValueString("syscall_" + (draw % NB_STRINGS)); //$NON-NLS-1$
+        case PRIO:
+        default:
+            return TmfStateValue.newValueLong(draw);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.tracecompass.internal.statesystem.core.TransientState;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the transient state, which holds the ongoing intervals of
+ * the state system
+ */
+public class TransientStateTest {
+
+    private static final long START_TIME = 1000L;
+
+    private IStateHistoryBackend fBackend;
+    private TransientState fTransientState;
+
+    /**
+     * Create the transient state on top of an in-memory back-end
+     */
+    @Before
+    public void setup() {
+        fBackend = StateHistoryBackendFactory.createInMemoryBackend("test-ts", START_TIME);
+        fTransientState = new TransientState(fBackend);
+    }
+
+    /**
+     * Test that the attributes can be added past the initial capacity, and
+     * that the existing ones keep their state
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testManyAttributes() throws Exception {
+        final int nbAttributes = 1000;
+        for (int i = 0; i < nbAttributes; i++) {
+            fTransientState.addEmptyEntry();
+            fTransientState.processStateChange(START_TIME + i, TmfStateValue.newValueInt(i), i);
+        }
+        for (int i = 0; i < nbAttributes; i++) {
+            assertEquals(TmfStateValue.newValueInt(i), fTransientState.getOngoingStateValue(i));
+            assertEquals(START_TIME + i, fTransientState.getOngoingStartTime(i));
+        }
+    }
+
+    /**
+     * Test the ongoing interval of a new attribute, and of an attribute whose
+     * state changed
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testOngoingInterval() throws Exception {
+        fTransientState.addEmptyEntry();
+        ITmfStateInterval interval = fTransientState.getOngoingInterval(0);
+        assertEquals(START_TIME, interval.getStartTime());
+        assertEquals(TmfStateValue.nullValue(), interval.getStateValue());
+
+        fTransientState.processStateChange(START_TIME + 10, TmfStateValue.newValueLong(5L), 0);
+        interval = fTransientState.getOngoingInterval(0);
+        assertEquals(START_TIME + 10, interval.getStartTime());
+        assertEquals(START_TIME + 10, interval.getEndTime());
+        assertEquals(TmfStateValue.newValueLong(5L), interval.getStateValue());
+
+        /* Setting the same value does not start a new interval */
+        fTransientState.processStateChange(START_TIME + 20, TmfStateValue.newValueLong(5L), 0);
+        assertEquals(START_TIME + 10, fTransientState.getOngoingStartTime(0));
+    }
+
+    /**
+     * Test that the intervals which are not yet in the back-end are still
+     * found by the transient state queries
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testPendingIntervals() throws Exception {
+        fTransientState.addEmptyEntry();
+        fTransientState.addEmptyEntry();
+        fTransientState.processStateChange(START_TIME + 10, TmfStateValue.newValueInt(1), 0);
+        fTransientState.processStateChange(START_TIME + 20, TmfStateValue.newValueInt(2), 0);
+
+        /* The past interval [10, 19] was not flushed to the back-end yet */
+        ITmfStateInterval interval = fTransientState.getIntervalAt(START_TIME + 15, 0);
+        assertNotNull(interval);
+        assertEquals(START_TIME + 10, interval.getStartTime());
+        assertEquals(START_TIME + 19, interval.getEndTime());
+        assertEquals(TmfStateValue.newValueInt(1), interval.getStateValue());
+
+        /* The null interval at the start of the attribute */
+        interval = fTransientState.getIntervalAt(START_TIME + 5, 0);
+        assertNotNull(interval);
+        assertEquals(TmfStateValue.nullValue(), interval.getStateValue());
+
+        List<ITmfStateInterval> stateInfo = new ArrayList<>();
+        stateInfo.add(null);
+        stateInfo.add(null);
+        fTransientState.doQuery(stateInfo, START_TIME + 15);
+        assertEquals(TmfStateValue.newValueInt(1), stateInfo.get(0).getStateValue());
+        assertEquals(TmfStateValue.nullValue(), stateInfo.get(1).getStateValue());
+
+        /* Out of range quarks */
+        assertNull(fTransientState.getIntervalAt(START_TIME + 15, 2));
+        assertNull(fTransientState.getIntervalAt(START_TIME + 15, -1));
+    }
+
+    /**
+     * Test that closing the transient state sends all the intervals to the
+     * back-end
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testClose() throws Exception {
+        final int nbChanges = 500;
+        fTransientState.addEmptyEntry();
+        for (int i = 1; i <= nbChanges; i++) {
+            fTransientState.processStateChange(START_TIME + i * 10, TmfStateValue.newValueInt(i), 0);
+        }
+        fTransientState.closeTransientState(START_TIME + nbChanges * 10 + 5);
+        fBackend.finishedBuilding(START_TIME + nbChanges * 10 + 5);
+
+        assertFalse(fTransientState.isActive());
+        assertNull(fTransientState.getIntervalAt(START_TIME + 15, 0));
+
+        for (int i = 1; i <= nbChanges; i++) {
+            ITmfStateInterval interval = fBackend.doSingularQuery(START_TIME + i * 10 + 5, 0);
+            assertNotNull(interval);
+            assertEquals(START_TIME + i * 10, interval.getStartTime());
+            assertEquals(TmfStateValue.newValueInt(i), interval.getStateValue());
+        }
+    }
+
+    /**
+     * Test that a value of a different type than the previous ones of the
+     * attribute is refused, except for null values
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test(expected = StateValueTypeException.class)
+    public void testWrongType() throws Exception {
+        fTransientState.addEmptyEntry();
+        fTransientState.processStateChange(START_TIME + 10, TmfStateValue.newValueInt(1), 0);
+        fTransientState.processStateChange(START_TIME + 20, TmfStateValue.nullValue(), 0);
+        fTransientState.processStateChange(START_TIME + 30, TmfStateValue.newValueString("a"), 0);
+    }
+
+    /**
+     * Test that an invalid quark is refused
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test(expected = AttributeNotFoundException.class)
+    public void testInvalidQuark() throws Exception {
+        fTransientState.addEmptyEntry();
+        fTransientState.getOngoingStateValue(1);
+    }
+
+    /**
+     * Test that the readers always see a start time and a value which go
+     * together, while the attributes are modified and added
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testConcurrentReads() throws Exception {
+        fTransientState.addEmptyEntry();
+        fTransientState.processStateChange(START_TIME, TmfStateValue.newValueLong(START_TIME), 0);
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicBoolean inconsistent = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            ITmfStateInterval interval = fTransientState.getOngoingInterval(0);
+                            ITmfStateValue value = interval.getStateValue();
+                            /* Each value is the start time of its interval */
+                            if (value.unboxLong() != interval.getStartTime()) {
+                                inconsistent.set(true);
+                            }
+                        }
+                    } catch (AttributeNotFoundException e) {
+                        inconsistent.set(true);
+                    }
+                }
+            });
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+
+        try {
+            for (long time = START_TIME + 1; time < START_TIME + 100000; time++) {
+                fTransientState.processStateChange(time, TmfStateValue.newValueLong(time), 0);
+                if (time % 1000 == 0) {
+                    /* Make the arrays grow under the readers */
+                    fTransientState.addEmptyEntry();
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        assertFalse(inconsistent.get());
+    }
+
+    /**
+     * Test that the state changes are ignored once the transient state is
+     * closed
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testInactive() throws Exception {
+        fTransientState.addEmptyEntry();
+        fTransientState.closeTransientState(START_TIME + 10);
+        fBackend.finishedBuilding(START_TIME + 10);
+        fTransientState.processStateChange(START_TIME + 20, TmfStateValue.newValueInt(1), 0);
+
+        ITmfStateInterval interval = fBackend.doSingularQuery(START_TIME + 5, 0);
+        assertNotNull(interval);
+        assertEquals(TmfStateValue.nullValue(), interval.getStateValue());
+        assertEquals(START_TIME + 10, interval.getEndTime());
+    }
+}
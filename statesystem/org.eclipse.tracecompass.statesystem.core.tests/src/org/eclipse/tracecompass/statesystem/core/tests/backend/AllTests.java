@@ -20,6 +20,10 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    HistoryTreeBackendTest.class,
+    HistoryTreeWriterTest.class,
+    HTNodeCacheTest.class,
+    StateIntervalBatchTest.class,
     InMemoryBackendTest.class
 })
 public class AllTests {
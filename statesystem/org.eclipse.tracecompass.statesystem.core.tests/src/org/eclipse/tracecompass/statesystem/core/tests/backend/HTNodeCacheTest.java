@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNodeCache;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.LeafNode;
+import org.junit.Test;
+
+/**
+ * Test cases for the node cache of the history tree
+ */
+public class HTNodeCacheTest {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int NB_STRIPES = HTNodeCache.NB_STRIPES;
+
+    private static final HTConfig CONFIG = new HTConfig(new File("unused"), BLOCK_SIZE, 4, 1, 0);
+
+    private static HTNode newNode(int seqNumber) {
+        return new LeafNode(CONFIG, seqNumber, -1, 0);
+    }
+
+    /**
+     * Test that the nodes put in the cache are found, and the hit and miss
+     * counts
+     */
+    @Test
+    public void testGetPut() {
+        HTNodeCache cache = new HTNodeCache(NB_STRIPES * BLOCK_SIZE, BLOCK_SIZE);
+        HTNode node = newNode(3);
+
+        assertNull(cache.get(3));
+        cache.put(node);
+        assertSame(node, cache.get(3));
+        assertSame(node, cache.get(3));
+        assertNull(cache.get(4));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Test that the nodes of consecutive sequence numbers do not evict each
+     * other, even with a single node per stripe
+     */
+    @Test
+    public void testConsecutiveNodes() {
+        HTNodeCache cache = new HTNodeCache(NB_STRIPES * BLOCK_SIZE, BLOCK_SIZE);
+        List<HTNode> nodes = new ArrayList<>();
+        for (int i = 0; i < NB_STRIPES; i++) {
+            HTNode node = newNode(i);
+            nodes.add(node);
+            cache.put(node);
+        }
+        for (int i = 0; i < NB_STRIPES; i++) {
+            assertSame(nodes.get(i), cache.get(i));
+        }
+    }
+
+    /**
+     * Test that the least recently used node of a stripe is evicted first
+     */
+    @Test
+    public void testLruEviction() {
+        /* Two nodes per stripe */
+        HTNodeCache cache = new HTNodeCache(2 * NB_STRIPES * BLOCK_SIZE, BLOCK_SIZE);
+        HTNode node0 = newNode(0);
+        HTNode node1 = newNode(NB_STRIPES);
+        HTNode node2 = newNode(2 * NB_STRIPES);
+
+        cache.put(node0);
+        cache.put(node1);
+        /* Reading node0 makes node1 the least recently used one */
+        assertSame(node0, cache.get(0));
+        cache.put(node2);
+
+        assertSame(node0, cache.get(0));
+        assertNull(cache.get(NB_STRIPES));
+        assertSame(node2, cache.get(2 * NB_STRIPES));
+    }
+
+    /**
+     * Test that clearing the cache removes the nodes but keeps the counts
+     */
+    @Test
+    public void testClear() {
+        HTNodeCache cache = new HTNodeCache(NB_STRIPES * BLOCK_SIZE, BLOCK_SIZE);
+        cache.put(newNode(1));
+        assertNotNull(cache.get(1));
+        cache.clear();
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Test concurrent reads and writes, the nodes read are always the ones
+     * put for their sequence number
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final int nbNodes = 4 * NB_STRIPES;
+        final HTNodeCache cache = new HTNodeCache(2 * NB_STRIPES * BLOCK_SIZE, BLOCK_SIZE);
+        final List<HTNode> nodes = new ArrayList<>();
+        for (int i = 0; i < nbNodes; i++) {
+            nodes.add(newNode(i));
+        }
+        final AtomicBoolean wrongNode = new AtomicBoolean();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        int seqNumber = (i * 7 + offset) % nbNodes;
+                        HTNode node = cache.get(seqNumber);
+                        if (node == null) {
+                            cache.put(nodes.get(seqNumber));
+                        } else if (node != nodes.get(seqNumber)) {
+                            wrongNode.set(true);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(wrongNode.get());
+        assertEquals(40000, cache.getHitCount() + cache.getMissCount());
+    }
+}
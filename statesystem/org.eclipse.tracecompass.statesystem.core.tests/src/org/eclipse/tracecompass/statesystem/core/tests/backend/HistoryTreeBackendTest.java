@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig.NodeEncoding;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test cases for the history tree backend, with small blocks so that the
+ * intervals are spread over many nodes on many levels of the tree.
+ */
+public class HistoryTreeBackendTest {
+
+    private static final int NUMBER_OF_ATTRIBUTES = 10;
+    private static final int NUMBER_OF_INTERVALS = 2000;
+    private static final int DURATION = 10;
+    private static final long END_TIME = NUMBER_OF_INTERVALS * DURATION + NUMBER_OF_ATTRIBUTES - 1;
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int MAX_CHILDREN = 4;
+
+    private static File fStateFile;
+    private static IStateHistoryBackend fBuiltBackend;
+    private static IStateHistoryBackend fReopenedBackend;
+
+    private static File fDeltaStateFile;
+    private static IStateHistoryBackend fDeltaBuiltBackend;
+    private static IStateHistoryBackend fDeltaReopenedBackend;
+
+    /**
+     * Test setup. Build a history file with each node encoding, then reopen
+     * them.
+     *
+     * @throws IOException
+     *             If the history file could not be written
+     */
+    @BeforeClass
+    public static void init() throws IOException {
+        fStateFile = File.createTempFile("ht-backend-test", ".ht");
+        fBuiltBackend = buildBackend(fStateFile, NodeEncoding.FIXED);
+        fReopenedBackend = new HistoryTreeBackend("test-ss", fStateFile, 1);
+
+        fDeltaStateFile = File.createTempFile("ht-backend-test-delta", ".ht");
+        fDeltaBuiltBackend = buildBackend(fDeltaStateFile, NodeEncoding.DELTA);
+        fDeltaReopenedBackend = new HistoryTreeBackend("test-ss", fDeltaStateFile, 1);
+    }
+
+    private static IStateHistoryBackend buildBackend(File file, NodeEncoding encoding) throws IOException {
+        HistoryTreeBackend backend = new HistoryTreeBackend("test-ss", file, 1, 0, BLOCK_SIZE, MAX_CHILDREN, encoding);
+        for (int i = 0; i < NUMBER_OF_INTERVALS; i++) {
+            for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                long start = i * DURATION + attribute;
+                backend.insertPastState(start, start + DURATION - 1, attribute, TmfStateValue.newValueInt(i));
+            }
+        }
+        backend.finishedBuilding(END_TIME);
+        return backend;
+    }
+
+    /**
+     * Clean-up
+     */
+    @AfterClass
+    public static void cleanup() {
+        fBuiltBackend.dispose();
+        fReopenedBackend.dispose();
+        fStateFile.delete();
+        fDeltaBuiltBackend.dispose();
+        fDeltaReopenedBackend.dispose();
+        fDeltaStateFile.delete();
+    }
+
+    private static void testInterval(ITmfStateInterval interval, int attribute, long t) {
+        assertNotNull(interval);
+        int index = (int) ((t - attribute) / DURATION);
+        assertEquals(attribute, interval.getAttribute());
+        assertEquals(index * DURATION + attribute, interval.getStartTime());
+        assertEquals(index * DURATION + attribute + DURATION - 1, interval.getEndTime());
+        try {
+            assertEquals(index, interval.getStateValue().unboxInt());
+        } catch (StateValueTypeException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static void testSingularQueries(IStateHistoryBackend backend) {
+        try {
+            for (long t = NUMBER_OF_ATTRIBUTES; t < NUMBER_OF_INTERVALS * DURATION; t += 7) {
+                for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                    testInterval(backend.doSingularQuery(t, attribute), attribute, t);
+                }
+            }
+        } catch (TimeRangeException | AttributeNotFoundException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static void testFullQueries(IStateHistoryBackend backend) {
+        try {
+            for (long t = NUMBER_OF_ATTRIBUTES; t < NUMBER_OF_INTERVALS * DURATION; t += 7) {
+                List<ITmfStateInterval> intervals = new ArrayList<>(NUMBER_OF_ATTRIBUTES);
+                for (int i = 0; i < NUMBER_OF_ATTRIBUTES; i++) {
+                    intervals.add(null);
+                }
+                backend.doQuery(intervals, t);
+                for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                    testInterval(intervals.get(attribute), attribute, t);
+                }
+            }
+        } catch (TimeRangeException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static void testSubsetQueries(IStateHistoryBackend backend) {
+        BitSet quarks = new BitSet();
+        for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute += 2) {
+            quarks.set(attribute);
+        }
+        try {
+            for (long t = NUMBER_OF_ATTRIBUTES; t < NUMBER_OF_INTERVALS * DURATION; t += 7) {
+                List<ITmfStateInterval> intervals = new ArrayList<>(NUMBER_OF_ATTRIBUTES);
+                for (int i = 0; i < NUMBER_OF_ATTRIBUTES; i++) {
+                    intervals.add(null);
+                }
+                backend.doQuery(intervals, t, quarks);
+                for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                    if (quarks.get(attribute)) {
+                        testInterval(intervals.get(attribute), attribute, t);
+                    } else {
+                        assertNull(intervals.get(attribute));
+                    }
+                }
+            }
+        } catch (TimeRangeException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static void testRangeQuery(IStateHistoryBackend backend, long start, long end) {
+        BitSet quarks = new BitSet();
+        quarks.set(1);
+        quarks.set(4);
+        quarks.set(7);
+        try {
+            int count = 0;
+            long previousEnd = Long.MIN_VALUE;
+            for (ITmfStateInterval interval : backend.query2D(quarks, start, end)) {
+                int attribute = interval.getAttribute();
+                assertTrue(quarks.get(attribute));
+                assertTrue(interval.getStartTime() <= end && interval.getEndTime() >= start);
+                assertTrue(interval.getEndTime() >= previousEnd);
+                previousEnd = interval.getEndTime();
+                testInterval(interval, attribute, interval.getStartTime());
+                count++;
+            }
+
+            /* Count the intervals each attribute should have in the range */
+            int expected = 0;
+            for (int attribute = quarks.nextSetBit(0); attribute >= 0; attribute = quarks.nextSetBit(attribute + 1)) {
+                for (int i = 0; i < NUMBER_OF_INTERVALS; i++) {
+                    long intervalStart = i * DURATION + attribute;
+                    if (intervalStart <= end && intervalStart + DURATION - 1 >= start) {
+                        expected++;
+                    }
+                }
+            }
+            assertEquals(expected, count);
+        } catch (TimeRangeException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Test single-attribute queries on the history that was just built
+     */
+    @Test
+    public void testSingularQueryBuilt() {
+        testSingularQueries(fBuiltBackend);
+    }
+
+    /**
+     * Test full queries on the history that was just built
+     */
+    @Test
+    public void testFullQueryBuilt() {
+        testFullQueries(fBuiltBackend);
+    }
+
+    /**
+     * Test single-attribute queries on the history file opened from disk
+     */
+    @Test
+    public void testSingularQueryReopened() {
+        testSingularQueries(fReopenedBackend);
+    }
+
+    /**
+     * Test full queries on the history file opened from disk
+     */
+    @Test
+    public void testFullQueryReopened() {
+        testFullQueries(fReopenedBackend);
+    }
+
+    /**
+     * Test queries for a subset of the attributes, on the history that was
+     * just built and on the history file opened from disk
+     */
+    @Test
+    public void testSubsetQuery() {
+        testSubsetQueries(fBuiltBackend);
+        testSubsetQueries(fReopenedBackend);
+    }
+
+    /**
+     * Test range queries over a few attributes, on the history that was just
+     * built and on the history file opened from disk
+     */
+    @Test
+    public void testRangeQuery() {
+        for (IStateHistoryBackend backend : new IStateHistoryBackend[] { fBuiltBackend, fReopenedBackend }) {
+            testRangeQuery(backend, 0, END_TIME);
+            testRangeQuery(backend, 1234, 1234);
+            testRangeQuery(backend, 5000, 7321);
+            testRangeQuery(backend, END_TIME - 100, END_TIME + 100);
+        }
+    }
+
+    /**
+     * Test all the types of queries on the histories using the delta node
+     * encoding, and that it actually produces a smaller file
+     */
+    @Test
+    public void testDeltaEncoding() {
+        for (IStateHistoryBackend backend : new IStateHistoryBackend[] { fDeltaBuiltBackend, fDeltaReopenedBackend }) {
+            testSingularQueries(backend);
+            testFullQueries(backend);
+            testSubsetQueries(backend);
+            testRangeQuery(backend, 0, END_TIME);
+            testRangeQuery(backend, 5000, 7321);
+        }
+        assertEquals(END_TIME, fDeltaReopenedBackend.getEndTime());
+        assertTrue(fDeltaStateFile.length() < fStateFile.length());
+    }
+
+    /**
+     * Test that the factory uses the delta encoding when the system property
+     * is set, with and without the insertion thread
+     *
+     * @throws IOException
+     *             If the history files could not be written
+     */
+    @Test
+    public void testFactoryDeltaEncoding() throws IOException {
+        for (int queueSize : new int[] { 0, 1000 }) {
+            File fixedFile = File.createTempFile("ht-backend-test-factory", ".ht");
+            File deltaFile = File.createTempFile("ht-backend-test-factory-delta", ".ht");
+            try {
+                buildWithFactory(fixedFile, queueSize, false);
+                buildWithFactory(deltaFile, queueSize, true);
+                IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile("test-ss", deltaFile, 1);
+                try {
+                    testSingularQueries(backend);
+                    testRangeQuery(backend, 0, END_TIME);
+                } finally {
+                    backend.dispose();
+                }
+                assertTrue(deltaFile.length() < fixedFile.length());
+            } finally {
+                fixedFile.delete();
+                deltaFile.delete();
+            }
+        }
+    }
+
+    private static void buildWithFactory(File file, int queueSize, boolean delta) throws IOException {
+        String previous = System.getProperty(StateHistoryBackendFactory.DELTA_ENCODING_PROPERTY);
+        System.setProperty(StateHistoryBackendFactory.DELTA_ENCODING_PROPERTY, Boolean.toString(delta));
+        IStateHistoryBackend backend;
+        try {
+            backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile("test-ss", file, 1, 0, queueSize);
+        } finally {
+            if (previous == null) {
+                System.clearProperty(StateHistoryBackendFactory.DELTA_ENCODING_PROPERTY);
+            } else {
+                System.setProperty(StateHistoryBackendFactory.DELTA_ENCODING_PROPERTY, previous);
+            }
+        }
+        for (int i = 0; i < NUMBER_OF_INTERVALS; i++) {
+            for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                long start = i * DURATION + attribute;
+                backend.insertPastState(start, start + DURATION - 1, attribute, TmfStateValue.newValueInt(i));
+            }
+        }
+        backend.finishedBuilding(END_TIME);
+        backend.dispose();
+    }
+
+    /**
+     * Test the start and end times of the reopened history
+     */
+    @Test
+    public void testTimeRange() {
+        assertEquals(0, fReopenedBackend.getStartTime());
+        assertEquals(END_TIME, fReopenedBackend.getEndTime());
+    }
+
+    /**
+     * Test that the history file opened from disk, which is read from
+     * memory-mapped windows, can be deleted once it was queried, and that the
+     * queries fail cleanly afterwards
+     *
+     * @throws IOException
+     *             If the history file could not be copied
+     */
+    @Test
+    public void testMappedFileRemoved() throws IOException {
+        File copy = File.createTempFile("ht-backend-test-copy", ".ht");
+        Files.copy(fStateFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        IStateHistoryBackend backend = new HistoryTreeBackend("test-ss", copy, 1);
+        testSingularQueries(backend);
+
+        backend.removeFiles();
+        assertFalse(copy.exists());
+        try {
+            backend.doSingularQuery(END_TIME / 2, 0);
+            fail();
+        } catch (StateSystemDisposedException e) {
+            /* Expected */
+        } catch (TimeRangeException | AttributeNotFoundException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Test disposing the history file opened from disk while it is being
+     * queried from other threads. The windows are unmapped while the queries
+     * run, the queries either succeed or report the disposal.
+     *
+     * @throws Exception
+     *             If the test fails
+     */
+    @Test
+    public void testMappedFileDisposedDuringQueries() throws Exception {
+        final IStateHistoryBackend backend = new HistoryTreeBackend("test-ss", fStateFile, 1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int offset = i;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; ; j++) {
+                            long t = (j * 7919L + offset * 1000) % (NUMBER_OF_INTERVALS * DURATION - NUMBER_OF_ATTRIBUTES) + NUMBER_OF_ATTRIBUTES;
+                            int attribute = j % NUMBER_OF_ATTRIBUTES;
+                            testInterval(backend.doSingularQuery(t, attribute), attribute, t);
+                        }
+                    } catch (StateSystemDisposedException e) {
+                        /* Expected once the backend is disposed */
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(100);
+        backend.dispose();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Throwable e = error.get();
+        if (e != null) {
+            throw new AssertionError(e);
+        }
+    }
+}
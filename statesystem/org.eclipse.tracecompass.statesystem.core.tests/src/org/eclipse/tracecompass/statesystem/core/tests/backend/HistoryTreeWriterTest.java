@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.CoreNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTree;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the history tree nodes written by a separate thread.
+ *
+ * The tests stall the writer thread by holding the lock it takes to write a
+ * node to the file.
+ */
+public class HistoryTreeWriterTest {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int MAX_CHILDREN = 4;
+    private static final int PROVIDER_VERSION = 1;
+    private static final int NB_ATTRIBUTES = 5;
+    private static final int NB_INTERVALS = 20000;
+    private static final int DURATION = 10;
+    private static final long END_TIME = NB_INTERVALS * DURATION;
+
+    /* Long enough for the writer thread to get stuck on the lock */
+    private static final long WAIT_TIME = 200;
+
+    private File fFile;
+    private HistoryTree fTree;
+
+    /**
+     * Create the history tree, with a node cache of only a few nodes
+     *
+     * @throws Exception
+     *             If the file cannot be created
+     */
+    @Before
+    public void setup() throws Exception {
+        fFile = File.createTempFile("ht-writer-test", ".ht");
+        HTConfig config = new HTConfig(fFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, 0, 0);
+        fTree = new HistoryTree(config);
+    }
+
+    /**
+     * Delete the history file
+     */
+    @After
+    public void cleanup() {
+        fTree.closeFile();
+        fFile.delete();
+    }
+
+    private void insertIntervals(int from, int to) throws Exception {
+        for (int i = from; i < to; i++) {
+            long start = i * DURATION;
+            fTree.insertInterval(new HTInterval(start, start + DURATION - 1,
+                    i % NB_ATTRIBUTES, TmfStateValue.newValueInt(i)));
+        }
+    }
+
+    /**
+     * Get the object the writer thread synchronizes on to write a node
+     */
+    private Object getWriterLock() throws Exception {
+        Field treeIOField = HistoryTree.class.getDeclaredField("treeIO");
+        treeIOField.setAccessible(true);
+        Object treeIO = treeIOField.get(fTree);
+        Field fcOutField = treeIO.getClass().getDeclaredField("fcOut");
+        fcOutField.setAccessible(true);
+        return fcOutField.get(treeIO);
+    }
+
+    private static BitSet allAttributes() {
+        BitSet quarks = new BitSet();
+        quarks.set(0, NB_ATTRIBUTES);
+        return quarks;
+    }
+
+    private static void assertSameNode(HTNode expected, HTNode actual) {
+        assertEquals(expected.getSequenceNumber(), actual.getSequenceNumber());
+        assertEquals(expected.getNodeStart(), actual.getNodeStart());
+        assertEquals(expected.getNodeEnd(), actual.getNodeEnd());
+        List<HTInterval> expectedIntervals = expected.getIntervals(allAttributes(), 0, END_TIME);
+        List<HTInterval> actualIntervals = actual.getIntervals(allAttributes(), 0, END_TIME);
+        assertEquals(expectedIntervals.size(), actualIntervals.size());
+        for (int i = 0; i < expectedIntervals.size(); i++) {
+            HTInterval expectedInterval = expectedIntervals.get(i);
+            HTInterval actualInterval = actualIntervals.get(i);
+            assertEquals(expectedInterval.getStartTime(), actualInterval.getStartTime());
+            assertEquals(expectedInterval.getEndTime(), actualInterval.getEndTime());
+            assertEquals(expectedInterval.getAttribute(), actualInterval.getAttribute());
+            assertEquals(expectedInterval.getStateValue(), actualInterval.getStateValue());
+        }
+    }
+
+    /**
+     * Test that the nodes still waiting to be written can be read, and that
+     * they are written to the file with the same contents
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testReadPendingNodes() throws Exception {
+        fTree.startNodeWriter(Integer.MAX_VALUE);
+        HTNode[] nodes;
+        synchronized (getWriterLock()) {
+            insertIntervals(0, NB_INTERVALS);
+            /* The writer thread is stuck on the first node */
+            int nodeCount = fTree.getNodeCount();
+            assertTrue(fTree.getPendingNodeCount() > 0);
+
+            nodes = new HTNode[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                nodes[i] = fTree.readNode(i);
+                assertNotNull(nodes[i]);
+                assertEquals(i, nodes[i].getSequenceNumber());
+            }
+        }
+        fTree.closeTree(END_TIME);
+        assertEquals(0, fTree.getPendingNodeCount());
+        fTree.closeFile();
+
+        fTree = new HistoryTree(fFile, PROVIDER_VERSION);
+        assertEquals(nodes.length, fTree.getNodeCount());
+        for (int i = 0; i < nodes.length; i++) {
+            HTNode node = fTree.readNode(i);
+            assertNotNull(node);
+            if (nodes[i].isOnDisk()) {
+                assertSameNode(nodes[i], node);
+            }
+        }
+    }
+
+    /**
+     * Test that closing the tree waits for all the pending nodes, and only
+     * then writes the header of the file
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testCloseWaitsForPendingNodes() throws Exception {
+        fTree.startNodeWriter(Integer.MAX_VALUE);
+        Thread closeThread = new Thread() {
+            @Override
+            public void run() {
+                fTree.closeTree(END_TIME);
+            }
+        };
+        synchronized (getWriterLock()) {
+            insertIntervals(0, NB_INTERVALS);
+            assertTrue(fTree.getPendingNodeCount() > 0);
+
+            closeThread.start();
+            closeThread.join(WAIT_TIME);
+            assertTrue(closeThread.isAlive());
+            /* Nodes still pending are not in the file yet */
+            assertTrue(fFile.length() < HistoryTree.TREE_HEADER_SIZE + (long) fTree.getNodeCount() * BLOCK_SIZE);
+        }
+        closeThread.join();
+        assertEquals(0, fTree.getPendingNodeCount());
+        assertEquals(HistoryTree.TREE_HEADER_SIZE + (long) fTree.getNodeCount() * BLOCK_SIZE, fFile.length());
+
+        int nodeCount = fTree.getNodeCount();
+        fTree.closeFile();
+        fTree = new HistoryTree(fFile, PROVIDER_VERSION);
+        assertEquals(nodeCount, fTree.getNodeCount());
+        assertEquals(END_TIME, fTree.getTreeEnd());
+    }
+
+    /**
+     * Test that the insertion waits when there are too many pending nodes,
+     * without holding up the queries
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testMaxPendingNodes() throws Exception {
+        final int maxPendingNodes = 2;
+        fTree.startNodeWriter(maxPendingNodes);
+        final Exception[] failure = new Exception[1];
+        Thread insertThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    insertIntervals(0, NB_INTERVALS);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        synchronized (getWriterLock()) {
+            insertThread.start();
+            insertThread.join(WAIT_TIME);
+            assertTrue(insertThread.isAlive());
+
+            /* The queries do not wait for the writer thread */
+            int depth = 1;
+            HTNode node = fTree.getRootNode();
+            while (node instanceof CoreNode) {
+                node = fTree.readNode(((CoreNode) node).getLatestChild());
+                assertNotNull(node);
+                depth++;
+            }
+
+            /*
+             * The insertion only goes past the limit by the nodes of one
+             * branch, which are closed together.
+             */
+            int pendingNodes = fTree.getPendingNodeCount();
+            assertTrue(pendingNodes > maxPendingNodes);
+            assertTrue(pendingNodes <= maxPendingNodes + depth);
+        }
+        insertThread.join();
+        assertFalse(insertThread.isAlive());
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        assertTrue(fTree.getPendingNodeCount() <= maxPendingNodes);
+        fTree.closeTree(END_TIME);
+        assertEquals(HistoryTree.TREE_HEADER_SIZE + (long) fTree.getNodeCount() * BLOCK_SIZE, fFile.length());
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.StateIntervalBatch;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Test;
+
+/**
+ * Test cases for the batches of intervals sent to the state history
+ * back-ends
+ */
+public class StateIntervalBatchTest {
+
+    private static final int NUMBER_OF_ATTRIBUTES = 7;
+    private static final int NUMBER_OF_INTERVALS = 1000;
+    private static final int DURATION = 10;
+    private static final long END_TIME = NUMBER_OF_INTERVALS * DURATION + NUMBER_OF_ATTRIBUTES;
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int MAX_CHILDREN = 4;
+
+    /**
+     * Build the list of intervals, in the order the transient state would
+     * send them (by end time)
+     */
+    private static List<ITmfStateInterval> getIntervals() {
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_INTERVALS; i++) {
+            for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                long start = i * DURATION + attribute;
+                intervals.add(new TmfStateInterval(start, start + DURATION - 1, attribute, TmfStateValue.newValueInt(i)));
+            }
+        }
+        return intervals;
+    }
+
+    private static void insertOneByOne(IStateHistoryBackend backend) throws Exception {
+        for (ITmfStateInterval interval : getIntervals()) {
+            backend.insertPastState(interval.getStartTime(), interval.getEndTime(),
+                    interval.getAttribute(), interval.getStateValue());
+        }
+        backend.finishedBuilding(END_TIME);
+    }
+
+    private static void insertInBatches(IStateHistoryBackend backend) throws Exception {
+        StateIntervalBatch batch = new StateIntervalBatch(StateIntervalBatch.DEFAULT_CAPACITY);
+        for (ITmfStateInterval interval : getIntervals()) {
+            batch.add(interval.getStartTime(), interval.getEndTime(),
+                    interval.getAttribute(), interval.getStateValue());
+            if (batch.isFull()) {
+                batch.insertInto(backend);
+                batch = new StateIntervalBatch(StateIntervalBatch.DEFAULT_CAPACITY);
+            }
+        }
+        batch.insertInto(backend);
+        backend.finishedBuilding(END_TIME);
+    }
+
+    private static void assertSameHistory(IStateHistoryBackend expected, IStateHistoryBackend actual) throws Exception {
+        for (long t = 0; t <= END_TIME; t += 3) {
+            for (int attribute = 0; attribute < NUMBER_OF_ATTRIBUTES; attribute++) {
+                ITmfStateInterval expectedInterval = expected.doSingularQuery(t, attribute);
+                ITmfStateInterval actualInterval = actual.doSingularQuery(t, attribute);
+                if (expectedInterval == null) {
+                    assertNull(actualInterval);
+                    continue;
+                }
+                assertNotNull(actualInterval);
+                assertEquals(expectedInterval.getStartTime(), actualInterval.getStartTime());
+                assertEquals(expectedInterval.getEndTime(), actualInterval.getEndTime());
+                assertEquals(expectedInterval.getStateValue(), actualInterval.getStateValue());
+            }
+        }
+    }
+
+    /**
+     * Test that the history built from batches is the same as the one built
+     * from the intervals inserted one at a time, with both history tree
+     * back-ends
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testBatchedHistoryTree() throws Exception {
+        File reference = File.createTempFile("batch-test-ref", ".ht");
+        File batched = File.createTempFile("batch-test", ".ht");
+        File threaded = File.createTempFile("batch-test-threaded", ".ht");
+        IStateHistoryBackend referenceBackend = new HistoryTreeBackend("test-ss", reference, 1, 0, BLOCK_SIZE, MAX_CHILDREN);
+        IStateHistoryBackend batchedBackend = new HistoryTreeBackend("test-ss", batched, 1, 0, BLOCK_SIZE, MAX_CHILDREN);
+        IStateHistoryBackend threadedBackend = new ThreadedHistoryTreeBackend("test-ss", threaded, 1, 0, 1000, BLOCK_SIZE, MAX_CHILDREN);
+        try {
+            insertOneByOne(referenceBackend);
+            insertInBatches(batchedBackend);
+            insertInBatches(threadedBackend);
+
+            assertSameHistory(referenceBackend, batchedBackend);
+            assertSameHistory(referenceBackend, threadedBackend);
+            /* The intervals are stored in the same nodes */
+            assertEquals(reference.length(), batched.length());
+            assertEquals(reference.length(), threaded.length());
+        } finally {
+            referenceBackend.dispose();
+            batchedBackend.dispose();
+            threadedBackend.dispose();
+            reference.delete();
+            batched.delete();
+            threaded.delete();
+        }
+    }
+
+    /**
+     * Test that a back-end which does not take batches still receives all the
+     * intervals, in order
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testForeignBackend() throws Exception {
+        final List<ITmfStateInterval> received = new ArrayList<>();
+        IStateHistoryBackend backend = (IStateHistoryBackend) Proxy.newProxyInstance(
+                IStateHistoryBackend.class.getClassLoader(),
+                new Class<?>[] { IStateHistoryBackend.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("insertPastState")) {
+                            received.add(new TmfStateInterval((Long) args[0], (Long) args[1],
+                                    (Integer) args[2], (TmfStateValue) args[3]));
+                        }
+                        return null;
+                    }
+                });
+
+        StateIntervalBatch batch = new StateIntervalBatch(10);
+        for (int i = 0; i < 5; i++) {
+            batch.add(i * 10, i * 10 + 9, i % 2, TmfStateValue.newValueInt(i));
+        }
+        batch.insertInto(backend);
+
+        assertEquals(5, received.size());
+        for (int i = 0; i < 5; i++) {
+            ITmfStateInterval interval = received.get(i);
+            assertEquals(i * 10, interval.getStartTime());
+            assertEquals(i * 10 + 9, interval.getEndTime());
+            assertEquals(i % 2, interval.getAttribute());
+            assertEquals(TmfStateValue.newValueInt(i), interval.getStateValue());
+        }
+    }
+
+    /**
+     * Test looking for an interval in a batch
+     */
+    @Test
+    public void testGetIntervalAt() {
+        StateIntervalBatch batch = new StateIntervalBatch(4);
+        batch.add(10, 19, 0, TmfStateValue.newValueInt(1));
+        batch.add(5, 24, 1, TmfStateValue.newValueInt(2));
+        batch.add(20, 29, 0, TmfStateValue.newValueInt(3));
+
+        ITmfStateInterval interval = batch.getIntervalAt(22, 0);
+        assertNotNull(interval);
+        assertEquals(20, interval.getStartTime());
+        assertEquals(TmfStateValue.newValueInt(3), interval.getStateValue());
+
+        interval = batch.getIntervalAt(5, 1);
+        assertNotNull(interval);
+        assertEquals(24, interval.getEndTime());
+
+        assertNull(batch.getIntervalAt(4, 1));
+        assertNull(batch.getIntervalAt(30, 0));
+        assertNull(batch.getIntervalAt(15, 2));
+    }
+}
@@ -19,6 +19,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -32,6 +35,7 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedE
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfIntervalEndComparator;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
@@ -553,7 +557,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
     //--------------------------------------------------------------------------
 
     @Override
-    public synchronized List<ITmfStateInterval> queryFullState(long t)
+    public List<ITmfStateInterval> queryFullState(long t)
             throws TimeRangeException, StateSystemDisposedException {
         if (isDisposed) {
             throw new StateSystemDisposedException();
@@ -589,6 +593,115 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return stateInfo;
     }
 
+    @Override
+    public List<ITmfStateInterval> queryStates(long t, int[] quarks)
+            throws AttributeNotFoundException, TimeRangeException,
+            StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+
+        final int nbAttr = getNbAttributes();
+        for (int quark : quarks) {
+            if (quark < 0 || quark >= nbAttr) {
+                throw new AttributeNotFoundException(getSSID() + " Quark:" + quark); //$NON-NLS-1$
+            }
+        }
+
+        /*
+         * The back-end expects a list indexed by quark. Backing it with an
+         * array is cheap even when there are many attributes.
+         */
+        List<ITmfStateInterval> stateInfo = Arrays.asList(new ITmfStateInterval[nbAttr]);
+
+        /*
+         * Look in the transient state first, and only ask the back-end for
+         * the attributes that were not there.
+         */
+        BitSet missing = new BitSet(nbAttr);
+        for (int quark : quarks) {
+            ITmfStateInterval interval = transState.getIntervalAt(t, quark);
+            if (interval == null) {
+                missing.set(quark);
+            } else {
+                stateInfo.set(quark, interval);
+            }
+        }
+        if (!missing.isEmpty()) {
+            backend.doQuery(stateInfo, t, missing);
+        }
+
+        List<ITmfStateInterval> ret = new ArrayList<>(quarks.length);
+        for (int quark : quarks) {
+            ITmfStateInterval interval = stateInfo.get(quark);
+            if (interval == null) {
+                throw new IllegalStateException("Incoherent interval storage"); //$NON-NLS-1$
+            }
+            ret.add(interval);
+        }
+        return ret;
+    }
+
+    @Override
+    public Iterable<ITmfStateInterval> query2D(int[] quarks, long start, long end)
+            throws AttributeNotFoundException, TimeRangeException,
+            StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+        if (end < start) {
+            throw new TimeRangeException(getSSID() + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        final int nbAttr = getNbAttributes();
+        BitSet quarkSet = new BitSet(nbAttr);
+        for (int quark : quarks) {
+            if (quark < 0 || quark >= nbAttr) {
+                throw new AttributeNotFoundException(getSSID() + " Quark:" + quark); //$NON-NLS-1$
+            }
+            quarkSet.set(quark);
+        }
+
+        if (!transState.isActive()) {
+            /* Everything is in the back-end */
+            return backend.query2D(quarkSet, start, end);
+        }
+
+        /*
+         * The history is being built, the intervals are spread between the
+         * transient state and the back-end. Follow each attribute with
+         * singular queries.
+         */
+        final long rangeStart = Math.max(start, getStartTime());
+        List<ITmfStateInterval> ret = new ArrayList<>();
+        for (int quark = quarkSet.nextSetBit(0); quark >= 0; quark = quarkSet.nextSetBit(quark + 1)) {
+            long t = rangeStart;
+            while (t <= end) {
+                ITmfStateInterval interval;
+                try {
+                    interval = querySingleState(t, quark);
+                } catch (TimeRangeException e) {
+                    /* We reached the end of what was built so far */
+                    break;
+                }
+                if (interval.getEndTime() < t) {
+                    /*
+                     * This is the ongoing state again, whose end time is the
+                     * latest time seen so far. There is nothing after it.
+                     */
+                    break;
+                }
+                ret.add(interval);
+                if (interval.getEndTime() == Long.MAX_VALUE) {
+                    break;
+                }
+                t = interval.getEndTime() + 1;
+            }
+        }
+        Collections.sort(ret, new TmfIntervalEndComparator());
+        return ret;
+    }
+
     @Override
     public ITmfStateInterval querySingleState(long t, int attributeQuark)
             throws AttributeNotFoundException, TimeRangeException,
@@ -16,12 +16,14 @@
 package org.eclipse.tracecompass.internal.statesystem.core;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.StateIntervalBatch;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -42,23 +44,59 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  * of the interval will be the recorded time we have here, and the "end time"
  * will be the timestamp of the new state-changing event we just read.
  *
+ * The ongoing state is kept in arrays indexed by quark. Modifications are
+ * serialized on this object's monitor (normally, only the thread building the
+ * state system modifies it), but queries never take a lock. The start time and
+ * value of an attribute are read together using a "sequence lock": the writer
+ * increments {@link #fVersion} before and after each modification, and a
+ * reader retries if the version changed (or was odd) while it was reading.
+ * This way the build thread is never blocked by threads doing queries.
+ *
+ * The intervals that are created are not sent to the back-end one by one, but
+ * accumulated in a {@link StateIntervalBatch} which is handed over once it is
+ * full. Until then, queries also look for intervals in this pending batch.
+ *
  * @author Alexandre Montplaisir
  */
 @NonNullByDefault
 public class TransientState {
 
+    private static final int INITIAL_CAPACITY = 64;
+
     /* Indicates where to insert state changes that we generate */
     private final IStateHistoryBackend fBackend;
 
-    private final ReentrantReadWriteLock fRWLock = new ReentrantReadWriteLock(false);
-
     private volatile boolean fIsActive;
     private volatile long fLatestTime;
 
-    /* A method accessing these arrays will have to go through the lock */
-    private List<ITmfStateValue> fOngoingStateInfo;
-    private List<Long> fOngoingStateStartTimes;
-    private List<Type> fStateValueTypes;
+    /*
+     * Sequence number of the modifications, odd while a modification is in
+     * progress.
+     */
+    private volatile int fVersion = 0;
+
+    /* Number of valid entries in the arrays below */
+    private volatile int fNbAttributes = 0;
+
+    /*
+     * The arrays can be replaced by bigger ones when attributes are added. The
+     * new arrays are published before fNbAttributes is incremented, so readers
+     * must check the quark against fNbAttributes before reading the arrays.
+     */
+    private volatile AtomicReferenceArray<ITmfStateValue> fOngoingStateInfo;
+    private volatile AtomicLongArray fOngoingStateStartTimes;
+
+    /* Only accessed by the writer, while holding this object's monitor */
+    private byte[] fStateValueTypes;
+
+    /*
+     * Intervals not yet sent to the back-end. The batch is replaced by a new
+     * one only after it was handed over, so an interval is always either in
+     * the batch a reader sees, or in the back-end.
+     */
+    private volatile StateIntervalBatch fPendingBatch = new StateIntervalBatch(StateIntervalBatch.DEFAULT_CAPACITY);
+
+    private static final Type[] TYPES = Type.values();
 
     /**
      * Constructor
@@ -69,9 +107,9 @@ public class TransientState {
     public TransientState(IStateHistoryBackend backend) {
         fBackend = backend;
         fIsActive = true;
-        fOngoingStateInfo = new ArrayList<>();
-        fOngoingStateStartTimes = new ArrayList<>();
-        fStateValueTypes = new ArrayList<>();
+        fOngoingStateInfo = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        fOngoingStateStartTimes = new AtomicLongArray(INITIAL_CAPACITY);
+        fStateValueTypes = new byte[INITIAL_CAPACITY];
 
         fLatestTime = backend.getStartTime();
     }
@@ -95,17 +133,17 @@ public class TransientState {
      *             If the quark is invalid
      */
     public ITmfStateValue getOngoingStateValue(int quark) throws AttributeNotFoundException {
-        fRWLock.readLock().lock();
-        try {
-            checkValidAttribute(quark);
-            ITmfStateValue ret = fOngoingStateInfo.get(quark);
-            if (ret == null) {
-                throw new IllegalStateException("Null interval stored in transient state"); //$NON-NLS-1$
-            }
-            return ret;
-        } finally {
-            fRWLock.readLock().unlock();
+        checkValidAttribute(quark);
+        AtomicReferenceArray<ITmfStateValue> values = fOngoingStateInfo;
+        if (quark >= values.length()) {
+            /* The transient state was closed in the meantime */
+            throw new AttributeNotFoundException(fBackend.getSSID() + " Quark:" + quark); //$NON-NLS-1$
+        }
+        ITmfStateValue ret = values.get(quark);
+        if (ret == null) {
+            throw new IllegalStateException("Null interval stored in transient state"); //$NON-NLS-1$
         }
+        return ret;
     }
 
     /**
@@ -118,13 +156,13 @@ public class TransientState {
      *             If the quark is invalid
      */
     public long getOngoingStartTime(int quark) throws AttributeNotFoundException {
-        fRWLock.readLock().lock();
-        try {
-            checkValidAttribute(quark);
-            return fOngoingStateStartTimes.get(quark);
-        } finally {
-            fRWLock.readLock().unlock();
+        checkValidAttribute(quark);
+        AtomicLongArray startTimes = fOngoingStateStartTimes;
+        if (quark >= startTimes.length()) {
+            /* The transient state was closed in the meantime */
+            throw new AttributeNotFoundException(fBackend.getSSID() + " Quark:" + quark); //$NON-NLS-1$
         }
+        return startTimes.get(quark);
     }
 
     /**
@@ -138,14 +176,14 @@ public class TransientState {
      * @throws AttributeNotFoundException
      *             If the quark is invalid
      */
-    public void changeOngoingStateValue(int quark, ITmfStateValue newValue)
+    public synchronized void changeOngoingStateValue(int quark, ITmfStateValue newValue)
             throws AttributeNotFoundException {
-        fRWLock.writeLock().lock();
+        checkValidAttribute(quark);
+        beginWrite();
         try {
-            checkValidAttribute(quark);
             fOngoingStateInfo.set(quark, newValue);
         } finally {
-            fRWLock.writeLock().unlock();
+            endWrite();
         }
     }
 
@@ -161,14 +199,12 @@ public class TransientState {
      *             If the quark is invalid
      */
     public ITmfStateInterval getOngoingInterval(int quark) throws AttributeNotFoundException {
-        fRWLock.readLock().lock();
-        try {
-            checkValidAttribute(quark);
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark), fLatestTime,
-                    quark, fOngoingStateInfo.get(quark));
-        } finally {
-            fRWLock.readLock().unlock();
+        checkValidAttribute(quark);
+        ITmfStateInterval ret = readInterval(quark, Long.MAX_VALUE);
+        if (ret == null) {
+            throw new AttributeNotFoundException(fBackend.getSSID() + " Quark:" + quark); //$NON-NLS-1$
         }
+        return ret;
     }
 
     /**
@@ -184,27 +220,117 @@ public class TransientState {
      *         this transient state, or null if we couldn't.
      */
     public @Nullable ITmfStateInterval getIntervalAt(long time, int quark) {
-        fRWLock.readLock().lock();
-        try {
-            checkValidAttribute(quark);
-            if (!isActive() || time < fOngoingStateStartTimes.get(quark)) {
-                return null;
+        if (!isActive() || quark < 0 || quark >= fNbAttributes) {
+            return null;
+        }
+        ITmfStateInterval ret = readInterval(quark, time);
+        if (ret == null) {
+            ret = fPendingBatch.getIntervalAt(time, quark);
+        }
+        return ret;
+    }
+
+    /**
+     * Read the start time and value of an attribute, making sure they were not
+     * modified in between, and build the ongoing interval from them.
+     *
+     * @param quark
+     *            The quark of the attribute, which has to be valid
+     * @param time
+     *            Only return the interval if it starts at or before this time
+     * @return The ongoing interval, or null if it starts after 'time' or if
+     *         the transient state was closed in the meantime
+     */
+    private @Nullable ITmfStateInterval readInterval(int quark, long time) {
+        long start;
+        @Nullable ITmfStateValue value;
+        int version;
+        do {
+            version = fVersion;
+            AtomicLongArray startTimes = fOngoingStateStartTimes;
+            AtomicReferenceArray<ITmfStateValue> values = fOngoingStateInfo;
+            if (quark >= startTimes.length() || quark >= values.length()) {
+                /* The arrays were replaced by smaller ones, like on close */
+                value = null;
+                start = 0;
+            } else {
+                start = startTimes.get(quark);
+                value = values.get(quark);
             }
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark),
-                    fLatestTime, quark, fOngoingStateInfo.get(quark));
-        } catch (AttributeNotFoundException e) {
+        } while ((version & 1) != 0 || version != fVersion);
+
+        if (value == null || time < start) {
             return null;
-        } finally {
-            fRWLock.readLock().unlock();
         }
+        return new TmfStateInterval(start, fLatestTime, quark, value);
     }
 
     private void checkValidAttribute(int quark) throws AttributeNotFoundException {
-        if (quark > fOngoingStateInfo.size() - 1 || quark < 0) {
+        if (quark > fNbAttributes - 1 || quark < 0) {
             throw new AttributeNotFoundException(fBackend.getSSID() + " Quark:" + quark); //$NON-NLS-1$
         }
     }
 
+    /*
+     * Writer-side helpers, to be called while holding this object's monitor.
+     * Everything modified between beginWrite() and endWrite() is seen
+     * atomically by the readers.
+     */
+
+    private void insertPastState(long startTime, long endTime, int quark, ITmfStateValue value)
+            throws TimeRangeException {
+        StateIntervalBatch batch = fPendingBatch;
+        batch.add(startTime, endTime, quark, value);
+        if (batch.isFull()) {
+            flushPendingBatch();
+        }
+    }
+
+    private void flushPendingBatch() throws TimeRangeException {
+        StateIntervalBatch batch = fPendingBatch;
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batch.insertInto(fBackend);
+        } finally {
+            /* The back-end now owns the batch, even if it rejected it */
+            fPendingBatch = new StateIntervalBatch(StateIntervalBatch.DEFAULT_CAPACITY);
+        }
+    }
+
+    private void beginWrite() {
+        fVersion++;
+    }
+
+    private void endWrite() {
+        fVersion++;
+    }
+
+    /**
+     * Make sure the arrays can hold the given number of attributes, replacing
+     * them by bigger copies if needed. Must be called between beginWrite() and
+     * endWrite().
+     */
+    private void ensureCapacity(int size) {
+        int capacity = fStateValueTypes.length;
+        if (size <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(size, capacity + (capacity >> 1));
+        int nb = fNbAttributes;
+
+        AtomicReferenceArray<ITmfStateValue> values = new AtomicReferenceArray<>(newCapacity);
+        AtomicLongArray startTimes = new AtomicLongArray(newCapacity);
+        for (int i = 0; i < nb; i++) {
+            values.lazySet(i, fOngoingStateInfo.get(i));
+            startTimes.lazySet(i, fOngoingStateStartTimes.get(i));
+        }
+        fStateValueTypes = Arrays.copyOf(fStateValueTypes, newCapacity);
+        fOngoingStateInfo = values;
+        fOngoingStateStartTimes = startTimes;
+    }
+
     /**
      * More advanced version of {@link #changeOngoingStateValue}. Replaces the
      * complete ongoingStateInfo in one go, and updates the
@@ -216,22 +342,37 @@ public class TransientState {
      *            "ongoing state". Their end times don't matter, we will only
      *            check their value and start times.
      */
-    public void replaceOngoingState(List<ITmfStateInterval> newStateIntervals) {
+    public synchronized void replaceOngoingState(List<ITmfStateInterval> newStateIntervals) {
+        /* The pending intervals belong to the previous ongoing state */
+        try {
+            flushPendingBatch();
+        } catch (TimeRangeException e) {
+            throw new IllegalStateException(e);
+        }
+
         final int size = newStateIntervals.size();
+        final int capacity = Math.max(size, INITIAL_CAPACITY);
+
+        AtomicReferenceArray<ITmfStateValue> values = new AtomicReferenceArray<>(capacity);
+        AtomicLongArray startTimes = new AtomicLongArray(capacity);
+        byte[] types = new byte[capacity];
+
+        int i = 0;
+        for (ITmfStateInterval interval : newStateIntervals) {
+            values.lazySet(i, interval.getStateValue());
+            startTimes.lazySet(i, interval.getStartTime());
+            types[i] = (byte) interval.getStateValue().getType().ordinal();
+            i++;
+        }
 
-        fRWLock.writeLock().lock();
+        beginWrite();
         try {
-            fOngoingStateInfo = new ArrayList<>(size);
-            fOngoingStateStartTimes = new ArrayList<>(size);
-            fStateValueTypes = new ArrayList<>(size);
-
-            for (ITmfStateInterval interval : newStateIntervals) {
-                fOngoingStateInfo.add(interval.getStateValue());
-                fOngoingStateStartTimes.add(interval.getStartTime());
-                fStateValueTypes.add(interval.getStateValue().getType());
-            }
+            fStateValueTypes = types;
+            fOngoingStateInfo = values;
+            fOngoingStateStartTimes = startTimes;
+            fNbAttributes = size;
         } finally {
-            fRWLock.writeLock().unlock();
+            endWrite();
         }
     }
 
@@ -240,21 +381,26 @@ public class TransientState {
      * Ongoing... tables can stay in sync with the number of attributes in the
      * attribute tree, namely when we add sub-path attributes.
      */
-    public void addEmptyEntry() {
-        fRWLock.writeLock().lock();
+    public synchronized void addEmptyEntry() {
+        beginWrite();
         try {
+            int quark = fNbAttributes;
+            ensureCapacity(quark + 1);
+
             /*
              * Since this is a new attribute, we suppose it was in the
              * "null state" since the beginning (so we can have intervals
              * covering for all timestamps). A null interval will then get added
              * at the first state change.
              */
-            fOngoingStateInfo.add(TmfStateValue.nullValue());
-            fStateValueTypes.add(Type.NULL);
+            fOngoingStateInfo.lazySet(quark, TmfStateValue.nullValue());
+            fStateValueTypes[quark] = (byte) Type.NULL.ordinal();
+            fOngoingStateStartTimes.lazySet(quark, fBackend.getStartTime());
 
-            fOngoingStateStartTimes.add(fBackend.getStartTime());
+            /* Publish the new entry only once it is filled */
+            fNbAttributes = quark + 1;
         } finally {
-            fRWLock.writeLock().unlock();
+            endWrite();
         }
     }
 
@@ -268,79 +414,91 @@ public class TransientState {
      * @param quark
      *            The quark of the attribute that is being modified
      * @throws TimeRangeException
-     *             If 'eventTime' is invalid
+     *             If 'eventTime' is invalid. Since intervals are sent to the
+     *             back-end in batches, this may also be caused by a previous
+     *             state change.
      * @throws AttributeNotFoundException
      *             IF 'quark' does not represent an existing attribute
      * @throws StateValueTypeException
      *             If the state value to be inserted is of a different type of
      *             what was inserted so far for this attribute.
      */
-    public void processStateChange(long eventTime, ITmfStateValue value, int quark)
+    public synchronized void processStateChange(long eventTime, ITmfStateValue value, int quark)
             throws TimeRangeException, AttributeNotFoundException, StateValueTypeException {
         if (!this.fIsActive) {
             return;
         }
 
-        fRWLock.writeLock().lock();
-        try {
-            Type expectedSvType = fStateValueTypes.get(quark);
-            checkValidAttribute(quark);
+        checkValidAttribute(quark);
+        Type expectedSvType = TYPES[fStateValueTypes[quark]];
 
+        /*
+         * Make sure the state value type we're inserting is the same as the
+         * one registered for this attribute.
+         */
+        if (expectedSvType == Type.NULL) {
             /*
-             * Make sure the state value type we're inserting is the same as the
-             * one registered for this attribute.
+             * The value hasn't been used yet, set it to the value we're
+             * currently inserting (which might be null/-1 again).
              */
-            if (expectedSvType == Type.NULL) {
-                /*
-                 * The value hasn't been used yet, set it to the value we're
-                 * currently inserting (which might be null/-1 again).
-                 */
-                fStateValueTypes.set(quark, value.getType());
-            } else if ((value.getType() != Type.NULL) && (value.getType() != expectedSvType)) {
-                /*
-                 * We authorize inserting null values in any type of attribute,
-                 * but for every other types, it needs to match our
-                 * expectations!
-                 */
-                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + value.getType() + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            }
+            fStateValueTypes[quark] = (byte) value.getType().ordinal();
+        } else if ((value.getType() != Type.NULL) && (value.getType() != expectedSvType)) {
+            /*
+             * We authorize inserting null values in any type of attribute,
+             * but for every other types, it needs to match our
+             * expectations!
+             */
+            throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + value.getType() + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
 
-            if (fOngoingStateInfo.get(quark).equals(value)) {
-                /*
-                 * This is the case where the new value and the one already
-                 * present in the Builder are the same. We do not need to create
-                 * an interval, we'll just keep the current one going.
-                 */
-                return;
-            }
+        /* We are the only writer, no need to go through the sequence lock */
+        ITmfStateValue ongoingValue = fOngoingStateInfo.get(quark);
+        long ongoingStartTime = fOngoingStateStartTimes.get(quark);
 
-            if (fOngoingStateStartTimes.get(quark) < eventTime) {
-                /*
-                 * These two conditions are necessary to create an interval and
-                 * update ongoingStateInfo.
-                 */
-                fBackend.insertPastState(fOngoingStateStartTimes.get(quark),
-                        eventTime - 1, /* End Time */
-                        quark, /* attribute quark */
-                        fOngoingStateInfo.get(quark)); /* StateValue */
+        if (ongoingValue.equals(value)) {
+            /*
+             * This is the case where the new value and the one already
+             * present in the Builder are the same. We do not need to create
+             * an interval, we'll just keep the current one going.
+             */
+            return;
+        }
 
-                fOngoingStateStartTimes.set(quark, eventTime);
-            }
-            fOngoingStateInfo.set(quark, value);
+        boolean newInterval = (ongoingStartTime < eventTime);
+        if (newInterval) {
+            /*
+             * These two conditions are necessary to create an interval and
+             * update ongoingStateInfo.
+             */
+            insertPastState(ongoingStartTime,
+                    eventTime - 1, /* End Time */
+                    quark, /* attribute quark */
+                    ongoingValue); /* StateValue */
+        }
 
-            /* Update the Transient State's lastestTime, if needed */
-            if (fLatestTime < eventTime) {
-                fLatestTime = eventTime;
+        beginWrite();
+        try {
+            if (newInterval) {
+                fOngoingStateStartTimes.lazySet(quark, eventTime);
             }
-
+            fOngoingStateInfo.lazySet(quark, value);
         } finally {
-            fRWLock.writeLock().unlock();
+            endWrite();
+        }
+
+        /* Update the Transient State's lastestTime, if needed */
+        if (fLatestTime < eventTime) {
+            fLatestTime = eventTime;
         }
     }
 
     /**
      * Run a "get state at time" query on the Transient State only.
      *
+     * Each attribute's interval is read consistently, but the transient state
+     * may be modified while the query is running, so the intervals of
+     * different attributes are not necessarily from the same instant.
+     *
      * @param stateInfo
      *            The stateInfo object in which we will put our relevant
      *            information
@@ -348,28 +506,44 @@ public class TransientState {
      *            The requested timestamp
      */
     public void doQuery(List<ITmfStateInterval> stateInfo, long t) {
-        fRWLock.readLock().lock();
-        try {
-            if (!this.fIsActive) {
-                return;
-            }
-            if (stateInfo.size() > fOngoingStateInfo.size()) {
-                throw new IllegalArgumentException();
+        if (!this.fIsActive) {
+            return;
+        }
+        if (stateInfo.size() > fNbAttributes) {
+            throw new IllegalArgumentException();
+        }
+
+        boolean missing = false;
+        for (int i = 0; i < stateInfo.size(); i++) {
+            /*
+             * We build a dummy interval whose end time =
+             * "current transient state end time" to put in the answer to
+             * the query.
+             */
+            final ITmfStateInterval interval = readInterval(i, t);
+            if (interval != null) {
+                stateInfo.set(i, interval);
+            } else {
+                missing = true;
             }
+        }
 
-            for (int i = 0; i < stateInfo.size(); i++) {
-                /*
-                 * We build a dummy interval whose end time =
-                 * "current transient state end time" to put in the answer to
-                 * the query.
-                 */
-                final ITmfStateInterval interval = getIntervalAt(t, i);
-                if (interval != null) {
-                    stateInfo.set(i, interval);
-                }
+        if (!missing) {
+            return;
+        }
+
+        /*
+         * Look for the other intervals in the pending batch, going through it
+         * only once.
+         */
+        StateIntervalBatch batch = fPendingBatch;
+        final int nb = stateInfo.size();
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            int quark = batch.getAttribute(i);
+            if (quark < nb && stateInfo.get(quark) == null &&
+                    batch.getStartTime(i) <= t && t <= batch.getEndTime(i)) {
+                stateInfo.set(quark, batch.getInterval(i));
             }
-        } finally {
-            fRWLock.readLock().unlock();
         }
     }
 
@@ -383,43 +557,51 @@ public class TransientState {
      *            it may be different than the timestamp of the last state
      *            change)
      */
-    public void closeTransientState(long endTime) {
+    public synchronized void closeTransientState(long endTime) {
         if (!this.fIsActive) {
             return;
         }
 
-        fRWLock.writeLock().lock();
-        try {
-            for (int i = 0; i < fOngoingStateInfo.size(); i++) {
-                if (fOngoingStateStartTimes.get(i) > endTime) {
-                    /*
-                     * Handle the cases where trace end > timestamp of last
-                     * state change. This can happen when inserting "future"
-                     * changes.
-                     */
-                    continue;
-                }
-                try {
-                    fBackend.insertPastState(fOngoingStateStartTimes.get(i),
-                            endTime, /* End Time */
-                            i, /* attribute quark */
-                            fOngoingStateInfo.get(i)); /* StateValue */
-
-                } catch (TimeRangeException e) {
-                    /*
-                     * This shouldn't happen, since we control where the
-                     * interval's start time comes from
-                     */
-                    throw new IllegalStateException(e);
-                }
+        final int nb = fNbAttributes;
+        for (int i = 0; i < nb; i++) {
+            long startTime = fOngoingStateStartTimes.get(i);
+            if (startTime > endTime) {
+                /*
+                 * Handle the cases where trace end > timestamp of last
+                 * state change. This can happen when inserting "future"
+                 * changes.
+                 */
+                continue;
             }
+            try {
+                insertPastState(startTime,
+                        endTime, /* End Time */
+                        i, /* attribute quark */
+                        fOngoingStateInfo.get(i)); /* StateValue */
 
-            fOngoingStateInfo.clear();
-            fOngoingStateStartTimes.clear();
-            this.fIsActive = false;
+            } catch (TimeRangeException e) {
+                /*
+                 * This shouldn't happen, since we control where the
+                 * interval's start time comes from
+                 */
+                throw new IllegalStateException(e);
+            }
+        }
+        try {
+            flushPendingBatch();
+        } catch (TimeRangeException e) {
+            throw new IllegalStateException(e);
+        }
 
+        beginWrite();
+        try {
+            fNbAttributes = 0;
+            fOngoingStateInfo = new AtomicReferenceArray<>(0);
+            fOngoingStateStartTimes = new AtomicLongArray(0);
+            fStateValueTypes = new byte[0];
+            this.fIsActive = false;
         } finally {
-            fRWLock.writeLock().unlock();
+            endWrite();
         }
     }
 
@@ -445,7 +627,7 @@ public class TransientState {
      * @param writer
      *            The writer to which the output should be written
      */
-    public void debugPrint(PrintWriter writer) {
+    public synchronized void debugPrint(PrintWriter writer) {
         /* Only used for debugging, shouldn't be externalized */
         writer.println("------------------------------"); //$NON-NLS-1$
         writer.println("Info stored in the Builder:"); //$NON-NLS-1$
@@ -455,10 +637,10 @@ public class TransientState {
             return;
         }
         writer.println("\nAttribute\tStateValue\tValid since time"); //$NON-NLS-1$
-        for (int i = 0; i < fOngoingStateInfo.size(); i++) {
+        for (int i = 0; i < fNbAttributes; i++) {
             writer.format("%d\t\t", i); //$NON-NLS-1$
             writer.print(fOngoingStateInfo.get(i).toString() + "\t\t"); //$NON-NLS-1$
-            writer.println(fOngoingStateStartTimes.get(i).toString());
+            writer.println(fOngoingStateStartTimes.get(i));
         }
         writer.println('\n');
         return;
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+
+/**
+ * State history back-end which can receive the intervals in blocks, instead of
+ * one at a time.
+ *
+ * Other back-ends still get the intervals through
+ * {@link IStateHistoryBackend#insertPastState}, see
+ * {@link StateIntervalBatch#insertInto}.
+ */
+public interface IStateHistoryBatchBackend extends IStateHistoryBackend {
+
+    /**
+     * Insert a block of state intervals into the history. This is equivalent
+     * to calling {@link #insertPastState} for each interval of the batch, in
+     * order, but lets the backend amortize the cost of the hand-over.
+     *
+     * The backend may keep a reference to the batch, so the caller must not
+     * add any more intervals to it afterwards.
+     *
+     * @param batch
+     *            The intervals to insert
+     * @throws TimeRangeException
+     *             If the start or end time of an interval are invalid
+     */
+    void insertPastStates(@NonNull StateIntervalBatch batch) throws TimeRangeException;
+}
@@ -17,6 +17,8 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -24,7 +26,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -43,7 +45,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
  *
  * @author Alexandre Montplaisir
  */
-public class InMemoryBackend implements IStateHistoryBackend {
+public class InMemoryBackend implements IStateHistoryBatchBackend {
 
     /**
      * We need to compare the end time and the attribute, because we can have 2
@@ -130,9 +132,46 @@ public class InMemoryBackend implements IStateHistoryBackend {
         }
     }
 
+    @Override
+    public void insertPastStates(StateIntervalBatch batch) throws TimeRangeException {
+        final int size = batch.size();
+        long latestEndTime = latestTime;
+
+        /* Check and build all the intervals before taking the lock */
+        ITmfStateInterval[] newIntervals = new ITmfStateInterval[size];
+        for (int i = 0; i < size; i++) {
+            long stateStartTime = batch.getStartTime(i);
+            long stateEndTime = batch.getEndTime(i);
+            if (stateStartTime > stateEndTime || stateStartTime < startTime) {
+                throw new TimeRangeException(ssid + " Interval Start:" + stateStartTime + ", Interval End:" + stateEndTime + ", Backend Start:" + startTime); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            newIntervals[i] = new TmfStateInterval(stateStartTime, stateEndTime,
+                    batch.getAttribute(i), batch.getStateValue(i));
+            latestEndTime = Math.max(latestEndTime, stateEndTime);
+        }
+
+        /* Add all the intervals into the tree at once */
+        synchronized (intervals) {
+            for (ITmfStateInterval interval : newIntervals) {
+                intervals.add(interval);
+            }
+        }
+
+        /* Update the "latest seen time" */
+        if (latestEndTime > latestTime) {
+            latestTime = latestEndTime;
+        }
+    }
+
     @Override
     public void doQuery(List<ITmfStateInterval> currentStateInfo, long t)
             throws TimeRangeException {
+        doQuery(currentStateInfo, t, null);
+    }
+
+    @Override
+    public void doQuery(List<ITmfStateInterval> currentStateInfo, long t, @Nullable BitSet quarks)
+            throws TimeRangeException {
         if (!checkValidTime(t)) {
             throw new TimeRangeException(ssid + " Time:" + t + ", Start:" + startTime + ", End:" + latestTime); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         }
@@ -141,12 +180,14 @@ public class InMemoryBackend implements IStateHistoryBackend {
          * The intervals are sorted by end time, so we can binary search to get
          * the first possible interval, then only compare their start times.
          */
+        final int nbRequested = (quarks == null ? currentStateInfo.size() : quarks.cardinality());
         synchronized (intervals) {
             Iterator<ITmfStateInterval> iter = serachforEndTime(intervals, t);
-            for (int modCount = 0; iter.hasNext() && modCount < currentStateInfo.size();) {
+            for (int modCount = 0; iter.hasNext() && modCount < nbRequested;) {
                 ITmfStateInterval entry = iter.next();
                 final long entryStartTime = entry.getStartTime();
-                if (entryStartTime <= t) {
+                if (entryStartTime <= t &&
+                        (quarks == null || quarks.get(entry.getAttribute()))) {
                     /* Add this interval to the returned values */
                     currentStateInfo.set(entry.getAttribute(), entry);
                     modCount++;
@@ -183,6 +224,30 @@ public class InMemoryBackend implements IStateHistoryBackend {
         throw new AttributeNotFoundException(ssid + " Quark:" + attributeQuark); //$NON-NLS-1$
     }
 
+    @Override
+    public Iterable<ITmfStateInterval> query2D(BitSet quarks, long start, long end)
+            throws TimeRangeException {
+        if (end < start) {
+            throw new TimeRangeException(ssid + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        /*
+         * The intervals are sorted by end time, so we can skip the ones ending
+         * before the range. The following ones still have to be checked.
+         */
+        List<ITmfStateInterval> ret = new ArrayList<>();
+        synchronized (intervals) {
+            Iterator<ITmfStateInterval> iter = serachforEndTime(intervals, start);
+            while (iter.hasNext()) {
+                ITmfStateInterval entry = iter.next();
+                if (entry.getStartTime() <= end && quarks.get(entry.getAttribute())) {
+                    ret.add(entry);
+                }
+            }
+        }
+        return ret;
+    }
+
     private boolean checkValidTime(long t) {
         if (t >= startTime && t <= latestTime) {
             return true;
@@ -15,10 +15,11 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
@@ -30,7 +31,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
  *
  * @author Alexandre Montplaisir
  */
-public class NullBackend implements IStateHistoryBackend {
+public class NullBackend implements IStateHistoryBatchBackend {
 
     private final @NonNull String ssid;
 
@@ -68,6 +69,14 @@ public class NullBackend implements IStateHistoryBackend {
         /* The interval is always discarded. */
     }
 
+    /**
+     * The intervals will be discarded when using a null backend.
+     */
+    @Override
+    public void insertPastStates(StateIntervalBatch batch) {
+        /* The intervals are always discarded. */
+    }
+
     @Override
     public void finishedBuilding(long endTime) {
         /* Nothing to do */
@@ -107,6 +116,25 @@ public class NullBackend implements IStateHistoryBackend {
         /* Cannot do past queries */
     }
 
+    /**
+     * Null back-ends cannot run queries. Nothing will be put in
+     * currentStateInfo.
+     */
+    @Override
+    public void doQuery(List<ITmfStateInterval> currentStateInfo, long t, BitSet quarks) {
+        /* Cannot do past queries */
+    }
+
+    /**
+     * Null back-ends cannot run queries. An empty list will be returned.
+     *
+     * @return Always returns an empty list.
+     */
+    @Override
+    public Iterable<ITmfStateInterval> query2D(BitSet quarks, long start, long end) {
+        return Collections.emptyList();
+    }
+
     /**
      * Null back-ends cannot run queries. 'null' will be returned.
      *
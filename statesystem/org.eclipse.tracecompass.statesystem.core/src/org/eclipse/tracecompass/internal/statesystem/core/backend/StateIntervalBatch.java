@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+/**
+ * A fixed-size block of state intervals, used to hand over many intervals to a
+ * {@link IStateHistoryBackend} in one call.
+ *
+ * The intervals are stored in parallel arrays, so filling a batch does not
+ * allocate any object. Intervals can only be appended, and are never modified
+ * once added. The number of intervals is published after the interval itself
+ * is written, which means one thread can fill the batch while other threads
+ * are reading it, without any locking.
+ *
+ * Back-ends which can take whole batches implement
+ * {@link IStateHistoryBatchBackend}. Use {@link #insertInto} to hand over a
+ * batch to any back-end.
+ */
+public final class StateIntervalBatch {
+
+    /**
+     * Number of intervals of the batches sent by the transient state to the
+     * back-ends
+     */
+    public static final int DEFAULT_CAPACITY = 128;
+
+    private final long[] fStartTimes;
+    private final long[] fEndTimes;
+    private final int[] fAttributes;
+    private final ITmfStateValue[] fValues;
+
+    /* Smallest start time in this batch, only decreases */
+    private volatile long fMinStartTime = Long.MAX_VALUE;
+
+    private volatile int fSize = 0;
+
+    /**
+     * Constructor
+     *
+     * @param capacity
+     *            The maximum number of intervals this batch can contain
+     */
+    public StateIntervalBatch(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        fStartTimes = new long[capacity];
+        fEndTimes = new long[capacity];
+        fAttributes = new int[capacity];
+        fValues = new ITmfStateValue[capacity];
+    }
+
+    /**
+     * Append an interval to this batch. This should only be called by one
+     * thread at a time.
+     *
+     * @param stateStartTime
+     *            The start time of the interval
+     * @param stateEndTime
+     *            The end time of the interval
+     * @param quark
+     *            The quark of the attribute this interval refers to
+     * @param value
+     *            The state value represented by this interval
+     * @throws IllegalStateException
+     *             If the batch is already full
+     */
+    public void add(long stateStartTime, long stateEndTime, int quark, ITmfStateValue value) {
+        int index = fSize;
+        if (index >= fValues.length) {
+            throw new IllegalStateException("Interval batch is full"); //$NON-NLS-1$
+        }
+        fStartTimes[index] = stateStartTime;
+        fEndTimes[index] = stateEndTime;
+        fAttributes[index] = quark;
+        fValues[index] = value;
+        if (stateStartTime < fMinStartTime) {
+            fMinStartTime = stateStartTime;
+        }
+        /* Publish the new interval to the readers */
+        fSize = index + 1;
+    }
+
+    /**
+     * Get the number of intervals in this batch.
+     *
+     * @return The number of intervals
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the maximum number of intervals this batch can contain.
+     *
+     * @return The capacity of the batch
+     */
+    public int getCapacity() {
+        return fValues.length;
+    }
+
+    /**
+     * Check if this batch contains any interval.
+     *
+     * @return True if the batch is empty
+     */
+    public boolean isEmpty() {
+        return (fSize == 0);
+    }
+
+    /**
+     * Check if no more interval can be added to this batch.
+     *
+     * @return True if the batch is full
+     */
+    public boolean isFull() {
+        return (fSize >= fValues.length);
+    }
+
+    /**
+     * Get the start time of an interval of the batch.
+     *
+     * @param index
+     *            The index of the interval, smaller than {@link #size()}
+     * @return The start time
+     */
+    public long getStartTime(int index) {
+        checkIndex(index);
+        return fStartTimes[index];
+    }
+
+    /**
+     * Get the end time of an interval of the batch.
+     *
+     * @param index
+     *            The index of the interval, smaller than {@link #size()}
+     * @return The end time
+     */
+    public long getEndTime(int index) {
+        checkIndex(index);
+        return fEndTimes[index];
+    }
+
+    /**
+     * Get the attribute quark of an interval of the batch.
+     *
+     * @param index
+     *            The index of the interval, smaller than {@link #size()}
+     * @return The attribute quark
+     */
+    public int getAttribute(int index) {
+        checkIndex(index);
+        return fAttributes[index];
+    }
+
+    /**
+     * Get the state value of an interval of the batch.
+     *
+     * @param index
+     *            The index of the interval, smaller than {@link #size()}
+     * @return The state value
+     */
+    public ITmfStateValue getStateValue(int index) {
+        checkIndex(index);
+        ITmfStateValue value = fValues[index];
+        if (value == null) {
+            throw new IllegalStateException();
+        }
+        return value;
+    }
+
+    /**
+     * Build an interval object for one of the intervals of the batch.
+     *
+     * @param index
+     *            The index of the interval, smaller than {@link #size()}
+     * @return The corresponding interval
+     */
+    public ITmfStateInterval getInterval(int index) {
+        return new TmfStateInterval(getStartTime(index), getEndTime(index),
+                getAttribute(index), getStateValue(index));
+    }
+
+    /**
+     * Look for the interval of a given attribute that intersects a timestamp.
+     *
+     * @param t
+     *            The timestamp
+     * @param quark
+     *            The attribute quark
+     * @return The interval, or null if there is none in this batch
+     */
+    public @Nullable ITmfStateInterval getIntervalAt(long t, int quark) {
+        /* Read the size first, everything below it is safe to read */
+        int size = fSize;
+        if (size == 0 || t < fMinStartTime) {
+            return null;
+        }
+        /* Recent intervals are more likely to be looked for */
+        for (int i = size - 1; i >= 0; i--) {
+            if (fAttributes[i] == quark && fStartTimes[i] <= t && t <= fEndTimes[i]) {
+                return getInterval(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Insert the intervals of this batch into a back-end. The whole batch is
+     * handed over if the back-end supports it, otherwise the intervals are
+     * inserted one at a time, in order.
+     *
+     * The back-end may keep a reference to the batch, so no more intervals
+     * should be added to it afterwards.
+     *
+     * @param backend
+     *            The back-end in which to insert the intervals
+     * @throws TimeRangeException
+     *             If the start or end time of an interval are invalid
+     */
+    public void insertInto(IStateHistoryBackend backend) throws TimeRangeException {
+        if (backend instanceof IStateHistoryBatchBackend) {
+            ((IStateHistoryBatchBackend) backend).insertPastStates(this);
+            return;
+        }
+        final int size = fSize;
+        for (int i = 0; i < size; i++) {
+            backend.insertPastState(fStartTimes[i], fEndTimes[i], fAttributes[i], getStateValue(i));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fSize) {
+            throw new IndexOutOfBoundsException("Index:" + index + ", Size:" + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+}
@@ -13,6 +13,7 @@
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Configuration object for the {@link HistoryTree}.
@@ -21,14 +22,76 @@ import java.io.File;
  */
 public final class HTConfig {
 
+    /**
+     * The ways the intervals can be laid out in the blocks of the history
+     * file.
+     */
+    public static enum NodeEncoding {
+        /**
+         * Fixed-size entries in the Data section, with the values that do not
+         * fit in an entry stored in the Strings section at the end of the
+         * block. The entries can be read individually, without decoding the
+         * whole node.
+         */
+        FIXED,
+        /**
+         * Variable-length entries, where the end times and quarks are stored
+         * as the difference with the previous interval of the node, and the
+         * start time as the duration of the interval. Many more intervals fit
+         * in a block, but the whole node has to be decoded when it is read.
+         */
+        DELTA;
+
+        /**
+         * Determine a node encoding by reading a serialized byte.
+         *
+         * @param rep
+         *            The byte representation of the encoding
+         * @return The corresponding NodeEncoding
+         * @throws IOException
+         *             If the encoding is unrecognized
+         */
+        public static NodeEncoding fromByte(byte rep) throws IOException {
+            switch (rep) {
+            case 0:
+                return FIXED;
+            case 1:
+                return DELTA;
+            default:
+                throw new IOException("Unknown node encoding"); //$NON-NLS-1$
+            }
+        }
+
+        /**
+         * Get the byte representation of this encoding. It can then be read
+         * with {@link #fromByte}.
+         *
+         * @return The byte matching this encoding
+         */
+        public byte toByte() {
+            switch (this) {
+            case FIXED:
+                return 0;
+            case DELTA:
+                return 1;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+    }
+
     private static final int DEFAULT_BLOCKSIZE = 64 * 1024;
     private static final int DEFAULT_MAXCHILDREN = 50;
+    private static final long DEFAULT_NODE_CACHE_SIZE = 16 * 1024 * 1024;
+    private static final NodeEncoding DEFAULT_NODE_ENCODING = NodeEncoding.FIXED;
 
     private final File stateFile;
     private final int blockSize;
     private final int maxChildren;
     private final int providerVersion;
     private final long treeStart;
+    private final long nodeCacheSize;
+    private final NodeEncoding nodeEncoding;
 
     /**
      * Full constructor.
@@ -47,14 +110,101 @@ public final class HTConfig {
      *            uselessly.
      * @param startTime
      *            The start time of the history
+     * @param nodeCacheSize
+     *            The amount of memory, in bytes, that can be used to keep
+     *            recently-read nodes in memory.
+     * @param nodeEncoding
+     *            The layout of the intervals in the blocks of the file
      */
     public HTConfig(File newStateFile, int blockSize, int maxChildren,
-            int providerVersion, long startTime) {
+            int providerVersion, long startTime, long nodeCacheSize,
+            NodeEncoding nodeEncoding) {
         this.stateFile = newStateFile;
         this.blockSize = blockSize;
         this.maxChildren = maxChildren;
         this.providerVersion = providerVersion;
         this.treeStart = startTime;
+        this.nodeCacheSize = nodeCacheSize;
+        this.nodeEncoding = nodeEncoding;
+    }
+
+    /**
+     * Version of the constructor using the default value for the node cache
+     * size.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     * @param nodeEncoding
+     *            The layout of the intervals in the blocks of the file
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime, NodeEncoding nodeEncoding) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime,
+                DEFAULT_NODE_CACHE_SIZE, nodeEncoding);
+    }
+
+    /**
+     * Version of the constructor using the default value for the node
+     * encoding.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     * @param nodeCacheSize
+     *            The amount of memory, in bytes, that can be used to keep
+     *            recently-read nodes in memory.
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime, long nodeCacheSize) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime,
+                nodeCacheSize, DEFAULT_NODE_ENCODING);
+    }
+
+    /**
+     * Version of the constructor using the default values for the
+     * 'nodeCacheSize' and the node encoding.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime, DEFAULT_NODE_CACHE_SIZE);
     }
 
     /**
@@ -122,4 +272,22 @@ public final class HTConfig {
     public long getTreeStart() {
         return treeStart;
     }
+
+    /**
+     * Get the maximum size of the node cache, in bytes
+     *
+     * @return The node cache size
+     */
+    public long getNodeCacheSize() {
+        return nodeCacheSize;
+    }
+
+    /**
+     * Get the layout of the intervals in the blocks of the history file
+     *
+     * @return The node encoding
+     */
+    public NodeEncoding getNodeEncoding() {
+        return nodeEncoding;
+    }
 }
@@ -44,7 +44,7 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      * +  4  int (valueOffset)
      * </pre>
      */
-    private static final int DATA_ENTRY_SIZE = 25;
+    static final int DATA_ENTRY_SIZE = 25;
 
     /* 'Byte' equivalent for state values types */
     private static final byte TYPE_NULL = -1;
@@ -127,6 +127,28 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      *             If there was an error reading from the buffer
      */
     public static final HTInterval readFrom(ByteBuffer buffer) throws IOException {
+        int pos = buffer.position();
+        HTInterval interval = readFrom(buffer, pos);
+        buffer.position(pos + DATA_ENTRY_SIZE);
+        return interval;
+    }
+
+    /**
+     * Reader factory method, reading the interval whose Data Section entry is
+     * at the given position in the buffer. Only absolute reads are done, so
+     * the position of the buffer is not modified and the same buffer can be
+     * read concurrently by many threads.
+     *
+     * @param buffer
+     *            The ByteBuffer containing the node's block. Offsets in the
+     *            Data Section entries are relative to the start of the buffer.
+     * @param pos
+     *            The position in the buffer of the Data Section entry
+     * @return The interval object
+     * @throws IOException
+     *             If there was an error reading from the buffer
+     */
+    public static final HTInterval readFrom(ByteBuffer buffer, int pos) throws IOException {
         HTInterval interval;
         long intervalStart, intervalEnd;
         int attribute;
@@ -136,13 +158,13 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         byte array[];
 
         /* Read the Data Section entry */
-        intervalStart = buffer.getLong();
-        intervalEnd = buffer.getLong();
-        attribute = buffer.getInt();
+        intervalStart = buffer.getLong(pos);
+        intervalEnd = buffer.getLong(pos + 8);
+        attribute = buffer.getInt(pos + 16);
 
         /* Read the 'type' of the value, then react accordingly */
-        valueType = buffer.get();
-        valueOrOffset = buffer.getInt();
+        valueType = buffer.get(pos + 20);
+        valueOrOffset = buffer.getInt(pos + 21);
         switch (valueType) {
 
         case TYPE_NULL:
@@ -157,12 +179,11 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
             break;
 
         case TYPE_STRING:
-            /* Go read the matching entry in the Strings section of the block */
-            buffer.mark();
-            buffer.position(valueOrOffset);
-
-            /* the first byte = the size to read */
-            valueSize = buffer.get();
+            /*
+             * Go read the matching entry in the Strings section of the block.
+             * The first byte = the size to read.
+             */
+            valueSize = buffer.get(valueOrOffset);
 
             /*
              * Careful though, 'valueSize' is the total size of the entry,
@@ -171,48 +192,28 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
              * value.
              */
             array = new byte[valueSize - 2];
-            buffer.get(array);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = buffer.get(valueOrOffset + 1 + i);
+            }
             value = TmfStateValue.newValueString(new String(array));
 
             /* Confirm the 0'ed byte at the end */
-            res = buffer.get();
+            res = buffer.get(valueOrOffset + valueSize - 1);
             if (res != 0) {
                 throw new IOException(errMsg);
             }
-
-            /*
-             * Restore the file pointer's position (so we can read the next
-             * interval)
-             */
-            buffer.reset();
             break;
 
         case TYPE_LONG:
             /* Go read the matching entry in the Strings section of the block */
-            buffer.mark();
-            buffer.position(valueOrOffset);
-            value = TmfStateValue.newValueLong(buffer.getLong());
+            value = TmfStateValue.newValueLong(buffer.getLong(valueOrOffset));
             valueSize = LONG_ENTRY_SIZE;
-
-            /*
-             * Restore the file pointer's position (so we can read the next
-             * interval)
-             */
-            buffer.reset();
             break;
 
         case TYPE_DOUBLE:
             /* Go read the matching entry in the Strings section of the block */
-            buffer.mark();
-            buffer.position(valueOrOffset);
-            value = TmfStateValue.newValueDouble(buffer.getDouble());
+            value = TmfStateValue.newValueDouble(buffer.getDouble(valueOrOffset));
             valueSize = DOUBLE_ENTRY_SIZE;
-
-            /*
-             * Restore the file pointer's position (so we can read the next
-             * interval)
-             */
-            buffer.reset();
             break;
 
         default:
@@ -228,6 +229,48 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         return interval;
     }
 
+    /**
+     * Read only the start time of a serialized interval, without building the
+     * interval object.
+     *
+     * @param buffer
+     *            The buffer containing the node's block
+     * @param pos
+     *            The position in the buffer of the Data Section entry
+     * @return The start time of the interval
+     */
+    static long readStartTime(ByteBuffer buffer, int pos) {
+        return buffer.getLong(pos);
+    }
+
+    /**
+     * Read only the end time of a serialized interval, without building the
+     * interval object.
+     *
+     * @param buffer
+     *            The buffer containing the node's block
+     * @param pos
+     *            The position in the buffer of the Data Section entry
+     * @return The end time of the interval
+     */
+    static long readEndTime(ByteBuffer buffer, int pos) {
+        return buffer.getLong(pos + 8);
+    }
+
+    /**
+     * Read only the attribute of a serialized interval, without building the
+     * interval object.
+     *
+     * @param buffer
+     *            The buffer containing the node's block
+     * @param pos
+     *            The position in the buffer of the Data Section entry
+     * @return The attribute quark of the interval
+     */
+    static int readAttribute(ByteBuffer buffer, int pos) {
+        return buffer.getInt(pos + 16);
+    }
+
     /**
      * Antagonist of the previous constructor, write the Data entry
      * corresponding to this interval in a ByteBuffer (mapped to a block in the
@@ -338,6 +381,202 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         return stringsEntrySize;
     }
 
+    /**
+     * Reader factory method for the nodes using the
+     * {@link HTConfig.NodeEncoding#DELTA} encoding. The interval is read at
+     * the current position of the buffer, which is then moved after it.
+     *
+     * @param buffer
+     *            The ByteBuffer from which to read the information
+     * @param prevEnd
+     *            The end time of the previous interval of the node, or the
+     *            start time of the node if this is the first interval
+     * @param prevAttribute
+     *            The attribute of the previous interval of the node, or 0 if
+     *            this is the first interval
+     * @return The interval object
+     * @throws IOException
+     *             If there was an error reading from the buffer
+     */
+    static HTInterval readEncoded(ByteBuffer buffer, long prevEnd, int prevAttribute) throws IOException {
+        long intervalEnd = prevEnd + unZigZag(getVarLong(buffer));
+        long intervalStart = intervalEnd - getVarLong(buffer);
+        int attribute = (int) (prevAttribute + unZigZag(getVarLong(buffer)));
+
+        TmfStateValue value;
+        int valueSize;
+        byte valueType = buffer.get();
+        switch (valueType) {
+        case TYPE_NULL:
+            value = TmfStateValue.nullValue();
+            valueSize = NO_ENTRY_SIZE;
+            break;
+
+        case TYPE_INTEGER:
+            value = TmfStateValue.newValueInt((int) unZigZag(getVarLong(buffer)));
+            valueSize = NO_ENTRY_SIZE;
+            break;
+
+        case TYPE_STRING:
+            byte[] array = new byte[(int) getVarLong(buffer)];
+            buffer.get(array);
+            value = TmfStateValue.newValueString(new String(array));
+            /* Keep the same size as if the node was using the fixed layout */
+            valueSize = array.length + 2;
+            break;
+
+        case TYPE_LONG:
+            value = TmfStateValue.newValueLong(unZigZag(getVarLong(buffer)));
+            valueSize = LONG_ENTRY_SIZE;
+            break;
+
+        case TYPE_DOUBLE:
+            value = TmfStateValue.newValueDouble(buffer.getDouble());
+            valueSize = DOUBLE_ENTRY_SIZE;
+            break;
+
+        default:
+            throw new IOException(errMsg);
+        }
+
+        try {
+            return new HTInterval(intervalStart, intervalEnd, attribute, value, valueSize);
+        } catch (TimeRangeException e) {
+            throw new IOException(errMsg);
+        }
+    }
+
+    /**
+     * Write this interval using the {@link HTConfig.NodeEncoding#DELTA}
+     * encoding, at the current position of the buffer.
+     *
+     * @param buffer
+     *            The buffer corresponding to a SHT Node
+     * @param prevEnd
+     *            The end time of the previous interval of the node, or the
+     *            start time of the node if this is the first interval
+     * @param prevAttribute
+     *            The attribute of the previous interval of the node, or 0 if
+     *            this is the first interval
+     */
+    void writeEncoded(ByteBuffer buffer, long prevEnd, int prevAttribute) {
+        putVarLong(buffer, zigZag(end - prevEnd));
+        putVarLong(buffer, end - start);
+        putVarLong(buffer, zigZag((long) attribute - prevAttribute));
+        byte type = getByteFromType(sv.getType());
+        buffer.put(type);
+
+        try {
+            switch (type) {
+            case TYPE_INTEGER:
+                putVarLong(buffer, zigZag(sv.unboxInt()));
+                break;
+            case TYPE_STRING:
+                byte[] bytes = sv.unboxStr().getBytes();
+                putVarLong(buffer, bytes.length);
+                buffer.put(bytes);
+                break;
+            case TYPE_LONG:
+                putVarLong(buffer, zigZag(sv.unboxLong()));
+                break;
+            case TYPE_DOUBLE:
+                buffer.putDouble(sv.unboxDouble());
+                break;
+            case TYPE_NULL:
+            default:
+                break;
+            }
+        } catch (StateValueTypeException e) {
+            /* We are in a switch/case on the type of the value */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Size this interval takes once written with
+     * {@link #writeEncoded(ByteBuffer, long, int)}.
+     *
+     * @param prevEnd
+     *            The end time of the previous interval of the node, or the
+     *            start time of the node if this is the first interval
+     * @param prevAttribute
+     *            The attribute of the previous interval of the node, or 0 if
+     *            this is the first interval
+     * @return The encoded size, in bytes
+     */
+    int getEncodedSize(long prevEnd, int prevAttribute) {
+        int size = varLongSize(zigZag(end - prevEnd))
+                + varLongSize(end - start)
+                + varLongSize(zigZag((long) attribute - prevAttribute))
+                + 1;
+
+        try {
+            switch (sv.getType()) {
+            case INTEGER:
+                return size + varLongSize(zigZag(sv.unboxInt()));
+            case STRING:
+                /* The strings entry size includes the size and \0 bytes */
+                int length = stringsEntrySize - 2;
+                return size + varLongSize(length) + length;
+            case LONG:
+                return size + varLongSize(zigZag(sv.unboxLong()));
+            case DOUBLE:
+                return size + DOUBLE_ENTRY_SIZE;
+            case NULL:
+            default:
+                return size;
+            }
+        } catch (StateValueTypeException e) {
+            /* We are in a switch/case on the type of the value */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Variable-length encoding of the numbers, 7 bits per byte, with the
+     * high bit set if more bytes follow. Signed values are first "zig-zag"
+     * encoded, so that small negative values also use few bytes.
+     */
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        long remaining = value >>> 7;
+        while (remaining != 0) {
+            remaining >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(errMsg);
+    }
+
     @Override
     public long getStartTime() {
         return start;
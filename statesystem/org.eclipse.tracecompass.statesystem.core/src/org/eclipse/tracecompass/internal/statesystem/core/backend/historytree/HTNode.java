@@ -20,13 +20,13 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig.NodeEncoding;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 /**
  * The base class for all the types of nodes that go in the History Tree.
@@ -119,6 +119,24 @@ public abstract class HTNode {
     /* Vector containing all the intervals contained in this node */
     private final List<HTInterval> intervals;
 
+    /*
+     * For nodes read from disk, the block in which the intervals are
+     * serialized. The intervals are then only decoded when they are returned by
+     * a query, and 'intervals' remains empty. This is null for nodes built in
+     * memory, or once the intervals have been decoded.
+     */
+    private volatile ByteBuffer fBlock = null;
+
+    /* Number of intervals serialized in fBlock */
+    private int fBlockIntervalCount = 0;
+
+    /*
+     * Worst-case growth of the encoded size of an interval in a DELTA node,
+     * when another interval is inserted right before it: the difference
+     * with the previous quark may then need up to 5 bytes instead of 1.
+     */
+    private static final int MAX_DELTA_REENCODING_GROWTH = 4;
+
     /* Lock used to protect the accesses to intervals, nodeEnd and such */
     private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(false);
 
@@ -152,24 +170,23 @@ public abstract class HTNode {
      *
      * @param config
      *            Configuration of the History Tree
-     * @param fc
-     *            FileChannel to the history file, ALREADY SEEKED at the start
-     *            of the node.
+     * @param buffer
+     *            Buffer containing the block of the node. Position 0 of the
+     *            buffer must be the start of the node. It can be a heap
+     *            buffer or a view of a memory-mapped region of the file.
      * @return The node object
      * @throws IOException
-     *             If there was an error reading from the file channel
+     *             If there was an error reading from the buffer
      */
-    public static final HTNode readNode(HTConfig config, FileChannel fc)
+    public static final HTNode readNode(HTConfig config, ByteBuffer buffer)
             throws IOException {
         HTNode newNode = null;
-        int res, i;
 
-        ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSize());
+        if (buffer.limit() < config.getBlockSize()) {
+            throw new IOException("Incomplete node block"); //$NON-NLS-1$
+        }
         buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.clear();
-        res = fc.read(buffer);
-        assert (res == config.getBlockSize());
-        buffer.flip();
+        buffer.position(0);
 
         /* Read the common header part */
         byte typeByte = buffer.get();
@@ -203,10 +220,31 @@ public abstract class HTNode {
 
         /*
          * At this point, we should be done reading the header and 'buffer'
-         * should only have the intervals left
+         * should only have the intervals left.
          */
-        for (i = 0; i < intervalCount; i++) {
-            newNode.intervals.add(HTInterval.readFrom(buffer));
+        if (buffer.position() != newNode.getTotalHeaderSize()) {
+            throw new IOException("Invalid node header"); //$NON-NLS-1$
+        }
+        if (config.getNodeEncoding() == NodeEncoding.DELTA) {
+            /*
+             * Each interval is stored relative to the previous one, so they
+             * can only be decoded all at once.
+             */
+            long prevEnd = start;
+            int prevAttribute = 0;
+            for (int i = 0; i < intervalCount; i++) {
+                HTInterval interval = HTInterval.readEncoded(buffer, prevEnd, prevAttribute);
+                newNode.intervals.add(interval);
+                prevEnd = interval.getEndTime();
+                prevAttribute = interval.getAttribute();
+            }
+            newNode.sizeOfIntervalSection = buffer.position() - newNode.getTotalHeaderSize();
+        } else {
+            /* Keep the intervals there, they will be decoded only when needed */
+            newNode.fBlock = buffer;
+            newNode.fBlockIntervalCount = intervalCount;
+            newNode.sizeOfIntervalSection = intervalCount * HTInterval.DATA_ENTRY_SIZE
+                    + config.getBlockSize() - stringSectionOffset;
         }
 
         /* Assign the node's other information we have read previously */
@@ -227,6 +265,8 @@ public abstract class HTNode {
      *             If there was an error writing
      */
     public final void writeSelf(FileChannel fc) throws IOException {
+        decodeIntervals();
+
         /*
          * Yes, we are taking the *read* lock here, because we are reading the
          * information in the node to write it to disk.
@@ -254,9 +294,19 @@ public abstract class HTNode {
             this.writeSpecificHeader(buffer);
 
             /* Back to us, we write the intervals */
-            for (HTInterval interval : intervals) {
-                int size = interval.writeInterval(buffer, curStringsEntryEndPos);
-                curStringsEntryEndPos -= size;
+            if (config.getNodeEncoding() == NodeEncoding.DELTA) {
+                long prevEnd = nodeStart;
+                int prevAttribute = 0;
+                for (HTInterval interval : intervals) {
+                    interval.writeEncoded(buffer, prevEnd, prevAttribute);
+                    prevEnd = interval.getEndTime();
+                    prevAttribute = interval.getAttribute();
+                }
+            } else {
+                for (HTInterval interval : intervals) {
+                    int size = interval.writeInterval(buffer, curStringsEntryEndPos);
+                    curStringsEntryEndPos -= size;
+                }
             }
 
             /*
@@ -361,6 +411,28 @@ public abstract class HTNode {
         return isOnDisk;
     }
 
+    /**
+     * Get the space an interval would use if it was added to this node. This
+     * depends on the node encoding, and for the
+     * {@link NodeEncoding#DELTA DELTA} encoding, on the intervals already in
+     * the node.
+     *
+     * @param interval
+     *            The interval to add to this node
+     * @return The size of the interval, in bytes
+     */
+    public int getIntervalSize(HTInterval interval) {
+        if (config.getNodeEncoding() != NodeEncoding.DELTA) {
+            return interval.getIntervalSize();
+        }
+        rwl.readLock().lock();
+        try {
+            return getEncodedSize(interval, getInsertIndex(interval));
+        } finally {
+            rwl.readLock().unlock();
+        }
+    }
+
     /**
      * Add an interval to this node
      *
@@ -368,27 +440,64 @@ public abstract class HTNode {
      *            Interval to add to this node
      */
     public void addInterval(HTInterval newInterval) {
+        decodeIntervals();
         rwl.writeLock().lock();
         try {
-            /* Just in case, should be checked before even calling this function */
-            assert (newInterval.getIntervalSize() <= this.getNodeFreeSpace());
-
             /* Find the insert position to keep the list sorted */
-            int index = intervals.size();
-            while (index > 0 && newInterval.compareTo(intervals.get(index - 1)) < 0) {
-                index--;
-            }
+            int index = getInsertIndex(newInterval);
 
-            intervals.add(index, newInterval);
-            sizeOfIntervalSection += newInterval.getIntervalSize();
+            if (config.getNodeEncoding() == NodeEncoding.DELTA) {
+                int size = getEncodedSize(newInterval, index);
 
-            /* Update the in-node offset "pointer" */
-            stringSectionOffset -= (newInterval.getStringsEntrySize());
+                /* Just in case, should be checked before even calling this function */
+                assert (size <= this.getNodeFreeSpace());
+
+                intervals.add(index, newInterval);
+                sizeOfIntervalSection += size;
+            } else {
+                /* Just in case, should be checked before even calling this function */
+                assert (newInterval.getIntervalSize() <= this.getNodeFreeSpace());
+
+                intervals.add(index, newInterval);
+                sizeOfIntervalSection += newInterval.getIntervalSize();
+
+                /* Update the in-node offset "pointer" */
+                stringSectionOffset -= (newInterval.getStringsEntrySize());
+            }
         } finally {
             rwl.writeLock().unlock();
         }
     }
 
+    private int getInsertIndex(HTInterval newInterval) {
+        /* Should only be called by methods with the lock taken */
+        int index = intervals.size();
+        while (index > 0 && newInterval.compareTo(intervals.get(index - 1)) < 0) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Encoded size of an interval inserted at the given position of the list,
+     * in a DELTA node. If it is not inserted at the end, the following
+     * interval will now be encoded relative to it instead, and could grow.
+     */
+    private int getEncodedSize(HTInterval newInterval, int index) {
+        /* Should only be called by methods with the lock taken */
+        int size;
+        if (index == 0) {
+            size = newInterval.getEncodedSize(nodeStart, 0);
+        } else {
+            HTInterval prev = intervals.get(index - 1);
+            size = newInterval.getEncodedSize(prev.getEndTime(), prev.getAttribute());
+        }
+        if (index < intervals.size()) {
+            size += MAX_DELTA_REENCODING_GROWTH;
+        }
+        return size;
+    }
+
     /**
      * We've received word from the containerTree that newest nodes now exist to
      * our right. (Puts isDone = true and sets the endtime)
@@ -401,7 +510,7 @@ public abstract class HTNode {
         try {
             assert (endtime >= this.nodeStart);
 
-            if (!intervals.isEmpty()) {
+            if (fBlock == null && !intervals.isEmpty()) {
                 /*
                  * Make sure there are no intervals in this node with their
                  * EndTime > the one requested. Only need to check the last one
@@ -431,9 +540,48 @@ public abstract class HTNode {
      */
     public void writeInfoFromNode(List<ITmfStateInterval> stateInfo, long t)
             throws TimeRangeException {
+        writeInfoFromNode(stateInfo, t, null);
+    }
+
+    /**
+     * Variant of {@link #writeInfoFromNode(List, long)} which only fills the
+     * entries of some attributes.
+     *
+     * @param stateInfo
+     *            The same stateInfo that comes from SHT's doQuery()
+     * @param t
+     *            The timestamp for which the query is for. Only return
+     *            intervals that intersect t.
+     * @param quarks
+     *            The quarks of the attributes to fill, or null to fill all of
+     *            them
+     * @throws TimeRangeException
+     *             If 't' is invalid
+     */
+    public void writeInfoFromNode(List<ITmfStateInterval> stateInfo, long t, BitSet quarks)
+            throws TimeRangeException {
         /* This is from a state system query, we are "reading" this node */
         rwl.readLock().lock();
         try {
+            ByteBuffer block = fBlock;
+            if (block != null) {
+                /*
+                 * Only look at the serialized start times and attributes, and
+                 * only decode the intervals we return.
+                 */
+                final int dataStart = getTotalHeaderSize();
+                for (int i = getStartIndexFor(block, t); i < fBlockIntervalCount; i++) {
+                    int pos = dataStart + i * HTInterval.DATA_ENTRY_SIZE;
+                    int attribute = HTInterval.readAttribute(block, pos);
+                    if (HTInterval.readStartTime(block, pos) <= t &&
+                            attribute < stateInfo.size() &&
+                            (quarks == null || quarks.get(attribute))) {
+                        stateInfo.set(attribute, decodeInterval(block, pos));
+                    }
+                }
+                return;
+            }
+
             for (int i = getStartIndexFor(t); i < intervals.size(); i++) {
                 /*
                  * Now we only have to compare the Start times, since we now the
@@ -445,7 +593,8 @@ public abstract class HTNode {
                  */
                 ITmfStateInterval interval = intervals.get(i);
                 if (interval.getStartTime() <= t &&
-                        interval.getAttribute() < stateInfo.size()) {
+                        interval.getAttribute() < stateInfo.size() &&
+                        (quarks == null || quarks.get(interval.getAttribute()))) {
                     stateInfo.set(interval.getAttribute(), interval);
                 }
             }
@@ -470,6 +619,20 @@ public abstract class HTNode {
     public HTInterval getRelevantInterval(int key, long t) throws TimeRangeException {
         rwl.readLock().lock();
         try {
+            ByteBuffer block = fBlock;
+            if (block != null) {
+                final int dataStart = getTotalHeaderSize();
+                for (int i = getStartIndexFor(block, t); i < fBlockIntervalCount; i++) {
+                    int pos = dataStart + i * HTInterval.DATA_ENTRY_SIZE;
+                    if (HTInterval.readAttribute(block, pos) == key
+                            && HTInterval.readStartTime(block, pos) <= t
+                            && HTInterval.readEndTime(block, pos) >= t) {
+                        return decodeInterval(block, pos);
+                    }
+                }
+                return null;
+            }
+
             for (int i = getStartIndexFor(t); i < intervals.size(); i++) {
                 HTInterval curInterval = intervals.get(i);
                 if (curInterval.getAttribute() == key
@@ -487,50 +650,133 @@ public abstract class HTNode {
         }
     }
 
+    /**
+     * Get the intervals of this node that intersect a time range, for some
+     * attributes. The intervals are returned in the order they are stored in
+     * the node, which is by end time.
+     *
+     * @param quarks
+     *            The quarks of the attributes to look for
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The matching intervals, sorted by end time
+     */
+    public List<HTInterval> getIntervals(BitSet quarks, long start, long end) {
+        List<HTInterval> ret = new ArrayList<>();
+        rwl.readLock().lock();
+        try {
+            ByteBuffer block = fBlock;
+            if (block != null) {
+                final int dataStart = getTotalHeaderSize();
+                for (int i = getStartIndexFor(block, start); i < fBlockIntervalCount; i++) {
+                    int pos = dataStart + i * HTInterval.DATA_ENTRY_SIZE;
+                    if (quarks.get(HTInterval.readAttribute(block, pos))
+                            && HTInterval.readStartTime(block, pos) <= end) {
+                        ret.add(decodeInterval(block, pos));
+                    }
+                }
+                return ret;
+            }
+
+            for (int i = getStartIndexFor(start); i < intervals.size(); i++) {
+                HTInterval curInterval = intervals.get(i);
+                if (quarks.get(curInterval.getAttribute())
+                        && curInterval.getStartTime() <= end) {
+                    ret.add(curInterval);
+                }
+            }
+            return ret;
+
+        } finally {
+            rwl.readLock().unlock();
+        }
+    }
+
     private int getStartIndexFor(long t) throws TimeRangeException {
         /* Should only be called by methods with the readLock taken */
 
-        if (intervals.isEmpty()) {
-            return 0;
-        }
         /*
          * Since the intervals are sorted by end time, we can skip all the ones
-         * at the beginning whose end times are smaller than 't'. Java does
-         * provides a .binarySearch method, but its API is quite weird...
+         * at the beginning whose end times are smaller than 't'. Find the first
+         * interval whose end time is >= t.
          */
-        HTInterval dummy = new HTInterval(0, t, 0, TmfStateValue.nullValue());
-        int index = Collections.binarySearch(intervals, dummy);
-
-        if (index < 0) {
-            /*
-             * .binarySearch returns a negative number if the exact value was
-             * not found. Here we just want to know where to start searching, we
-             * don't care if the value is exact or not.
-             */
-            index = -index - 1;
-
+        int low = 0;
+        int high = intervals.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (intervals.get(mid).getEndTime() < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        return low;
+    }
 
-        /* Sometimes binarySearch yields weird stuff... */
-        if (index < 0) {
-            index = 0;
+    /**
+     * Same as {@link #getStartIndexFor(long)}, but looking directly at the end
+     * times of the intervals serialized in the node's block.
+     */
+    private int getStartIndexFor(ByteBuffer block, long t) {
+        /* Should only be called by methods with the readLock taken */
+        final int dataStart = getTotalHeaderSize();
+        int low = 0;
+        int high = fBlockIntervalCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long end = HTInterval.readEndTime(block, dataStart + mid * HTInterval.DATA_ENTRY_SIZE);
+            if (end < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
-        if (index >= intervals.size()) {
-            index = intervals.size() - 1;
+        return low;
+    }
+
+    private static HTInterval decodeInterval(ByteBuffer block, int pos) {
+        try {
+            return HTInterval.readFrom(block, pos);
+        } catch (IOException e) {
+            /* The block was already read successfully, it should be valid */
+            throw new IllegalStateException(e);
         }
+    }
 
-        /*
-         * Another API quirkiness, the returned index is the one of the *last*
-         * element of a series of equal endtimes, which happens sometimes. We
-         * want the *first* element of such a series, to read through them
-         * again.
-         */
-        while (index > 0
-                && intervals.get(index - 1).compareTo(intervals.get(index)) == 0) {
-            index--;
+    /**
+     * Decode all the intervals still serialized in the node's block into the
+     * 'intervals' list. Needed before the node can be modified or written.
+     */
+    private void decodeIntervals() {
+        if (fBlock == null) {
+            return;
+        }
+        rwl.writeLock().lock();
+        try {
+            ByteBuffer block = fBlock;
+            if (block == null) {
+                return;
+            }
+            final int dataStart = getTotalHeaderSize();
+            for (int i = 0; i < fBlockIntervalCount; i++) {
+                HTInterval interval = decodeInterval(block, dataStart + i * HTInterval.DATA_ENTRY_SIZE);
+                intervals.add(interval);
+            }
+            fBlock = null;
+            fBlockIntervalCount = 0;
+        } finally {
+            rwl.writeLock().unlock();
         }
+    }
 
-        return index;
+    /**
+     * Get the number of intervals in this node, whether they are decoded or
+     * not.
+     */
+    private int getIntervalCount() {
+        return (fBlock == null ? intervals.size() : fBlockIntervalCount);
     }
 
     /**
@@ -605,7 +851,7 @@ public abstract class HTNode {
         /* Only used for debugging, shouldn't be externalized */
         StringBuffer buf = new StringBuffer("Node #" + sequenceNumber + ", ");
         buf.append(this.toStringSpecific());
-        buf.append(intervals.size() + " intervals (" + this.getNodeUsagePercent()
+        buf.append(getIntervalCount() + " intervals (" + this.getNodeUsagePercent()
                 + "% used), ");
 
         buf.append("[" + this.nodeStart + " - ");
@@ -643,6 +889,7 @@ public abstract class HTNode {
         }
 
         /* List of intervals in the node */
+        decodeIntervals();
         writer.println("  Intervals contained:");
         for (int i = 0; i < intervals.size(); i++) {
             writer.println(intervals.get(i).toString());
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of history tree nodes, used by {@link HT_IO} to avoid re-reading
+ * recently-used nodes from disk.
+ *
+ * The cache is split into independent "stripes", selected by the node's
+ * sequence number, each with its own lock and its own LRU eviction list. This
+ * way, concurrent queries from different threads will rarely contend on the
+ * same lock, and nodes with close sequence numbers do not evict each other
+ * like they would in a direct-mapped table.
+ *
+ * The size of the cache is expressed in bytes. Since all the nodes of a tree
+ * have the same block size, this is converted to a maximum number of nodes.
+ */
+public class HTNodeCache {
+
+    /** Number of stripes, must be a power of 2 */
+    public static final int NB_STRIPES = 16;
+
+    private final Stripe[] fStripes = new Stripe[NB_STRIPES];
+
+    private final AtomicLong fHits = new AtomicLong();
+    private final AtomicLong fMisses = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param cacheSize
+     *            The maximum amount of memory, in bytes, this cache should
+     *            use.
+     * @param blockSize
+     *            The size, in bytes, of each node that will be put in the
+     *            cache
+     */
+    public HTNodeCache(long cacheSize, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        /* Each stripe holds at least one node */
+        long nodesPerStripe = Math.max(1, cacheSize / blockSize / NB_STRIPES);
+        int capacity = (int) Math.min(Integer.MAX_VALUE, nodesPerStripe);
+        for (int i = 0; i < NB_STRIPES; i++) {
+            fStripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Look for a node in the cache.
+     *
+     * @param seqNumber
+     *            The sequence number of the node
+     * @return The node, or null if it is not in the cache
+     */
+    public HTNode get(int seqNumber) {
+        Stripe stripe = getStripe(seqNumber);
+        HTNode node;
+        synchronized (stripe) {
+            node = stripe.get(seqNumber);
+        }
+        if (node == null) {
+            fMisses.incrementAndGet();
+        } else {
+            fHits.incrementAndGet();
+        }
+        return node;
+    }
+
+    /**
+     * Insert a node in the cache, possibly evicting the least-recently used
+     * node of its stripe.
+     *
+     * @param node
+     *            The node to insert
+     */
+    public void put(HTNode node) {
+        int seqNumber = node.getSequenceNumber();
+        Stripe stripe = getStripe(seqNumber);
+        synchronized (stripe) {
+            stripe.put(seqNumber, node);
+        }
+    }
+
+    /**
+     * Remove all the nodes from the cache. The hit/miss counters are kept.
+     */
+    public void clear() {
+        for (Stripe stripe : fStripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the number of lookups that were found in the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getHitCount() {
+        return fHits.get();
+    }
+
+    /**
+     * Get the number of lookups that were not found in the cache.
+     *
+     * @return The number of cache misses
+     */
+    public long getMissCount() {
+        return fMisses.get();
+    }
+
+    private Stripe getStripe(int seqNumber) {
+        return fStripes[seqNumber & (NB_STRIPES - 1)];
+    }
+
+    /**
+     * One stripe of the cache. A LinkedHashMap in access-order mode gives us
+     * the LRU policy. Accesses must be synchronized on the stripe itself,
+     * since even get() modifies the ordering.
+     */
+    private static final class Stripe extends LinkedHashMap<Integer, HTNode> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fCapacity;
+
+        public Stripe(int capacity) {
+            super(16, 0.75f, true);
+            fCapacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, HTNode> eldest) {
+            return size() > fCapacity;
+        }
+    }
+}
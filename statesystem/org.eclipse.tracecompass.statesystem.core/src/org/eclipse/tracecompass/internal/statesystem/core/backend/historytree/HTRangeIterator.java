@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * Iterator over the intervals of a history tree that intersect a time range,
+ * for a set of attributes.
+ *
+ * The tree is traversed only once: a node is read only if its time range
+ * intersects the requested one, and each node is read at most once. The
+ * intervals are returned sorted by end time. This is done by merging the
+ * (already sorted) intervals of every node that was read, and by only reading
+ * a node once all the intervals ending before its start time were returned.
+ * Since the intervals of a node cannot end before the node's start, nothing
+ * can be missed.
+ *
+ * If the history is disposed while the iteration is ongoing, an
+ * {@link IllegalStateException} wrapping a
+ * {@link StateSystemDisposedException} will be thrown.
+ */
+class HTRangeIterator implements Iterator<ITmfStateInterval> {
+
+    private final HistoryTree fTree;
+    private final BitSet fQuarks;
+    private final long fStart;
+    private final long fEnd;
+
+    /*
+     * Contains both the nodes that are still to be read, with their start time
+     * as key, and the intervals read from the nodes, with the end time of the
+     * next interval as key.
+     */
+    private final PriorityQueue<Entry> fQueue = new PriorityQueue<>();
+
+    /**
+     * Constructor
+     *
+     * @param tree
+     *            The history tree to iterate on
+     * @param quarks
+     *            The quarks of the attributes to look for
+     * @param start
+     *            The start of the time range, which should be within the
+     *            tree's range
+     * @param end
+     *            The end of the time range, which should be within the tree's
+     *            range
+     */
+    public HTRangeIterator(HistoryTree tree, BitSet quarks, long start, long end) {
+        fTree = tree;
+        fQuarks = quarks;
+        fStart = start;
+        fEnd = end;
+
+        HTNode root = tree.getRootNode();
+        if (!quarks.isEmpty() && start <= end) {
+            fQueue.add(new Entry(root.getNodeStart(), root.getSequenceNumber()));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        /* Read the nodes until the next interval to return is known */
+        Entry entry = fQueue.peek();
+        while (entry != null && entry.isNode()) {
+            fQueue.poll();
+            readNode(entry.fSeqNumber);
+            entry = fQueue.peek();
+        }
+        return (entry != null);
+    }
+
+    @Override
+    public ITmfStateInterval next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry entry = fQueue.poll();
+        List<HTInterval> intervals = entry.fIntervals;
+        HTInterval ret = intervals.get(entry.fIndex);
+
+        int nextIndex = entry.fIndex + 1;
+        if (nextIndex < intervals.size()) {
+            fQueue.add(new Entry(intervals, nextIndex));
+        }
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void readNode(int seqNumber) {
+        HTNode node;
+        try {
+            node = fTree.readNode(seqNumber);
+        } catch (ClosedChannelException e) {
+            throw new IllegalStateException(new StateSystemDisposedException(e));
+        }
+
+        List<HTInterval> intervals = node.getIntervals(fQuarks, fStart, fEnd);
+        if (!intervals.isEmpty()) {
+            fQueue.add(new Entry(intervals, 0));
+        }
+
+        if (node.getNodeType() != HTNode.NodeType.CORE) {
+            return;
+        }
+
+        /* Queue the children whose time range intersects the requested one */
+        CoreNode core = (CoreNode) node;
+        final int nbChildren = core.getNbChildren();
+        for (int i = 0; i < nbChildren; i++) {
+            long childStart = core.getChildStart(i);
+            if (childStart > fEnd) {
+                break;
+            }
+            boolean isLast = (i == nbChildren - 1);
+            if (isLast || core.getChildStart(i + 1) > fStart) {
+                fQueue.add(new Entry(childStart, core.getChild(i)));
+            }
+        }
+    }
+
+    /**
+     * Element of the priority queue, either a node to read or the position of
+     * the next interval to return in a node's list.
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final long fKey;
+        private final int fSeqNumber;
+        private final List<HTInterval> fIntervals;
+        private final int fIndex;
+
+        /* Node to read */
+        public Entry(long nodeStart, int seqNumber) {
+            fKey = nodeStart;
+            fSeqNumber = seqNumber;
+            fIntervals = null;
+            fIndex = -1;
+        }
+
+        /* Next interval to return */
+        public Entry(List<HTInterval> intervals, int index) {
+            fKey = intervals.get(index).getEndTime();
+            fSeqNumber = -1;
+            fIntervals = intervals;
+            fIndex = index;
+        }
+
+        public boolean isNode() {
+            return (fIntervals == null);
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int cmp = Long.compare(fKey, o.fKey);
+            if (cmp != 0) {
+                return cmp;
+            }
+            /* For equal keys, return the intervals before reading more nodes */
+            if (isNode() == o.isNode()) {
+                return 0;
+            }
+            return (isNode() ? 1 : -1);
+        }
+    }
+}
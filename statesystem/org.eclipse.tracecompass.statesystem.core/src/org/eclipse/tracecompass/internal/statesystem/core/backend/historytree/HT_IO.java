@@ -16,8 +16,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 
@@ -27,6 +39,15 @@ import org.eclipse.tracecompass.internal.statesystem.core.Activator;
  * It contains all the methods and descriptors to handle reading/writing nodes
  * to the tree-file on disk and all the caching mechanisms.
  *
+ * Nodes are read with positional reads (or copied from memory-mapped windows
+ * of the file, for existing history files), so that concurrent readers never
+ * share a seek position and do not need to lock each other out. The windows
+ * are unmapped when the file is closed.
+ *
+ * Nodes can also be written by a separate "writer" thread (see
+ * {@link #startWriterThread}), so that the thread building the tree does not
+ * have to serialize the nodes and wait for the file writes.
+ *
  * This abstraction is mainly for code isolation/clarification purposes. Every
  * HistoryTree must contain 1 and only 1 HT_IO element.
  *
@@ -43,9 +64,58 @@ class HT_IO {
     private final FileChannel fcIn;
     private final FileChannel fcOut;
 
-    // TODO test/benchmark optimal cache size
-    private static final int CACHE_SIZE = 256;
-    private final HTNode fNodeCache[] = new HTNode[CACHE_SIZE];
+    /* Cache of recently read/written nodes, safe for concurrent use */
+    private final HTNodeCache fNodeCache;
+
+    /*
+     * Maximum size of one memory-mapped window of the file. It will be
+     * rounded down to a multiple of the block size.
+     */
+    private static final long MAP_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    /*
+     * Memory-mapped windows of the node section of the file, mapped lazily.
+     * This is null if the file is not memory-mapped.
+     */
+    private final AtomicReferenceArray<MappedByteBuffer> fMappedWindows;
+    private final int fNodesPerWindow;
+
+    /* False once the file could not be mapped, or once it is closed */
+    private volatile boolean fMappingEnabled;
+
+    /*
+     * The blocks are copied out of the windows with the read lock held, the
+     * windows are unmapped with the write lock held, so no one reads an
+     * unmapped window.
+     */
+    private final ReadWriteLock fMapLock = new ReentrantReadWriteLock();
+
+    /*
+     * Nodes waiting to be written by the writer thread, followed by
+     * END_OF_QUEUE once it is stopped. This is null if the nodes are written
+     * directly by writeNode().
+     *
+     * The queue itself is not bounded, so writeNode() never waits (it is
+     * called with the latest branch of the tree locked). The thread inserting
+     * the intervals waits in waitForWriter() instead, once it released the
+     * lock.
+     */
+    private volatile BlockingQueue<Object> fWriteQueue = null;
+    private Thread fWriterThread = null;
+    private int fMaxPendingNodes = 0;
+
+    /* Marks the end of the write queue */
+    private static final Object END_OF_QUEUE = new Object();
+
+    /* Notified every time the writer thread is done with a node */
+    private final Object fWriterProgress = new Object();
+
+    /*
+     * Nodes that were handed to the writer thread but are not completely
+     * written yet. They are not necessarily in the cache anymore, and reading
+     * them from the file would return incomplete data.
+     */
+    private final ConcurrentMap<Integer, HTNode> fPendingNodes = new ConcurrentHashMap<>();
 
     /**
      * Standard constructor
@@ -60,6 +130,7 @@ class HT_IO {
      */
     public HT_IO(HTConfig config, boolean newFile) throws IOException {
         fConfig = config;
+        fNodeCache = new HTNodeCache(config.getNodeCacheSize(), config.getBlockSize());
 
         File historyTreeFile = config.getStateFile();
         if (newFile) {
@@ -86,6 +157,21 @@ class HT_IO {
         }
         this.fcIn = fis.getChannel();
         this.fcOut = fos.getChannel();
+
+        /*
+         * An existing file will not be written to anymore, so we can map it in
+         * memory and read the nodes directly from the mapped regions.
+         */
+        fNodesPerWindow = (int) Math.max(1, MAP_WINDOW_SIZE / config.getBlockSize());
+        if (newFile) {
+            fMappedWindows = null;
+        } else {
+            long nodeSectionSize = Math.max(0, fcIn.size() - HistoryTree.TREE_HEADER_SIZE);
+            long windowSize = (long) fNodesPerWindow * config.getBlockSize();
+            int nbWindows = (int) ((nodeSectionSize + windowSize - 1) / windowSize);
+            fMappedWindows = new AtomicReferenceArray<>(nbWindows);
+        }
+        fMappingEnabled = (fMappedWindows != null);
     }
 
     /**
@@ -99,21 +185,29 @@ class HT_IO {
      *             reading. Instead of using a big reader-writer lock, we'll
      *             just catch this exception.
      */
-    public synchronized HTNode readNode(int seqNumber) throws ClosedChannelException {
-        /* Do a cache lookup */
-        int offset = seqNumber & (CACHE_SIZE - 1);
-        HTNode readNode = fNodeCache[offset];
-        if (readNode != null && readNode.getSequenceNumber() == seqNumber) {
+    public HTNode readNode(int seqNumber) throws ClosedChannelException {
+        /* Do a cache lookup, this does not need the file lock */
+        HTNode readNode = fNodeCache.get(seqNumber);
+        if (readNode != null) {
+            return readNode;
+        }
+
+        /* The node may have been evicted before it got written */
+        readNode = fPendingNodes.get(seqNumber);
+        if (readNode != null) {
             return readNode;
         }
 
         /* Lookup on disk */
         try {
-            seekFCToNodePos(fcIn, seqNumber);
-            readNode = HTNode.readNode(fConfig, fcIn);
+            ByteBuffer buffer = getMappedNodeBuffer(seqNumber);
+            if (buffer == null) {
+                buffer = readNodeBuffer(seqNumber);
+            }
+            readNode = HTNode.readNode(fConfig, buffer);
 
             /* Put the node in the cache. */
-            fNodeCache[offset] = readNode;
+            fNodeCache.put(readNode);
             return readNode;
         } catch (ClosedChannelException e) {
             throw e;
@@ -124,20 +218,155 @@ class HT_IO {
         }
     }
 
-    public synchronized void writeNode(HTNode node) {
+    /**
+     * Write a node to the file. If the writer thread is started, the node is
+     * only put in its queue, and this never waits. Either way, the node can be
+     * read back right away.
+     *
+     * @param node
+     *            The node to write. It should not be modified anymore.
+     */
+    public void writeNode(HTNode node) {
+        BlockingQueue<Object> queue = fWriteQueue;
+        if (queue == null) {
+            writeNodeToFile(node);
+            return;
+        }
+        fNodeCache.put(node);
+        fPendingNodes.put(node.getSequenceNumber(), node);
+        queue.add(node);
+    }
+
+    /**
+     * Wait until the writer thread has no more than the maximum number of
+     * pending nodes left to write. This bounds the memory used by the nodes in
+     * flight. It should not be called with the latest branch of the tree
+     * locked, since the queries would then wait for the writes too.
+     *
+     * Returns right away if the writer thread is not started.
+     */
+    public void waitForWriter() {
+        synchronized (fWriterProgress) {
+            try {
+                while (fWriteQueue != null && fPendingNodes.size() > fMaxPendingNodes) {
+                    fWriterProgress.wait();
+                }
+            } catch (InterruptedException e) {
+                Activator.getDefault().logError(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Start a thread which will do the serialization and the file writes of
+     * the nodes passed to {@link #writeNode}.
+     *
+     * @param queueSize
+     *            The maximum number of nodes waiting to be written. Past that,
+     *            {@link #waitForWriter} waits for the writer thread.
+     */
+    public synchronized void startWriterThread(int queueSize) {
+        if (fWriteQueue != null) {
+            return;
+        }
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        fMaxPendingNodes = Math.max(1, queueSize);
+        fWriterThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Object item = queue.take();
+                    while (item != END_OF_QUEUE) {
+                        HTNode node = (HTNode) item;
+                        writeNodeToFile(node);
+                        fPendingNodes.remove(node.getSequenceNumber());
+                        synchronized (fWriterProgress) {
+                            fWriterProgress.notifyAll();
+                        }
+                        item = queue.take();
+                    }
+                } catch (InterruptedException e) {
+                    Activator.getDefault().logError(e.getMessage(), e);
+                }
+            }
+        }, "History Tree Writer Thread"); //$NON-NLS-1$
+        fWriterThread.start();
+        fWriteQueue = queue;
+    }
+
+    /**
+     * Wait until all the nodes passed to the writer thread are written, then
+     * stop it. The following nodes will be written directly by
+     * {@link #writeNode}. Does nothing if the writer thread is not started.
+     */
+    public synchronized void stopWriterThread() {
+        BlockingQueue<Object> queue = fWriteQueue;
+        Thread thread = fWriterThread;
+        if (queue == null || thread == null) {
+            return;
+        }
+        fWriteQueue = null;
+        fWriterThread = null;
+        queue.add(END_OF_QUEUE);
         try {
-            /* Insert the node into the cache. */
-            int seqNumber = node.getSequenceNumber();
-            int offset = seqNumber & (CACHE_SIZE - 1);
-            fNodeCache[offset] = node;
-
-            /* Position ourselves at the start of the node and write it */
-            seekFCToNodePos(fcOut, seqNumber);
-            node.writeSelf(fcOut);
-        } catch (IOException e) {
-            /* If we were able to open the file, we should be fine now... */
+            thread.join();
+        } catch (InterruptedException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
+        /* Nodes dropped by deleteFile() will never be written */
+        fPendingNodes.clear();
+        synchronized (fWriterProgress) {
+            fWriterProgress.notifyAll();
+        }
+    }
+
+    /**
+     * Get the number of nodes handed to the writer thread that are not
+     * written to the file yet.
+     *
+     * @return The number of pending nodes
+     */
+    public int getPendingNodeCount() {
+        return fPendingNodes.size();
+    }
+
+    private void writeNodeToFile(HTNode node) {
+        /*
+         * Not synchronized on this object, so that stopWriterThread() can wait
+         * for the writer thread while holding it.
+         */
+        synchronized (fcOut) {
+            try {
+                /* Insert the node into the cache. */
+                int seqNumber = node.getSequenceNumber();
+                fNodeCache.put(node);
+
+                /* Position ourselves at the start of the node and write it */
+                seekFCToNodePos(fcOut, seqNumber);
+                node.writeSelf(fcOut);
+            } catch (IOException e) {
+                /* If we were able to open the file, we should be fine now... */
+                Activator.getDefault().logError(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Get the number of node reads that were served from the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getCacheHitCount() {
+        return fNodeCache.getHitCount();
+    }
+
+    /**
+     * Get the number of node reads that had to go to the file.
+     *
+     * @return The number of cache misses
+     */
+    public long getCacheMissCount() {
+        return fNodeCache.getMissCount();
     }
 
     public FileChannel getFcOut() {
@@ -150,7 +379,9 @@ class HT_IO {
              * Position ourselves at the start of the Mapping section in the
              * file (which is right after the Blocks)
              */
-            seekFCToNodePos(fcIn, nodeOffset);
+            synchronized (fcIn) {
+                seekFCToNodePos(fcIn, nodeOffset);
+            }
         } catch (IOException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
@@ -158,6 +389,9 @@ class HT_IO {
     }
 
     public synchronized void closeFile() {
+        stopWriterThread();
+        fNodeCache.clear();
+        unmapWindows();
         try {
             fis.close();
             fos.close();
@@ -167,6 +401,11 @@ class HT_IO {
     }
 
     public synchronized void deleteFile() {
+        /* No need to finish writing a file we are about to delete */
+        BlockingQueue<Object> queue = fWriteQueue;
+        if (queue != null) {
+            queue.clear();
+        }
         closeFile();
 
         File historyTreeFile = fConfig.getStateFile();
@@ -176,6 +415,173 @@ class HT_IO {
         }
     }
 
+    /**
+     * Read the block of the given node from the file, using a positional read
+     * so the shared position of the input channel is not modified.
+     *
+     * @param seqNumber
+     *            The sequence number of the node to read
+     * @return A buffer containing the node's block, at position 0
+     * @throws IOException
+     *             If the block could not be read completely
+     */
+    private ByteBuffer readNodeBuffer(int seqNumber) throws IOException {
+        final int blockSize = fConfig.getBlockSize();
+        long pos = getNodePos(seqNumber);
+
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        while (buffer.hasRemaining()) {
+            int res = fcIn.read(buffer, pos + buffer.position());
+            if (res < 0) {
+                throw new IOException("Unexpected end of file while reading node " + seqNumber); //$NON-NLS-1$
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Copy the given node's block from the memory-mapped file. The node does
+     * not keep a reference to the window, which can then be unmapped while
+     * the node is still in use.
+     *
+     * @param seqNumber
+     *            The sequence number of the node
+     * @return A buffer containing the node's block, at position 0, or null if
+     *         the file is not memory-mapped.
+     * @throws ClosedChannelException
+     *             If the file was closed
+     */
+    private ByteBuffer getMappedNodeBuffer(int seqNumber) throws ClosedChannelException {
+        AtomicReferenceArray<MappedByteBuffer> windows = fMappedWindows;
+        if (windows == null || !fMappingEnabled) {
+            return null;
+        }
+        int windowIndex = seqNumber / fNodesPerWindow;
+        if (windowIndex >= windows.length()) {
+            return null;
+        }
+
+        fMapLock.readLock().lock();
+        try {
+            if (!fMappingEnabled) {
+                return null;
+            }
+            MappedByteBuffer window = windows.get(windowIndex);
+            if (window == null) {
+                /*
+                 * Concurrent readers may end up mapping the same window twice,
+                 * only one of them will be kept.
+                 */
+                final int blockSize = fConfig.getBlockSize();
+                long start = getNodePos(windowIndex * fNodesPerWindow);
+                try {
+                    long size = Math.min((long) fNodesPerWindow * blockSize, fcIn.size() - start);
+                    window = fcIn.map(MapMode.READ_ONLY, start, size);
+                } catch (ClosedChannelException e) {
+                    throw e;
+                } catch (IOException e) {
+                    /*
+                     * The file could not be mapped (not enough address space
+                     * for example), use the regular reads from now on.
+                     */
+                    fMappingEnabled = false;
+                    return null;
+                }
+                if (!windows.compareAndSet(windowIndex, null, window)) {
+                    unmap(window);
+                    window = windows.get(windowIndex);
+                }
+            }
+
+            int offset = (seqNumber % fNodesPerWindow) * fConfig.getBlockSize();
+            if (offset + fConfig.getBlockSize() > window.capacity()) {
+                return null;
+            }
+            ByteBuffer view = window.duplicate();
+            view.position(offset);
+            view.limit(offset + fConfig.getBlockSize());
+            ByteBuffer buffer = ByteBuffer.allocate(fConfig.getBlockSize());
+            buffer.put(view);
+            buffer.flip();
+            return buffer;
+        } finally {
+            fMapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unmap the memory-mapped windows of the file. The reads are done with
+     * positional reads afterwards, which fail once the file is closed.
+     */
+    private void unmapWindows() {
+        AtomicReferenceArray<MappedByteBuffer> windows = fMappedWindows;
+        if (windows == null) {
+            return;
+        }
+        fMapLock.writeLock().lock();
+        try {
+            fMappingEnabled = false;
+            for (int i = 0; i < windows.length(); i++) {
+                MappedByteBuffer window = windows.getAndSet(i, null);
+                if (window != null) {
+                    unmap(window);
+                }
+            }
+        } finally {
+            fMapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unmap a memory-mapped window right away, rather than when it is garbage
+     * collected, since a mapped file cannot be deleted on some platforms.
+     * There is no public API for this, if it fails the window is left to the
+     * garbage collector.
+     *
+     * @param window
+     *            The window to unmap, it must not be used afterwards
+     */
+    private static void unmap(MappedByteBuffer window) {
+        try {
+            /* Java 9 and later */
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+            Field field = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+            invokeCleaner.invoke(field.get(null), window);
+            return;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            /* Try the way of the older versions */
+        }
+        try {
+            Method cleanerMethod = window.getClass().getMethod("cleaner"); //$NON-NLS-1$
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(window);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner); //$NON-NLS-1$
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            /* Left to the garbage collector */
+        }
+    }
+
+    /**
+     * Get the position in the file where the given node starts
+     *
+     * @param seqNumber
+     *            The sequence number of the node
+     * @return The position of the node's block in the file
+     */
+    private long getNodePos(int seqNumber) {
+        /*
+         * Cast to (long) is needed to make sure the result is a long too and
+         * doesn't get truncated
+         */
+        return HistoryTree.TREE_HEADER_SIZE
+                + ((long) seqNumber) * fConfig.getBlockSize();
+    }
+
     /**
      * Seek the given FileChannel to the position corresponding to the node that
      * has seqNumber
@@ -189,12 +595,7 @@ class HT_IO {
      */
     private void seekFCToNodePos(FileChannel fc, int seqNumber)
             throws IOException {
-        /*
-         * Cast to (long) is needed to make sure the result is a long too and
-         * doesn't get truncated
-         */
-        fc.position(HistoryTree.TREE_HEADER_SIZE
-                + ((long) seqNumber) * fConfig.getBlockSize());
+        fc.position(getNodePos(seqNumber));
     }
 
 }
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig.NodeEncoding;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 
@@ -48,7 +49,14 @@ public class HistoryTree {
     private static final int HISTORY_FILE_MAGIC_NUMBER = 0x05FFA900;
 
     /** File format version. Increment when breaking compatibility. */
-    private static final int FILE_VERSION = 5;
+    private static final int FILE_VERSION = 6;
+
+    /**
+     * Previous file format version, which did not record the node encoding
+     * (all the nodes use {@link NodeEncoding#FIXED}). Still supported by the
+     * reader.
+     */
+    private static final int FILE_VERSION_NO_ENCODING = 5;
 
     // ------------------------------------------------------------------------
     // Tree-specific configuration
@@ -125,9 +133,10 @@ public class HistoryTree {
          * Open the file ourselves, get the tree header information we need,
          * then pass on the descriptor to the TreeIO object.
          */
-        int rootNodeSeqNb, res;
+        int rootNodeSeqNb, res, fileVersion;
         int bs, maxc;
         long startTime;
+        NodeEncoding encoding;
 
         /* Java I/O mumbo jumbo... */
         if (!existingStateFile.exists()) {
@@ -156,8 +165,8 @@ public class HistoryTree {
                 throw new IOException("Wrong magic number"); //$NON-NLS-1$
             }
 
-            res = buffer.getInt(); /* File format version number */
-            if (res != FILE_VERSION) {
+            fileVersion = buffer.getInt(); /* File format version number */
+            if (fileVersion != FILE_VERSION && fileVersion != FILE_VERSION_NO_ENCODING) {
                 throw new IOException("Mismatching History Tree file format versions"); //$NON-NLS-1$
             }
 
@@ -181,7 +190,13 @@ public class HistoryTree {
             rootNodeSeqNb = buffer.getInt();
             startTime = buffer.getLong();
 
-            this.config = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime);
+            if (fileVersion == FILE_VERSION_NO_ENCODING) {
+                encoding = NodeEncoding.FIXED;
+            } else {
+                encoding = NodeEncoding.fromByte(buffer.get());
+            }
+
+            this.config = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime, encoding);
         }
 
         /*
@@ -256,6 +271,9 @@ public class HistoryTree {
                 treeIO.writeNode(latestBranch.get(i));
             }
 
+            /* All the nodes must be in the file before we write the header */
+            treeIO.stopWriterThread();
+
             try (FileChannel fc = treeIO.getFcOut();) {
                 ByteBuffer buffer = ByteBuffer.allocate(TREE_HEADER_SIZE);
                 buffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -280,6 +298,9 @@ public class HistoryTree {
                 /* start time of this history */
                 buffer.putLong(latestBranch.get(0).getNodeStart());
 
+                /* layout of the intervals in the nodes */
+                buffer.put(config.getNodeEncoding().toByte());
+
                 buffer.flip();
                 int res = fc.write(buffer);
                 assert (res <= TREE_HEADER_SIZE);
@@ -403,6 +424,18 @@ public class HistoryTree {
         treeIO.writeNode(node);
     }
 
+    /**
+     * Have the nodes written to the file by a separate thread from now on, so
+     * that the insertion of intervals does not wait for the serialization of
+     * the full nodes. The writer thread is stopped when the tree is closed.
+     *
+     * @param maxPendingNodes
+     *            The maximum number of full nodes waiting to be written
+     */
+    public void startNodeWriter(int maxPendingNodes) {
+        treeIO.startWriterThread(maxPendingNodes);
+    }
+
     /**
      * Close the history file.
      */
@@ -434,6 +467,12 @@ public class HistoryTree {
             throw new TimeRangeException("Interval Start:" + interval.getStartTime() + ", Config Start:" + config.getTreeStart()); //$NON-NLS-1$ //$NON-NLS-2$
         }
         tryInsertAtNode(interval, latestBranch.size() - 1);
+
+        /*
+         * The full nodes are only queued while the latest branch is locked,
+         * wait for the writer thread (if any) here so the queries don't.
+         */
+        treeIO.waitForWriter();
     }
 
     /**
@@ -449,7 +488,7 @@ public class HistoryTree {
         HTNode targetNode = latestBranch.get(indexOfNode);
 
         /* Verify if there is enough room in this node to store this interval */
-        if (interval.getIntervalSize() > targetNode.getNodeFreeSpace()) {
+        if (targetNode.getIntervalSize(interval) > targetNode.getNodeFreeSpace()) {
             /* Nope, not enough room. Insert in a new sibling instead. */
             addSiblingNode(indexOfNode);
             tryInsertAtNode(interval, latestBranch.size() - 1);
@@ -664,6 +703,34 @@ public class HistoryTree {
         return readNode(potentialNextSeqNb);
     }
 
+    /**
+     * Get the number of node reads that were served from the node cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getNodeCacheHitCount() {
+        return treeIO.getCacheHitCount();
+    }
+
+    /**
+     * Get the number of node reads that had to be done from the file.
+     *
+     * @return The number of cache misses
+     */
+    public long getNodeCacheMissCount() {
+        return treeIO.getCacheMissCount();
+    }
+
+    /**
+     * Get the number of full nodes that were handed to the writer thread, but
+     * are not written to the file yet.
+     *
+     * @return The number of pending nodes
+     */
+    public int getPendingNodeCount() {
+        return treeIO.getPendingNodeCount();
+    }
+
     /**
      * Get the current size of the history file.
      *
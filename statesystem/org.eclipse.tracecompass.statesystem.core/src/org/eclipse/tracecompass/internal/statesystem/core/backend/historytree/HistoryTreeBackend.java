@@ -20,15 +20,20 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.channels.ClosedChannelException;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.CoreNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig.NodeEncoding;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTree;
-import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.IStateHistoryBatchBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.StateIntervalBatch;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -41,7 +46,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  *
  * @author Alexandre Montplaisir
  */
-public class HistoryTreeBackend implements IStateHistoryBackend {
+public class HistoryTreeBackend implements IStateHistoryBatchBackend {
 
     private final @NonNull String ssid;
 
@@ -107,6 +112,46 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         sht = new HistoryTree(conf);
     }
 
+    /**
+     * Constructor for new history files, specifying how the intervals are
+     * laid out in the blocks of the file.
+     *
+     * @param ssid
+     *            The state system's ID
+     * @param newStateFile
+     *            The filename/location where to store the state history (Should
+     *            end in .ht)
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest time stamp that will be stored in the history
+     * @param blockSize
+     *            The size of the blocks in the history file. This should be a
+     *            multiple of 4096.
+     * @param maxChildren
+     *            The maximum number of children each core node can have
+     * @param nodeEncoding
+     *            The layout of the intervals in the nodes. The
+     *            {@link NodeEncoding#DELTA} encoding produces smaller files,
+     *            at the cost of decoding whole nodes when reading them.
+     * @throws IOException
+     *             Thrown if we can't create the file for some reason
+     */
+    public HistoryTreeBackend(@NonNull String ssid,
+            File newStateFile,
+            int providerVersion,
+            long startTime,
+            int blockSize,
+            int maxChildren,
+            NodeEncoding nodeEncoding) throws IOException {
+        this.ssid = ssid;
+        final HTConfig conf = new HTConfig(newStateFile, blockSize, maxChildren,
+                providerVersion, startTime, nodeEncoding);
+        sht = new HistoryTree(conf);
+    }
+
     /**
      * Constructor for new history files. Use this when creating a new history
      * from scratch. This version supplies sane defaults for the configuration
@@ -132,6 +177,32 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         this(ssid, newStateFile, providerVersion, startTime, 64 * 1024, 50);
     }
 
+    /**
+     * Constructor for new history files, with the default configuration
+     * parameters, but specifying how the intervals are laid out in the blocks
+     * of the file.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param newStateFile
+     *            The filename/location where to store the state history (Should
+     *            end in .ht)
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest time stamp that will be stored in the history
+     * @param nodeEncoding
+     *            The layout of the intervals in the nodes
+     * @throws IOException
+     *             Thrown if we can't create the file for some reason
+     */
+    public HistoryTreeBackend(@NonNull String ssid, File newStateFile, int providerVersion, long startTime,
+            NodeEncoding nodeEncoding) throws IOException {
+        this(ssid, newStateFile, providerVersion, startTime, 64 * 1024, 50, nodeEncoding);
+    }
+
     /**
      * Existing history constructor. Use this to open an existing state-file.
      *
@@ -187,6 +258,16 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         sht.insertInterval(interval);
     }
 
+    @Override
+    public void insertPastStates(StateIntervalBatch batch) throws TimeRangeException {
+        for (int i = 0; i < batch.size(); i++) {
+            HTInterval interval = new HTInterval(batch.getStartTime(i),
+                    batch.getEndTime(i), batch.getAttribute(i),
+                    (TmfStateValue) batch.getStateValue(i));
+            sht.insertInterval(interval);
+        }
+    }
+
     @Override
     public void finishedBuilding(long endTime) {
         sht.closeTree(endTime);
@@ -230,17 +311,24 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
     @Override
     public void doQuery(List<ITmfStateInterval> stateInfo, long t)
             throws TimeRangeException, StateSystemDisposedException {
+        doQuery(stateInfo, t, null);
+    }
+
+    @Override
+    public void doQuery(List<ITmfStateInterval> stateInfo, long t, @Nullable BitSet quarks)
+            throws TimeRangeException, StateSystemDisposedException {
         checkValidTime(t);
 
         /* We start by reading the information in the root node */
         HTNode currentNode = sht.getRootNode();
-        currentNode.writeInfoFromNode(stateInfo, t);
+        currentNode.writeInfoFromNode(stateInfo, t, quarks);
 
         /* Then we follow the branch down in the relevant children */
         try {
-            while (currentNode.getNodeType() == HTNode.NodeType.CORE) {
+            while (currentNode.getNodeType() == HTNode.NodeType.CORE &&
+                    !isQueryComplete(stateInfo, quarks)) {
                 currentNode = sht.selectNextChild((CoreNode) currentNode, t);
-                currentNode.writeInfoFromNode(stateInfo, t);
+                currentNode.writeInfoFromNode(stateInfo, t, quarks);
             }
         } catch (ClosedChannelException e) {
             throw new StateSystemDisposedException(e);
@@ -259,6 +347,38 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return getRelevantInterval(t, attributeQuark);
     }
 
+    @Override
+    public Iterable<ITmfStateInterval> query2D(final BitSet quarks, long start, long end)
+            throws TimeRangeException {
+        if (end < start) {
+            throw new TimeRangeException(ssid + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        final long rangeStart = Math.max(start, sht.getTreeStart());
+        final long rangeEnd = Math.min(end, sht.getTreeEnd());
+        return new Iterable<ITmfStateInterval>() {
+            @Override
+            public Iterator<ITmfStateInterval> iterator() {
+                return new HTRangeIterator(sht, quarks, rangeStart, rangeEnd);
+            }
+        };
+    }
+
+    /**
+     * When only some attributes are requested, we can stop going down the
+     * tree as soon as all of them were found.
+     */
+    private static boolean isQueryComplete(List<ITmfStateInterval> stateInfo, @Nullable BitSet quarks) {
+        if (quarks == null) {
+            return false;
+        }
+        for (int quark = quarks.nextSetBit(0); quark >= 0; quark = quarks.nextSetBit(quark + 1)) {
+            if (quark < stateInfo.size() && stateInfo.get(quark) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void checkValidTime(long t) {
         long treeStart = sht.getTreeStart();
         long treeEnd = sht.getTreeEnd();
@@ -302,6 +422,25 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return sht.getFileSize();
     }
 
+    /**
+     * Return the number of node reads that were served from the node cache
+     *
+     * @return The number of cache hits
+     */
+    public long getNodeCacheHitCount() {
+        return sht.getNodeCacheHitCount();
+    }
+
+    /**
+     * Return the number of node reads that had to be done from the history
+     * file
+     *
+     * @return The number of cache misses
+     */
+    public long getNodeCacheMissCount() {
+        return sht.getNodeCacheMissCount();
+    }
+
     /**
      * Return the average node usage as a percentage (between 0 and 100)
      *
@@ -16,11 +16,21 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig.NodeEncoding;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.StateIntervalBatch;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -31,15 +41,52 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  * Variant of the HistoryTreeBackend which runs all the interval-insertion logic
  * in a separate thread.
  *
+ * Intervals are passed to the other thread in blocks ({@link StateIntervalBatch}
+ * objects), so the cost of going through the blocking queue, as well as the
+ * allocation of the {@link HTInterval} objects, is not paid by the thread
+ * building the history. Intervals inserted one at a time are grouped in blocks
+ * before being put in the queue.
+ *
+ * The full nodes are written to the file by yet another thread, so that their
+ * serialization overlaps with the insertion of the following intervals.
+ *
  * @author Alexandre Montplaisir
  */
 public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         implements Runnable {
 
-    private static final int CHUNK_SIZE = 127;
-    private final @NonNull BufferedBlockingQueue<HTInterval> intervalQueue;
+    /* Maximum number of full nodes waiting to be written to the file */
+    private static final int MAX_PENDING_NODES = 32;
+
+    private static final Comparator<ITmfStateInterval> END_ATTRIBUTE_COMPARATOR =
+            new Comparator<ITmfStateInterval>() {
+                @Override
+                public int compare(ITmfStateInterval o1, ITmfStateInterval o2) {
+                    int cmp = Long.compare(o1.getEndTime(), o2.getEndTime());
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                    return Integer.compare(o1.getAttribute(), o2.getAttribute());
+                }
+            };
+
+    private final @NonNull BlockingQueue<StateIntervalBatch> intervalQueue;
     private final @NonNull Thread shtThread;
 
+    /*
+     * Block being filled by insertPastState(), guarded by intervalQueue's
+     * monitor. It is volatile so that queries can look into it.
+     */
+    private volatile @NonNull StateIntervalBatch fInputBatch = new StateIntervalBatch(StateIntervalBatch.DEFAULT_CAPACITY);
+
+    /*
+     * Number of blocks in the queue. A block is only removed from the queue
+     * once all its intervals are in the tree, so that queries can always find
+     * them in one or the other. The other thread waits on this semaphore
+     * instead of the queue.
+     */
+    private final Semaphore fAvailableBatches = new Semaphore(0);
+
     /**
      * New state history constructor
      *
@@ -77,7 +124,8 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
                     throws IOException {
         super(ssid, newStateFile, providerVersion, startTime, blockSize, maxChildren);
 
-        intervalQueue = new BufferedBlockingQueue<>(queueSize / CHUNK_SIZE, CHUNK_SIZE);
+        intervalQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize / StateIntervalBatch.DEFAULT_CAPACITY));
+        getSHT().startNodeWriter(MAX_PENDING_NODES);
         shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
         shtThread.start();
     }
@@ -111,7 +159,47 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
                     throws IOException {
         super(ssid, newStateFile, providerVersion, startTime);
 
-        intervalQueue = new BufferedBlockingQueue<>(queueSize / CHUNK_SIZE, CHUNK_SIZE);
+        intervalQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize / StateIntervalBatch.DEFAULT_CAPACITY));
+        getSHT().startNodeWriter(MAX_PENDING_NODES);
+        shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
+        shtThread.start();
+    }
+
+    /**
+     * New State History constructor, with the default values for blockSize
+     * and maxChildren, but specifying how the intervals are laid out in the
+     * blocks of the file.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param newStateFile
+     *            The name of the history file that will be created. Should end
+     *            in ".ht"
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest timestamp stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue. 2000 - 10000 usually
+     *            works well
+     * @param nodeEncoding
+     *            The layout of the intervals in the nodes
+     * @throws IOException
+     *             If there was a problem opening the history file for writing
+     */
+    public ThreadedHistoryTreeBackend(@NonNull String ssid,
+            File newStateFile,
+            int providerVersion,
+            long startTime,
+            int queueSize,
+            NodeEncoding nodeEncoding)
+                    throws IOException {
+        super(ssid, newStateFile, providerVersion, startTime, nodeEncoding);
+
+        intervalQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize / StateIntervalBatch.DEFAULT_CAPACITY));
+        getSHT().startNodeWriter(MAX_PENDING_NODES);
         shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
         shtThread.start();
     }
@@ -132,9 +220,44 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
          * underneath, we'll put them in the Queue. They will then be taken and
          * processed by the other thread executing the run() method.
          */
-        HTInterval interval = new HTInterval(stateStartTime, stateEndTime,
-                quark, (TmfStateValue) value);
-        intervalQueue.put(interval);
+        synchronized (intervalQueue) {
+            fInputBatch.add(stateStartTime, stateEndTime, quark, value);
+            if (fInputBatch.isFull()) {
+                flushInputBatch();
+            }
+        }
+    }
+
+    @Override
+    public void insertPastStates(StateIntervalBatch batch) {
+        synchronized (intervalQueue) {
+            /* Keep the intervals in insertion order */
+            flushInputBatch();
+            putInQueue(batch);
+        }
+    }
+
+    /**
+     * Send the block of intervals inserted one at a time to the other thread.
+     * Must be called while holding intervalQueue's monitor.
+     */
+    private void flushInputBatch() {
+        StateIntervalBatch batch = fInputBatch;
+        if (batch.isEmpty()) {
+            return;
+        }
+        putInQueue(batch);
+        fInputBatch = new StateIntervalBatch(StateIntervalBatch.DEFAULT_CAPACITY);
+    }
+
+    private void putInQueue(StateIntervalBatch batch) {
+        try {
+            /* This call blocks if the queue is full */
+            intervalQueue.put(batch);
+            fAvailableBatches.release();
+        } catch (InterruptedException e) {
+            Activator.getDefault().logError("State system interrupted", e); //$NON-NLS-1$
+        }
     }
 
     @Override
@@ -173,12 +296,10 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
          * closeTree()
          */
         try {
-            HTInterval pill = new HTInterval(-1, endTime, -1, TmfStateValue.nullValue());
-            intervalQueue.put(pill);
-            intervalQueue.flushInputBuffer();
+            StateIntervalBatch pill = new StateIntervalBatch(1);
+            pill.add(-1, endTime, -1, TmfStateValue.nullValue());
+            insertPastStates(pill);
             shtThread.join();
-        } catch (TimeRangeException e) {
-            Activator.getDefault().logError("Error closing state system", e); //$NON-NLS-1$
         } catch (InterruptedException e) {
             Activator.getDefault().logError("State system interrupted", e); //$NON-NLS-1$
         }
@@ -186,27 +307,41 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
 
     @Override
     public void run() {
-        HTInterval currentInterval;
         try {
-            currentInterval = intervalQueue.take();
-            while (currentInterval.getStartTime() != -1) {
-                /* Send the interval to the History Tree */
-                getSHT().insertInterval(currentInterval);
-                currentInterval = intervalQueue.take();
-            }
-            if (currentInterval.getAttribute() != -1) {
-                /* Make sure this is the "poison pill" we are waiting for */
-                throw new IllegalStateException();
+            while (true) {
+                fAvailableBatches.acquire();
+                StateIntervalBatch batch = intervalQueue.peek();
+                if (batch == null) {
+                    throw new IllegalStateException();
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.getStartTime(i) == -1) {
+                        /* Make sure this is the "poison pill" we are waiting for */
+                        if (batch.getAttribute(i) != -1) {
+                            throw new IllegalStateException();
+                        }
+                        /*
+                         * We've been told we're done, let's write down
+                         * everything and quit. The end time of this
+                         * "signal interval" is actually correct.
+                         */
+                        getSHT().closeTree(batch.getEndTime(i));
+                        intervalQueue.poll();
+                        return;
+                    }
+                    /* Send the interval to the History Tree */
+                    HTInterval interval = new HTInterval(batch.getStartTime(i),
+                            batch.getEndTime(i), batch.getAttribute(i),
+                            (TmfStateValue) batch.getStateValue(i));
+                    getSHT().insertInterval(interval);
+                }
+                intervalQueue.poll();
             }
-            /*
-             * We've been told we're done, let's write down everything and quit.
-             * The end time of this "signal interval" is actually correct.
-             */
-            getSHT().closeTree(currentInterval.getEndTime());
-            return;
         } catch (TimeRangeException e) {
             /* This should not happen */
             Activator.getDefault().logError("Error starting the state system", e); //$NON-NLS-1$
+        } catch (InterruptedException e) {
+            Activator.getDefault().logError("State system interrupted", e); //$NON-NLS-1$
         }
     }
 
@@ -217,7 +352,13 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
     @Override
     public void doQuery(List<ITmfStateInterval> currentStateInfo, long t)
             throws TimeRangeException, StateSystemDisposedException {
-        super.doQuery(currentStateInfo, t);
+        doQuery(currentStateInfo, t, null);
+    }
+
+    @Override
+    public void doQuery(List<ITmfStateInterval> currentStateInfo, long t, @Nullable BitSet quarks)
+            throws TimeRangeException, StateSystemDisposedException {
+        super.doQuery(currentStateInfo, t, quarks);
 
         if (isFinishedBuilding()) {
             /*
@@ -233,7 +374,7 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
          * we missed any.
          */
         for (int i = 0; i < currentStateInfo.size(); i++) {
-            if (currentStateInfo.get(i) == null) {
+            if (currentStateInfo.get(i) == null && (quarks == null || quarks.get(i))) {
                 /* Query the missing interval via "unicast" */
                 ITmfStateInterval interval = doSingularQuery(t, i);
                 currentStateInfo.set(i, interval);
@@ -241,6 +382,59 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         }
     }
 
+    @Override
+    public Iterable<ITmfStateInterval> query2D(BitSet quarks, long start, long end)
+            throws TimeRangeException {
+        Iterable<ITmfStateInterval> treeIntervals = super.query2D(quarks, start, end);
+        if (isFinishedBuilding()) {
+            return treeIntervals;
+        }
+
+        /*
+         * Some intervals may still be in the queue. Gather them with the ones
+         * from the tree, in the same order as the intervals travel. A block is
+         * only removed from the queue after all its intervals were inserted,
+         * and the tree is read last (its iterator is lazy), so nothing can be
+         * missed. Some intervals may however be found twice.
+         */
+        List<ITmfStateInterval> ret = new ArrayList<>();
+        addMatchingIntervals(ret, fInputBatch, quarks, start, end);
+        for (StateIntervalBatch batch : intervalQueue) {
+            addMatchingIntervals(ret, batch, quarks, start, end);
+        }
+        for (ITmfStateInterval interval : treeIntervals) {
+            ret.add(interval);
+        }
+
+        Collections.sort(ret, END_ATTRIBUTE_COMPARATOR);
+
+        /*
+         * Remove the duplicates. Two intervals of the same attribute cannot
+         * have the same end time, so they are next to each other.
+         */
+        Iterator<ITmfStateInterval> iter = ret.iterator();
+        ITmfStateInterval previous = null;
+        while (iter.hasNext()) {
+            ITmfStateInterval interval = iter.next();
+            if (previous != null && END_ATTRIBUTE_COMPARATOR.compare(previous, interval) == 0) {
+                iter.remove();
+            } else {
+                previous = interval;
+            }
+        }
+        return ret;
+    }
+
+    private static void addMatchingIntervals(List<ITmfStateInterval> list,
+            StateIntervalBatch batch, BitSet quarks, long start, long end) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.getStartTime(i) <= end && batch.getEndTime(i) >= start &&
+                    batch.getAttribute(i) >= 0 && quarks.get(batch.getAttribute(i))) {
+                list.add(batch.getInterval(i));
+            }
+        }
+    }
+
     @Override
     public ITmfStateInterval doSingularQuery(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException {
@@ -251,13 +445,20 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
 
         /*
          * We couldn't find the interval in the history tree. It's possible that
-         * it is currently in the intervalQueue. Look for it there. Note that
-         * BufferedBlockingQueue's iterator() is thread-safe (no need to lock
-         * the queue).
+         * it is currently in the intervalQueue. Look for it there, in the same
+         * order as the intervals travel: input block first, then the queue.
+         * Note that ArrayBlockingQueue's iterator() is thread-safe, and the
+         * blocks can be read while they are being filled (no need to lock the
+         * queue).
          */
-        for (ITmfStateInterval interval : intervalQueue) {
-            if (interval.getAttribute() == attributeQuark && interval.intersects(t)) {
-                return interval;
+        ret = fInputBatch.getIntervalAt(t, attributeQuark);
+        if (ret != null) {
+            return ret;
+        }
+        for (StateIntervalBatch batch : intervalQueue) {
+            ret = batch.getIntervalAt(t, attributeQuark);
+            if (ret != null) {
+                return ret;
             }
         }
 
@@ -330,6 +330,60 @@ public interface ITmfStateSystem {
     @NonNull List<ITmfStateInterval> queryFullState(long t)
             throws StateSystemDisposedException;
 
+    /**
+     * Load the state information at time 't', but only for the given
+     * attributes. The history is only searched for these attributes, which
+     * is much cheaper than a full query when only a small part of the
+     * attribute tree is needed (for example, all the "Threads/[*]/Status"
+     * attributes).
+     *
+     * This method can be called concurrently by many threads.
+     *
+     * @param t
+     *            We will recreate the state information to what it was at time
+     *            t.
+     * @param quarks
+     *            The quarks of the attributes to query
+     * @return The List of intervals, in the same order as the quarks
+     * @throws AttributeNotFoundException
+     *             If one of the quarks is invalid
+     * @throws TimeRangeException
+     *             If the 't' parameter is outside of the range of the state
+     *             history.
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 1.0
+     */
+    @NonNull List<ITmfStateInterval> queryStates(long t, int[] quarks)
+            throws AttributeNotFoundException, StateSystemDisposedException;
+
+    /**
+     * Get all the intervals of some attributes that intersect a time range.
+     *
+     * Once the history is built, this goes through the history only once,
+     * instead of doing one singular query per interval. This should be
+     * preferred when many intervals are needed, like when populating a view.
+     *
+     * @param quarks
+     *            The quarks of the attributes to query
+     * @param start
+     *            The start of the time range. It will be brought back to the
+     *            start of the state system if it is before.
+     * @param end
+     *            The end of the time range. It will be brought back to the
+     *            current end time of the state system if it is after.
+     * @return The intervals, sorted by end time
+     * @throws AttributeNotFoundException
+     *             If one of the quarks is invalid
+     * @throws TimeRangeException
+     *             If the end of the range is before its start
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 1.0
+     */
+    @NonNull Iterable<ITmfStateInterval> query2D(int[] quarks, long start, long end)
+            throws AttributeNotFoundException, StateSystemDisposedException;
+
     /**
      * Singular query method. This one does not update the whole stateInfo
      * vector, like queryFullState() does. It only searches for one specific
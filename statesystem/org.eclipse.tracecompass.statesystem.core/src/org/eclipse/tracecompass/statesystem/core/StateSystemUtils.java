@@ -122,8 +122,7 @@ public final class StateSystemUtils {
             throws AttributeNotFoundException, StateSystemDisposedException {
 
         List<ITmfStateInterval> intervals;
-        ITmfStateInterval currentInterval;
-        long ts, tEnd;
+        long tEnd;
 
         /* Make sure the time range makes sense */
         if (t2 < t1) {
@@ -137,18 +136,27 @@ public final class StateSystemUtils {
             tEnd = t2;
         }
 
-        /* Get the initial state at time T1 */
-        intervals = new ArrayList<>();
-        currentInterval = ss.querySingleState(t1, attributeQuark);
-        intervals.add(currentInterval);
+        if (t1 < ss.getStartTime() || t1 > tEnd) {
+            throw new TimeRangeException(ss.getSSID() + " Time:" + t1 + ", Start:" + ss.getStartTime() + ", End:" + tEnd); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
 
-        /* Get the following state changes */
-        ts = currentInterval.getEndTime();
-        while (ts != -1 && ts < tEnd) {
-            ts++; /* To "jump over" to the next state in the history */
-            currentInterval = ss.querySingleState(ts, attributeQuark);
-            intervals.add(currentInterval);
-            ts = currentInterval.getEndTime();
+        /*
+         * Get the intervals going through the history only once, which also
+         * works with the back-ends that do not support single queries. For a
+         * single attribute, the order of the end times is the order of the
+         * intervals.
+         */
+        intervals = new ArrayList<>();
+        try {
+            for (ITmfStateInterval interval : ss.query2D(new int[] { attributeQuark }, t1, tEnd)) {
+                intervals.add(interval);
+            }
+        } catch (IllegalStateException e) {
+            /* The iterator reports the disposal of the state system this way */
+            if (e.getCause() instanceof StateSystemDisposedException) {
+                throw (StateSystemDisposedException) e.getCause();
+            }
+            throw e;
         }
         return intervals;
     }
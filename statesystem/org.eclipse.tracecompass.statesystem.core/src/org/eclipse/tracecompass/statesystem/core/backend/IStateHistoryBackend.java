@@ -15,6 +15,7 @@ package org.eclipse.tracecompass.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.BitSet;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -162,6 +163,27 @@ public interface IStateHistoryBackend {
     void doQuery(@NonNull List<ITmfStateInterval> currentStateInfo, long t)
             throws TimeRangeException, StateSystemDisposedException;
 
+    /**
+     * Variant of {@link #doQuery(List, long)} which only looks for the
+     * intervals of some attributes. The list is still indexed by quark, but
+     * only the entries of the requested quarks have to be filled. The other
+     * entries may be left untouched.
+     *
+     * @param currentStateInfo
+     *            List of StateValues (index == quark) to fill up
+     * @param t
+     *            Target timestamp of the query
+     * @param quarks
+     *            The quarks of the attributes to look for
+     * @throws TimeRangeException
+     *             If the timestamp is outside of the history/trace
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed while a request is ongoing.
+     * @since 1.0
+     */
+    void doQuery(@NonNull List<ITmfStateInterval> currentStateInfo, long t, @NonNull BitSet quarks)
+            throws TimeRangeException, StateSystemDisposedException;
+
     /**
      * Some providers might want to specify a different way to obtain just a
      * single StateValue instead of updating the whole list. If the method to
@@ -184,6 +206,29 @@ public interface IStateHistoryBackend {
             throws TimeRangeException, AttributeNotFoundException,
             StateSystemDisposedException;
 
+    /**
+     * Get all the intervals of some attributes that intersect a time range.
+     * Instead of doing one query per interval, implementations should go
+     * through their storage only once.
+     *
+     * @param quarks
+     *            The quarks of the attributes to look for
+     * @param start
+     *            The start of the time range. It will be brought back to the
+     *            start of the history if it is before.
+     * @param end
+     *            The end of the time range. It will be brought back to the end
+     *            of the history if it is after.
+     * @return The intervals, sorted by end time
+     * @throws TimeRangeException
+     *             If the end of the range is before its start
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed while a request is ongoing.
+     * @since 1.0
+     */
+    @NonNull Iterable<ITmfStateInterval> query2D(@NonNull BitSet quarks, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException;
+
     /**
      * Debug method to print the contents of the history backend.
      *
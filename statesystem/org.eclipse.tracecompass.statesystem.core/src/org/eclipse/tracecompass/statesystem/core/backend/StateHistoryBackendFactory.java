@@ -18,6 +18,7 @@ import java.io.IOException;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig.NodeEncoding;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
 
@@ -31,6 +32,13 @@ import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.Th
 @NonNullByDefault
 public final class StateHistoryBackendFactory {
 
+    /**
+     * System property to write the new history files with the compact,
+     * delta-encoded node format. The files are smaller, but each node has to
+     * be decoded completely when it is read.
+     */
+    public static final String DELTA_ENCODING_PROPERTY = "org.eclipse.tracecompass.statesystem.core.deltaEncoding"; //$NON-NLS-1$
+
     private StateHistoryBackendFactory() {}
 
     /**
@@ -85,13 +93,15 @@ public final class StateHistoryBackendFactory {
      * @return The state system backend
      * @throws IOException
      *             Thrown if we can't create the file for some reason
+     * @see #DELTA_ENCODING_PROPERTY
      */
     public static IStateHistoryBackend createHistoryTreeBackendNewFile(String ssid,
             File stateFile, int providerVersion, long startTime, int queueSize) throws IOException {
+        NodeEncoding encoding = (Boolean.getBoolean(DELTA_ENCODING_PROPERTY) ? NodeEncoding.DELTA : NodeEncoding.FIXED);
         if (queueSize > 0) {
-            return new ThreadedHistoryTreeBackend(ssid, stateFile, providerVersion, startTime, queueSize);
+            return new ThreadedHistoryTreeBackend(ssid, stateFile, providerVersion, startTime, queueSize, encoding);
         }
-        return new HistoryTreeBackend(ssid, stateFile, providerVersion, startTime);
+        return new HistoryTreeBackend(ssid, stateFile, providerVersion, startTime, encoding);
     }
 
     /**
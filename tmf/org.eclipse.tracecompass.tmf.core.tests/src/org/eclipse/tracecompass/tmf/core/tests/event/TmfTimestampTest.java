@@ -384,6 +384,25 @@ public class TmfTimestampTest {
         assertEquals("getscale", SCALE, ts.getScale());
     }
 
+    @Test
+    public void testToNanos() {
+        final ITmfTimestamp[] timestamps = { ts0, ts1, ts2, ts3, ts4, ts5, ts6, ts7, ts8, ts9 };
+        for (ITmfTimestamp ts : timestamps) {
+            assertEquals("toNanos", ts.normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue(), TmfTimestamp.toNanos(ts));
+        }
+        assertEquals("toNanos", 12, TmfTimestamp.toNanos(new TmfTimestamp(12345, -12)));
+        assertEquals("toNanos", -12, TmfTimestamp.toNanos(new TmfTimestamp(-12345, -12)));
+    }
+
+    @Test
+    public void testToNanosLimits() {
+        assertEquals("toNanos", Long.MIN_VALUE, TmfTimestamp.toNanos(TmfTimestamp.BIG_BANG));
+        assertEquals("toNanos", Long.MAX_VALUE, TmfTimestamp.toNanos(TmfTimestamp.BIG_CRUNCH));
+        assertEquals("toNanos", Long.MAX_VALUE, TmfTimestamp.toNanos(new TmfTimestamp(Long.MAX_VALUE / 10, 0)));
+        assertEquals("toNanos", Long.MIN_VALUE, TmfTimestamp.toNanos(new TmfTimestamp(Long.MIN_VALUE / 10, 0)));
+        assertEquals("toNanos", 0, TmfTimestamp.toNanos(new TmfTimestamp(12345, -30)));
+    }
+
     // ------------------------------------------------------------------------
     // compareTo
     // ------------------------------------------------------------------------
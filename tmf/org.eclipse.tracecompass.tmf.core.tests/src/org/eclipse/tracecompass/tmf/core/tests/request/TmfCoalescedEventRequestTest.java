@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import org.eclipse.core.runtime.FileLocator;
@@ -30,6 +32,8 @@ import org.eclipse.tracecompass.internal.tmf.core.request.TmfCoalescedEventReque
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventBatchRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignal;
@@ -39,6 +43,7 @@ import org.eclipse.tracecompass.tmf.core.tests.TmfCoreTestPlugin;
 import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.tests.stubs.request.TmfEventRequestStub;
 import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
 import org.junit.Before;
@@ -499,6 +504,17 @@ public class TmfCoalescedEventRequestTest {
         runCoalescedRequest(5);
     }
 
+    @Test
+    public void testCoalescedRequestFanOut() throws InterruptedException {
+        System.setProperty(TmfCoalescedEventRequest.FAN_OUT_PROPERTY, Boolean.TRUE.toString());
+        try {
+            runCoalescedRequest(0);
+            runCoalescedRequest(5);
+        } finally {
+            System.clearProperty(TmfCoalescedEventRequest.FAN_OUT_PROPERTY);
+        }
+    }
+
     @Test
     public void testCancelCoalescedRequest() throws InterruptedException {
 
@@ -556,4 +572,219 @@ public class TmfCoalescedEventRequestTest {
         fTrace = null;
     }
 
+    // ------------------------------------------------------------------------
+    // Chunked dispatch
+    // ------------------------------------------------------------------------
+
+    private static final int CHUNK_SIZE = 100;
+    private static final int NB_CHUNKS = 5;
+
+    private static class RecordingRequest extends TmfEventRequest {
+        final List<ITmfEvent> fEvents = new ArrayList<>();
+
+        public RecordingRequest(TmfTimeRange range, long index, int nbRequested) {
+            super(ITmfEvent.class, range, index, nbRequested, ExecutionType.FOREGROUND);
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            fEvents.add(event);
+        }
+    }
+
+    private static class RecordingBatchRequest extends RecordingRequest implements ITmfEventBatchRequest {
+        int fNbChunks;
+        boolean fHandledOneByOne;
+
+        public RecordingBatchRequest(TmfTimeRange range, long index, int nbRequested) {
+            super(range, index, nbRequested);
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            fHandledOneByOne = true;
+            super.handleData(event);
+        }
+
+        @Override
+        public void handleData(List<ITmfEvent> events) {
+            fNbChunks++;
+            for (ITmfEvent event : events) {
+                super.handleData(event);
+            }
+        }
+    }
+
+    private List<ITmfEvent> readEvents(int nbEvents) {
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+        List<ITmfEvent> events = new ArrayList<>(nbEvents);
+        ITmfContext context = fTrace.seekEvent(0L);
+        for (int i = 0; i < nbEvents; i++) {
+            events.add(fTrace.getNext(context));
+        }
+        context.dispose();
+        return events;
+    }
+
+    private TmfCoalescedEventRequest coalesce(RecordingRequest... requests) {
+        TmfCoalescedEventRequest coalescedRequest = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 0, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND);
+        coalescedRequest.setProviderFilter(fTrace);
+        for (RecordingRequest request : requests) {
+            request.setProviderFilter(fTrace);
+            coalescedRequest.addRequest(request);
+        }
+        return coalescedRequest;
+    }
+
+    private static void dispatchInChunks(TmfCoalescedEventRequest request, List<ITmfEvent> events) {
+        for (int i = 0; i < events.size(); i += CHUNK_SIZE) {
+            request.handleData(new ArrayList<>(events.subList(i, Math.min(i + CHUNK_SIZE, events.size()))));
+        }
+    }
+
+    private static void assertReceived(List<ITmfEvent> events, RecordingRequest request) {
+        List<ITmfEvent> expected = new ArrayList<>();
+        for (int i = (int) request.getIndex(); i < events.size() && expected.size() < request.getNbRequested(); i++) {
+            if (request.getRange().contains(events.get(i).getTimestamp())) {
+                expected.add(events.get(i));
+            }
+        }
+        assertEquals("events", expected, request.fEvents);
+        assertEquals("nbRead", expected.size(), request.getNbRead());
+    }
+
+    @Test
+    public void testBatchSubRequest() {
+        List<ITmfEvent> events = readEvents(NB_CHUNKS * CHUNK_SIZE);
+        try {
+            RecordingBatchRequest request = new RecordingBatchRequest(range1, 0, ITmfEventRequest.ALL_DATA);
+            TmfCoalescedEventRequest coalescedRequest = coalesce(request);
+            dispatchInChunks(coalescedRequest, events);
+
+            assertReceived(events, request);
+            assertEquals("nbChunks", NB_CHUNKS, request.fNbChunks);
+            assertFalse("handledOneByOne", request.fHandledOneByOne);
+            assertEquals("nbRead", events.size(), coalescedRequest.getNbRead());
+        } finally {
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testMixedSubRequests() {
+        List<ITmfEvent> events = readEvents(NB_CHUNKS * CHUNK_SIZE);
+        try {
+            TmfTimeRange range = new TmfTimeRange(events.get(230).getTimestamp(), events.get(260).getTimestamp());
+
+            /* Ends in the middle of a chunk */
+            RecordingBatchRequest batchLimited = new RecordingBatchRequest(range1, 50, 120);
+            /* Starts in the middle of a chunk */
+            RecordingRequest limited = new RecordingRequest(range1, 150, 100);
+            /* Limited by its time range only */
+            RecordingBatchRequest batchInRange = new RecordingBatchRequest(range, 0, ITmfEventRequest.ALL_DATA);
+            /* Limited by its time range and its number of events */
+            RecordingRequest limitedInRange = new RecordingRequest(range, 0, 10);
+            RecordingRequest all = new RecordingRequest(range1, 0, ITmfEventRequest.ALL_DATA);
+
+            TmfCoalescedEventRequest coalescedRequest = coalesce(batchLimited, limited, batchInRange, limitedInRange, all);
+            dispatchInChunks(coalescedRequest, events);
+
+            assertReceived(events, batchLimited);
+            assertReceived(events, limited);
+            assertReceived(events, batchInRange);
+            assertReceived(events, limitedInRange);
+            assertReceived(events, all);
+
+            assertEquals("nbChunks", 2, batchLimited.fNbChunks);
+            assertEquals("nbChunks", 1, batchInRange.fNbChunks);
+            assertFalse("handledOneByOne", batchLimited.fHandledOneByOne);
+            assertFalse("handledOneByOne", batchInRange.fHandledOneByOne);
+        } finally {
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testMixedSubRequestsFanOut() {
+        List<ITmfEvent> events = readEvents(NB_CHUNKS * CHUNK_SIZE);
+        System.setProperty(TmfCoalescedEventRequest.FAN_OUT_PROPERTY, Boolean.TRUE.toString());
+        try {
+            TmfTimeRange range = new TmfTimeRange(events.get(230).getTimestamp(), events.get(260).getTimestamp());
+
+            RecordingBatchRequest batchLimited = new RecordingBatchRequest(range1, 50, 120);
+            RecordingRequest limited = new RecordingRequest(range1, 150, 100);
+            RecordingRequest limitedInRange = new RecordingRequest(range, 0, 10);
+            RecordingRequest all = new RecordingRequest(range1, 0, ITmfEventRequest.ALL_DATA);
+
+            TmfCoalescedEventRequest coalescedRequest = coalesce(batchLimited, limited, limitedInRange, all);
+            coalescedRequest.start();
+            dispatchInChunks(coalescedRequest, events);
+            coalescedRequest.done();
+
+            assertReceived(events, batchLimited);
+            assertReceived(events, limited);
+            assertReceived(events, limitedInRange);
+            assertReceived(events, all);
+            assertFalse("handledOneByOne", batchLimited.fHandledOneByOne);
+        } finally {
+            System.clearProperty(TmfCoalescedEventRequest.FAN_OUT_PROPERTY);
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testFanOutHandsOverEachChunk() throws InterruptedException {
+        List<ITmfEvent> events = readEvents(CHUNK_SIZE);
+        System.setProperty(TmfCoalescedEventRequest.FAN_OUT_PROPERTY, Boolean.TRUE.toString());
+        try {
+            RecordingRequest limited = new RecordingRequest(range1, 0, 10);
+            RecordingRequest all = new RecordingRequest(range1, 0, ITmfEventRequest.ALL_DATA);
+
+            TmfCoalescedEventRequest coalescedRequest = coalesce(limited, all);
+            coalescedRequest.start();
+            dispatchInChunks(coalescedRequest, events);
+
+            /* The sub-requests get the events before the request is done */
+            long deadline = System.currentTimeMillis() + 10000;
+            while ((all.getNbRead() < events.size() || limited.getNbRead() < 10) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("nbRead", events.size(), all.getNbRead());
+            assertEquals("nbRead", 10, limited.getNbRead());
+
+            coalescedRequest.done();
+            assertReceived(events, limited);
+            assertReceived(events, all);
+        } finally {
+            System.clearProperty(TmfCoalescedEventRequest.FAN_OUT_PROPERTY);
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testChunkCrossingStartIndex() {
+        List<ITmfEvent> events = readEvents(NB_CHUNKS * CHUNK_SIZE);
+        try {
+            RecordingRequest request = new RecordingRequest(range1, CHUNK_SIZE + 1, ITmfEventRequest.ALL_DATA);
+            RecordingBatchRequest batchRequest = new RecordingBatchRequest(range1, 2 * CHUNK_SIZE - 1, ITmfEventRequest.ALL_DATA);
+            TmfCoalescedEventRequest coalescedRequest = coalesce(request, batchRequest);
+            dispatchInChunks(coalescedRequest, events);
+
+            assertReceived(events, request);
+            assertEquals("first event", events.get(CHUNK_SIZE + 1), request.fEvents.get(0));
+
+            assertReceived(events, batchRequest);
+            assertEquals("first event", events.get(2 * CHUNK_SIZE - 1), batchRequest.fEvents.get(0));
+            assertEquals("nbChunks", NB_CHUNKS - 1, batchRequest.fNbChunks);
+        } finally {
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
 }
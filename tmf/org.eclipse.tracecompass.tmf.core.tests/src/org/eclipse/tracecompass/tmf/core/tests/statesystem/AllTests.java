@@ -21,6 +21,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     ExperimentStateSystemModuleTest.class,
+    PartialHistoryTest.class,
     StateSystemAnalysisModuleTest.class
 })
 public class AllTests {
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test the range queries on a state system backed by a partial history,
+ * against the same state system kept in memory.
+ */
+public class PartialHistoryTest {
+
+    /** Time-out tests after 60 seconds */
+    @Rule
+    public TestRule globalTimeout = new Timeout(60, TimeUnit.SECONDS);
+
+    private static final @NonNull String ATTRIBUTE = "value";
+    private static final @NonNull String PARTIAL_FILE_NAME = "partial-history-test.ht";
+
+    private ITmfTrace fTrace;
+    private RangeTestModule fFullModule;
+    private RangeTestModule fPartialModule;
+
+    /**
+     * Build both state systems
+     *
+     * @throws TmfAnalysisException
+     *             If the modules cannot be assigned the trace
+     */
+    @Before
+    public void setup() throws TmfAnalysisException {
+        fTrace = TmfTestTrace.A_TEST_10K.getTrace();
+        deletePartialFile();
+
+        fFullModule = new RangeTestModule(false);
+        fFullModule.setId("partial-history-test.full");
+        fPartialModule = new RangeTestModule(true);
+        fPartialModule.setId("partial-history-test.partial");
+        for (RangeTestModule module : new RangeTestModule[] { fFullModule, fPartialModule }) {
+            assertTrue(module.setTrace(fTrace));
+            module.schedule();
+            assertTrue(module.waitForCompletion());
+        }
+    }
+
+    /**
+     * Clean-up
+     */
+    @After
+    public void cleanup() {
+        fFullModule.dispose();
+        fPartialModule.dispose();
+        deletePartialFile();
+        TmfTestTrace.A_TEST_10K.dispose();
+    }
+
+    private void deletePartialFile() {
+        new File(TmfTraceManager.getSupplementaryFileDir(fTrace) + PARTIAL_FILE_NAME).delete();
+    }
+
+    /**
+     * Test that the range queries on the partial history return the same
+     * intervals as on the full history. Only the end time of the last
+     * interval differs, since the partial history does not know it.
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testQueryHistoryRange() throws Exception {
+        ITmfStateSystem fullSS = fFullModule.getStateSystem();
+        ITmfStateSystem partialSS = fPartialModule.getStateSystem();
+        assertNotNull(fullSS);
+        assertNotNull(partialSS);
+        int fullQuark = fullSS.getQuarkAbsolute(ATTRIBUTE);
+        int partialQuark = partialSS.getQuarkAbsolute(ATTRIBUTE);
+
+        long start = fullSS.getStartTime();
+        long end = fullSS.getCurrentEndTime();
+        long[][] ranges = {
+                { start, end },
+                { start, start + (end - start) / 3 },
+                { start + (end - start) / 4, start + (end - start) / 2 },
+                { end - 5, end + 100 },
+        };
+
+        for (long[] range : ranges) {
+            List<ITmfStateInterval> expected = StateSystemUtils.queryHistoryRange(fullSS, fullQuark, range[0], range[1]);
+            List<ITmfStateInterval> actual = StateSystemUtils.queryHistoryRange(partialSS, partialQuark, range[0], range[1]);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                ITmfStateInterval expectedInterval = expected.get(i);
+                ITmfStateInterval actualInterval = actual.get(i);
+                assertEquals(expectedInterval.getStartTime(), actualInterval.getStartTime());
+                assertEquals(expectedInterval.getStateValue(), actualInterval.getStateValue());
+                if (i < expected.size() - 1) {
+                    assertEquals(expectedInterval.getEndTime(), actualInterval.getEndTime());
+                } else {
+                    assertEquals(Math.min(range[1], partialSS.getCurrentEndTime()), actualInterval.getEndTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * Module building the state system with the chosen back-end
+     */
+    @NonNullByDefault
+    private static class RangeTestModule extends TmfStateSystemAnalysisModule {
+
+        private final boolean fPartial;
+
+        public RangeTestModule(boolean partial) {
+            fPartial = partial;
+        }
+
+        @Override
+        protected ITmfStateProvider createStateProvider() {
+            return new RangeTestProvider(checkNotNull(getTrace()));
+        }
+
+        @Override
+        protected StateSystemBackendType getBackendType() {
+            return (fPartial ? StateSystemBackendType.PARTIAL : StateSystemBackendType.INMEM);
+        }
+
+        @Override
+        protected String getSsFileName() {
+            return PARTIAL_FILE_NAME;
+        }
+    }
+
+    /**
+     * State provider changing the value of one attribute every few events.
+     * The value only depends on the event, so that the partial history can
+     * replay the events from any checkpoint.
+     */
+    private static class RangeTestProvider extends AbstractTmfStateProvider {
+
+        public RangeTestProvider(@NonNull ITmfTrace trace) {
+            super(trace, "Range Test Provider");
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public ITmfStateProvider getNewInstance() {
+            return new RangeTestProvider(getTrace());
+        }
+
+        @Override
+        protected void eventHandle(ITmfEvent event) {
+            ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+            long ts = event.getTimestamp().getValue();
+            try {
+                int quark = ss.getQuarkAbsoluteAndAdd(ATTRIBUTE);
+                ss.modifyAttribute(ts, TmfStateValue.newValueLong(ts / 7), quark);
+            } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -14,6 +14,8 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
@@ -21,6 +23,7 @@ import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventBatchRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
@@ -34,6 +37,42 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
  */
 public class TmfEventThread implements Runnable {
 
+    // ------------------------------------------------------------------------
+    // Constants
+    // ------------------------------------------------------------------------
+
+    /**
+     * Number of events handled between two checks for preemption, see
+     * {@link IPreemptionPolicy}
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    /**
+     * Number of events read from the provider at once for the requests which
+     * receive their events in chunks, see {@link ITmfEventBatchRequest}
+     */
+    public static final int CHUNK_SIZE = 100;
+
+    // ------------------------------------------------------------------------
+    // Preemption
+    // ------------------------------------------------------------------------
+
+    /**
+     * Decides if a request should give up its thread to let other requests
+     * run. The request is checked after each batch of events, and when it
+     * yields, {@link #run()} returns before the request is completed. The
+     * request continues where it was the next time it is run.
+     */
+    public interface IPreemptionPolicy {
+
+        /**
+         * @param thread
+         *            the thread executing the request
+         * @return true if the request should yield its thread
+         */
+        boolean shouldYield(TmfEventThread thread);
+    }
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -68,6 +107,26 @@ public class TmfEventThread implements Runnable {
     /** The flag for suspending a thread */
     private volatile boolean fIsPaused = false;
 
+    /** The preemption policy, null if the request is never preempted */
+    private volatile IPreemptionPolicy fPreemptionPolicy = null;
+
+    /*
+     * The state of the request between two runs, when it is preempted. Only
+     * accessed by the thread running the request.
+     */
+    private ITmfContext fContext = null;
+    private ITmfEvent fNextEvent = null;
+    private ITmfEvent[] fBuffer = null;
+    private int fBufferPos = 0;
+    private int fBufferLen = 0;
+    private int fNbRequested = 0;
+    private int fNbRead = 0;
+
+    /* Metrics, in nanoseconds */
+    private final long fQueuedTime = System.nanoTime();
+    private volatile long fFirstEventTime = -1;
+    private volatile long fCompletedTime = -1;
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -152,6 +211,41 @@ public class TmfEventThread implements Runnable {
         return isCompleted;
     }
 
+    /**
+     * @return The number of events read so far
+     */
+    public int getNbRead() {
+        return fNbRead;
+    }
+
+    /**
+     * @return The time between the creation of the thread and the handling of
+     *         the first event, in nanoseconds, or -1 if no event was handled
+     */
+    public long getLatency() {
+        long firstEventTime = fFirstEventTime;
+        return (firstEventTime < 0) ? -1 : firstEventTime - fQueuedTime;
+    }
+
+    /**
+     * @return The time between the creation of the thread and the completion
+     *         of the request, in nanoseconds, or -1 if it is not completed
+     */
+    public long getCompletionTime() {
+        long completedTime = fCompletedTime;
+        return (completedTime < 0) ? -1 : completedTime - fQueuedTime;
+    }
+
+    /**
+     * Set the policy deciding when the request is preempted
+     *
+     * @param policy
+     *            the preemption policy, or null to never preempt the request
+     */
+    public void setPreemptionPolicy(IPreemptionPolicy policy) {
+        fPreemptionPolicy = policy;
+    }
+
     // ------------------------------------------------------------------------
     // Runnable
     // ------------------------------------------------------------------------
@@ -159,51 +253,44 @@ public class TmfEventThread implements Runnable {
     @Override
     public void run() {
 
-        TmfCoreTracer.traceRequest(fRequest.getRequestId(), "is being serviced by " + fProvider.getName()); //$NON-NLS-1$
+        ITmfContext context = fContext;
+        if (context == null) {
+            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "is being serviced by " + fProvider.getName()); //$NON-NLS-1$
 
-        if (fRequest.isCancelled()) {
-            isCompleted = true;
-            return;
-        }
+            if (fRequest.isCancelled()) {
+                complete();
+                return;
+            }
 
-        // Extract the generic information
-        fRequest.start();
-        int nbRequested = fRequest.getNbRequested();
-        int nbRead = 0;
+            // Extract the generic information
+            fRequest.start();
+            fNbRequested = fRequest.getNbRequested();
 
-        // Initialize the execution
-        ITmfContext context = fProvider.armRequest(fRequest);
-        if (context == null) {
-            isCompleted = true;
-            fRequest.cancel();
-            return;
+            // Initialize the execution
+            context = fProvider.armRequest(fRequest);
+            if (context == null) {
+                complete();
+                fRequest.cancel();
+                return;
+            }
+            fContext = context;
+        } else {
+            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "RESUMED"); //$NON-NLS-1$
         }
 
         try {
-            // Get the ordered events
-            ITmfEvent event = fProvider.getNext(context);
-            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
-
-            while (event != null && !fProvider.isCompleted(fRequest, event, nbRead)) {
-
-                TmfCoreTracer.traceEvent(fProvider, fRequest, event);
-                if (fRequest.getDataType().isInstance(event)) {
-                    fRequest.handleData(event);
-                }
-
-                // Pause execution if requested
-                while (fIsPaused) {
-                    CountDownLatch latch = fLatch;
-                    latch.await();
-                }
-
-                // To avoid an unnecessary read passed the last event requested
-                if (++nbRead < nbRequested) {
-                    event = fProvider.getNext(context);
-                }
+            boolean finished;
+            if (fRequest instanceof ITmfEventBatchRequest) {
+                finished = handleChunks(context, (ITmfEventBatchRequest) fRequest);
+            } else {
+                finished = handleEvents(context);
+            }
+            if (!finished) {
+                TmfCoreTracer.traceRequest(fRequest.getRequestId(), "PREEMPTED"); //$NON-NLS-1$
+                return;
             }
 
-            isCompleted = true;
+            complete();
 
             if (fRequest.isCancelled()) {
                 fRequest.cancel();
@@ -213,14 +300,146 @@ public class TmfEventThread implements Runnable {
 
         } catch (Exception e) {
             Activator.logError("Error in " + fProvider.getName() + " handling " + fRequest, e); //$NON-NLS-1$ //$NON-NLS-2$
-            isCompleted = true;
+            complete();
             fRequest.fail();
         }
 
         // Cleanup
+        fNextEvent = null;
+        fBuffer = null;
         context.dispose();
     }
 
+    /**
+     * Read and handle the events one by one
+     *
+     * @return true if the request is finished, false if it was preempted
+     */
+    private boolean handleEvents(ITmfContext context) throws InterruptedException {
+        // Get the ordered events
+        ITmfEvent event = fNextEvent;
+        if (event == null) {
+            event = fProvider.getNext(context);
+            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+            fFirstEventTime = System.nanoTime();
+        }
+
+        int nbInBatch = 0;
+        while (event != null && !fProvider.isCompleted(fRequest, event, fNbRead)) {
+
+            TmfCoreTracer.traceEvent(fProvider, fRequest, event);
+            if (fRequest.getDataType().isInstance(event)) {
+                fRequest.handleData(event);
+            }
+
+            // Pause execution if requested
+            while (fIsPaused) {
+                CountDownLatch latch = fLatch;
+                latch.await();
+            }
+
+            // To avoid an unnecessary read passed the last event requested
+            if (++fNbRead < fNbRequested) {
+                event = fProvider.getNext(context);
+            }
+
+            // Give up the thread between two batches if requested
+            if (++nbInBatch == BATCH_SIZE) {
+                nbInBatch = 0;
+                if (event != null && shouldYield()) {
+                    fNextEvent = event;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the events from the provider in chunks, and hand each chunk to the
+     * request at once
+     *
+     * @return true if the request is finished, false if it was preempted
+     */
+    private boolean handleChunks(ITmfContext context, ITmfEventBatchRequest request) throws InterruptedException {
+        ITmfEvent[] buffer = fBuffer;
+        if (buffer == null) {
+            buffer = new ITmfEvent[CHUNK_SIZE];
+            fBuffer = buffer;
+        }
+        Class<? extends ITmfEvent> dataType = request.getDataType();
+        List<ITmfEvent> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        int nbInBatch = 0;
+        boolean completed = false;
+        while (!completed) {
+            if (fBufferPos == fBufferLen) {
+                // To avoid unnecessary reads passed the last event requested
+                int count = Math.min(CHUNK_SIZE, fNbRequested - fNbRead);
+                fBufferLen = (count > 0) ? fProvider.getNext(context, buffer, count) : 0;
+                fBufferPos = 0;
+                if (fFirstEventTime < 0) {
+                    TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+                    fFirstEventTime = System.nanoTime();
+                }
+                if (fBufferLen == 0) {
+                    break;
+                }
+            }
+
+            int nbHandled = 0;
+            while (fBufferPos < fBufferLen) {
+                ITmfEvent event = buffer[fBufferPos];
+                if (fProvider.isCompleted(request, event, fNbRead)) {
+                    completed = true;
+                    break;
+                }
+                buffer[fBufferPos++] = null;
+                TmfCoreTracer.traceEvent(fProvider, request, event);
+                if (dataType.isInstance(event)) {
+                    chunk.add(event);
+                }
+                fNbRead++;
+                nbHandled++;
+            }
+            if (!chunk.isEmpty()) {
+                request.handleData(chunk);
+                chunk.clear();
+            }
+
+            // Pause execution if requested
+            while (fIsPaused) {
+                CountDownLatch latch = fLatch;
+                latch.await();
+            }
+
+            // Give up the thread between two batches if requested
+            nbInBatch += nbHandled;
+            if (nbInBatch >= BATCH_SIZE) {
+                nbInBatch = 0;
+                if (!completed && shouldYield()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean shouldYield() {
+        IPreemptionPolicy policy = fPreemptionPolicy;
+        return (policy != null) && !fRequest.isCancelled() && policy.shouldYield(this);
+    }
+
+    private void complete() {
+        fCompletedTime = System.nanoTime();
+        isCompleted = true;
+        if (TmfCoreTracer.isRequestTraced()) {
+            long elapsed = Math.max(fCompletedTime - fQueuedTime, 1);
+            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read " + fNbRead + " events, latency " + getLatency() //$NON-NLS-1$ //$NON-NLS-2$
+                    + " ns, " + (fNbRead * 1000000000L / elapsed) + " events/s"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -254,4 +473,25 @@ public class TmfEventThread implements Runnable {
             fRequest.cancel();
         }
     }
+
+    /**
+     * Cancel the request of a thread which is not running and will not run
+     * again, for example a request waiting to be resumed after it was
+     * preempted. The context kept for resuming the request is disposed.
+     */
+    public void cancelPreempted() {
+        cancel();
+        if (fThread != null) {
+            fThread.cancelPreempted();
+            return;
+        }
+        ITmfContext context = fContext;
+        if (context != null && !isCompleted) {
+            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "CANCELLED while preempted"); //$NON-NLS-1$
+            complete();
+            fNextEvent = null;
+            fBuffer = null;
+            context.dispose();
+        }
+    }
 }
@@ -14,26 +14,62 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.request;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventBatchRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
  * The TMF coalesced event request
+ * <p>
+ * By default, the events are handed to the sub-requests one after the other
+ * in the thread reading the trace, so the slowest sub-request throttles all
+ * the others. If the system property {@link #FAN_OUT_PROPERTY} is true, each
+ * sub-request instead gets its own thread, fed by a bounded queue. The trace
+ * is still read once, the sub-requests handle the events in parallel, and the
+ * reading thread blocks when the queue of a sub-request is full.
  *
  * @author Francois Chouinard
  */
-public class TmfCoalescedEventRequest extends TmfEventRequest {
+public class TmfCoalescedEventRequest extends TmfEventRequest implements ITmfEventBatchRequest {
+
+    // ------------------------------------------------------------------------
+    // Constants
+    // ------------------------------------------------------------------------
+
+    /**
+     * System property to hand the events to each sub-request in its own
+     * thread
+     */
+    public static final String FAN_OUT_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.fanout"; //$NON-NLS-1$
+
+    /** Number of chunks of events in the queue of a sub-request */
+    private static final int FAN_OUT_QUEUE_SIZE = 32;
+
+    /** Number of events in a chunk of the queue of a sub-request */
+    private static final int FAN_OUT_CHUNK_SIZE = 127;
+
+    /** Fake event indicating there are no more events for a sub-request */
+    private static final ITmfEvent END_EVENT = new TmfEvent(null, ITmfContext.UNKNOWN_RANK, null, null, null);
 
     // ------------------------------------------------------------------------
     // Attributes
@@ -53,6 +89,12 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
      */
     private Map<String, Set<ITmfEventRequest>> fRequestsCache = new HashMap<>();
 
+    /** If the events are handed to the sub-requests in their own threads */
+    private final boolean fFanOut;
+
+    /** The consumer of each sub-request, when the request is running */
+    private volatile Map<ITmfEventRequest, SubRequestConsumer> fConsumers = null;
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -82,6 +124,7 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
             ExecutionType priority) {
         super(ITmfEvent.class, null, index, nbRequested, priority);
         fRange = range;
+        fFanOut = Boolean.getBoolean(FAN_OUT_PROPERTY);
 
         if (TmfCoreTracer.isRequestTraced()) {
             String type = getClass().getName();
@@ -206,10 +249,111 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     @Override
     public void handleData(ITmfEvent data) {
+        if (fConsumers != null) {
+            /* Keep the events in order in the queues */
+            handleData(checkNotNull(Collections.singletonList(data)));
+            return;
+        }
         super.handleData(data);
 
         long index = getIndex() + getNbRead() - 1;
+        long ts = TmfEvent.getTimestampNanos(data);
+        Set<ITmfEventRequest> requests = getRequests(data);
 
+        // dispatch event to relevant requests
+        for (ITmfEventRequest request : requests) {
+            long start = request.getIndex();
+            if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
+                if (request.getRange().contains(ts)) {
+                    if (request.getDataType().isInstance(data)) {
+                        request.handleData(data);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatch a chunk of events to the relevant requests. Each request is
+     * checked once per chunk rather than once per event, and the requests
+     * which also take chunks of events get them at once. In fan-out mode, the
+     * events of each request are put in its queue instead.
+     */
+    @Override
+    public void handleData(List<ITmfEvent> events) {
+        long firstIndex = getIndex() + getNbRead();
+        int nbEvents = events.size();
+
+        // Find the relevant requests of each event, the events of a chunk
+        // usually come from the same trace
+        List<Set<ITmfEventRequest>> eventRequests = new ArrayList<>(nbEvents);
+        long[] timestamps = new long[nbEvents];
+        Set<ITmfEventRequest> allRequests = new LinkedHashSet<>();
+        Set<ITmfEventRequest> requests = null;
+        ITmfTrace trace = null;
+        for (int i = 0; i < nbEvents; i++) {
+            ITmfEvent event = events.get(i);
+            super.handleData(event);
+            timestamps[i] = TmfEvent.getTimestampNanos(event);
+            if (requests == null || event.getTrace() != trace) {
+                trace = event.getTrace();
+                requests = getRequests(event);
+                allRequests.addAll(requests);
+            }
+            eventRequests.add(requests);
+        }
+
+        // dispatch the events to each relevant request
+        Map<ITmfEventRequest, SubRequestConsumer> consumers = fConsumers;
+        List<ITmfEvent> chunk = new ArrayList<>(nbEvents);
+        for (ITmfEventRequest request : allRequests) {
+            if (request.isCompleted()) {
+                continue;
+            }
+            long start = request.getIndex();
+            boolean limited = (request.getNbRequested() != ITmfEventRequest.ALL_DATA);
+            TmfTimeRange range = request.getRange();
+            Class<? extends ITmfEvent> dataType = request.getDataType();
+            ITmfEventBatchRequest batchRequest = (request instanceof ITmfEventBatchRequest) ? (ITmfEventBatchRequest) request : null;
+            SubRequestConsumer consumer = (consumers == null) ? null : consumers.get(request);
+            /* The events in the queue are not counted by the request yet */
+            long nbRead = (consumer == null) ? request.getNbRead() : consumer.getNbQueued();
+
+            int first = (int) Math.max(0, Math.min(start - firstIndex, nbEvents));
+            int nbSent = 0;
+            for (int i = first; i < nbEvents; i++) {
+                ITmfEvent event = events.get(i);
+                if (!eventRequests.get(i).contains(request) ||
+                        !range.contains(timestamps[i]) ||
+                        !dataType.isInstance(event)) {
+                    continue;
+                }
+                if (limited && nbRead + nbSent >= request.getNbRequested()) {
+                    break;
+                }
+                if (consumer != null || batchRequest != null) {
+                    chunk.add(event);
+                } else {
+                    if (request.isCompleted()) {
+                        break;
+                    }
+                    request.handleData(event);
+                }
+                /* nbRead is not updated while the chunk is dispatched */
+                nbSent++;
+            }
+            if (!chunk.isEmpty()) {
+                if (consumer != null) {
+                    consumer.put(chunk);
+                } else if (batchRequest != null) {
+                    batchRequest.handleData(chunk);
+                }
+                chunk.clear();
+            }
+        }
+    }
+
+    private Set<ITmfEventRequest> getRequests(ITmfEvent data) {
         String traceName = data.getTrace().getName();
         Set<ITmfEventRequest> requests = fRequestsCache.get(traceName);
 
@@ -223,19 +367,7 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
             }
             fRequestsCache.put(traceName, requests);
         }
-
-        // dispatch event to relevant requests
-        for (ITmfEventRequest request : requests) {
-            long start = request.getIndex();
-            if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
-                ITmfTimestamp ts = data.getTimestamp();
-                if (request.getRange().contains(ts)) {
-                    if (request.getDataType().isInstance(data)) {
-                        request.handleData(data);
-                    }
-                }
-            }
-        }
+        return requests;
     }
 
     @Override
@@ -245,11 +377,23 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 request.start();
             }
         }
+        /* There is nothing to gain with a single sub-request */
+        if (fFanOut && fRequests.size() > 1 && fConsumers == null) {
+            Map<ITmfEventRequest, SubRequestConsumer> consumers = new HashMap<>();
+            for (ITmfEventRequest request : fRequests) {
+                SubRequestConsumer consumer = new SubRequestConsumer(request);
+                consumers.put(request, consumer);
+                consumer.start();
+            }
+            fConsumers = consumers;
+        }
         super.start();
     }
 
     @Override
     public void done() {
+        /* Let the sub-requests handle all their events first */
+        stopConsumers(true);
         for (ITmfEventRequest request : fRequests) {
             if (!request.isCompleted()) {
                 request.done();
@@ -260,6 +404,7 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     @Override
     public void fail() {
+        stopConsumers(true);
         for (ITmfEventRequest request : fRequests) {
             request.fail();
         }
@@ -273,6 +418,8 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 request.cancel();
             }
         }
+        /* The events still in the queues are dropped, no need to wait */
+        stopConsumers(false);
         super.cancel();
     }
 
@@ -323,6 +470,155 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     }
 
+    private void stopConsumers(boolean wait) {
+        Map<ITmfEventRequest, SubRequestConsumer> consumers = fConsumers;
+        if (consumers == null) {
+            return;
+        }
+        for (SubRequestConsumer consumer : consumers.values()) {
+            consumer.stop();
+        }
+        if (wait) {
+            for (SubRequestConsumer consumer : consumers.values()) {
+                consumer.join();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Fan-out
+    // ------------------------------------------------------------------------
+
+    /**
+     * The thread handing the events to a sub-request, from its queue. The
+     * events of a sub-request which is completed are dropped.
+     */
+    private class SubRequestConsumer implements Runnable {
+
+        private final ITmfEventRequest fRequest;
+        private final BufferedBlockingQueue<ITmfEvent> fQueue;
+        private final Thread fThread;
+
+        /* Guarded by this, only written by the reading thread */
+        private boolean fStopped = false;
+        private long fNbQueued = 0;
+        private long fMaxLag = 0;
+        private long fBlockedTime = 0;
+
+        /* Only written by the consumer thread */
+        private volatile long fNbHandled = 0;
+
+        public SubRequestConsumer(ITmfEventRequest request) {
+            fRequest = request;
+            fQueue = new BufferedBlockingQueue<>(FAN_OUT_QUEUE_SIZE, FAN_OUT_CHUNK_SIZE);
+            fThread = new Thread(this, "Request " + getRequestId() + " fan-out to " + request.getRequestId()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        public void start() {
+            fThread.start();
+        }
+
+        public synchronized long getNbQueued() {
+            return fNbQueued;
+        }
+
+        /**
+         * Put events in the queue, blocks while the queue is full. The events
+         * are made visible to the consumer thread right away, instead of
+         * waiting for the input buffer of the queue to fill up.
+         */
+        public synchronized void put(List<ITmfEvent> events) {
+            if (fStopped) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (ITmfEvent event : events) {
+                fQueue.put(event);
+            }
+            fQueue.flushInputBuffer();
+            fBlockedTime += System.nanoTime() - start;
+            fNbQueued += events.size();
+            fMaxLag = Math.max(fMaxLag, fNbQueued - fNbHandled);
+        }
+
+        /**
+         * Let the thread end once it handled the events in the queue
+         */
+        public synchronized void stop() {
+            if (fStopped) {
+                return;
+            }
+            fStopped = true;
+            fQueue.put(END_EVENT);
+            fQueue.flushInputBuffer();
+
+            if (TmfCoreTracer.isRequestTraced()) {
+                @SuppressWarnings("nls")
+                String message = "FAN-OUT to " + fRequest.getRequestId()
+                        + " NbQueued=" + fNbQueued
+                        + " MaxLag=" + fMaxLag
+                        + " BlockedTime=" + (fBlockedTime / 1000000) + "ms";
+                TmfCoreTracer.traceRequest(getRequestId(), message);
+            }
+        }
+
+        public void join() {
+            try {
+                fThread.join();
+            } catch (InterruptedException e) {
+                Activator.logError("Interrupted while waiting for " + fRequest, e); //$NON-NLS-1$
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<ITmfEvent> chunk = new ArrayList<>(FAN_OUT_CHUNK_SIZE);
+            boolean end = false;
+            while (!end) {
+                /* Gather the events already available, up to a chunk */
+                ITmfEvent event = fQueue.take();
+                while (true) {
+                    if (event == END_EVENT) {
+                        end = true;
+                        break;
+                    }
+                    chunk.add(event);
+                    if (chunk.size() >= FAN_OUT_CHUNK_SIZE || fQueue.isEmpty()) {
+                        break;
+                    }
+                    event = fQueue.take();
+                }
+                if (!chunk.isEmpty()) {
+                    handleChunk(chunk);
+                    fNbHandled += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+
+        private void handleChunk(List<ITmfEvent> events) {
+            if (fRequest.isCompleted()) {
+                return;
+            }
+            try {
+                if (fRequest instanceof ITmfEventBatchRequest) {
+                    ((ITmfEventBatchRequest) fRequest).handleData(events);
+                } else {
+                    for (ITmfEvent event : events) {
+                        if (fRequest.isCompleted()) {
+                            break;
+                        }
+                        fRequest.handleData(event);
+                    }
+                }
+            } catch (RuntimeException e) {
+                Activator.logError("Error in " + fRequest + " handling events", e); //$NON-NLS-1$ //$NON-NLS-2$
+                fRequest.fail();
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
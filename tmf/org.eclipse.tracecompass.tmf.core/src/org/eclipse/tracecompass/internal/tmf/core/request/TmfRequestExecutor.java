@@ -14,13 +14,17 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.request;
 
+import java.util.HashSet;
 import java.util.Queue;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
@@ -34,6 +38,14 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
  * Example: if we have one foreground and one background request, the foreground
  * request will be executed four times more often than the background request.
  *
+ * In concurrent mode, the requests run at the same time on a work-stealing
+ * pool of the executor, with one thread per processor. When there are more
+ * requests than threads, the running requests yield their thread
+ * after a batch of events (see {@link TmfEventThread#BATCH_SIZE}) to the
+ * waiting ones, which are picked with the same foreground and background
+ * slots. Reading the events is serialized by the trace, but handling them
+ * runs in parallel.
+ *
  * @author Francois Chouinard
  * @author Simon Delisle
  * @version 1.1
@@ -47,6 +59,14 @@ public class TmfRequestExecutor implements Executor {
     private static final long REQUEST_TIME = 100;
     private static final int FOREGROUND_SLOT = 4;
 
+    /**
+     * System property to create the executors in concurrent mode, see
+     * {@link #TmfRequestExecutor(boolean)}
+     */
+    public static final String CONCURRENT_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.concurrent"; //$NON-NLS-1$
+
+    private static final int NB_THREADS = Runtime.getRuntime().availableProcessors();
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -56,12 +76,24 @@ public class TmfRequestExecutor implements Executor {
     private final String fExecutorName;
 
     // The request queues
-    private final Queue<TmfEventThread> fForegroundTasks = new ArrayBlockingQueue<>(10);
-    private final Queue<TmfEventThread> fBackgroundTasks = new ArrayBlockingQueue<>(10);
+    private final Queue<TmfEventThread> fForegroundTasks;
+    private final Queue<TmfEventThread> fBackgroundTasks;
 
     // The tasks
     private TmfEventThread fActiveTask;
 
+    // The running tasks, in concurrent mode
+    private final boolean fConcurrent;
+    private final ForkJoinPool fConcurrentPool;
+    private final Set<TmfEventThread> fRunningTasks = new HashSet<>();
+    private final TmfEventThread.IPreemptionPolicy fPreemptionPolicy = new TmfEventThread.IPreemptionPolicy() {
+        @Override
+        public boolean shouldYield(TmfEventThread thread) {
+            /* The queues are only used when all the threads are busy */
+            return hasTasks();
+        }
+    };
+
     private Timer fTimer;
     private TimerTask fTimerTask;
 
@@ -72,9 +104,37 @@ public class TmfRequestExecutor implements Executor {
     // ------------------------------------------------------------------------
 
     /**
-     * Default constructor
+     * Default constructor, in concurrent mode if the system property
+     * {@link #CONCURRENT_PROPERTY} is true
      */
     public TmfRequestExecutor() {
+        this(Boolean.getBoolean(CONCURRENT_PROPERTY));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param concurrent
+     *            true to run the requests concurrently, false to run one
+     *            request at a time in time slots
+     */
+    public TmfRequestExecutor(boolean concurrent) {
+        fConcurrent = concurrent;
+        if (concurrent) {
+            fForegroundTasks = new ConcurrentLinkedQueue<>();
+            fBackgroundTasks = new ConcurrentLinkedQueue<>();
+            /*
+             * Each executor has its own threads, so that the requests waiting
+             * in its queues are the only ones the running requests yield to.
+             * The threads are only started when they are needed.
+             */
+            fConcurrentPool = new ForkJoinPool(NB_THREADS,
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        } else {
+            fForegroundTasks = new ArrayBlockingQueue<>(10);
+            fBackgroundTasks = new ArrayBlockingQueue<>(10);
+            fConcurrentPool = null;
+        }
         String canonicalName = fExecutor.getClass().getCanonicalName();
         fExecutorName = canonicalName.substring(canonicalName.lastIndexOf('.') + 1);
         if (TmfCoreTracer.isComponentTraced()) {
@@ -96,10 +156,20 @@ public class TmfRequestExecutor implements Executor {
     /**
      * @return the termination state
      */
-    public boolean isTerminated() {
+    public synchronized boolean isTerminated() {
+        if (fConcurrent) {
+            return fExecutor.isShutdown() && fRunningTasks.isEmpty();
+        }
         return fExecutor.isTerminated();
     }
 
+    /**
+     * @return true if the requests run concurrently
+     */
+    public boolean isConcurrent() {
+        return fConcurrent;
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -108,7 +178,7 @@ public class TmfRequestExecutor implements Executor {
      * Initialize the executor
      */
     public void init() {
-        if (fTimer != null) {
+        if (fConcurrent || fTimer != null) {
             return;
         }
         // Initialize the timer for the schedSwitch
@@ -128,6 +198,10 @@ public class TmfRequestExecutor implements Executor {
 
         // Wrap the thread in a MyThread
         TmfEventThread thread = (TmfEventThread) command;
+        if (fConcurrent) {
+            executeConcurrently(thread);
+            return;
+        }
         TmfEventThread wrapper = new TmfEventThread(thread) {
             @Override
             public void run() {
@@ -153,6 +227,61 @@ public class TmfRequestExecutor implements Executor {
         }
     }
 
+    private void executeConcurrently(final TmfEventThread thread) {
+        thread.setPreemptionPolicy(fPreemptionPolicy);
+        TmfEventThread wrapper = new TmfEventThread(thread) {
+            @Override
+            public void run() {
+                try {
+                    thread.run();
+                } finally {
+                    runConcurrentlyNext(this);
+                }
+            }
+        };
+        if (thread.getExecType() == ExecutionType.FOREGROUND) {
+            fForegroundTasks.offer(wrapper);
+        } else {
+            fBackgroundTasks.offer(wrapper);
+        }
+        runConcurrently();
+    }
+
+    /**
+     * Called when a task completes or yields its thread, in concurrent mode
+     */
+    private synchronized void runConcurrentlyNext(TmfEventThread task) {
+        fRunningTasks.remove(task);
+        if (!task.getThread().isCompleted()) {
+            if (isShutdown()) {
+                task.cancelPreempted();
+            } else if (task.getExecType() == ExecutionType.FOREGROUND) {
+                fForegroundTasks.offer(task);
+            } else {
+                fBackgroundTasks.offer(task);
+            }
+        }
+        runConcurrently();
+    }
+
+    /**
+     * Start waiting tasks while there are free threads, in concurrent mode
+     */
+    private synchronized void runConcurrently() {
+        while (!isShutdown() && fRunningTasks.size() < NB_THREADS && hasTasks()) {
+            TmfEventThread task;
+            if (!fForegroundTasks.isEmpty() && (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty())) {
+                ++fForegroundCycle;
+                task = fForegroundTasks.poll();
+            } else {
+                fForegroundCycle = 0;
+                task = fBackgroundTasks.poll();
+            }
+            fRunningTasks.add(task);
+            fConcurrentPool.execute(task);
+        }
+    }
+
     /**
      * Timer task to trigger scheduleNext()
      */
@@ -222,15 +351,22 @@ public class TmfRequestExecutor implements Executor {
         if (fActiveTask != null) {
             fActiveTask.cancel();
         }
+        for (TmfEventThread task : fRunningTasks) {
+            task.cancel();
+        }
 
         while ((fActiveTask = fForegroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+            cancelWaiting(fActiveTask);
         }
         while ((fActiveTask = fBackgroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+            cancelWaiting(fActiveTask);
         }
 
         fExecutor.shutdown();
+        if (fConcurrentPool != null) {
+            /* The running tasks see that their request is cancelled */
+            fConcurrentPool.shutdown();
+        }
         if (TmfCoreTracer.isComponentTraced()) {
             TmfCoreTracer.trace(fExecutor + " terminated"); //$NON-NLS-1$
         }
@@ -288,6 +424,19 @@ public class TmfRequestExecutor implements Executor {
         }
     }
 
+    /**
+     * Cancel a task of the queues. In concurrent mode, the task is not
+     * running, and it will not run again if it was preempted, so the state it
+     * kept is released.
+     */
+    private void cancelWaiting(TmfEventThread task) {
+        if (fConcurrent) {
+            task.cancelPreempted();
+        } else {
+            task.cancel();
+        }
+    }
+
     /**
      * Check if the scheduler has tasks
      */
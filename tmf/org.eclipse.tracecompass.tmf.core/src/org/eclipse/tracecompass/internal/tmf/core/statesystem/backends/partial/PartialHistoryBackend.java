@@ -15,18 +15,24 @@ package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.IStateHistoryBatchBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.StateIntervalBatch;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfIntervalEndComparator;
 import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -55,7 +61,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  *
  * @author Alexandre Montplaisir
  */
-public class PartialHistoryBackend implements IStateHistoryBackend {
+public class PartialHistoryBackend implements IStateHistoryBatchBackend {
 
     private final @NonNull String fSSID;
 
@@ -171,6 +177,33 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         }
     }
 
+    @Override
+    public void insertPastStates(StateIntervalBatch batch) throws TimeRangeException {
+        waitForCheckpoints();
+
+        /*
+         * Only forward the intervals that intersect a checkpoint, in a new
+         * batch since the real back-end may keep a reference to it.
+         */
+        StateIntervalBatch kept = new StateIntervalBatch(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            long stateStartTime = batch.getStartTime(i);
+            long stateEndTime = batch.getEndTime(i);
+
+            /* Update the latest time */
+            if (stateEndTime > fLatestTime) {
+                fLatestTime = stateEndTime;
+            }
+
+            if (stateStartTime <= fCheckpoints.floorKey(stateEndTime)) {
+                kept.add(stateStartTime, stateEndTime, batch.getAttribute(i), batch.getStateValue(i));
+            }
+        }
+        if (!kept.isEmpty()) {
+            kept.insertInto(fInnerHistory);
+        }
+    }
+
     @Override
     public void finishedBuilding(long endTime) throws TimeRangeException {
         fInnerHistory.finishedBuilding(endTime);
@@ -226,22 +259,7 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         fPartialSS.replaceOngoingState(currentStateInfo);
 
         /* Send an event request to update the state system to the target time. */
-        TmfTimeRange range = new TmfTimeRange(
-                /*
-                 * The state at the checkpoint already includes any state change
-                 * caused by the event(s) happening exactly at 'checkpointTime',
-                 * if any. We must not include those events in the query.
-                 */
-                new TmfTimestamp(checkpointTime + 1, ITmfTimestamp.NANOSECOND_SCALE),
-                new TmfTimestamp(t, ITmfTimestamp.NANOSECOND_SCALE));
-        ITmfEventRequest request = new PartialStateSystemRequest(fPartialInput, range);
-        fPartialInput.getTrace().sendRequest(request);
-
-        try {
-            request.waitForCompletion();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        replayEvents(checkpointTime, t);
 
         /*
          * Now the partial state system should have the ongoing time we are
@@ -266,6 +284,16 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         fPartialSS.releaseQueryLock();
     }
 
+    /**
+     * The partial state system has to be brought to the target time anyway,
+     * so all the attributes are queried.
+     */
+    @Override
+    public void doQuery(List<ITmfStateInterval> currentStateInfo, long t, BitSet quarks)
+            throws TimeRangeException, StateSystemDisposedException {
+        doQuery(currentStateInfo, t);
+    }
+
     /**
      * Single queries are not supported in partial histories. To get the same
      * result you can do a full query, then call fullState.get(attribute).
@@ -275,6 +303,108 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Range queries replay the events from the checkpoint preceding the start
+     * of the range, and keep the intervals closed by the partial state
+     * system. Like with full queries, the real end time of the intervals which
+     * are still ongoing at the end of the range is not known, so it is set to
+     * the end of the range.
+     */
+    @Override
+    public Iterable<ITmfStateInterval> query2D(BitSet quarks, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (end < start) {
+            throw new TimeRangeException(fSSID + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        /* Wait for required steps to be done */
+        waitForCheckpoints();
+        ITmfStateSystem upstreamSS = fPartialSS.getUpstreamSS();
+        upstreamSS.waitUntilBuilt();
+
+        final long rangeStart = Math.max(start, getStartTime());
+        final long rangeEnd = Math.min(end, getEndTime());
+        List<ITmfStateInterval> ret = new ArrayList<>();
+        if (rangeEnd < rangeStart) {
+            return ret;
+        }
+
+        /* Reload the previous checkpoint */
+        long checkpointTime = fCheckpoints.floorKey(rangeStart);
+        final int nbAttributes = upstreamSS.getNbAttributes();
+        List<ITmfStateInterval> stateInfo = new ArrayList<>(nbAttributes);
+        for (int i = 0; i < nbAttributes; i++) {
+            stateInfo.add(null);
+        }
+        fInnerHistory.doQuery(stateInfo, checkpointTime);
+
+        fPartialSS.takeQueryLock();
+        try {
+            fPartialSS.replaceOngoingState(stateInfo);
+
+            /* Replay the events, keeping the intervals closed in the meantime */
+            fPartialSS.startCollecting(quarks);
+            replayEvents(checkpointTime, rangeEnd);
+            try {
+                for (int i = 0; i < nbAttributes; i++) {
+                    long ongoingStart = ((ITmfStateSystem) fPartialSS).getOngoingStartTime(i);
+                    ITmfStateValue ongoingValue = ((ITmfStateSystem) fPartialSS).queryOngoingState(i);
+                    stateInfo.set(i, new TmfStateInterval(ongoingStart, rangeEnd, i, ongoingValue));
+                }
+            } catch (AttributeNotFoundException e) {
+                /* Should not happen, we iterate over existing values. */
+                e.printStackTrace();
+            }
+            /*
+             * Replacing the ongoing state by itself sends the last closed
+             * intervals to the partial state system's back-end.
+             */
+            fPartialSS.replaceOngoingState(stateInfo);
+            List<ITmfStateInterval> closed = fPartialSS.stopCollecting();
+
+            /* The intervals between the checkpoint and the range are not needed */
+            for (ITmfStateInterval interval : closed) {
+                if (interval.getEndTime() >= rangeStart) {
+                    ret.add(interval);
+                }
+            }
+            for (int quark = quarks.nextSetBit(0); quark >= 0 && quark < nbAttributes; quark = quarks.nextSetBit(quark + 1)) {
+                ITmfStateInterval interval = stateInfo.get(quark);
+                if (interval.getStartTime() <= rangeEnd) {
+                    ret.add(interval);
+                }
+            }
+        } finally {
+            fPartialSS.releaseQueryLock();
+        }
+
+        Collections.sort(ret, new TmfIntervalEndComparator());
+        return ret;
+    }
+
+    /**
+     * Send the events after a checkpoint, up to a target time, to the partial
+     * state system, and wait until they are handled.
+     */
+    private void replayEvents(long checkpointTime, long t) {
+        TmfTimeRange range = new TmfTimeRange(
+                /*
+                 * The state at the checkpoint already includes any state change
+                 * caused by the event(s) happening exactly at 'checkpointTime',
+                 * if any. We must not include those events in the query.
+                 */
+                new TmfTimestamp(checkpointTime + 1, ITmfTimestamp.NANOSECOND_SCALE),
+                new TmfTimestamp(t, ITmfTimestamp.NANOSECOND_SCALE));
+        ITmfEventRequest request = new PartialStateSystemRequest(fPartialInput, range);
+        fPartialInput.getTrace().sendRequest(request);
+
+        try {
+            request.waitForCompletion();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
     private boolean checkValidTime(long t) {
         return (t >= getStartTime() && t <= getEndTime());
     }
@@ -11,17 +11,23 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.AttributeTree;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.StateIntervalBatch;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
-import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 /**
  * State system interface-like extension to use with partial state histories.
@@ -46,15 +52,23 @@ public class PartialStateSystem extends StateSystem {
      */
     private StateSystem realStateSystem = null;
 
+    private final CollectingBackend fBackend;
+
     /**
      * Constructor
      */
     public PartialStateSystem() {
+        this(new CollectingBackend());
+    }
+
+    private PartialStateSystem(CollectingBackend backend) {
         /*
          * We use a Null back end here : we only use this state system for its
          * "ongoing" values, so no need to save the changes that are inserted.
+         * Only range queries look at the intervals, while they replay events.
          */
-        super(StateHistoryBackendFactory.createNullBackend("partial")); //$NON-NLS-1$
+        super(backend);
+        fBackend = backend;
     }
 
     /**
@@ -86,6 +100,26 @@ public class PartialStateSystem extends StateSystem {
         super.dispose();
     }
 
+    /**
+     * Start keeping the intervals of some attributes which are closed by the
+     * state changes. This should be done while holding the query lock.
+     *
+     * @param quarks
+     *            The quarks of the attributes whose intervals to keep
+     */
+    void startCollecting(BitSet quarks) {
+        fBackend.startCollecting(quarks);
+    }
+
+    /**
+     * Stop keeping the closed intervals.
+     *
+     * @return The intervals closed since {@link #startCollecting}
+     */
+    List<ITmfStateInterval> stopCollecting() {
+        return fBackend.stopCollecting();
+    }
+
     // ------------------------------------------------------------------------
     // Methods regarding the query lock
     // ------------------------------------------------------------------------
@@ -159,4 +193,48 @@ public class PartialStateSystem extends StateSystem {
         }
     }
 
+    /**
+     * Back-end discarding the intervals, except during range queries.
+     */
+    private static class CollectingBackend extends NullBackend {
+
+        private @Nullable BitSet fQuarks = null;
+        private final List<ITmfStateInterval> fIntervals = new ArrayList<>();
+
+        public CollectingBackend() {
+            super("partial"); //$NON-NLS-1$
+        }
+
+        public synchronized void startCollecting(BitSet quarks) {
+            fIntervals.clear();
+            fQuarks = quarks;
+        }
+
+        public synchronized List<ITmfStateInterval> stopCollecting() {
+            fQuarks = null;
+            List<ITmfStateInterval> ret = new ArrayList<>(fIntervals);
+            fIntervals.clear();
+            return ret;
+        }
+
+        @Override
+        public synchronized void insertPastState(long stateStartTime, long stateEndTime,
+                int quark, ITmfStateValue value) {
+            BitSet quarks = fQuarks;
+            if (quarks != null && quarks.get(quark)) {
+                fIntervals.add(new TmfStateInterval(stateStartTime, stateEndTime, quark, value));
+            }
+        }
+
+        @Override
+        public synchronized void insertPastStates(StateIntervalBatch batch) {
+            if (fQuarks == null) {
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                insertPastState(batch.getStartTime(i), batch.getEndTime(i),
+                        batch.getAttribute(i), batch.getStateValue(i));
+            }
+        }
+    }
 }
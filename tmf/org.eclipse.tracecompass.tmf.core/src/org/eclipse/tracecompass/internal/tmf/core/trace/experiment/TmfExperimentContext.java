@@ -18,7 +18,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.collect.LoserTree;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 
@@ -33,6 +35,10 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The traces are ordered by the timestamp of their next event, in nanoseconds,
+ * with a loser tree. Replacing the event of the trace which was last read only
+ * costs log2(n) comparisons, for n traces.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -53,6 +59,12 @@ public final class TmfExperimentContext extends TmfContext {
     private final List<ITmfEvent> fEvents;
     private int fLastTraceRead;
 
+    /** The traces ordered by the timestamp of their event */
+    private final LoserTree fMerge;
+
+    /** False if events were set without updating the tree */
+    private boolean fMergeValid = true;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -68,7 +80,7 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = NO_TRACE;
         fContexts = new ArrayList<>(nbTraces);
         fEvents = new ArrayList<>(nbTraces);
-
+        fMerge = new LoserTree(nbTraces);
 
         /* Initialize the arrays to the requested size */
         for (int i = 0; i < nbTraces; i++) {
@@ -146,6 +158,42 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public void setEvent(int traceIndex, ITmfEvent event) {
         fEvents.set(traceIndex, event);
+        if (fMergeValid && traceIndex == fMerge.getWinner()) {
+            /* Usual case, the trace whose event was consumed */
+            if (event != null) {
+                fMerge.replaceWinner(getKey(event));
+            } else {
+                fMerge.removeWinner();
+            }
+        } else {
+            if (event != null) {
+                fMerge.setKey(traceIndex, getKey(event));
+            } else {
+                fMerge.remove(traceIndex);
+            }
+            fMergeValid = false;
+        }
+    }
+
+    /**
+     * Get the index of the trace with the earliest event. If several traces
+     * have an event at the same time, the one with the lowest index is
+     * returned.
+     *
+     * @return The index of the trace, or {@link #NO_TRACE} if there are no
+     *         more events
+     */
+    public int getNextTrace() {
+        if (!fMergeValid) {
+            fMerge.rebuild();
+            fMergeValid = true;
+        }
+        int trace = fMerge.getWinner();
+        return (trace == LoserTree.NO_WINNER) ? NO_TRACE : trace;
+    }
+
+    private static long getKey(ITmfEvent event) {
+        return TmfEvent.getTimestampNanos(event);
     }
 
     /**
@@ -31,13 +31,13 @@ import org.eclipse.tracecompass.internal.tmf.core.component.TmfProviderManager;
 import org.eclipse.tracecompass.internal.tmf.core.request.TmfCoalescedEventRequest;
 import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.signal.TmfEndSynchSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfStartSynchSignal;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 
 /**
@@ -426,6 +426,32 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
      */
     public abstract ITmfContext armRequest(ITmfEventRequest request);
 
+    /**
+     * Read the next events of a request at once, to amortize the cost of
+     * reading them one by one. The default implementation calls
+     * {@link #getNext(ITmfContext)} for each event.
+     *
+     * @param context
+     *            The context of the request, updated past the events read
+     * @param events
+     *            The array to fill with the events
+     * @param count
+     *            The maximum number of events to read
+     * @return The number of events read, less than count only if there are
+     *         no more events
+     * @since 1.1
+     */
+    public int getNext(ITmfContext context, ITmfEvent[] events, int count) {
+        for (int i = 0; i < count; i++) {
+            ITmfEvent event = getNext(context);
+            if (event == null) {
+                return i;
+            }
+            events[i] = event;
+        }
+        return count;
+    }
+
     /**
      * Checks if the data meets the request completion criteria.
      *
@@ -440,8 +466,7 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     public boolean isCompleted(ITmfEventRequest request, ITmfEvent event, int nbRead) {
         boolean requestCompleted = isCompleted2(request, nbRead);
         if (!requestCompleted) {
-            ITmfTimestamp endTime = request.getRange().getEndTime();
-            return event.getTimestamp().compareTo(endTime) > 0;
+            return TmfEvent.getTimestampNanos(event) > request.getRange().getEndNanos();
         }
         return requestCompleted;
     }
@@ -126,6 +126,34 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
         return fTimestamp;
     }
 
+    /**
+     * Get the timestamp of the event in nanoseconds, without creating a new
+     * timestamp (see {@link TmfTimestamp#toNanos(ITmfTimestamp)}).
+     *
+     * @return The timestamp of the event, in nanoseconds
+     * @since 1.1
+     */
+    public long getTimestampNanos() {
+        return TmfTimestamp.toNanos(getTimestamp());
+    }
+
+    /**
+     * Get the timestamp of an event in nanoseconds. This is the fast path of
+     * the event loops, which uses {@link #getTimestampNanos()} for the
+     * {@link TmfEvent}s.
+     *
+     * @param event
+     *            The event
+     * @return The timestamp of the event, in nanoseconds
+     * @since 1.1
+     */
+    public static long getTimestampNanos(final ITmfEvent event) {
+        if (event instanceof TmfEvent) {
+            return ((TmfEvent) event).getTimestampNanos();
+        }
+        return TmfTimestamp.toNanos(event.getTimestamp());
+    }
+
     @Override
     public ITmfEventType getType() {
         return fType;
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.request;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+
+/**
+ * An event request which receives its events in chunks rather than one by
+ * one, to amortize the cost of delivering each event. A request implementing
+ * this interface receives all its events through
+ * {@link #handleData(List)}, and {@link #handleData(ITmfEvent)} is not called
+ * by the event providers anymore.
+ *
+ * @since 1.1
+ */
+public interface ITmfEventBatchRequest extends ITmfEventRequest {
+
+    /**
+     * Process a chunk of events, in order. The events are of the requested
+     * data type.
+     *
+     * @param events
+     *            The events, the list is only valid during the call
+     */
+    void handleData(@NonNull List<ITmfEvent> events);
+}
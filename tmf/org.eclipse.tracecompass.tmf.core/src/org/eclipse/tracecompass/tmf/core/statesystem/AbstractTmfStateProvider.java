@@ -21,7 +21,7 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
@@ -83,7 +83,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
 
     @Override
     public long getStartTime() {
-        return fTrace.getStartTime().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+        return TmfTimestamp.toNanos(fTrace.getStartTime());
     }
 
     @Override
@@ -208,8 +208,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
 
         private void closeStateSystem() {
             ITmfEvent event = currentEvent;
-            final long endTime = (event == null) ? 0 :
-                    event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            final long endTime = (event == null) ? 0 : TmfEvent.getTimestampNanos(event);
 
             if (fSS != null) {
                 fSS.closeHistory(endTime);
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.statesystem;
+
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+/**
+ * A state provider whose history can be built in time segments, in parallel,
+ * and merged afterwards.
+ *
+ * The history of each segment is built by a new instance of the provider (see
+ * {@link #getNewInstance()}), which starts from an empty state: all the
+ * attributes are null at the start of the segment. The value of an attribute
+ * in the complete history is then computed from its value at the end of the
+ * previous segments and its value in the segment. The attributes which are
+ * not modified in a segment keep their value.
+ *
+ * This fits the providers which count things, for example, but not the ones
+ * which need the state left by the previous events to handle an event.
+ *
+ * @since 1.1
+ */
+public interface ITmfMergeableStateProvider extends ITmfStateProvider {
+
+    /**
+     * Compute the value of an attribute in the complete history.
+     *
+     * @param previous
+     *            The value of the attribute at the end of the previous
+     *            segments, which is a null value for the first segment
+     * @param value
+     *            The value of the attribute in the segment, built from an
+     *            empty state
+     * @return The value of the attribute in the complete history
+     */
+    ITmfStateValue mergeState(ITmfStateValue previous, ITmfStateValue value);
+}
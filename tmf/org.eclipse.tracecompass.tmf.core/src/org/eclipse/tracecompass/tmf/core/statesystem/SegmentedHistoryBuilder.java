@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.statesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Builds the history of a {@link ITmfMergeableStateProvider} in parallel.
+ *
+ * The trace is split in time segments with about the same number of events,
+ * whose boundaries are found by seeking by rank, which goes through the
+ * checkpoint index of the trace. The history of each segment is built in a
+ * temporary history tree file, by its own instance of the provider, then the
+ * segment histories are merged in order into the target state system.
+ */
+class SegmentedHistoryBuilder {
+
+    /**
+     * System property overriding the minimum number of events in a segment,
+     * to build the history of small traces in segments
+     */
+    static final String MIN_EVENTS_PER_SEGMENT_PROPERTY = "org.eclipse.tracecompass.tmf.core.statesystem.minEventsPerSegment"; //$NON-NLS-1$
+
+    /** Minimum number of events in a segment, for the split to be worth it */
+    private static final long MIN_EVENTS_PER_SEGMENT = 100000;
+
+    /** Size of the blocking queue of the history tree of a segment */
+    private static final int QUEUE_SIZE = 10000;
+
+    private static final String SEGMENT_SUFFIX = ".segment"; //$NON-NLS-1$
+
+    private static final Comparator<ITmfStateInterval> START_TIME_COMPARATOR = new Comparator<ITmfStateInterval>() {
+        @Override
+        public int compare(ITmfStateInterval o1, ITmfStateInterval o2) {
+            return Long.compare(o1.getStartTime(), o2.getStartTime());
+        }
+    };
+
+    private final String fId;
+    private final ITmfMergeableStateProvider fProvider;
+    private final ITmfTrace fTrace;
+    private final File fFile;
+
+    private volatile boolean fCanceled = false;
+
+    /**
+     * Constructor
+     *
+     * @param id
+     *            The ID of the state system
+     * @param provider
+     *            The state provider, only used to create the providers of the
+     *            segments
+     * @param file
+     *            The history file of the target state system, the files of
+     *            the segments are created next to it
+     */
+    public SegmentedHistoryBuilder(String id, ITmfMergeableStateProvider provider, File file) {
+        fId = id;
+        fProvider = provider;
+        fTrace = provider.getTrace();
+        fFile = file;
+    }
+
+    /**
+     * Get the number of segments to split the trace into, which depends on
+     * the number of processors and on the number of events of the trace.
+     *
+     * This waits until the trace is completely indexed, so that the events
+     * are shared evenly between the segments. Otherwise, the last segment
+     * would also get all the events not indexed yet.
+     *
+     * @param trace
+     *            The trace, which must be complete
+     * @return The number of segments, 1 if the trace should not be split
+     */
+    public static int getNbSegments(ITmfTrace trace) {
+        trace.indexTrace(true);
+        long minEvents = Math.max(1, Long.getLong(MIN_EVENTS_PER_SEGMENT_PROPERTY, MIN_EVENTS_PER_SEGMENT).longValue());
+        long nbSegments = trace.getNbEvents() / minEvents;
+        return (int) Math.max(1, Math.min(nbSegments, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Stop building the segments, the history will not be complete
+     */
+    public void cancel() {
+        fCanceled = true;
+    }
+
+    /**
+     * Build the history into the target state system, which is closed
+     * afterwards, even if the build fails.
+     *
+     * @param ss
+     *            The target state system, which must be empty
+     * @param nbSegments
+     *            The number of segments to split the trace into
+     * @return true if the history is complete, false if it was canceled
+     * @throws TmfTraceException
+     *             If the history of a segment could not be built or merged
+     */
+    public boolean build(ITmfStateSystemBuilder ss, int nbSegments) throws TmfTraceException {
+        List<ITmfTimestamp> boundaries = getBoundaries(nbSegments);
+        int nbThreads = boundaries.size() + 1;
+
+        List<IStateHistoryBackend> backends = new ArrayList<>();
+        List<ITmfStateSystemBuilder> segments = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        long endTime = fProvider.getStartTime();
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            for (int i = 0; i < nbThreads; i++) {
+                long startTime = (i == 0) ? fProvider.getStartTime() : TmfTimestamp.toNanos(boundaries.get(i - 1));
+                IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
+                        fId + SEGMENT_SUFFIX + i, new File(fFile.getPath() + SEGMENT_SUFFIX + i),
+                        fProvider.getVersion(), startTime, QUEUE_SIZE);
+                backends.add(backend);
+                segments.add(StateSystemFactory.newStateSystem(backend));
+            }
+
+            /* The providers start their threads once they have a target */
+            for (int i = 0; i < nbThreads; i++) {
+                final ITmfTimestamp start = (i == 0) ? null : boundaries.get(i - 1);
+                final ITmfTimestamp end = (i == nbThreads - 1) ? null : boundaries.get(i);
+                final ITmfStateProvider provider = fProvider.getNewInstance();
+                provider.assignTargetStateSystem(segments.get(i));
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        readSegment(provider, start, end);
+                        return null;
+                    }
+                });
+            }
+
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            if (fCanceled) {
+                return false;
+            }
+            endTime = merge(ss, segments, backends);
+            return true;
+
+        } catch (IOException e) {
+            throw new TmfTraceException(e.toString(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TmfTraceException("Interrupted while building the history of " + fId, e); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            throw new TmfTraceException("Error building the history of " + fId, e.getCause()); //$NON-NLS-1$
+        } finally {
+            executor.shutdown();
+            ss.closeHistory(endTime);
+            for (IStateHistoryBackend backend : backends) {
+                backend.removeFiles();
+            }
+        }
+    }
+
+    /**
+     * Find the start times of the segments, except the first one. The
+     * segments without events are dropped.
+     */
+    private List<ITmfTimestamp> getBoundaries(int nbSegments) {
+        long nbEvents = fTrace.getNbEvents();
+        long previous = fProvider.getStartTime();
+        List<ITmfTimestamp> boundaries = new ArrayList<>();
+        for (int i = 1; i < nbSegments; i++) {
+            ITmfContext context = fTrace.seekEvent(nbEvents * i / nbSegments);
+            ITmfEvent event = fTrace.getNext(context);
+            context.dispose();
+            if (event == null) {
+                break;
+            }
+            long time = TmfEvent.getTimestampNanos(event);
+            if (time > previous) {
+                boundaries.add(event.getTimestamp());
+                previous = time;
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * Send the events of a segment to its provider, then close its history.
+     * The trace is read from the first event at or after the start time, up
+     * to the last event before the end time.
+     *
+     * Each segment is read with its own context. The events are only parsed
+     * in parallel if the trace does not lock itself to read a context, like
+     * the CTF traces.
+     */
+    private void readSegment(ITmfStateProvider provider, @Nullable ITmfTimestamp start, @Nullable ITmfTimestamp end) {
+        ITmfContext context = (start == null) ? fTrace.seekEvent(0L) : fTrace.seekEvent(start);
+        long endTime = (end == null) ? Long.MAX_VALUE : TmfTimestamp.toNanos(end);
+        try {
+            ITmfEvent event = fTrace.getNext(context);
+            while (event != null && !fCanceled) {
+                if (end != null && TmfEvent.getTimestampNanos(event) >= endTime) {
+                    break;
+                }
+                provider.processEvent(event);
+                event = fTrace.getNext(context);
+            }
+        } finally {
+            context.dispose();
+            provider.dispose();
+        }
+    }
+
+    /**
+     * Insert the intervals of the segments, in order, in the target state
+     * system. The state changes of each segment are replayed with the values
+     * merged by the provider, so the intervals which continue across a
+     * boundary are joined by the state system.
+     *
+     * The state changes are replayed in the order of their start times, like
+     * the provider did, so the intervals reach the history tree sorted by end
+     * time. This means the intervals of one segment are all kept in memory
+     * while they are replayed.
+     *
+     * @return The end time of the history
+     */
+    private long merge(ITmfStateSystemBuilder ss, List<ITmfStateSystemBuilder> segments,
+            List<IStateHistoryBackend> backends) throws TmfTraceException {
+        long endTime = fProvider.getStartTime();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                ITmfStateSystemBuilder segment = segments.get(i);
+                IStateHistoryBackend backend = backends.get(i);
+
+                /* Map the attributes of the segment to the target ones */
+                int nbAttributes = segment.getNbAttributes();
+                int[] quarks = new int[nbAttributes];
+                for (int quark = 0; quark < nbAttributes; quark++) {
+                    quarks[quark] = ss.getQuarkAbsoluteAndAdd(segment.getFullAttributePathArray(quark));
+                }
+                BitSet segmentQuarks = new BitSet(nbAttributes);
+                segmentQuarks.set(0, nbAttributes);
+
+                /* The values at the end of the previous segments */
+                ITmfStateValue[] previous = new ITmfStateValue[ss.getNbAttributes()];
+                for (int quark = 0; quark < previous.length; quark++) {
+                    previous[quark] = ss.queryOngoingState(quark);
+                }
+
+                long start = backend.getStartTime();
+                List<ITmfStateInterval> intervals = new ArrayList<>();
+                for (ITmfStateInterval interval : backend.query2D(segmentQuarks, start, backend.getEndTime())) {
+                    if (interval.getStartTime() <= start && interval.getStateValue().isNull()) {
+                        /* Not modified in this segment, it keeps its value */
+                        continue;
+                    }
+                    intervals.add(interval);
+                }
+                /* They come sorted by end time, most of them are in order already */
+                Collections.sort(intervals, START_TIME_COMPARATOR);
+                for (ITmfStateInterval interval : intervals) {
+                    int quark = quarks[interval.getAttribute()];
+                    ss.modifyAttribute(interval.getStartTime(), fProvider.mergeState(previous[quark], interval.getStateValue()), quark);
+                }
+                endTime = Math.max(endTime, backend.getEndTime());
+            }
+        } catch (AttributeNotFoundException | StateValueTypeException | TimeRangeException | StateSystemDisposedException e) {
+            throw new TmfTraceException("Error merging the history of " + fId, e); //$NON-NLS-1$
+        }
+        return endTime;
+    }
+}
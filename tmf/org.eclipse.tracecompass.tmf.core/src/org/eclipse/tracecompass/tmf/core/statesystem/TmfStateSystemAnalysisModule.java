@@ -69,6 +69,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     @Nullable private IStateHistoryBackend fHtBackend;
     @Nullable private ITmfEventRequest fRequest;
     @Nullable private TmfTimeRange fTimeRange = null;
+    @Nullable private volatile SegmentedHistoryBuilder fSegmentedBuilder = null;
 
     private int fNbRead = 0;
 
@@ -224,6 +225,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         if ((req != null) && (!req.isCompleted())) {
             req.cancel();
         }
+        SegmentedHistoryBuilder builder = fSegmentedBuilder;
+        if (builder != null) {
+            builder.cancel();
+        }
     }
 
     @Override
@@ -276,6 +281,20 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                     id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
             fHtBackend = backend;
             fStateSystem = StateSystemFactory.newStateSystem(backend);
+
+            /*
+             * A complete trace can be split in segments whose histories are
+             * built in parallel, if the provider can merge them.
+             */
+            final ITmfTrace trace = provider.getTrace();
+            if (provider instanceof ITmfMergeableStateProvider && isCompleteTrace(trace)) {
+                int nbSegments = SegmentedHistoryBuilder.getNbSegments(trace);
+                if (nbSegments > 1) {
+                    buildInSegments(id, (ITmfMergeableStateProvider) provider, htFile, nbSegments);
+                    return;
+                }
+            }
+
             provider.assignTargetStateSystem(fStateSystem);
             build(provider);
         } catch (IOException e) {
@@ -439,6 +458,29 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         }
     }
 
+    private void buildInSegments(String id, ITmfMergeableStateProvider provider, File htFile, int nbSegments)
+            throws TmfTraceException {
+        ITmfStateSystemBuilder ss = checkNotNull(fStateSystem);
+        SegmentedHistoryBuilder builder = new SegmentedHistoryBuilder(id, provider, htFile);
+        fSegmentedBuilder = builder;
+
+        /*
+         * The state system is filled at the end, once the segments are built,
+         * so the queries see an empty state system until then.
+         */
+        fInitialized.countDown();
+
+        boolean complete = false;
+        try {
+            complete = builder.build(ss, nbSegments);
+        } finally {
+            fSegmentedBuilder = null;
+            if (!complete && fHtBackend != null) {
+                fHtBackend.removeFiles();
+            }
+        }
+    }
+
     private class StateSystemEventRequest extends TmfEventRequest {
         private final ITmfStateProvider sci;
         private final ITmfTrace trace;
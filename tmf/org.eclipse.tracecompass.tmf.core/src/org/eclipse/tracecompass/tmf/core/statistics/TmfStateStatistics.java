@@ -23,6 +23,8 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 /**
  * Implementation of ITmfStatistics which uses a state history for storing its
@@ -305,6 +307,20 @@ public class TmfStateStatistics implements ITmfStatistics {
         return end;
     }
 
+    /**
+     * Merge the event count of an attribute in a segment of the history with
+     * its count at the end of the previous segments, see
+     * {@link org.eclipse.tracecompass.tmf.core.statesystem.ITmfMergeableStateProvider#mergeState}.
+     * The counts of a segment start at 0, so those of the previous segments
+     * are added to them.
+     */
+    static ITmfStateValue mergeCounts(ITmfStateValue previous, ITmfStateValue value) {
+        if (previous.isNull() || value.isNull()) {
+            return (value.isNull() ? previous : value);
+        }
+        return TmfStateValue.newValueInt(previous.unboxInt() + value.unboxInt());
+    }
+
     /**
      * The attribute names that are used in the state provider
      */
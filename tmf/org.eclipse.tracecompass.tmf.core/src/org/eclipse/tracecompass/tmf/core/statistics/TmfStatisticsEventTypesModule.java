@@ -19,14 +19,16 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfMergeableStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics.Attributes;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -88,7 +90,7 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
      * @author Alexandre Montplaisir
      * @version 1.0
      */
-    class StatsProviderEventTypes extends AbstractTmfStateProvider {
+    class StatsProviderEventTypes extends AbstractTmfStateProvider implements ITmfMergeableStateProvider {
 
         /**
          * Version number of this input handler. Please bump this if you modify the
@@ -116,6 +118,11 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
             return new StatsProviderEventTypes(this.getTrace());
         }
 
+        @Override
+        public ITmfStateValue mergeState(ITmfStateValue previous, ITmfStateValue value) {
+            return TmfStateStatistics.mergeCounts(previous, value);
+        }
+
         @Override
         protected void eventHandle(ITmfEvent event) {
             ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
@@ -123,7 +130,7 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
 
             /* Since this can be used for any trace types, normalize all the
              * timestamp values to nanoseconds. */
-            final long ts = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            final long ts = TmfEvent.getTimestampNanos(event);
 
             final String eventName = event.getName();
 
@@ -19,13 +19,15 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfMergeableStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics.Attributes;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -80,7 +82,7 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
      * @author Alexandre Montplaisir
      * @version 1.0
      */
-    class StatsProviderTotals extends AbstractTmfStateProvider {
+    class StatsProviderTotals extends AbstractTmfStateProvider implements ITmfMergeableStateProvider {
 
         /**
          * Version number of this input handler. Please bump this if you modify the
@@ -108,6 +110,11 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
             return new StatsProviderTotals(this.getTrace());
         }
 
+        @Override
+        public ITmfStateValue mergeState(ITmfStateValue previous, ITmfStateValue value) {
+            return TmfStateStatistics.mergeCounts(previous, value);
+        }
+
         @Override
         protected void eventHandle(ITmfEvent event) {
             /* Do not count lost events in the total */
@@ -119,7 +126,7 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
 
             /* Since this can be used for any trace types, normalize all the
              * timestamp values to nanoseconds. */
-            final long ts = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            final long ts = TmfEvent.getTimestampNanos(event);
 
             try {
                 /* Total number of events */
@@ -58,11 +58,22 @@ public class TmfNanoTimestamp extends TmfTimestamp {
     @Override
     public ITmfTimestamp normalize(final long offset, final int scale) {
         if (scale == ITmfTimestamp.NANOSECOND_SCALE) {
+            if (offset == 0) {
+                return this;
+            }
             return new TmfNanoTimestamp(getValue() + offset);
         }
         return super.normalize(offset, scale);
     }
 
+    /**
+     * @since 1.1
+     */
+    @Override
+    public long toNanos() {
+        return getValue();
+    }
+
     @Override
     public int compareTo(final ITmfTimestamp ts) {
         if (ts instanceof TmfNanoTimestamp) {
@@ -47,6 +47,8 @@ public class TmfTimeRange {
 
     private final ITmfTimestamp fStartTime;
     private final ITmfTimestamp fEndTime;
+    private final long fStartNanos;
+    private final long fEndNanos;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -61,6 +63,8 @@ public class TmfTimeRange {
     public TmfTimeRange(final ITmfTimestamp startTime, final ITmfTimestamp endTime) {
         fStartTime = startTime;
         fEndTime = endTime;
+        fStartNanos = TmfTimestamp.toNanos(startTime);
+        fEndNanos = TmfTimestamp.toNanos(endTime);
     }
 
     // ------------------------------------------------------------------------
@@ -81,6 +85,22 @@ public class TmfTimeRange {
         return fEndTime;
     }
 
+    /**
+     * @return the time range start time, in nanoseconds
+     * @since 1.1
+     */
+    public long getStartNanos() {
+        return fStartNanos;
+    }
+
+    /**
+     * @return the time range end time, in nanoseconds
+     * @since 1.1
+     */
+    public long getEndNanos() {
+        return fEndNanos;
+    }
+
     // ------------------------------------------------------------------------
     // Predicates
     // ------------------------------------------------------------------------
@@ -96,6 +116,18 @@ public class TmfTimeRange {
         return (fStartTime.compareTo(ts) <= 0) && (fEndTime.compareTo(ts) >= 0);
     }
 
+    /**
+     * Check if a time, in nanoseconds, is within the time range
+     *
+     * @param nanos
+     *            The time to check, in nanoseconds
+     * @return True if [startTime] <= [nanos] <= [endTime]
+     * @since 1.1
+     */
+    public boolean contains(final long nanos) {
+        return (fStartNanos <= nanos) && (fEndNanos >= nanos);
+    }
+
     /**
      * Check if the time range is within the time range
      *
@@ -190,6 +222,11 @@ public class TmfTimeRange {
             return true;
         }
 
+        @Override
+        public boolean contains(long nanos) {
+            return true;
+        }
+
         @Override
         public boolean contains(TmfTimeRange range) {
             return true;
@@ -214,6 +214,57 @@ public class TmfTimestamp implements ITmfTimestamp {
         return new TmfTimestamp(value, scale);
     }
 
+    /**
+     * Get the value of this timestamp in nanoseconds. This is the same as
+     * {@code normalize(0, NANOSECOND_SCALE).getValue()}, without creating a
+     * new timestamp, except that the values which do not fit in nanoseconds
+     * are saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}.
+     *
+     * @return The value of the timestamp, in nanoseconds
+     * @since 1.1
+     */
+    public long toNanos() {
+        return toNanos(fValue, fScale);
+    }
+
+    /**
+     * Get the value of a timestamp in nanoseconds, see {@link #toNanos()}.
+     * The timestamps which are not {@link TmfTimestamp}s are converted from
+     * their value and scale.
+     *
+     * @param timestamp
+     *            The timestamp
+     * @return The value of the timestamp, in nanoseconds
+     * @since 1.1
+     */
+    public static long toNanos(final ITmfTimestamp timestamp) {
+        if (timestamp instanceof TmfTimestamp) {
+            return ((TmfTimestamp) timestamp).toNanos();
+        }
+        return toNanos(timestamp.getValue(), timestamp.getScale());
+    }
+
+    private static long toNanos(final long value, final int scale) {
+        if (scale == ITmfTimestamp.NANOSECOND_SCALE) {
+            return value;
+        }
+        final long scaleDiff = (long) scale - ITmfTimestamp.NANOSECOND_SCALE;
+        if (scaleDiff < 0) {
+            return (-scaleDiff < scalingFactors.length) ? value / scalingFactors[(int) -scaleDiff] : 0;
+        }
+        if (scaleDiff < scalingFactors.length) {
+            final long scalingFactor = scalingFactors[(int) scaleDiff];
+            if (value <= Long.MAX_VALUE / scalingFactor && value >= Long.MIN_VALUE / scalingFactor) {
+                return value * scalingFactor;
+            }
+        }
+        // Includes the big bang and the big crunch
+        if (value == 0) {
+            return 0;
+        }
+        return (value < 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
     @Override
     public ITmfTimestamp getDelta(final ITmfTimestamp ts) {
         final ITmfTimestamp nts = ts.normalize(0, fScale);
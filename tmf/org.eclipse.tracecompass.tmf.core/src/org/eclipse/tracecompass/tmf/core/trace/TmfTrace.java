@@ -562,6 +562,18 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
         return event;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The trace is locked once for all the events.
+     *
+     * @since 1.1
+     */
+    @Override
+    public synchronized int getNext(ITmfContext context, ITmfEvent[] events, int count) {
+        return super.getNext(context, events, count);
+    }
+
     /**
      * Update the trace attributes
      *
@@ -395,20 +395,8 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
             expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
         }
 
-        // Scan the candidate events and identify the "next" trace to read from
-        int trace = TmfExperimentContext.NO_TRACE;
-        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
-        for (int i = 0; i < length; i++) {
-            final ITmfEvent event = expContext.getEvent(i);
-
-            if (event != null) {
-                final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
-                    trace = i;
-                    timestamp = otherTS;
-                }
-            }
-        }
+        // Identify the "next" trace to read from
+        final int trace = expContext.getNextTrace();
 
         ITmfEvent event = null;
         if (trace != TmfExperimentContext.NO_TRACE) {
@@ -66,6 +66,9 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
     /** The event trace to index */
     private boolean fIsIndexing;
 
+    /** Whether the whole trace is indexed, the trace being complete */
+    private volatile boolean fIsIndexComplete = false;
+
     /**
      * The trace index. It is composed of checkpoints taken at intervals of
      * fCheckpointInterval events.
@@ -140,14 +143,24 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
     @Override
     public void buildIndex(final long offset, final TmfTimeRange range, final boolean waitForCompletion) {
 
-        // Don't do anything if we are already indexing
+        // Don't do anything if we are already indexing, except wait for the
+        // indexing to complete if required
         synchronized (fTraceIndex) {
             if (fIsIndexing) {
+                if (waitForCompletion) {
+                    waitForIndexing();
+                }
                 return;
             }
             fIsIndexing = true;
         }
 
+        // No need to build the index again, the whole trace is indexed
+        if (fIsIndexComplete) {
+            setIndexing(false);
+            return;
+        }
+
         // No need to build the index, it has been restored
         if (!fTraceIndex.isCreatedFromScratch()) {
             // Set some trace attributes that depends on indexing
@@ -157,7 +170,7 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
             } else {
                 fTrace.broadcastAsync(signal);
             }
-            fIsIndexing = false;
+            setIndexing(false);
             return;
         }
 
@@ -206,6 +219,8 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
                 fTraceIndex.setNbEvents(fTrace.getNbEvents());
                 if (isCompleteTrace(fTrace)) {
                     fTraceIndex.setIndexComplete();
+                    /* The whole trace was read */
+                    fIsIndexComplete = (offset == 0 && range.equals(TmfTimeRange.ETERNITY));
                 }
                 updateTraceStatus();
             }
@@ -214,7 +229,7 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
             public void handleCompleted() {
                 job.cancel();
                 super.handleCompleted();
-                fIsIndexing = false;
+                setIndexing(false);
             }
 
             private void updateTraceStatus() {
@@ -338,6 +353,31 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         return fTraceIndex;
     }
 
+    /**
+     * Update the indexing flag, and wake up the threads waiting for the
+     * indexing to complete.
+     */
+    private void setIndexing(boolean isIndexing) {
+        synchronized (fTraceIndex) {
+            fIsIndexing = isIndexing;
+            fTraceIndex.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the indexing is complete. Must be called with the lock of
+     * the trace index held.
+     */
+    private void waitForIndexing() {
+        try {
+            while (fIsIndexing) {
+                fTraceIndex.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private static boolean isCompleteTrace(ITmfTrace trace) {
         return !(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness)trace).isComplete();
     }